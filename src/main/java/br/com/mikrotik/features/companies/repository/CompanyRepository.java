@@ -2,11 +2,16 @@
 package br.com.mikrotik.features.companies.repository;
 
 import br.com.mikrotik.features.companies.model.Company;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -27,6 +32,18 @@ public interface CompanyRepository extends JpaRepository<Company, Long> {
      */
     Page<Company> findByActive(Boolean active, Pageable pageable);
 
+    /**
+     * Empresas ativas (jobs de faturamento)
+     */
+    List<Company> findByActiveTrue();
+
+    /**
+     * LOCK PESSIMISTA na linha da empresa (serializa o planejamento do faturamento)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Company c WHERE c.id = :id")
+    Optional<Company> findByIdForUpdate(@Param("id") Long id);
+
     /**
      * Busca empresas por nome (parcial, case-insensitive)
      */
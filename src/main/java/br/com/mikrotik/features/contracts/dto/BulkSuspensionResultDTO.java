@@ -0,0 +1,65 @@
+package br.com.mikrotik.features.contracts.dto;
+
+import java.util.List;
+
+/**
+ * Resultado da suspensão em lote por inadimplência, contrato a contrato.
+ *
+ * @param suspended        Contratos suspensos nesta execução
+ * @param alreadySuspended Contratos que já estavam SUSPENDED_FINANCIAL
+ * @param skipped          Contratos em outro status (ou não encontrados)
+ * @param errors           Contratos cujo bloco falhou no banco
+ * @param routerApplied    Bloqueios confirmados pelo router
+ * @param routerPending    Bloqueios não confirmados (nova tentativa pelo outbox)
+ * @param items            Resultado de cada contrato
+ */
+public record BulkSuspensionResultDTO(
+        int suspended,
+        int alreadySuspended,
+        int skipped,
+        int errors,
+        int routerApplied,
+        int routerPending,
+        List<Item> items
+) {
+
+    public enum Outcome {
+        SUSPENDED,
+        ALREADY_SUSPENDED,
+        SKIPPED,     // status diferente de ACTIVE
+        NOT_FOUND,
+        ERROR
+    }
+
+    public enum RouterStatus {
+        APPLIED,     // bloqueio confirmado no router
+        PENDING,     // falha ou router indisponível: nova tentativa pelo outbox
+        NO_PPPOE     // contrato sem usuário PPPoE: nada a bloquear
+    }
+
+    /**
+     * @param router  nulo quando o contrato não foi suspenso nesta execução
+     * @param message motivo do SKIPPED/ERROR ou erro do router
+     */
+    public record Item(Long contractId, Outcome outcome, RouterStatus router, String message) {
+    }
+
+    public static BulkSuspensionResultDTO of(List<Item> items) {
+        int suspended = 0, alreadySuspended = 0, skipped = 0, errors = 0, routerApplied = 0, routerPending = 0;
+        for (Item item : items) {
+            switch (item.outcome()) {
+                case SUSPENDED -> suspended++;
+                case ALREADY_SUSPENDED -> alreadySuspended++;
+                case SKIPPED, NOT_FOUND -> skipped++;
+                case ERROR -> errors++;
+            }
+            if (item.router() == RouterStatus.APPLIED) {
+                routerApplied++;
+            } else if (item.router() == RouterStatus.PENDING) {
+                routerPending++;
+            }
+        }
+        return new BulkSuspensionResultDTO(suspended, alreadySuspended, skipped, errors,
+                routerApplied, routerPending, items);
+    }
+}
@@ -14,18 +14,16 @@ import org.springframework.context.ApplicationEvent;
  *
  * FLUXO:
  * 1. ContractService.update() detecta mudança de servicePlanId
- * 2. Persiste novo servicePlanId no contrato (@Transactional) → commit
+ * 2. Persiste novo servicePlanId e grava o novo perfil em router_command_outbox (mesma transação)
  * 3. Publica ContractPlanChangedEvent (após save, antes de retornar)
- * 4. NetworkIntegrationService.handlePlanChange() recebe evento (@Async)
- * 5. Carrega novo ServicePlan → PppoeProfile
- * 6. Atualiza PppoeUser.profile no banco
- * 7. Chama changePppoeUserProfile no Mikrotik (com @Retryable 3x)
+ * 4. NetworkIntegrationService.handlePlanChange() recebe evento após o commit e acorda o dispatcher
+ * 5. Dispatcher aplica o perfil no Mikrotik em lote (contrato suspenso continua BLOQUEADO)
+ * 6. Atualiza PppoeUser.profile no banco após o Mikrotik confirmar
  *
  * CONSISTÊNCIA:
  * - Contrato sempre reflete o plano correto no banco
- * - PppoeUser.profile é atualizado de forma assíncrona
- * - Mikrotik é atualizado de forma assíncrona com retry
- * - Se o Mikrotik falhar após 3 tentativas, log de erro para revisão manual
+ * - A intenção sobrevive a reinícios (outbox); falhas são retentadas com backoff
+ * - Após o máximo de tentativas, a intenção fica FAILED no outbox para revisão manual
  */
 @Getter
 public class ContractPlanChangedEvent extends ApplicationEvent {
@@ -13,10 +13,10 @@ import org.springframework.context.ApplicationEvent;
  *
  * FLUXO:
  * 1. ContractService.suspendFinancial() -> Altera status no DB (@Transactional)
- * 2. Publica ContractStatusChangedEvent (dentro da transação)
+ * 2. Grava o estado desejado em router_command_outbox e publica ContractStatusChangedEvent (dentro da transação)
  * 3. Commit da transação
- * 4. NetworkIntegrationService recebe evento (@Async)
- * 5. Processa integração Mikrotik (fora da transação, com retry)
+ * 4. NetworkIntegrationService recebe evento e acorda o dispatcher do outbox
+ * 5. Processa integração Mikrotik (fora da transação, em lote por router, com novas tentativas)
  */
 @Getter
 public class ContractStatusChangedEvent extends ApplicationEvent {
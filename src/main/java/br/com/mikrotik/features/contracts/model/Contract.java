@@ -20,8 +20,11 @@ import java.time.LocalDateTime;
 @Builder
 public class Contract {
 
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "contracts_id")
+    @TableGenerator(name = "contracts_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "contracts", allocationSize = 50)
     private Long id;
 
     @Column(name = "company_id", nullable = false)
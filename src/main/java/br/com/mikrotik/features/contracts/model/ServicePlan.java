@@ -17,8 +17,11 @@ import java.time.LocalDateTime;
 @Builder
 public class ServicePlan {
 
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "service_plans_id")
+    @TableGenerator(name = "service_plans_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "service_plans", allocationSize = 50)
     private Long id;
 
     @Column(name = "company_id", nullable = false)
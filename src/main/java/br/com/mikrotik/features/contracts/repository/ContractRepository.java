@@ -4,6 +4,7 @@ import br.com.mikrotik.features.contracts.model.Contract;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -11,8 +12,10 @@ import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface ContractRepository extends JpaRepository<Contract, Long> {
@@ -38,6 +41,68 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
     // Buscar por usuário PPPoE e empresa
     Optional<Contract> findByPppoeUserIdAndCompanyId(Long pppoeUserId, Long companyId);
 
+    // Pares [pppoeUserId, customerId] dos contratos da empresa (pré-carga da sincronização)
+    @Query("SELECT c.pppoeUserId, c.customerId FROM Contract c " +
+           "WHERE c.companyId = :companyId AND c.pppoeUserId IS NOT NULL")
+    List<Object[]> findPppoeUserCustomerPairs(@Param("companyId") Long companyId);
+
+    /**
+     * Contratos a faturar em blocos por ID crescente (paginação por chave, projeção sem entidades).
+     */
+    @Query("SELECT c.id AS id, c.customerId AS customerId, c.billingDay AS billingDay, c.amount AS amount " +
+           "FROM Contract c WHERE c.companyId = :companyId AND c.status = :status " +
+           "AND c.id > :afterId AND c.id <= :untilId ORDER BY c.id")
+    List<BillingRow> findBillingRows(@Param("companyId") Long companyId,
+                                     @Param("status") Contract.ContractStatus status,
+                                     @Param("afterId") Long afterId,
+                                     @Param("untilId") Long untilId,
+                                     Pageable pageable);
+
+    /**
+     * Status atual dos contratos informados (triagem da suspensão em lote, uma consulta).
+     */
+    @Query("SELECT c.id AS id, c.status AS status, c.customerId AS customerId, c.pppoeUserId AS pppoeUserId " +
+           "FROM Contract c WHERE c.companyId = :companyId AND c.id IN :ids")
+    List<StatusRow> findStatusRows(@Param("companyId") Long companyId, @Param("ids") Collection<Long> ids);
+
+    interface StatusRow {
+        Long getId();
+        Contract.ContractStatus getStatus();
+        Long getCustomerId();
+        Long getPppoeUserId();
+    }
+
+    // Troca de status em conjunto, só para contratos ainda no status esperado (UPDATE em massa não dispara @PreUpdate)
+    @Modifying
+    @Query("UPDATE Contract c SET c.status = :newStatus, c.updatedAt = :now " +
+           "WHERE c.companyId = :companyId AND c.id IN :ids AND c.status = :expectedStatus")
+    int updateStatusBulk(@Param("companyId") Long companyId,
+                         @Param("ids") Collection<Long> ids,
+                         @Param("expectedStatus") Contract.ContractStatus expectedStatus,
+                         @Param("newStatus") Contract.ContractStatus newStatus,
+                         @Param("now") LocalDateTime now);
+
+    // IDs em ordem crescente: limites das partições do faturamento paralelo
+    @Query("SELECT c.id FROM Contract c WHERE c.companyId = :companyId AND c.status = :status ORDER BY c.id")
+    List<Long> findIdsByCompanyIdAndStatus(@Param("companyId") Long companyId,
+                                           @Param("status") Contract.ContractStatus status);
+
+    interface BillingRow {
+        Long getId();
+        Long getCustomerId();
+        Integer getBillingDay();
+        BigDecimal getAmount();
+    }
+
+    // IDs dos usuários PPPoE com contrato na empresa (pré-visualização em streaming)
+    @Query("SELECT DISTINCT c.pppoeUserId FROM Contract c " +
+           "WHERE c.companyId = :companyId AND c.pppoeUserId IS NOT NULL")
+    Set<Long> findLinkedPppoeUserIdsByCompanyId(@Param("companyId") Long companyId);
+
+    // Usuários PPPoE (dentre os informados) já vinculados a algum contrato (validação em lote da importação)
+    @Query("SELECT c.pppoeUserId FROM Contract c WHERE c.pppoeUserId IN :pppoeUserIds")
+    List<Long> findLinkedPppoeUserIds(@Param("pppoeUserIds") Collection<Long> pppoeUserIds);
+
     // Buscar contratos ativos por plano de serviço
     List<Contract> findByServicePlanIdAndStatus(Long servicePlanId, Contract.ContractStatus status);
 
@@ -50,7 +50,7 @@ public interface ServicePlanRepository extends JpaRepository<ServicePlan, Long>
     /**
      * Busca ServicePlan pelo ID com pppoeProfile carregado via JOIN FETCH.
      *
-     * USO OBRIGATÓRIO em threads @Async (NetworkIntegrationService):
+     * USO OBRIGATÓRIO fora de sessão Hibernate aberta (ex: threads @Async):
      * ServicePlan.pppoeProfile é FetchType.LAZY — acessar getPppoeProfile()
      * fora de uma sessão Hibernate aberta lança LazyInitializationException.
      * Este query resolve o problema em uma única query SQL sem sessão aberta.
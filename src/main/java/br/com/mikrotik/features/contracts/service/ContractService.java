@@ -13,11 +13,14 @@ import br.com.mikrotik.features.customers.model.Address;
 import br.com.mikrotik.features.customers.model.Customer;
 import br.com.mikrotik.features.customers.repository.AddressRepository;
 import br.com.mikrotik.features.customers.repository.CustomerRepository;
+import br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox.DesiredState;
+import br.com.mikrotik.features.network.outbox.service.RouterCommandOutboxService;
 import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
 import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.service.NetworkIntegrationService;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -31,6 +34,17 @@ import java.math.BigDecimal;
 import java.security.SecureRandom;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -44,6 +58,7 @@ public class ContractService {
     private final AddressRepository addressRepository;
     private final MikrotikApiService mikrotikApiService;
     private final ApplicationEventPublisher eventPublisher;
+    private final RouterCommandOutboxService routerCommandOutboxService;
 
     /**
      * Criar novo contrato
@@ -93,6 +108,168 @@ public class ContractService {
         return ContractDTO.fromEntity(contract);
     }
 
+    /**
+     * Resultado da importação em lote: contratos gravados, recusas por usuário PPPoE
+     * e quantos usuários foram enviados ao outbox por divergirem do router.
+     */
+    public record ImportResult(List<ContractDTO> imported, Map<Long, String> rejected, int reconciled) {
+    }
+
+    /**
+     * Importação em lote (sincronização com o MikroTik): grava os contratos já no status
+     * final informado em cada DTO, que reflete o estado atual do router.
+     *
+     * DIFERENÇAS PARA create() + activate()/suspendFinancial():
+     * - Validação em lote (uma consulta por entidade), sem consultas por contrato;
+     *   os INSERTs seguem no lote JDBC
+     * - Nenhum ContractStatusChangedEvent: o router já está no estado importado,
+     *   não há o que aplicar contrato a contrato
+     * - Credencial PPPoE obrigatória (vem do router; não é criada aqui)
+     * - Ao final, UMA passada de reconciliação: só usuários cujo perfil no router diverge
+     *   do contrato vão para o outbox, que os aplica em lote por router
+     */
+    @Transactional
+    public ImportResult importContracts(List<ContractDTO> dtos) {
+        Long companyId = CompanyContextHolder.getCompanyId();
+        if (companyId == null) {
+            throw new ValidationException("Company ID não encontrado no contexto");
+        }
+        if (dtos.isEmpty()) {
+            return new ImportResult(List.of(), Map.of(), 0);
+        }
+        if (dtos.stream().anyMatch(dto -> dto.getPppoeUserId() == null)) {
+            throw new ValidationException("Importação exige usuário PPPoE em todos os contratos");
+        }
+
+        log.info("Importando {} contratos em lote (sem eventos de integração)", dtos.size());
+
+        // ── Validação em lote: uma consulta por entidade ──
+        Map<Long, Customer> customers = customerRepository.findAllById(
+                        dtos.stream().map(ContractDTO::getCustomerId).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream()
+                .filter(customer -> companyId.equals(customer.getCompanyId()))
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+        Map<Long, ServicePlan> plans = servicePlanRepository.findAllById(
+                        dtos.stream().map(ContractDTO::getServicePlanId).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream()
+                .filter(plan -> companyId.equals(plan.getCompanyId()))
+                .collect(Collectors.toMap(ServicePlan::getId, Function.identity()));
+        Set<Long> pppoeUserIds = dtos.stream().map(ContractDTO::getPppoeUserId).collect(Collectors.toSet());
+        Map<Long, PppoeUser> pppoeUsers = pppoeUserRepository.findAllById(pppoeUserIds).stream()
+                .filter(user -> companyId.equals(user.getCompanyId()))
+                .collect(Collectors.toMap(PppoeUser::getId, Function.identity()));
+        Set<Long> linkedPppoeUsers = new HashSet<>(contractRepository.findLinkedPppoeUserIds(pppoeUserIds));
+        // Endereço → cliente dono (o endereço precisa ser do cliente do contrato)
+        Map<Long, Long> addressOwners = addressRepository.findAllById(
+                        dtos.stream().map(ContractDTO::getInstallationAddressId).filter(Objects::nonNull).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Address::getId, Address::getCustomerId));
+
+        Map<Long, String> rejected = new LinkedHashMap<>();
+        List<Contract> contracts = new ArrayList<>(dtos.size());
+        for (ContractDTO dto : dtos) {
+            String error = validateImport(dto, customers, plans, pppoeUsers, linkedPppoeUsers, addressOwners);
+            if (error != null) {
+                rejected.put(dto.getPppoeUserId(), error);
+                continue;
+            }
+            linkedPppoeUsers.add(dto.getPppoeUserId()); // repetido no mesmo lote
+            dto.setCompanyId(companyId);
+            contracts.add(dto.toEntity());
+        }
+        contracts = contractRepository.saveAll(contracts);
+
+        // ── Status dos clientes (mesma regra de updateStatus), gravados em lote ──
+        Map<Long, Customer> changedCustomers = new LinkedHashMap<>();
+        for (Contract contract : contracts) {
+            Customer.CustomerStatus target = customerStatusFor(contract.getStatus());
+            Customer customer = customers.get(contract.getCustomerId());
+            if (target != null && customer.getStatus() != target) {
+                customer.setStatus(target);
+                changedCustomers.put(customer.getId(), customer);
+            }
+        }
+        customerRepository.saveAll(changedCustomers.values());
+
+        int reconciled = reconcileImported(contracts, pppoeUsers, plans);
+
+        log.info("Importação concluída: {} contratos gravados, {} recusados, {} clientes atualizados, " +
+                 "{} usuários enviados ao outbox por divergência com o router",
+                contracts.size(), rejected.size(), changedCustomers.size(), reconciled);
+        return new ImportResult(contracts.stream().map(ContractDTO::fromEntity).toList(), rejected, reconciled);
+    }
+
+    private String validateImport(ContractDTO dto, Map<Long, Customer> customers, Map<Long, ServicePlan> plans,
+                                  Map<Long, PppoeUser> pppoeUsers, Set<Long> linkedPppoeUsers,
+                                  Map<Long, Long> addressOwners) {
+        if (dto.getStatus() == Contract.ContractStatus.CANCELED) {
+            return "Importação não aceita contratos cancelados";
+        }
+        if (!customers.containsKey(dto.getCustomerId())) {
+            return "Cliente não encontrado ou não pertence à empresa";
+        }
+        if (!plans.containsKey(dto.getServicePlanId())) {
+            return "Plano de serviço não encontrado ou não pertence à empresa";
+        }
+        if (!pppoeUsers.containsKey(dto.getPppoeUserId())) {
+            return "Usuário PPPoE não encontrado ou não pertence à empresa";
+        }
+        if (linkedPppoeUsers.contains(dto.getPppoeUserId())) {
+            return "Usuário PPPoE já está vinculado a outro contrato";
+        }
+        if (dto.getInstallationAddressId() != null) {
+            Long owner = addressOwners.get(dto.getInstallationAddressId());
+            if (owner == null) {
+                return "Endereço de instalação não encontrado";
+            }
+            if (!owner.equals(dto.getCustomerId())) {
+                return "Endereço de instalação não pertence ao cliente do contrato";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Passada única após a importação: compara o perfil atual de cada usuário (lido do router
+     * na sincronização) com o status importado e registra no outbox apenas as divergências.
+     */
+    private int reconcileImported(List<Contract> contracts, Map<Long, PppoeUser> pppoeUsers,
+                                  Map<Long, ServicePlan> plans) {
+        int reconciled = 0;
+        for (Contract contract : contracts) {
+            PppoeUser user = pppoeUsers.get(contract.getPppoeUserId());
+            Long planProfileId = plans.get(contract.getServicePlanId()).getPppoeProfileId();
+            boolean blockedOnRouter = user.getProfile() != null && user.getProfile().getName() != null
+                    && user.getProfile().getName().toUpperCase(Locale.ROOT)
+                            .contains(NetworkIntegrationService.BLOCKED_PROFILE);
+
+            DesiredState desired = null;
+            Long profileId = null;
+            switch (contract.getStatus()) {
+                case SUSPENDED_FINANCIAL, SUSPENDED_REQUEST -> {
+                    if (!blockedOnRouter) {
+                        desired = DesiredState.BLOCKED;
+                    }
+                }
+                case ACTIVE -> {
+                    boolean wrongProfile = planProfileId != null && user.getProfile() != null
+                            && !planProfileId.equals(user.getProfile().getId());
+                    if (blockedOnRouter || wrongProfile) {
+                        desired = DesiredState.ACTIVE;
+                        profileId = planProfileId;
+                    }
+                }
+                default -> { } // DRAFT / PENDING: router não é alterado
+            }
+
+            if (desired != null) {
+                routerCommandOutboxService.enqueueReconcile(contract, user, desired, profileId);
+                reconciled++;
+            }
+        }
+        return reconciled;
+    }
+
     /**
      * Buscar contrato por ID
      */
@@ -240,6 +417,8 @@ public class ContractService {
         // (o profile correto será aplicado no momento da ativação).
         if (planChanged) {
             if (existing.getPppoeUserId() != null) {
+                // Estado desejado gravado no outbox na MESMA transação (não se perde em reinício)
+                routerCommandOutboxService.enqueuePlanChange(existing, existing.getServicePlanId());
                 eventPublisher.publishEvent(new ContractPlanChangedEvent(
                         this,
                         existing.getId(),
@@ -295,6 +474,9 @@ public class ContractService {
         syncCustomerStatus(contract.getCustomerId(), status);
         // ─────────────────────────────────────────────────────────────────────────
 
+        // Estado desejado no router gravado no outbox na MESMA transação
+        routerCommandOutboxService.enqueueStatusChange(contract, previousStatus, status);
+
         // Publicar evento para processamento assíncrono (APÓS commit da transação)
         eventPublisher.publishEvent(new ContractStatusChangedEvent(
                 this,
@@ -315,13 +497,7 @@ public class ContractService {
      * DRAFT / PENDING não afetam o cliente (ainda sem plano definitivo).
      */
     private void syncCustomerStatus(Long customerId, Contract.ContractStatus contractStatus) {
-        Customer.CustomerStatus targetStatus = switch (contractStatus) {
-            case ACTIVE                            -> Customer.CustomerStatus.ACTIVE;
-            case SUSPENDED_FINANCIAL,
-                 SUSPENDED_REQUEST                 -> Customer.CustomerStatus.SUSPENDED;
-            case CANCELED                          -> Customer.CustomerStatus.CANCELED;
-            default                                -> null; // DRAFT / PENDING: não altera
-        };
+        Customer.CustomerStatus targetStatus = customerStatusFor(contractStatus);
 
         if (targetStatus == null) {
             log.debug("Status de contrato {} não requer alteração no cliente", contractStatus);
@@ -336,13 +512,23 @@ public class ContractService {
         }, () -> log.warn("Cliente ID={} não encontrado ao sincronizar status", customerId));
     }
 
+    private static Customer.CustomerStatus customerStatusFor(Contract.ContractStatus contractStatus) {
+        return switch (contractStatus) {
+            case ACTIVE                            -> Customer.CustomerStatus.ACTIVE;
+            case SUSPENDED_FINANCIAL,
+                 SUSPENDED_REQUEST                 -> Customer.CustomerStatus.SUSPENDED;
+            case CANCELED                          -> Customer.CustomerStatus.CANCELED;
+            default                                -> null; // DRAFT / PENDING: não altera
+        };
+    }
+
     /**
      * Ativar contrato
      *
      * FLUXO:
      * 1. Criar credencial PPPoE (se não existir) - SÍNCRONO pois é criação inicial
      * 2. Alterar status para ACTIVE - Publica evento
-     * 3. NetworkIntegrationService processa desbloqueio assíncrono
+     * 3. NetworkIntegrationService aplica o desbloqueio a partir do outbox
      */
     @Transactional
     public ContractDTO activate(Long id) {
@@ -385,7 +571,7 @@ public class ContractService {
      * PROTEÇÃO TRANSACIONAL:
      * - Altera status no banco (@Transactional)
      * - Fecha transação
-     * - NetworkIntegrationService processa bloqueio assíncrono (@Async)
+     * - NetworkIntegrationService aplica o bloqueio a partir do outbox
      */
     @Transactional
     public ContractDTO suspendFinancial(Long id) {
@@ -398,6 +584,80 @@ public class ContractService {
         return contract;
     }
 
+    /**
+     * Resultado da suspensão em lote: contratos suspensos (contrato → usuário PPPoE, nulo se
+     * não houver) e os não suspensos com o status encontrado (nulo = contrato não encontrado).
+     */
+    public record BulkSuspendResult(Map<Long, Long> suspended, Map<Long, Contract.ContractStatus> skipped) {
+    }
+
+    /**
+     * Suspensão por inadimplência de vários contratos numa única transação (job de suspensão).
+     *
+     * DIFERENÇAS PARA suspendFinancial():
+     * - Triagem em uma consulta; status de contratos e clientes em UPDATE em conjunto
+     * - Intenções BLOCKED gravadas no outbox numa única instrução, reservadas até
+     *   {@code routerNotBefore}: o chamador as aplica em lote por router logo após o commit
+     * - Nenhum ContractStatusChangedEvent (o chamador despacha as intenções)
+     * - Só contratos ACTIVE são suspensos; os demais voltam em skipped
+     */
+    @Transactional
+    public BulkSuspendResult suspendFinancialBulk(Long companyId, Collection<Long> contractIds,
+                                                  LocalDateTime routerNotBefore) {
+        Map<Long, ContractRepository.StatusRow> rows = contractRepository.findStatusRows(companyId, contractIds).stream()
+                .collect(Collectors.toMap(ContractRepository.StatusRow::getId, Function.identity()));
+
+        Map<Long, Contract.ContractStatus> skipped = new LinkedHashMap<>();
+        List<Long> toSuspend = new ArrayList<>();
+        for (Long id : contractIds) {
+            ContractRepository.StatusRow row = rows.get(id);
+            if (row == null || row.getStatus() != Contract.ContractStatus.ACTIVE) {
+                skipped.put(id, row != null ? row.getStatus() : null);
+            } else {
+                toSuspend.add(id);
+            }
+        }
+        if (toSuspend.isEmpty()) {
+            return new BulkSuspendResult(Map.of(), skipped);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        int updated = contractRepository.updateStatusBulk(companyId, toSuspend,
+                Contract.ContractStatus.ACTIVE, Contract.ContractStatus.SUSPENDED_FINANCIAL, now);
+        if (updated != toSuspend.size()) {
+            // Status alterado por outra transação entre a triagem e o UPDATE: fica fora do lote
+            Map<Long, Contract.ContractStatus> current = contractRepository.findStatusRows(companyId, toSuspend).stream()
+                    .collect(Collectors.toMap(ContractRepository.StatusRow::getId, ContractRepository.StatusRow::getStatus));
+            toSuspend.removeIf(id -> {
+                if (current.get(id) != Contract.ContractStatus.SUSPENDED_FINANCIAL) {
+                    skipped.put(id, current.get(id));
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        // ── Status dos clientes (mesma regra de updateStatus) ──
+        Set<Long> customerIds = toSuspend.stream().map(id -> rows.get(id).getCustomerId()).collect(Collectors.toSet());
+        customerRepository.updateStatusBulk(companyId, customerIds, Customer.CustomerStatus.SUSPENDED, now);
+
+        // ── Intenções BLOCKED no outbox, na mesma transação ──
+        Map<Long, Long> suspended = new LinkedHashMap<>();
+        List<Long> withPppoe = new ArrayList<>();
+        for (Long id : toSuspend) {
+            Long pppoeUserId = rows.get(id).getPppoeUserId();
+            suspended.put(id, pppoeUserId);
+            if (pppoeUserId != null) {
+                withPppoe.add(id);
+            }
+        }
+        routerCommandOutboxService.enqueueBulk(companyId, withPppoe, DesiredState.BLOCKED, routerNotBefore);
+
+        log.info("Suspensão em lote: {} contratos suspensos, {} ignorados, {} bloqueios no outbox",
+                suspended.size(), skipped.size(), withPppoe.size());
+        return new BulkSuspendResult(suspended, skipped);
+    }
+
     /**
      * Suspender contrato por solicitação
      */
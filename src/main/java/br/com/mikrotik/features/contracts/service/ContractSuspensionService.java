@@ -0,0 +1,106 @@
+package br.com.mikrotik.features.contracts.service;
+
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO;
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO.Item;
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO.Outcome;
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO.RouterStatus;
+import br.com.mikrotik.features.contracts.model.Contract;
+import br.com.mikrotik.features.network.service.NetworkIntegrationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Suspensão por inadimplência em lote (job das 03:00 e disparo manual).
+ *
+ * MOTIVAÇÃO: contrato a contrato, cada suspensão abria sua transação e acordava o
+ * dispatcher do outbox — num mês ruim, milhares de suspensões disputavam o
+ * networkIntegrationExecutor (fila de 100) e bloqueios eram adiados.
+ *
+ * FLUXO (por bloco de billing.suspension.chunk-size contratos):
+ *  1. ContractService.suspendFinancialBulk: triagem, UPDATE em conjunto e intenções
+ *     BLOCKED no outbox — uma transação, reservadas para este chamador.
+ *  2. Após o commit, NetworkIntegrationService.dispatchNow agrupa os usuários PPPoE
+ *     por router e envia UM lote por router (routers em paralelo).
+ *  3. Resultado registrado por contrato; bloqueio não confirmado segue no outbox
+ *     (backoff) e a varredura o assume quando a reserva vence.
+ *
+ * REGRA DE OURO: a chamada ao router NUNCA ocorre dentro de @Transactional.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ContractSuspensionService {
+
+    private final ContractService contractService;
+    private final NetworkIntegrationService networkIntegrationService;
+
+    @Value("${billing.suspension.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${billing.suspension.router-reserve-ms:120000}")
+    private long routerReserveMs;
+
+    /**
+     * Suspende os contratos ACTIVE informados e bloqueia os usuários PPPoE no router.
+     */
+    public BulkSuspensionResultDTO suspendFinancialBulk(Long companyId, List<Long> contractIds) {
+        List<Item> items = new ArrayList<>(contractIds.size());
+        for (int from = 0; from < contractIds.size(); from += chunkSize) {
+            List<Long> chunk = contractIds.subList(from, Math.min(from + chunkSize, contractIds.size()));
+            suspendChunk(companyId, chunk, items);
+        }
+        return BulkSuspensionResultDTO.of(items);
+    }
+
+    private void suspendChunk(Long companyId, List<Long> chunk, List<Item> items) {
+        ContractService.BulkSuspendResult result;
+        try {
+            result = contractService.suspendFinancialBulk(companyId, chunk,
+                    LocalDateTime.now().plus(Duration.ofMillis(routerReserveMs)));
+        } catch (Exception e) {
+            log.error("❌ Bloco de {} suspensões revertido (empresa #{}): {}", chunk.size(), companyId, e.getMessage(), e);
+            chunk.forEach(id -> items.add(new Item(id, Outcome.ERROR, null, e.getMessage())));
+            return;
+        }
+
+        // Um lote por router para os usuários suspensos neste bloco
+        Map<Long, String> routerOutcomes = networkIntegrationService.dispatchNow(
+                result.suspended().values().stream().filter(Objects::nonNull).toList());
+
+        for (Long contractId : chunk) {
+            if (result.suspended().containsKey(contractId)) {
+                items.add(suspendedItem(contractId, result.suspended().get(contractId), routerOutcomes));
+                continue;
+            }
+            Contract.ContractStatus status = result.skipped().get(contractId);
+            if (status == null) {
+                items.add(new Item(contractId, Outcome.NOT_FOUND, null, "Contrato não encontrado"));
+            } else if (status == Contract.ContractStatus.SUSPENDED_FINANCIAL) {
+                items.add(new Item(contractId, Outcome.ALREADY_SUSPENDED, null, null));
+            } else {
+                items.add(new Item(contractId, Outcome.SKIPPED, null, "Contrato não está ativo (status: " + status + ")"));
+            }
+        }
+    }
+
+    private static Item suspendedItem(Long contractId, Long pppoeUserId, Map<Long, String> routerOutcomes) {
+        if (pppoeUserId == null) {
+            return new Item(contractId, Outcome.SUSPENDED, RouterStatus.NO_PPPOE, null);
+        }
+        if (routerOutcomes.containsKey(pppoeUserId) && routerOutcomes.get(pppoeUserId) == null) {
+            return new Item(contractId, Outcome.SUSPENDED, RouterStatus.APPLIED, null);
+        }
+        String error = routerOutcomes.get(pppoeUserId);
+        return new Item(contractId, Outcome.SUSPENDED, RouterStatus.PENDING,
+                error != null ? error : "Bloqueio pendente no outbox");
+    }
+}
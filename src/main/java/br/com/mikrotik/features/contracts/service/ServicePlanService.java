@@ -3,15 +3,11 @@ package br.com.mikrotik.features.contracts.service;
 import br.com.mikrotik.features.contracts.dto.ServicePlanDTO;
 import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
 import br.com.mikrotik.shared.infrastructure.exception.ValidationException;
-import br.com.mikrotik.features.contracts.model.Contract;
-import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
-import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.contracts.model.ServicePlan;
-import br.com.mikrotik.features.contracts.repository.ContractRepository;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeProfileRepository;
-import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.contracts.repository.ServicePlanRepository;
-import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
+import br.com.mikrotik.features.network.outbox.service.RouterCommandOutboxService;
+import br.com.mikrotik.features.network.service.NetworkIntegrationService;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -22,8 +18,6 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.time.LocalDateTime;
-import java.util.List;
 
 
 @Service
@@ -33,9 +27,8 @@ public class ServicePlanService {
 
     private final ServicePlanRepository servicePlanRepository;
     private final PppoeProfileRepository pppoeProfileRepository;
-    private final ContractRepository contractRepository;
-    private final PppoeUserRepository pppoeUserRepository;
-    private final MikrotikApiService mikrotikApiService;
+    private final RouterCommandOutboxService routerCommandOutboxService;
+    private final NetworkIntegrationService networkIntegrationService;
 
     /**
      * Criar novo plano de serviço
@@ -180,15 +173,15 @@ public class ServicePlanService {
 
         log.info("Plano de serviço atualizado com sucesso: ID={}", id);
 
-        // REGRA DE OURO: registrar a sincronização para APÓS o commit da transação.
-        // Sem isso, cada chamada ao Mikrotik segura a connection pool durante toda a iteração.
-        // Com N contratos ativos, isso é N round-trips de rede dentro de 1 transação aberta.
+        // Novo perfil vai para o outbox na mesma transação (um INSERT ... SELECT para o plano
+        // inteiro); o dispatcher aplica em lote por router, com nova tentativa se o router cair.
         if (profileChanged) {
-            log.info("Perfil PPPoE alterado no plano {} — sincronização com Mikrotik agendada para após commit", id);
+            int intents = routerCommandOutboxService.enqueueServicePlanProfile(companyId, saved.getId(), newProfileId);
+            log.info("Perfil PPPoE alterado no plano {} — {} usuário(s) registrados no outbox", id, intents);
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                 @Override
                 public void afterCommit() {
-                    syncPppoeProfileToMikrotik(saved.getId(), newProfileId);
+                    networkIntegrationService.requestDrain();
                 }
             });
         }
@@ -196,79 +189,6 @@ public class ServicePlanService {
         return ServicePlanDTO.fromEntity(saved);
     }
 
-    /**
-     * Sincronizar perfil PPPoE com Mikrotik para todos os contratos ativos do plano.
-     * Executado APÓS o commit da transação principal via afterCommit().
-     */
-    private void syncPppoeProfileToMikrotik(Long servicePlanId, Long newProfileId) {
-        try {
-            // Buscar novo perfil
-            PppoeProfile newProfile = pppoeProfileRepository.findById(newProfileId)
-                    .orElseThrow(() -> new ResourceNotFoundException("Perfil PPPoE não encontrado"));
-
-            // Buscar contratos ativos que usam este plano
-            List<Contract> activeContracts = contractRepository.findByServicePlanIdAndStatus(
-                    servicePlanId, Contract.ContractStatus.ACTIVE);
-
-            if (activeContracts.isEmpty()) {
-                log.info("Nenhum contrato ativo encontrado para o plano {}. Sincronização não necessária.", servicePlanId);
-                return;
-            }
-
-            log.info("Sincronizando perfil PPPoE para {} contrato(s) ativo(s) do plano {}", activeContracts.size(), servicePlanId);
-
-            int successCount = 0;
-            int failureCount = 0;
-
-            for (Contract contract : activeContracts) {
-                if (contract.getPppoeUserId() == null) {
-                    log.warn("Contrato ID {} não possui PPPoE User vinculado - Pulando", contract.getId());
-                    continue;
-                }
-
-                try {
-                    PppoeUser pppoeUser = pppoeUserRepository.findById(contract.getPppoeUserId())
-                            .orElseThrow(() -> new ResourceNotFoundException(
-                                    "Usuário PPPoE não encontrado: " + contract.getPppoeUserId()));
-
-                    log.info(">>> Sincronizando contrato ID {} - PPPoE User: {}", contract.getId(), pppoeUser.getUsername());
-
-                    // Alterar perfil no Mikrotik via API
-                    mikrotikApiService.changePppoeUserProfile(
-                            pppoeUser.getMikrotikServer().getIpAddress(),
-                            pppoeUser.getMikrotikServer().getApiPort(),
-                            pppoeUser.getMikrotikServer().getUsername(),
-                            pppoeUser.getMikrotikServer().getPassword(),
-                            pppoeUser.getUsername(),
-                            newProfile.getName()
-                    );
-
-                    // Atualizar perfil do pppoe_user no banco para manter consistência
-                    pppoeUser.setProfile(newProfile);
-                    pppoeUser.setUpdatedAt(LocalDateTime.now());
-                    pppoeUserRepository.save(pppoeUser);
-
-                    successCount++;
-                    log.info("✅ Perfil sincronizado com sucesso - Contrato ID: {}", contract.getId());
-
-                } catch (Exception e) {
-                    failureCount++;
-                    log.error("❌ Erro ao sincronizar contrato ID {}: {}", contract.getId(), e.getMessage());
-                    // Continua processando os demais contratos
-                }
-            }
-
-            log.info("==========================================================");
-            log.info("SINCRONIZAÇÃO CONCLUÍDA — Plano ID: {}", servicePlanId);
-            log.info("Contratos processados: {} | Sucessos: {} | Falhas: {}",
-                    activeContracts.size(), successCount, failureCount);
-            log.info("==========================================================");
-
-        } catch (Exception e) {
-            log.error("❌ Erro crítico ao sincronizar perfil com Mikrotik: {}", e.getMessage(), e);
-        }
-    }
-
     /**
      * Ativar/Desativar plano
      */
@@ -15,8 +15,11 @@ import java.time.LocalDateTime;
 @Builder
 public class Address {
 
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "addresses_id")
+    @TableGenerator(name = "addresses_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "addresses", allocationSize = 50)
     private Long id;
 
     @Column(name = "customer_id", nullable = false)
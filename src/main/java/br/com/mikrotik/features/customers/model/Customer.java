@@ -17,8 +17,11 @@ import java.util.List;
 @Builder
 public class Customer {
 
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "customers_id")
+    @TableGenerator(name = "customers_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "customers", allocationSize = 50)
     private Long id;
 
     @Column(name = "company_id", nullable = false)
@@ -15,6 +15,12 @@ public interface AddressRepository extends JpaRepository<Address, Long> {
     // Buscar todos os endereços de um cliente
     List<Address> findByCustomerId(Long customerId);
 
+    // Pares [customerId, primeiro endereço] dos clientes da empresa (pré-carga da sincronização)
+    @Query("SELECT a.customerId, MIN(a.id) FROM Address a " +
+           "WHERE a.customerId IN (SELECT c.id FROM Customer c WHERE c.companyId = :companyId) " +
+           "GROUP BY a.customerId")
+    List<Object[]> findFirstAddressIds(@Param("companyId") Long companyId);
+
     // Buscar endereço por tipo
     List<Address> findByCustomerIdAndType(Long customerId, Address.AddressType type);
 
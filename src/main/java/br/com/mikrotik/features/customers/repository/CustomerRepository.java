@@ -4,11 +4,13 @@ import br.com.mikrotik.features.customers.model.Customer;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,6 +29,10 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     // Buscar por nome exato e empresa
     Optional<Customer> findByNameAndCompanyId(String name, Long companyId);
 
+    // Pares [nome, menor id] dos clientes da empresa (pré-carga da sincronização)
+    @Query("SELECT c.name, MIN(c.id) FROM Customer c WHERE c.companyId = :companyId GROUP BY c.name")
+    List<Object[]> findIdsByName(@Param("companyId") Long companyId);
+
     // Buscar por documento e empresa
     Optional<Customer> findByDocumentAndCompanyId(String document, Long companyId);
 
@@ -43,6 +49,15 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     @Query("SELECT COUNT(c) FROM Customer c WHERE c.companyId = :companyId AND c.status = :status")
     long countByCompanyIdAndStatus(@Param("companyId") Long companyId, @Param("status") Customer.CustomerStatus status);
 
+    // Status dos clientes em conjunto (suspensão em lote; UPDATE em massa não dispara @PreUpdate)
+    @Modifying
+    @Query("UPDATE Customer c SET c.status = :status, c.updatedAt = :now " +
+           "WHERE c.companyId = :companyId AND c.id IN :ids")
+    int updateStatusBulk(@Param("companyId") Long companyId,
+                         @Param("ids") Collection<Long> ids,
+                         @Param("status") Customer.CustomerStatus status,
+                         @Param("now") LocalDateTime now);
+
     // Buscar clientes ativos
     List<Customer> findByCompanyIdAndStatus(Long companyId, Customer.CustomerStatus status);
 
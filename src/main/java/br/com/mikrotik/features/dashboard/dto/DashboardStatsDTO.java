@@ -6,6 +6,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -38,4 +40,10 @@ public class DashboardStatsDTO {
 
     @Schema(description = "Total de conexões (online + offline + pending)", example = "1247")
     private Long totalConnections;
+
+    @Schema(description = "Indica se algum servidor não respondeu a tempo e entrou com o último valor conhecido", example = "false")
+    private Boolean staleData;
+
+    @Schema(description = "Servidores reportados com o último valor conhecido", example = "[\"Concentrador Centro\"]")
+    private List<String> staleServers;
 }
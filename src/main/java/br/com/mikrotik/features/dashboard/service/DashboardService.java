@@ -7,21 +7,27 @@ import br.com.mikrotik.features.network.pppoe.repository.PppoeProfileRepository;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.server.service.ActiveSessionMonitor;
+import br.com.mikrotik.features.network.server.service.RouterFanOut;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Serviço de Dashboard com dados em tempo real do Mikrotik
  *
  * ARQUITETURA:
  * - Estatísticas de cadastros vêm do banco (rápido, ACID)
- * - Conexões ativas vêm do Mikrotik via API (tempo real, eventual consistency)
+ * - Conexões ativas vêm do cache do ActiveSessionMonitor (/ppp/active/listen);
+ *   se o cache de um servidor não estiver sincronizado, consulta o Mikrotik via API
  * - Não realizamos chamadas externas dentro de transações
  */
 @Service
@@ -33,15 +39,22 @@ public class DashboardService {
     private final PppoeUserRepository pppoeUserRepository;
     private final PppoeProfileRepository pppoeProfileRepository;
     private final MikrotikApiService mikrotikApiService;
+    private final ActiveSessionMonitor activeSessionMonitor;
+    private final RouterFanOut routerFanOut;
+
+    @Value("${dashboard.router-fan-out.deadline-ms:3000}")
+    private long fanOutDeadlineMs;
+
+    /** Último total de conexões ativas conhecido por servidor (fallback para quem estoura o prazo). */
+    private final Map<Long, Integer> lastKnownOnline = new ConcurrentHashMap<>();
 
     /**
      * Retorna estatísticas do dashboard com dados em tempo real do Mikrotik
      *
-     * IMPORTANTE: Quebra de transação aqui.
-     * 1. Consulta dados do banco (dentro da transação read-only)
+     * IMPORTANTE: Sem transação envolvendo o método.
+     * 1. Consulta dados do banco (cada contagem em sua própria transação curta)
      * 2. Consulta Mikrotik fora da transação (não bloqueia pool de conexões)
      */
-    @Transactional(readOnly = true)
     public DashboardStatsDTO getStats() {
         log.info("Fetching dashboard statistics");
 
@@ -69,6 +82,8 @@ public class DashboardService {
                 .offlineConnections(connectionStats.offline)
                 .pendingConnections(connectionStats.pending)
                 .totalConnections(connectionStats.total())
+                .staleData(!connectionStats.staleServers().isEmpty())
+                .staleServers(connectionStats.staleServers())
                 .build();
     }
 
@@ -77,6 +92,9 @@ public class DashboardService {
      *
      * ATENÇÃO: Método executado FORA de transação para não bloquear o pool de conexões do banco
      * enquanto aguarda resposta dos servidores Mikrotik.
+     *
+     * Os servidores são consultados em paralelo sob um prazo único. Quem não responder
+     * a tempo (ou falhar) entra com o último valor conhecido e é listado como desatualizado.
      */
     private ConnectionStats fetchRealTimeConnectionStats(Long companyId) {
         try {
@@ -85,31 +103,34 @@ public class DashboardService {
 
             if (activeServers.isEmpty()) {
                 log.warn("Nenhum servidor Mikrotik ativo encontrado para company {}", companyId);
-                return new ConnectionStats(0L, 0L, 0L);
+                return new ConnectionStats(0L, 0L, 0L, List.of());
             }
 
+            Map<Long, RouterFanOut.Result<Integer>> results = routerFanOut.invokeAll(
+                    activeServers, this::countOnlineConnections, Duration.ofMillis(fanOutDeadlineMs));
+
             long totalOnline = 0;
+            List<String> staleServers = new ArrayList<>();
 
-            // Itera sobre cada servidor e soma conexões ativas
             for (MikrotikServer server : activeServers) {
-                try {
-                    log.debug("Consultando conexões ativas do servidor: {}", server.getName());
-
-                    List<Map<String, String>> activeConnections = mikrotikApiService.listActivePppoeConnections(
-                            server.getIpAddress(),
-                            server.getApiPort(),
-                            server.getUsername(),
-                            server.getPassword()
-                    );
-
-                    totalOnline += activeConnections.size();
-
-                    log.debug("Servidor {} tem {} conexões ativas", server.getName(), activeConnections.size());
+                RouterFanOut.Result<Integer> result = results.get(server.getId());
+                if (result.isSuccess()) {
+                    totalOnline += result.value();
+                    continue;
+                }
 
-                } catch (Exception e) {
+                if (result.timedOut()) {
+                    log.warn("Servidor {} ({}) não respondeu em {} ms",
+                            server.getName(), server.getIpAddress(), fanOutDeadlineMs);
+                } else {
                     log.error("Erro ao consultar servidor {} ({}): {}",
-                            server.getName(), server.getIpAddress(), e.getMessage());
-                    // Continua para o próximo servidor (resiliência)
+                            server.getName(), server.getIpAddress(), result.error().getMessage());
+                }
+                // Resiliência: último valor conhecido, sinalizado como desatualizado
+                staleServers.add(server.getName());
+                Integer lastKnown = lastKnownOnline.get(server.getId());
+                if (lastKnown != null) {
+                    totalOnline += lastKnown;
                 }
             }
 
@@ -121,19 +142,41 @@ public class DashboardService {
             Long totalUsers = pppoeUserRepository.count();
             long pending = totalUsers - totalActiveUsers;
 
-            log.info("Estatísticas de conexão em tempo real: Online={}, Offline={}, Pending={}, Total={}",
-                    totalOnline, offline, pending, totalUsers);
+            log.info("Estatísticas de conexão em tempo real: Online={}, Offline={}, Pending={}, Total={}, Desatualizados={}",
+                    totalOnline, offline, pending, totalUsers, staleServers);
 
-            return new ConnectionStats(totalOnline, offline, pending);
+            return new ConnectionStats(totalOnline, offline, pending, staleServers);
 
         } catch (Exception e) {
             log.error("Erro ao buscar estatísticas de conexão do Mikrotik: {}", e.getMessage(), e);
             // Em caso de falha total, retorna zeros (degradação graciosa)
-            return new ConnectionStats(0L, 0L, 0L);
+            return new ConnectionStats(0L, 0L, 0L, List.of());
+        }
+    }
+
+    /**
+     * Conexões ativas de um servidor. Executada em virtual thread pelo fan-out;
+     * respostas que chegam após o prazo ainda atualizam o último valor conhecido.
+     */
+    private Integer countOnlineConnections(MikrotikServer server) {
+        // Cache alimentado pelo /ppp/active/listen: leitura em memória
+        Integer count = activeSessionMonitor.countSessions(server.getId());
+        if (count != null) {
+            log.debug("Servidor {} tem {} conexões ativas (cache)", server.getName(), count);
+        } else {
+            log.debug("Consultando conexões ativas do servidor: {}", server.getName());
+            count = mikrotikApiService.listActivePppoeConnections(
+                    server.getIpAddress(),
+                    server.getApiPort(),
+                    server.getUsername(),
+                    server.getPassword()
+            ).size();
+            log.debug("Servidor {} tem {} conexões ativas", server.getName(), count);
         }
+        lastKnownOnline.put(server.getId(), count);
+        return count;
     }
 
-    @Transactional(readOnly = true)
     public ConnectionStatusDTO getConnectionStatus() {
         log.info("Fetching connection status");
 
@@ -170,13 +213,15 @@ public class DashboardService {
                 .totalCapacity(totalCapacity)
                 .utilizationPercentage(Math.round(utilizationPercentage * 100.0) / 100.0)
                 .message(message)
+                .staleData(!stats.staleServers().isEmpty())
+                .staleServers(stats.staleServers())
                 .build();
     }
 
     /**
      * Record interno para armazenar estatísticas de conexão
      */
-    private record ConnectionStats(Long online, Long offline, Long pending) {
+    private record ConnectionStats(Long online, Long offline, Long pending, List<String> staleServers) {
         public Long total() {
             return online + offline + pending;
         }
@@ -5,7 +5,8 @@ import br.com.mikrotik.features.auth.model.SystemModule;
 import br.com.mikrotik.features.companies.repository.CompanyRepository;
 import br.com.mikrotik.features.contracts.model.Contract;
 import br.com.mikrotik.features.contracts.repository.ContractRepository;
-import br.com.mikrotik.features.contracts.service.ContractService;
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO;
+import br.com.mikrotik.features.contracts.service.ContractSuspensionService;
 import br.com.mikrotik.features.invoices.job.InvoiceBillingJob;
 import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
 import br.com.mikrotik.shared.infrastructure.security.RequireModuleAccess;
@@ -48,7 +49,7 @@ public class BillingJobController {
     private final CompanyRepository companyRepository;
     private final InvoiceRepository invoiceRepository;
     private final ContractRepository contractRepository;
-    private final ContractService contractService;
+    private final ContractSuspensionService suspensionService;
     private final InvoiceBillingJob billingJob;
 
     // ─────────────────────────────────────────────────────────────────────────
@@ -60,7 +61,9 @@ public class BillingJobController {
     @Operation(
             summary = "Disparar job de geração de faturas",
             description = "Executa imediatamente o job que roda todo dia 1º às 01:00. " +
-                          "Idempotente — contratos que já têm fatura no mês são ignorados."
+                          "Idempotente — contratos que já têm fatura no mês são ignorados. " +
+                          "Partições inacabadas do mês (queda, erro ou prazo) são retomadas " +
+                          "a partir do checkpoint em vez de reler todos os contratos."
     )
     public ResponseEntity<Map<String, Object>> triggerGenerateInvoices() {
         log.info("▶ [MANUAL] generate-invoices disparado");
@@ -129,7 +132,8 @@ public class BillingJobController {
             description = "Executa imediatamente o job que roda todo dia às 03:00.\n\n" +
                           "**dry_run=true (padrão):** lista os contratos que seriam suspensos " +
                           "SEM suspender e SEM acionar o Mikrotik. Use para validar antes de executar.\n\n" +
-                          "**dry_run=false:** suspende no banco E aciona o Mikrotik."
+                          "**dry_run=false:** suspende no banco em lote E envia um lote de bloqueios " +
+                          "por router. O resultado traz cada contrato e o status do bloqueio no router."
     )
     public ResponseEntity<Map<String, Object>> triggerSuspendOverdue(
             @Parameter(description = "true = apenas simula (padrão) | false = executa de verdade")
@@ -180,43 +184,16 @@ public class BillingJobController {
             response.put("message", "DRY RUN — nenhum contrato suspenso, Mikrotik NÃO foi acionado");
 
         } else {
-            // ── Executa de verdade ────────────────────────────────────────────
-            int success = 0, skipped = 0, errors = 0;
-            List<String> errorDetails = new ArrayList<>();
-
-            for (Long contractId : contractIds) {
-                try {
-                    Contract contract = contractRepository
-                            .findByIdAndCompanyId(contractId, companyId).orElse(null);
-
-                    if (contract == null) {
-                        errors++;
-                        continue;
-                    }
-                    if (contract.getStatus() == Contract.ContractStatus.SUSPENDED_FINANCIAL) {
-                        skipped++;
-                        continue;
-                    }
-                    if (contract.getStatus() != Contract.ContractStatus.ACTIVE) {
-                        skipped++;
-                        continue;
-                    }
-
-                    contractService.suspendFinancial(contractId);
-                    success++;
-                    log.info("  ✅ Contrato {} suspenso", contractId);
-
-                } catch (Exception e) {
-                    errors++;
-                    errorDetails.add("Contrato #" + contractId + ": " + e.getMessage());
-                    log.error("  ❌ Erro ao suspender contrato {}: {}", contractId, e.getMessage());
-                }
-            }
-
-            response.put("suspended", success);
-            response.put("skipped", skipped);
-            response.put("errors", errors);
-            response.put("errorDetails", errorDetails);
+            // ── Executa de verdade: status em lote + um lote de bloqueios por router ──
+            BulkSuspensionResultDTO result = suspensionService.suspendFinancialBulk(companyId, contractIds);
+
+            response.put("suspended", result.suspended());
+            response.put("alreadySuspended", result.alreadySuspended());
+            response.put("skipped", result.skipped());
+            response.put("errors", result.errors());
+            response.put("routerApplied", result.routerApplied());
+            response.put("routerPending", result.routerPending());
+            response.put("items", result.items());
         }
 
         return ResponseEntity.ok(response);
@@ -5,9 +5,10 @@ import br.com.mikrotik.features.auth.model.SystemModule;
 import br.com.mikrotik.shared.infrastructure.security.RequireModuleAccess;
 
 import br.com.mikrotik.features.invoices.dto.BillingResultDTO;
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog.TriggeredBy;
 import br.com.mikrotik.features.invoices.dto.InvoiceDTO;
 import br.com.mikrotik.features.invoices.model.Invoice;
-import br.com.mikrotik.features.invoices.service.BillingService;
+import br.com.mikrotik.features.invoices.service.BillingRunService;
 import br.com.mikrotik.features.invoices.service.InvoiceService;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import io.swagger.v3.oas.annotations.Operation;
@@ -37,7 +38,7 @@ import java.util.List;
 public class InvoiceController {
 
     private final InvoiceService invoiceService;
-    private final BillingService billingService;
+    private final BillingRunService billingRunService;
 
     @PostMapping("/billing/generate")
     @RequireModuleAccess(module = SystemModule.INVOICES, action = ModuleAction.CREATE)
@@ -46,12 +47,13 @@ public class InvoiceController {
             description = "Percorre todos os contratos ACTIVE da empresa e gera a fatura " +
                           "de mensalidade do mês vigente. Idempotente: contratos que já " +
                           "possuem fatura no mês são ignorados. O link PIX (AbacatePay) " +
-                          "é gerado de forma assíncrona após a persistência."
+                          "é gerado de forma assíncrona após a persistência. Empresas grandes " +
+                          "são divididas em faixas de contratos processadas em paralelo."
     )
     public ResponseEntity<BillingResultDTO> generateMonthlyInvoices() {
         Long companyId = CompanyContextHolder.getCompanyId();
         log.info("POST /api/invoices/billing/generate — empresa #{}", companyId);
-        BillingResultDTO result = billingService.generateMonthlyInvoices(companyId);
+        BillingResultDTO result = billingRunService.generateForCompany(companyId, TriggeredBy.MANUAL);
         return ResponseEntity.status(HttpStatus.CREATED).body(result);
     }
 
@@ -2,13 +2,11 @@ package br.com.mikrotik.features.invoices.job;
 
 import br.com.mikrotik.features.invoices.dto.BillingResultDTO;
 import br.com.mikrotik.features.companies.model.Company;
-import br.com.mikrotik.features.contracts.model.Contract;
-import br.com.mikrotik.features.companies.repository.CompanyRepository;
-import br.com.mikrotik.features.contracts.repository.ContractRepository;
+import br.com.mikrotik.features.contracts.dto.BulkSuspensionResultDTO;
 import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
-import br.com.mikrotik.features.contracts.service.ContractService;
-import br.com.mikrotik.features.invoices.service.BillingService;
-import br.com.mikrotik.shared.util.CompanyContextHolder;
+import br.com.mikrotik.features.contracts.service.ContractSuspensionService;
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog.TriggeredBy;
+import br.com.mikrotik.features.invoices.service.BillingRunService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -23,11 +21,9 @@ import java.util.List;
 @Slf4j
 public class InvoiceBillingJob {
 
-    private final ContractRepository contractRepository;
-    private final CompanyRepository companyRepository;
     private final InvoiceRepository invoiceRepository;
-    private final ContractService contractService;
-    private final BillingService billingService;
+    private final ContractSuspensionService suspensionService;
+    private final BillingRunService billingRunService;
 
     /**
      * Job que roda todo dia 1º de cada mês às 01:00 AM
@@ -41,15 +37,11 @@ public class InvoiceBillingJob {
         log.info("========================================");
 
         try {
-            // Buscar todas as empresas ativas
-            companyRepository.findAll().forEach(company -> {
-                if (company.getActive()) {
-                    generateInvoicesForCompany(company.getId());
-                }
-            });
+            List<BillingResultDTO> results = billingRunService.generateForActiveCompanies(TriggeredBy.JOB);
+            results.forEach(this::logResult);
 
             log.info("========================================");
-            log.info("GERAÇÃO DE FATURAS CONCLUÍDA COM SUCESSO");
+            log.info("GERAÇÃO DE FATURAS CONCLUÍDA — {} partições no prazo", results.size());
             log.info("========================================");
         } catch (Exception e) {
             log.error("ERRO ao gerar faturas automáticas: {}", e.getMessage(), e);
@@ -57,22 +49,15 @@ public class InvoiceBillingJob {
     }
 
     /**
-     * Delega para BillingService — evita duplicação de lógica.
-     * O contexto da empresa é configurado antes da chamada para garantir
-     * multi-tenancy correto nos repositórios que usam CompanyContextHolder.
+     * Resultado de uma partição (empresa x faixa de contratos); a auditoria completa
+     * fica em billing_generation_log, gravada pelo BillingRunService.
      */
-    private void generateInvoicesForCompany(Long companyId) {
-        CompanyContextHolder.setCompanyId(companyId);
-        try {
-            BillingResultDTO result = billingService.generateMonthlyInvoices(companyId);
-            log.info("Empresa #{}: criadas={} ignoradas={} erros={}",
-                    companyId, result.created(), result.skipped(), result.errors());
-            if (!result.errorDetails().isEmpty()) {
-                result.errorDetails().forEach(detail ->
-                        log.error("  → Erro: {}", detail));
-            }
-        } finally {
-            CompanyContextHolder.clear();
+    private void logResult(BillingResultDTO result) {
+        log.info("Empresa #{}: criadas={} ignoradas={} erros={}",
+                result.companyId(), result.created(), result.skipped(), result.errors());
+        if (!result.errorDetails().isEmpty()) {
+            result.errorDetails().forEach(detail ->
+                    log.error("  → Erro: {}", detail));
         }
     }
 
@@ -89,11 +74,8 @@ public class InvoiceBillingJob {
         log.info("========================================");
 
         try {
-            companyRepository.findAll().forEach(company -> {
-                if (company.getActive()) {
-                    updateOverdueInvoicesForCompany(company.getId());
-                }
-            });
+            billingRunService.forEachActiveCompany("Marcação OVERDUE",
+                    company -> updateOverdueInvoicesForCompany(company.getId()));
 
             log.info("========================================");
             log.info("ATUALIZAÇÃO DE FATURAS VENCIDAS CONCLUÍDA");
@@ -107,15 +89,11 @@ public class InvoiceBillingJob {
      * Atualiza faturas vencidas de uma empresa.
      * Usa bulk UPDATE direto no banco — sem loop em memória, sem risco de
      * paginação incompleta e sem depender do InvoiceService.
+     * Roda numa thread do billingExecutor, com o contexto da empresa já propagado.
      */
     private void updateOverdueInvoicesForCompany(Long companyId) {
-        CompanyContextHolder.setCompanyId(companyId);
-        try {
-            int count = invoiceRepository.markOverduePendingInvoices(companyId, LocalDate.now());
-            log.info("Empresa {}: {} faturas PENDING marcadas como OVERDUE", companyId, count);
-        } finally {
-            CompanyContextHolder.clear();
-        }
+        int count = invoiceRepository.markOverduePendingInvoices(companyId, LocalDate.now());
+        log.info("Empresa {}: {} faturas PENDING marcadas como OVERDUE", companyId, count);
     }
 
     /**
@@ -131,11 +109,8 @@ public class InvoiceBillingJob {
         log.info("==========================================================");
 
         try {
-            companyRepository.findAll().forEach(company -> {
-                if (company.getActive()) {
-                    suspendOverdueContractsForCompany(company);
-                }
-            });
+            billingRunService.forEachActiveCompany("Suspensão automática",
+                    this::suspendOverdueContractsForCompany);
 
             log.info("==========================================================");
             log.info("SUSPENSÃO AUTOMÁTICA CONCLUÍDA");
@@ -146,7 +121,9 @@ public class InvoiceBillingJob {
     }
 
     /**
-     * Suspende contratos com faturas vencidas de uma empresa
+     * Suspende contratos com faturas vencidas de uma empresa, em lote: status em UPDATE
+     * em conjunto e bloqueios enviados em um lote por router (ContractSuspensionService).
+     * Roda numa thread do billingExecutor, com o contexto da empresa já propagado.
      */
     private void suspendOverdueContractsForCompany(Company company) {
         Long companyId = company.getId();
@@ -157,8 +134,6 @@ public class InvoiceBillingJob {
         log.info("Dias de tolerância configurados: {} dias", suspensionDays);
         log.info("----------------------------------------------------------");
 
-        CompanyContextHolder.setCompanyId(companyId);
-
         try {
             LocalDate today = LocalDate.now();
             LocalDate suspensionDate = today.minusDays(suspensionDays);
@@ -171,64 +146,26 @@ public class InvoiceBillingJob {
 
             log.info("Encontrados {} contratos para suspensão", contractIdsToSuspend.size());
 
-            int successCount = 0;
-            int errorCount = 0;
-            int alreadySuspendedCount = 0;
-
-            for (Long contractId : contractIdsToSuspend) {
-                try {
-                    // Buscar contrato para verificar status atual
-                    Contract contract = contractRepository.findByIdAndCompanyId(contractId, companyId)
-                            .orElse(null);
-
-                    if (contract == null) {
-                        log.warn("  ⚠️  Contrato {} não encontrado", contractId);
-                        errorCount++;
-                        continue;
-                    }
-
-                    // Verificar se já está suspenso
-                    if (contract.getStatus() == Contract.ContractStatus.SUSPENDED_FINANCIAL) {
-                        log.debug("  ℹ️  Contrato {} já está suspenso - pulando", contractId);
-                        alreadySuspendedCount++;
-                        continue;
-                    }
-
-                    // Verificar se está ativo (só suspende contratos ativos)
-                    if (contract.getStatus() != Contract.ContractStatus.ACTIVE) {
-                        log.debug("  ℹ️  Contrato {} não está ativo (status: {}) - pulando",
-                                contractId, contract.getStatus());
-                        continue;
-                    }
-
-                    // Suspender contrato (já bloqueia no Mikrotik automaticamente)
-                    log.info("  🔒 Suspendendo contrato {} - Cliente: {}",
-                            contractId,
-                            contract.getCustomer() != null ? contract.getCustomer().getName() : "N/A");
-
-                    contractService.suspendFinancial(contractId);
-                    successCount++;
-
-                    log.info("  ✅ Contrato {} suspenso e bloqueado no Mikrotik com sucesso", contractId);
-
-                } catch (Exception e) {
-                    errorCount++;
-                    log.error("  ❌ Erro ao suspender contrato {}: {}", contractId, e.getMessage());
-                }
-            }
+            BulkSuspensionResultDTO result = suspensionService.suspendFinancialBulk(companyId, contractIdsToSuspend);
+            result.items().stream()
+                    .filter(item -> item.outcome() == BulkSuspensionResultDTO.Outcome.ERROR
+                            || item.router() == BulkSuspensionResultDTO.RouterStatus.PENDING)
+                    .forEach(item -> log.warn("  ⚠️  Contrato {}: {} / router {} — {}",
+                            item.contractId(), item.outcome(), item.router(), item.message()));
 
             log.info("----------------------------------------------------------");
             log.info("Empresa {}: Resumo da suspensão automática", company.getName());
             log.info("  • Contratos para processar: {}", contractIdsToSuspend.size());
-            log.info("  • ✅ Suspensos com sucesso: {}", successCount);
-            log.info("  • ℹ️  Já estavam suspensos: {}", alreadySuspendedCount);
-            log.info("  • ❌ Erros: {}", errorCount);
+            log.info("  • ✅ Suspensos com sucesso: {}", result.suspended());
+            log.info("  • ℹ️  Já estavam suspensos: {}", result.alreadySuspended());
+            log.info("  • ℹ️  Ignorados (não ativos): {}", result.skipped());
+            log.info("  • 🔒 Bloqueados no Mikrotik: {} (pendentes no outbox: {})",
+                    result.routerApplied(), result.routerPending());
+            log.info("  • ❌ Erros: {}", result.errors());
             log.info("----------------------------------------------------------");
 
         } catch (Exception e) {
             log.error("ERRO ao processar empresa {}: {}", companyId, e.getMessage(), e);
-        } finally {
-            CompanyContextHolder.clear();
         }
     }
 }
@@ -0,0 +1,91 @@
+package br.com.mikrotik.features.invoices.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Auditoria e checkpoint de um ciclo de geração de faturas mensais.
+ *
+ * Uma linha por partição: (empresa, faixa de IDs de contrato). A faixa é semiaberta —
+ * id > partitionStartId e id <= partitionEndId; nula = sem limite. A linha nasce PENDING
+ * e é atualizada a cada bloco confirmado (lastContractId + contadores): uma partição
+ * interrompida é retomada do checkpoint. O contador attempts é o fencing token.
+ */
+@Entity
+@Table(name = "billing_generation_log")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillingGenerationLog {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "reference_month", nullable = false)
+    private LocalDate referenceMonth;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "triggered_by", nullable = false, length = 20)
+    private TriggeredBy triggeredBy;
+
+    @Column(name = "partition_start_id")
+    private Long partitionStartId;
+
+    @Column(name = "partition_end_id")
+    private Long partitionEndId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Phase phase = Phase.PENDING;
+
+    @Column(name = "last_contract_id")
+    private Long lastContractId;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "created_count", nullable = false)
+    private Integer createdCount = 0;
+
+    @Column(name = "skipped_count", nullable = false)
+    private Integer skippedCount = 0;
+
+    @Column(name = "error_count", nullable = false)
+    private Integer errorCount = 0;
+
+    @Column(name = "error_details", columnDefinition = "TEXT")
+    private String errorDetails;
+
+    @Column(name = "duration_ms")
+    private Long durationMs;
+
+    @Column(name = "executed_at", nullable = false)
+    private LocalDateTime executedAt = LocalDateTime.now();
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public enum Phase {
+        PENDING,    // planejada, aguardando o pool
+        RUNNING,    // em execução (ou órfã, se o heartbeat parou)
+        COMPLETED,
+        FAILED,     // interrompida por erro — retomada no próximo disparo manual
+        EXPIRED     // prazo da execução esgotado antes do início — idem
+    }
+
+    public enum TriggeredBy {
+        JOB,     // cron do dia 1º (ou disparo manual do job)
+        MANUAL   // POST /api/invoices/billing/generate
+    }
+}
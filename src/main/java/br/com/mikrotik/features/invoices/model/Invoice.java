@@ -19,8 +19,11 @@ import java.time.LocalDateTime;
 @Builder
 public class Invoice {
 
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "invoices_id")
+    @TableGenerator(name = "invoices_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "invoices", allocationSize = 50)
     private Long id;
 
     @Column(name = "company_id", nullable = false)
@@ -0,0 +1,54 @@
+package br.com.mikrotik.features.invoices.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fatura aguardando cobrança PIX no gateway (fila persistente).
+ *
+ * Gravada com INSERT ... SELECT na transação da fatura; a linha é removida quando o
+ * link é gravado. next_attempt_at também serve de lease: a tentativa em curso o
+ * empurra para frente, e uma queda no meio só atrasa a fatura até o lease vencer.
+ */
+@Entity
+@Table(name = "payment_link_queue")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentLinkQueue {
+    @Id
+    @Column(name = "invoice_id")
+    private Long invoiceId;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum Status {
+        PENDING,
+        FAILED,   // máximo de tentativas ou recusa definitiva do gateway; aguarda intervenção
+        RECONCILE // requisição enviada sem resposta; conferir a cobrança INV-<id> no gateway antes de reenviar
+    }
+}
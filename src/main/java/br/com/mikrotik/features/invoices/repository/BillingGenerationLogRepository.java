@@ -0,0 +1,80 @@
+package br.com.mikrotik.features.invoices.repository;
+
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BillingGenerationLogRepository extends JpaRepository<BillingGenerationLog, Long> {
+
+    // Partições da empresa no mês ainda não concluídas (retomadas pelo disparo manual/job)
+    @Query("SELECT l FROM BillingGenerationLog l WHERE l.companyId = :companyId " +
+           "AND l.referenceMonth = :referenceMonth AND l.phase IN :phases ORDER BY l.id")
+    List<BillingGenerationLog> findByCompanyAndMonthAndPhases(@Param("companyId") Long companyId,
+                                                              @Param("referenceMonth") LocalDate referenceMonth,
+                                                              @Param("phases") Collection<BillingGenerationLog.Phase> phases);
+
+    // Mês já planejado e com partição concluída (novo disparo só cria a partição de complemento)
+    boolean existsByCompanyIdAndReferenceMonthAndPhase(Long companyId, LocalDate referenceMonth,
+                                                      BillingGenerationLog.Phase phase);
+
+    // Partições do mês interrompidas por queda: PENDING antigas ou RUNNING sem heartbeat recente
+    @Query("SELECT l FROM BillingGenerationLog l WHERE l.referenceMonth = :referenceMonth " +
+           "AND ((l.phase = 'PENDING' AND l.executedAt < :staleBefore) " +
+           "OR (l.phase = 'RUNNING' AND (l.heartbeatAt IS NULL OR l.heartbeatAt < :staleBefore))) " +
+           "ORDER BY l.id")
+    List<BillingGenerationLog> findInterrupted(@Param("referenceMonth") LocalDate referenceMonth,
+                                  @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Assume a partição (incrementa attempts); falha se outra execução a mantém viva
+    @Modifying
+    @Transactional
+    @Query("UPDATE BillingGenerationLog l SET l.phase = 'RUNNING', l.heartbeatAt = :now, " +
+           "l.attempts = l.attempts + 1 WHERE l.id = :id " +
+           "AND (l.phase IN ('PENDING', 'FAILED', 'EXPIRED') " +
+           "OR (l.phase = 'RUNNING' AND (l.heartbeatAt IS NULL OR l.heartbeatAt < :staleBefore)))")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Checkpoint após cada bloco confirmado (somente pela execução dona do attempt)
+    @Modifying
+    @Transactional
+    @Query("UPDATE BillingGenerationLog l SET l.lastContractId = :lastContractId, " +
+           "l.createdCount = l.createdCount + :created, l.skippedCount = l.skippedCount + :skipped, " +
+           "l.errorCount = l.errorCount + :errors, l.heartbeatAt = :now " +
+           "WHERE l.id = :id AND l.attempts = :attempt AND l.phase = 'RUNNING'")
+    int checkpoint(@Param("id") Long id,
+                   @Param("attempt") int attempt,
+                   @Param("lastContractId") Long lastContractId,
+                   @Param("created") int created,
+                   @Param("skipped") int skipped,
+                   @Param("errors") int errors,
+                   @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE BillingGenerationLog l SET l.phase = :phase, l.errorDetails = :errorDetails, " +
+           "l.durationMs = COALESCE(l.durationMs, 0) + :durationMs, l.finishedAt = :now, l.heartbeatAt = :now " +
+           "WHERE l.id = :id AND l.attempts = :attempt")
+    int finish(@Param("id") Long id,
+               @Param("attempt") int attempt,
+               @Param("phase") BillingGenerationLog.Phase phase,
+               @Param("errorDetails") String errorDetails,
+               @Param("durationMs") long durationMs,
+               @Param("now") LocalDateTime now);
+
+    // Prazo esgotado antes do início: a partição deixa de ser retomada automaticamente
+    @Modifying
+    @Transactional
+    @Query("UPDATE BillingGenerationLog l SET l.phase = 'EXPIRED', l.finishedAt = :now " +
+           "WHERE l.id = :id AND l.phase = 'PENDING'")
+    int expire(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
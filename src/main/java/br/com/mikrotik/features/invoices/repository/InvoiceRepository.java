@@ -11,8 +11,10 @@ import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
@@ -32,6 +34,19 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     // Buscar por ID e empresa (segurança multi-tenant)
     Optional<Invoice> findByIdAndCompanyId(Long id, Long companyId);
 
+    // Fatura com o cliente carregado (payload do gateway de pagamento, fora de transação)
+    @Query("SELECT i FROM Invoice i LEFT JOIN FETCH i.customer WHERE i.id = :id")
+    Optional<Invoice> findByIdWithCustomer(@Param("id") Long id);
+
+    // Grava a cobrança do gateway; não sobrescreve uma cobrança já gravada
+    @Modifying
+    @Query("UPDATE Invoice i SET i.externalId = :externalId, i.paymentLink = :paymentLink, i.updatedAt = :now " +
+           "WHERE i.id = :id AND i.externalId IS NULL")
+    int updatePaymentLink(@Param("id") Long id,
+                          @Param("externalId") String externalId,
+                          @Param("paymentLink") String paymentLink,
+                          @Param("now") LocalDateTime now);
+
     // Buscar faturas vencidas (paginado)
     @Query("SELECT i FROM Invoice i WHERE i.companyId = :companyId " +
            "AND i.status IN ('PENDING', 'OVERDUE') AND i.dueDate < :today")
@@ -43,6 +58,15 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long> {
     // Verificar se já existe fatura para contrato no mês
     boolean existsByContractIdAndReferenceMonth(Long contractId, LocalDate referenceMonth);
 
+    // Contratos da faixa já faturados no mês (idempotência do faturamento em lote, uma consulta por partição)
+    @Query("SELECT i.contractId FROM Invoice i " +
+           "WHERE i.companyId = :companyId AND i.referenceMonth = :referenceMonth " +
+           "AND i.contractId > :afterId AND i.contractId <= :untilId")
+    Set<Long> findInvoicedContractIds(@Param("companyId") Long companyId,
+                                      @Param("referenceMonth") LocalDate referenceMonth,
+                                      @Param("afterId") Long afterId,
+                                      @Param("untilId") Long untilId);
+
     // Contar faturas por empresa
     long countByCompanyId(Long companyId);
 
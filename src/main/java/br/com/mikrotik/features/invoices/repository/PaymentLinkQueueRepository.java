@@ -0,0 +1,79 @@
+package br.com.mikrotik.features.invoices.repository;
+
+import br.com.mikrotik.features.invoices.model.PaymentLinkQueue;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentLinkQueueRepository extends JpaRepository<PaymentLinkQueue, Long> {
+
+    /**
+     * Coloca as faturas na fila numa única instrução (transação do chamador).
+     * Fatura já na fila (inclusive FAILED) é mantida como está.
+     */
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO payment_link_queue " +
+                   "(invoice_id, company_id, status, attempts, next_attempt_at, created_at, updated_at) " +
+                   "SELECT i.id, i.company_id, 'PENDING', 0, NOW(), NOW(), NOW() " +
+                   "FROM invoices i WHERE i.id IN (:invoiceIds)",
+           nativeQuery = true)
+    int enqueue(@Param("invoiceIds") Collection<Long> invoiceIds);
+
+    /**
+     * Varredura: faturas PENDING sem cobrança no gateway e fora da fila (ex: gateway
+     * desabilitado na criação). Faturas FAILED na fila não são reativadas.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO payment_link_queue " +
+                   "(invoice_id, company_id, status, attempts, next_attempt_at, created_at, updated_at) " +
+                   "SELECT i.id, i.company_id, 'PENDING', 0, NOW(), NOW(), NOW() " +
+                   "FROM invoices i WHERE i.status = 'PENDING' AND i.external_id IS NULL " +
+                   "AND i.created_at < :createdBefore",
+           nativeQuery = true)
+    int enqueueMissing(@Param("createdBefore") LocalDateTime createdBefore);
+
+    @Query("SELECT q FROM PaymentLinkQueue q " +
+           "WHERE q.status = br.com.mikrotik.features.invoices.model.PaymentLinkQueue.Status.PENDING " +
+           "AND q.nextAttemptAt <= :now ORDER BY q.nextAttemptAt, q.invoiceId")
+    List<PaymentLinkQueue> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Assume a fatura até {@code leaseUntil}; 0 se outra tentativa já a assumiu.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentLinkQueue q SET q.nextAttemptAt = :leaseUntil, q.updatedAt = :now " +
+           "WHERE q.invoiceId = :invoiceId " +
+           "AND q.status = br.com.mikrotik.features.invoices.model.PaymentLinkQueue.Status.PENDING " +
+           "AND q.nextAttemptAt <= :now")
+    int claim(@Param("invoiceId") Long invoiceId,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE PaymentLinkQueue q SET q.attempts = :attempts, q.lastError = :error, " +
+           "q.nextAttemptAt = :nextAttemptAt, q.status = :status, q.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE q.invoiceId = :invoiceId")
+    int markFailed(@Param("invoiceId") Long invoiceId,
+                   @Param("attempts") int attempts,
+                   @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("status") PaymentLinkQueue.Status status);
+
+    @Modifying
+    @Query("DELETE FROM PaymentLinkQueue q WHERE q.invoiceId = :invoiceId")
+    int deleteByInvoiceId(@Param("invoiceId") Long invoiceId);
+
+    long countByStatus(PaymentLinkQueue.Status status);
+}
@@ -1,9 +1,11 @@
 package br.com.mikrotik.features.invoices.service;
 
-import br.com.mikrotik.features.contracts.model.Contract;
+import br.com.mikrotik.features.contracts.repository.ContractRepository.BillingRow;
 import br.com.mikrotik.features.invoices.event.InvoiceCreatedEvent;
 import br.com.mikrotik.features.invoices.model.Invoice;
 import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
+import br.com.mikrotik.features.invoices.repository.PaymentLinkQueueRepository;
+import br.com.mikrotik.shared.infrastructure.payment.PaymentGatewayPort;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
@@ -13,15 +15,16 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 
 /**
- * Responsável exclusivamente pela criação transacional de uma única fatura.
+ * Responsável exclusivamente pela criação transacional das faturas.
  *
  * MOTIVAÇÃO (Auto-invocação / Self-invocation):
- *  BillingService chama createInvoiceIfAbsent() em um loop. Se ambos estivessem na
- *  mesma classe, o @Transactional seria ignorado (self-invocation — Spring AOP não
- *  intercepta chamadas internas). Ao extrair para este bean separado, cada fatura
- *  tem sua própria transação garantida pelo proxy do Spring, isolando falhas.
+ *  BillingService chama este bean em um loop. Se ambos estivessem na mesma classe,
+ *  o @Transactional seria ignorado (self-invocation — Spring AOP não intercepta
+ *  chamadas internas). Ao extrair para este bean separado, cada bloco (ou fatura
+ *  avulsa) tem sua própria transação garantida pelo proxy do Spring, isolando falhas.
  */
 @Service
 @RequiredArgsConstructor
@@ -29,27 +32,25 @@ import java.time.format.DateTimeFormatter;
 public class BillingInvoiceCreator {
 
     private final InvoiceRepository invoiceRepository;
+    private final PaymentLinkQueueRepository paymentLinkQueueRepository;
+    private final PaymentGatewayPort paymentGateway;
     private final ApplicationEventPublisher eventPublisher;
 
     private static final DateTimeFormatter MONTH_FORMATTER =
             DateTimeFormatter.ofPattern("MM/yyyy");
 
     /**
-     * Persiste uma fatura para o contrato no mês de referência, se ainda não existir.
-     *
-     * @Transactional: cada contrato tem sua própria transação.
-     *   Falha em um não reverte os demais já criados pelo loop no BillingService.
+     * Monta (sem persistir) a fatura do contrato no mês de referência.
      *
-     * @return true se a fatura foi criada, false se já existia (idempotência).
+     * @throws RuntimeException dados do contrato inválidos (ex: dia de vencimento fora do mês)
      */
-    @Transactional
-    public boolean createIfAbsent(Contract contract, LocalDate referenceMonth, LocalDate today) {
-
-        // ─── IDEMPOTÊNCIA ────────────────────────────────────────────────────────
-        if (invoiceRepository.existsByContractIdAndReferenceMonth(contract.getId(), referenceMonth)) {
-            log.debug("Fatura já existe para contrato #{} no mês {}. Ignorando.",
-                    contract.getId(), referenceMonth);
-            return false;
+    public Invoice build(Long companyId, BillingRow contract, LocalDate referenceMonth, LocalDate today) {
+        // Validado aqui para a falha ficar no contrato, e não derrubar o bloco no INSERT
+        if (contract.getAmount() == null) {
+            throw new IllegalStateException("Contrato sem valor de mensalidade");
+        }
+        if (contract.getBillingDay() == null) {
+            throw new IllegalStateException("Contrato sem dia de vencimento");
         }
 
         // ─── CÁLCULO DE VENCIMENTO ───────────────────────────────────────────────
@@ -62,9 +63,8 @@ public class BillingInvoiceCreator {
         String monthYear = referenceMonth.format(MONTH_FORMATTER);
         String description = "Mensalidade Internet - " + monthYear;
 
-        // ─── PERSISTÊNCIA (SEM CHAMADA EXTERNA AQUI) ────────────────────────────
-        Invoice invoice = Invoice.builder()
-                .companyId(contract.getCompanyId())
+        return Invoice.builder()
+                .companyId(companyId)
                 .contractId(contract.getId())
                 .customerId(contract.getCustomerId())
                 .description(description)
@@ -76,19 +76,72 @@ public class BillingInvoiceCreator {
                 .finalAmount(contract.getAmount())
                 .status(Invoice.InvoiceStatus.PENDING)
                 .build();
+    }
+
+    /**
+     * Persiste um bloco de faturas já verificadas pelo chamador (contratos sem fatura no mês).
+     *
+     * @Transactional: uma transação por bloco, INSERTs em JDBC batch (IDs de id_generator).
+     *   Falha em qualquer fatura reverte o bloco inteiro; o BillingService então
+     *   refaz o bloco contrato a contrato com {@link #createIfAbsent}.
+     *   As faturas entram na fila de cobrança (payment_link_queue) na mesma transação.
+     *
+     * @return quantidade de faturas criadas
+     */
+    @Transactional
+    public int createBatch(List<Invoice> invoices) {
+        List<Invoice> saved = invoiceRepository.saveAll(invoices);
+        invoiceRepository.flush();
+        enqueuePaymentLinks(saved.stream().map(Invoice::getId).toList());
+
+        // ─── EVENTOS PUBLICADOS APÓS COMMIT (AFTER_COMMIT via TransactionalEventListener) ──
+        saved.forEach(invoice ->
+                eventPublisher.publishEvent(new InvoiceCreatedEvent(invoice.getId(), invoice.getCompanyId())));
+
+        log.debug("Bloco de {} faturas criado", saved.size());
+        return saved.size();
+    }
 
-        Invoice saved = invoiceRepository.save(invoice);
+    /**
+     * Persiste uma fatura para o contrato no mês de referência, se ainda não existir.
+     *
+     * @Transactional: cada contrato tem sua própria transação.
+     *   Falha em um não reverte os demais já criados pelo loop no BillingService.
+     *
+     * @return true se a fatura foi criada, false se já existia (idempotência).
+     * @throws org.springframework.dao.DataIntegrityViolationException fatura criada por outra
+     *   execução entre a verificação e o INSERT (chave única contrato + mês)
+     */
+    @Transactional
+    public boolean createIfAbsent(Long companyId, BillingRow contract, LocalDate referenceMonth, LocalDate today) {
+
+        // ─── IDEMPOTÊNCIA ────────────────────────────────────────────────────────
+        if (invoiceRepository.existsByContractIdAndReferenceMonth(contract.getId(), referenceMonth)) {
+            log.debug("Fatura já existe para contrato #{} no mês {}. Ignorando.",
+                    contract.getId(), referenceMonth);
+            return false;
+        }
+
+        // ─── PERSISTÊNCIA (SEM CHAMADA EXTERNA AQUI) ────────────────────────────
+        Invoice saved = invoiceRepository.save(build(companyId, contract, referenceMonth, today));
 
         log.info("Fatura #{} criada — contrato #{} cliente #{} valor=R${} vencimento={}",
                 saved.getId(), contract.getId(), contract.getCustomerId(),
-                saved.getFinalAmount(), dueDate);
+                saved.getFinalAmount(), saved.getDueDate());
 
-        // ─── EVENTO PUBLICADO APÓS COMMIT (AFTER_COMMIT via TransactionalEventListener) ──
-        // AbacatePayEventListener consome assincronamente e grava o link PIX.
+        // ─── FILA DE COBRANÇA + EVENTO PUBLICADO APÓS COMMIT ────────────────────
+        // PaymentLinkDispatcher consome a fila e grava o link PIX; o evento só o acorda.
         // A chamada ao gateway NUNCA ocorre dentro desta transação.
+        invoiceRepository.flush();
+        enqueuePaymentLinks(List.of(saved.getId()));
         eventPublisher.publishEvent(new InvoiceCreatedEvent(saved.getId(), saved.getCompanyId()));
 
         return true;
     }
-}
 
+    private void enqueuePaymentLinks(List<Long> invoiceIds) {
+        if (paymentGateway.isEnabled() && !invoiceIds.isEmpty()) {
+            paymentLinkQueueRepository.enqueue(invoiceIds);
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package br.com.mikrotik.features.invoices.service;
+
+import br.com.mikrotik.features.companies.model.Company;
+import br.com.mikrotik.features.companies.repository.CompanyRepository;
+import br.com.mikrotik.features.invoices.dto.BillingResultDTO;
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog;
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog.Phase;
+import br.com.mikrotik.features.invoices.model.BillingGenerationLog.TriggeredBy;
+import br.com.mikrotik.features.invoices.repository.BillingGenerationLogRepository;
+import br.com.mikrotik.features.invoices.service.BillingService.ContractRange;
+import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import br.com.mikrotik.shared.util.CompanyContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Execução paralela e retomável do faturamento: várias empresas e várias faixas de contratos
+ * ao mesmo tempo, com checkpoint por partição em billing_generation_log.
+ *
+ * MOTIVAÇÃO: os jobs percorriam as empresas uma a uma na thread do scheduler — uma
+ * empresa grande atrasava todas as seguintes. E uma queda no meio da execução do dia 1º
+ * perdia o mês: o novo disparo relia todos os contratos desde o início.
+ *
+ * ESTRATÉGIA:
+ *  - Cada empresa ativa é dividida em partições (faixas de ID de contrato, billing.run.partition-size),
+ *    gravadas como PENDING em billing_generation_log antes de executar.
+ *  - As partições rodam no billingExecutor (billing.run.parallelism threads); a empresa da
+ *    partição é propagada para a thread do pool pelo CompanyContextTaskDecorator.
+ *  - Após cada bloco confirmado a partição grava o checkpoint (último contrato + contadores + heartbeat).
+ *    O checkpoint é gravado logo depois do commit do bloco: uma queda entre os dois só faz o
+ *    bloco ser relido, e os contratos já faturados contam como ignorados.
+ *  - Retomada: na subida da aplicação e a cada billing.run.resume-interval-ms, partições
+ *    PENDING/RUNNING do mês corrente sem heartbeat há billing.run.stale-after-ms são
+ *    reassumidas a partir do checkpoint — só a faixa restante é relida. O contador attempts
+ *    é o fencing token: uma execução antiga que volte a gravar é descartada.
+ *  - Disparo manual com partições inacabadas no mês (inclusive FAILED/EXPIRED) retoma essas
+ *    partições em vez de replanejar a empresa; mês já concluído recebe uma única partição de
+ *    complemento (empresa inteira) — só os contratos ainda sem fatura no mês são faturados.
+ *  - O planejamento roda com lock na linha da empresa: disparos simultâneos (job + manual,
+ *    ou duas instâncias) não gravam dois planos para o mesmo mês.
+ *  - Prazo único (billing.run.deadline-ms): partição que ainda não começou quando o prazo
+ *    vence fica EXPIRED; a que já começou termina em segundo plano.
+ */
+@Service
+@Slf4j
+public class BillingRunService {
+
+    /** Limite de erros gravados por partição em error_details. */
+    private static final int MAX_LOGGED_ERRORS = 200;
+
+    private static final DateTimeFormatter MONTH_FORMATTER =
+            DateTimeFormatter.ofPattern("MM/yyyy");
+
+    /** Partições retomadas por um novo disparo da empresa no mesmo mês. */
+    private static final List<Phase> UNFINISHED_PHASES =
+            List.of(Phase.PENDING, Phase.RUNNING, Phase.FAILED, Phase.EXPIRED);
+
+    private final BillingService billingService;
+    private final CompanyRepository companyRepository;
+    private final BillingGenerationLogRepository generationLogRepository;
+    private final JsonMapper jsonMapper;
+    private final Executor billingExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${billing.run.partition-size:5000}")
+    private int partitionSize;
+
+    @Value("${billing.run.deadline-ms:3000000}")
+    private long deadlineMs;
+
+    @Value("${billing.run.stale-after-ms:300000}")
+    private long staleAfterMs;
+
+    public BillingRunService(BillingService billingService,
+                             CompanyRepository companyRepository,
+                             BillingGenerationLogRepository generationLogRepository,
+                             JsonMapper jsonMapper,
+                             @Qualifier("billingExecutor") Executor billingExecutor,
+                             PlatformTransactionManager transactionManager) {
+        this.billingService = billingService;
+        this.companyRepository = companyRepository;
+        this.generationLogRepository = generationLogRepository;
+        this.jsonMapper = jsonMapper;
+        this.billingExecutor = billingExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Gera as faturas do mês de todas as empresas ativas, em paralelo.
+     *
+     * @return resultado (desta execução) das partições concluídas dentro do prazo
+     */
+    public List<BillingResultDTO> generateForActiveCompanies(TriggeredBy triggeredBy) {
+        LocalDate referenceMonth = LocalDate.now().withDayOfMonth(1);
+        List<BillingGenerationLog> partitions = new ArrayList<>();
+        for (Company company : companyRepository.findByActiveTrue()) {
+            try {
+                partitions.addAll(prepare(company.getId(), referenceMonth, triggeredBy));
+            } catch (Exception e) {
+                // Falha no planejamento de uma empresa (ex: lock) não impede as demais
+                log.error("Faturamento: erro ao planejar a empresa #{}: {}", company.getId(), e.getMessage(), e);
+            }
+        }
+        log.info("Faturamento: {} partições a executar (prazo={}ms)", partitions.size(), deadlineMs);
+        return run(partitions);
+    }
+
+    /**
+     * Gera as faturas do mês de uma empresa, com as partições dela em paralelo.
+     *
+     * @return resultado consolidado (desta execução) das partições concluídas dentro do prazo
+     */
+    public BillingResultDTO generateForCompany(Long companyId, TriggeredBy triggeredBy) {
+        companyRepository.findById(companyId)
+                .filter(c -> Boolean.TRUE.equals(c.getActive()))
+                .orElseThrow(() -> new ResourceNotFoundException(
+                        "Empresa não encontrada ou inativa: " + companyId));
+
+        LocalDate referenceMonth = LocalDate.now().withDayOfMonth(1);
+        List<BillingGenerationLog> partitions = prepare(companyId, referenceMonth, triggeredBy);
+        List<BillingResultDTO> results = run(partitions);
+
+        int created = 0, skipped = 0, errors = 0;
+        List<String> errorDetails = new ArrayList<>();
+        for (BillingResultDTO result : results) {
+            created += result.created();
+            skipped += result.skipped();
+            errors += result.errors();
+            errorDetails.addAll(result.errorDetails());
+        }
+        if (results.size() < partitions.size()) {
+            errorDetails.add((partitions.size() - results.size())
+                    + " partição(ões) não concluída(s) nesta execução — consulte billing_generation_log");
+        }
+        return new BillingResultDTO(companyId, referenceMonthLabel(referenceMonth), created, skipped, errors, errorDetails);
+    }
+
+    /**
+     * Executa a tarefa de cada empresa ativa no pool do faturamento (ex: marcação OVERDUE,
+     * suspensão por inadimplência) e aguarda até o prazo. Falha de uma empresa não afeta as demais.
+     */
+    public void forEachActiveCompany(String jobName, Consumer<Company> task) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        List<FutureTask<Void>> futures = new ArrayList<>();
+        for (Company company : companyRepository.findByActiveTrue()) {
+            FutureTask<Void> future = submit(company.getId(), () -> {
+                if (System.nanoTime() - deadlineNanos > 0) {
+                    log.warn("{}: prazo esgotado antes de processar a empresa #{}", jobName, company.getId());
+                    return null;
+                }
+                try {
+                    task.accept(company);
+                } catch (Exception e) {
+                    log.error("{}: erro na empresa #{}: {}", jobName, company.getId(), e.getMessage(), e);
+                }
+                return null;
+            });
+            if (future != null) {
+                futures.add(future);
+            }
+        }
+        awaitAll(futures, deadlineNanos, jobName);
+    }
+
+    // ─── RETOMADA ───────────────────────────────────────────────────────────────
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        resumeInterrupted();
+    }
+
+    /**
+     * Reassume as partições do mês corrente interrompidas por queda (sem heartbeat recente).
+     * Não aguarda: as partições seguem no billingExecutor.
+     */
+    @Scheduled(fixedDelayString = "${billing.run.resume-interval-ms:60000}",
+               initialDelayString = "${billing.run.resume-interval-ms:60000}")
+    public void resumeInterrupted() {
+        LocalDate referenceMonth = LocalDate.now().withDayOfMonth(1);
+        List<BillingGenerationLog> interrupted = generationLogRepository.findInterrupted(
+                referenceMonth, LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs)));
+        if (interrupted.isEmpty()) {
+            return;
+        }
+        log.warn("⚠️ {} partição(ões) do faturamento {} interrompida(s); retomando do checkpoint",
+                interrupted.size(), referenceMonthLabel(referenceMonth));
+        for (BillingGenerationLog partition : interrupted) {
+            submit(partition.getCompanyId(), () -> runPartition(partition.getId(), null));
+        }
+    }
+
+    // ─── EXECUÇÃO ───────────────────────────────────────────────────────────────
+
+    /**
+     * Partições da empresa no mês: as inacabadas de uma execução anterior, uma partição de
+     * complemento se o mês já foi concluído ou, se não houver plano, um novo gravado como PENDING.
+     * Verificação e gravação na mesma transação, com lock na linha da empresa.
+     */
+    private List<BillingGenerationLog> prepare(Long companyId, LocalDate referenceMonth, TriggeredBy triggeredBy) {
+        return transactionTemplate.execute(status -> {
+            companyRepository.findByIdForUpdate(companyId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Empresa não encontrada: " + companyId));
+            return prepareLocked(companyId, referenceMonth, triggeredBy);
+        });
+    }
+
+    private List<BillingGenerationLog> prepareLocked(Long companyId, LocalDate referenceMonth, TriggeredBy triggeredBy) {
+        List<BillingGenerationLog> unfinished = generationLogRepository.findByCompanyAndMonthAndPhases(
+                companyId, referenceMonth, UNFINISHED_PHASES);
+        if (!unfinished.isEmpty()) {
+            log.info("Empresa #{}: retomando {} partição(ões) inacabada(s) do mês a partir do checkpoint",
+                    companyId, unfinished.size());
+            return unfinished;
+        }
+        if (generationLogRepository.existsByCompanyIdAndReferenceMonthAndPhase(
+                companyId, referenceMonth, Phase.COMPLETED)) {
+            // Contratos ativados depois da execução do mês: faixa inteira, os já faturados são ignorados
+            log.info("Empresa #{}: faturamento de {} já concluído; partição de complemento para contratos sem fatura",
+                    companyId, referenceMonthLabel(referenceMonth));
+            return List.of(generationLogRepository.save(newPartition(companyId, referenceMonth, triggeredBy)));
+        }
+
+        List<BillingGenerationLog> planned = new ArrayList<>();
+        for (ContractRange range : billingService.partition(companyId, partitionSize)) {
+            BillingGenerationLog entry = newPartition(companyId, referenceMonth, triggeredBy);
+            if (!range.isAll()) {
+                entry.setPartitionStartId(range.afterId());
+                if (range.untilId() != Long.MAX_VALUE) {
+                    entry.setPartitionEndId(range.untilId());
+                }
+            }
+            planned.add(entry);
+        }
+        return generationLogRepository.saveAll(planned);
+    }
+
+    private static BillingGenerationLog newPartition(Long companyId, LocalDate referenceMonth, TriggeredBy triggeredBy) {
+        BillingGenerationLog entry = new BillingGenerationLog();
+        entry.setCompanyId(companyId);
+        entry.setReferenceMonth(referenceMonth);
+        entry.setTriggeredBy(triggeredBy);
+        return entry;
+    }
+
+    private List<BillingResultDTO> run(List<BillingGenerationLog> partitions) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+
+        List<FutureTask<BillingResultDTO>> futures = new ArrayList<>(partitions.size());
+        for (BillingGenerationLog partition : partitions) {
+            // Recusada pelo pool: continua PENDING e é retomada pela varredura
+            FutureTask<BillingResultDTO> future = submit(partition.getCompanyId(),
+                    () -> runPartition(partition.getId(), deadlineNanos));
+            if (future != null) {
+                futures.add(future);
+            }
+        }
+        return awaitAll(futures, deadlineNanos, "Faturamento");
+    }
+
+    /**
+     * Executa (ou retoma) uma partição a partir do checkpoint.
+     *
+     * @param deadlineNanos prazo para começar; null = sem prazo (retomada automática)
+     * @return resultado desta execução; null se a partição não foi executada aqui
+     */
+    private BillingResultDTO runPartition(Long partitionId, Long deadlineNanos) {
+        LocalDateTime now = LocalDateTime.now();
+        if (deadlineNanos != null && System.nanoTime() - deadlineNanos > 0) {
+            if (generationLogRepository.expire(partitionId, now) > 0) {
+                log.warn("Partição #{}: prazo esgotado antes do início", partitionId);
+            }
+            return null;
+        }
+        if (generationLogRepository.claim(partitionId, now, now.minus(Duration.ofMillis(staleAfterMs))) == 0) {
+            log.debug("Partição #{} já concluída ou em execução em outra thread", partitionId);
+            return null;
+        }
+
+        BillingGenerationLog partition = generationLogRepository.findById(partitionId).orElseThrow();
+        int attempt = partition.getAttempts();
+        ContractRange range = remainingRange(partition);
+        if (partition.getLastContractId() != null) {
+            log.info("Partição #{} (empresa #{}) retomada após o contrato #{} — tentativa {}",
+                    partitionId, partition.getCompanyId(), partition.getLastContractId(), attempt);
+        }
+
+        long startedAt = System.nanoTime();
+        BillingResultDTO result;
+        Phase phase;
+        try {
+            result = billingService.generateMonthlyInvoices(partition.getCompanyId(), partition.getReferenceMonth(), range,
+                    (lastContractId, created, skipped, errors) -> {
+                        if (generationLogRepository.checkpoint(partitionId, attempt, lastContractId,
+                                created, skipped, errors, LocalDateTime.now()) == 0) {
+                            throw new IllegalStateException("Partição #" + partitionId + " reassumida por outra execução");
+                        }
+                    });
+            phase = Phase.COMPLETED;
+        } catch (Exception e) {
+            log.error("Empresa #{} faixa {}: partição interrompida: {}",
+                    partition.getCompanyId(), range, e.getMessage(), e);
+            result = new BillingResultDTO(partition.getCompanyId(), referenceMonthLabel(partition.getReferenceMonth()), 0, 0, 1,
+                    List.of("Faixa " + range + ": " + e.getMessage()));
+            phase = Phase.FAILED;
+        }
+
+        try {
+            generationLogRepository.finish(partitionId, attempt, phase,
+                    mergeErrorDetails(partition.getErrorDetails(), result.errorDetails()),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt), LocalDateTime.now());
+        } catch (Exception e) {
+            // Faturas já confirmadas; a partição fica RUNNING e a retomada relê só o que falta
+            log.error("Falha ao encerrar a partição #{} em billing_generation_log: {}", partitionId, e.getMessage());
+        }
+        return result;
+    }
+
+    /**
+     * Faixa ainda não processada: a partir do checkpoint, ou do início da partição.
+     */
+    private static ContractRange remainingRange(BillingGenerationLog partition) {
+        long afterId = partition.getLastContractId() != null ? partition.getLastContractId()
+                : partition.getPartitionStartId() != null ? partition.getPartitionStartId() : 0L;
+        long untilId = partition.getPartitionEndId() != null ? partition.getPartitionEndId() : Long.MAX_VALUE;
+        return new ContractRange(afterId, untilId);
+    }
+
+    /**
+     * Submete a tarefa com a empresa no CompanyContextHolder — capturada pelo
+     * CompanyContextTaskDecorator e restaurada na thread do pool.
+     *
+     * @return null se o pool recusou a tarefa
+     */
+    private <T> FutureTask<T> submit(Long companyId, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        Long callerCompanyId = CompanyContextHolder.getCompanyId();
+        CompanyContextHolder.setCompanyId(companyId);
+        try {
+            billingExecutor.execute(future);
+            return future;
+        } catch (RejectedExecutionException e) {
+            log.error("Pool do faturamento recusou a tarefa da empresa #{}: {}", companyId, e.getMessage());
+            return null;
+        } finally {
+            if (callerCompanyId != null) {
+                CompanyContextHolder.setCompanyId(callerCompanyId);
+            } else {
+                CompanyContextHolder.clear();
+            }
+        }
+    }
+
+    /**
+     * Aguarda as tarefas até o prazo comum.
+     *
+     * @return resultados das tarefas concluídas (sem as que ainda estavam em andamento)
+     */
+    private <T> List<T> awaitAll(List<FutureTask<T>> futures, long deadlineNanos, String jobName) {
+        List<T> results = new ArrayList<>(futures.size());
+        int pending = 0;
+        for (FutureTask<T> future : futures) {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            try {
+                T value = future.get(remaining, TimeUnit.NANOSECONDS);
+                if (value != null) {
+                    results.add(value);
+                }
+            } catch (TimeoutException e) {
+                pending++;
+            } catch (ExecutionException e) {
+                log.error("{}: tarefa falhou: {}", jobName, e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (pending > 0) {
+            log.warn("{}: prazo de {}ms esgotado com {} tarefa(s) em andamento — seguem em segundo plano",
+                    jobName, deadlineMs, pending);
+        }
+        return results;
+    }
+
+    // ─── AUDITORIA ──────────────────────────────────────────────────────────────
+
+    /**
+     * Erros das execuções anteriores da partição + os desta, limitados a MAX_LOGGED_ERRORS.
+     */
+    private String mergeErrorDetails(String previousJson, List<String> details) {
+        List<String> merged = new ArrayList<>();
+        if (previousJson != null) {
+            merged.addAll(List.of(jsonMapper.readValue(previousJson, String[].class)));
+        }
+        merged.addAll(details);
+        if (merged.isEmpty()) {
+            return null;
+        }
+        return jsonMapper.writeValueAsString(
+                merged.size() > MAX_LOGGED_ERRORS ? merged.subList(0, MAX_LOGGED_ERRORS) : merged);
+    }
+
+    private static String referenceMonthLabel(LocalDate referenceMonth) {
+        return referenceMonth.format(MONTH_FORMATTER);
+    }
+}
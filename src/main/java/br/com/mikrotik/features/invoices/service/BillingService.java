@@ -3,32 +3,43 @@ package br.com.mikrotik.features.invoices.service;
 import br.com.mikrotik.features.companies.repository.CompanyRepository;
 import br.com.mikrotik.features.contracts.model.Contract;
 import br.com.mikrotik.features.contracts.repository.ContractRepository;
+import br.com.mikrotik.features.contracts.repository.ContractRepository.BillingRow;
 import br.com.mikrotik.features.invoices.dto.BillingResultDTO;
+import br.com.mikrotik.features.invoices.model.Invoice;
+import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
 import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Serviço de faturamento mensal em lote.
  *
  * RESPONSABILIDADE: Orquestrar a geração de faturas para todos os contratos ACTIVE
  * de uma empresa. Não gerencia transações diretamente — delega ao BillingInvoiceCreator,
- * que garante uma transação isolada por contrato (evita self-invocation e falha em cascata).
+ * que garante uma transação isolada por bloco (evita self-invocation e falha em cascata).
  *
- * FLUXO:
+ * FLUXO (em conjunto, sem consultas por contrato; por faixa de IDs quando particionado):
  *  1. Validar empresa existe e está ativa.
- *  2. Buscar todos os contratos ACTIVE da empresa.
- *  3. Para cada contrato delegar ao BillingInvoiceCreator:
- *     a. Verificar idempotência: se fatura do mês já existe → SKIP.
- *     b. Persistir Invoice PENDING em transação própria.
- *     c. Publicar InvoiceCreatedEvent (após commit).
- *  4. AbacatePayEventListener consome o evento assincronamente e grava o link PIX.
+ *  2. Carregar numa consulta os IDs de contratos da faixa já faturados no mês (idempotência).
+ *  3. Percorrer os contratos ACTIVE em blocos por ID (projeção, sem entidades):
+ *     a. Contrato já faturado → SKIP.
+ *     b. Montar as faturas do bloco; dado inválido vira erro do contrato.
+ *     c. Persistir o bloco numa transação (INSERT em JDBC batch), colocá-lo na fila de
+ *        cobrança e publicar InvoiceCreatedEvent de cada fatura (após commit).
+ *     d. Bloco rejeitado pelo banco → refeito contrato a contrato (createIfAbsent),
+ *        preservando o erro individual de cada contrato. Fatura criada por outra execução
+ *        no meio do caminho (chave única contrato + mês) conta como SKIP.
+ *  4. PaymentLinkDispatcher consome a fila (taxa limitada) e grava o link PIX.
  *
  * REGRA DE OURO: A chamada ao AbacatePay NUNCA ocorre dentro de @Transactional.
  */
@@ -39,11 +50,31 @@ public class BillingService {
 
     private final ContractRepository contractRepository;
     private final CompanyRepository companyRepository;
+    private final InvoiceRepository invoiceRepository;
     private final BillingInvoiceCreator invoiceCreator;
 
+    @Value("${billing.chunk-size:500}")
+    private int chunkSize;
+
     private static final DateTimeFormatter MONTH_FORMATTER =
             DateTimeFormatter.ofPattern("MM/yyyy");
 
+    /**
+     * Faixa semiaberta de IDs de contrato: id > afterId e id <= untilId.
+     */
+    public record ContractRange(long afterId, long untilId) {
+        public static final ContractRange ALL = new ContractRange(0L, Long.MAX_VALUE);
+
+        public boolean isAll() {
+            return afterId == 0L && untilId == Long.MAX_VALUE;
+        }
+
+        @Override
+        public String toString() {
+            return untilId == Long.MAX_VALUE ? "(" + afterId + ", ∞)" : "(" + afterId + ", " + untilId + "]";
+        }
+    }
+
     /**
      * Gera faturas mensais para todos os contratos ACTIVE de uma empresa.
      * Idempotente: contratos que já possuem fatura no mês vigente são ignorados.
@@ -52,51 +83,150 @@ public class BillingService {
      * @return Resultado detalhado da operação (criados, ignorados, erros)
      */
     public BillingResultDTO generateMonthlyInvoices(Long companyId) {
-        log.info("========================================================");
-        log.info("INICIANDO GERAÇÃO DE FATURAS EM LOTE — empresa #{}", companyId);
-        log.info("========================================================");
+        return generateMonthlyInvoices(companyId, LocalDate.now().withDayOfMonth(1), ContractRange.ALL,
+                (lastContractId, created, skipped, errors) -> { });
+    }
 
+    /**
+     * Progresso da faixa, notificado após cada bloco confirmado (checkpoint da partição).
+     */
+    @FunctionalInterface
+    public interface ChunkListener {
+        /**
+         * @param lastContractId maior ID de contrato do bloco — a retomada começa depois dele
+         * @param created        faturas criadas no bloco
+         * @param skipped        contratos já faturados no bloco
+         * @param errors         contratos com erro no bloco
+         */
+        void chunkCompleted(long lastContractId, int created, int skipped, int errors);
+    }
+
+    /**
+     * Gera as faturas mensais dos contratos ACTIVE da empresa dentro da faixa de IDs.
+     * Partições disjuntas podem rodar em paralelo: nenhuma lê ou grava contratos da outra.
+     * Uma exceção do listener interrompe a faixa (ex: partição reassumida por outra execução).
+     *
+     * @param referenceMonth mês da partição (dia 1º) — não o mês corrente: uma partição
+     *                       retomada depois da virada do mês continua faturando o mês planejado
+     */
+    public BillingResultDTO generateMonthlyInvoices(Long companyId, LocalDate referenceMonth,
+                                                    ContractRange range, ChunkListener listener) {
         companyRepository.findById(companyId)
                 .filter(c -> Boolean.TRUE.equals(c.getActive()))
                 .orElseThrow(() -> new ResourceNotFoundException(
                         "Empresa não encontrada ou inativa: " + companyId));
 
-        LocalDate today         = LocalDate.now();
-        LocalDate referenceMonth = today.withDayOfMonth(1);
+        LocalDate today = LocalDate.now();
+
+        // ─── IDEMPOTÊNCIA: uma consulta para a faixa inteira ────────────────────
+        Set<Long> invoiced = invoiceRepository.findInvoicedContractIds(
+                companyId, referenceMonth, range.afterId(), range.untilId());
+        log.info("Empresa #{} faixa {}: contratos já faturados no mês: {}", companyId, range, invoiced.size());
+
+        BillingTally tally = new BillingTally();
+        long afterId = range.afterId();
+        List<BillingRow> rows;
+        do {
+            rows = contractRepository.findBillingRows(companyId, Contract.ContractStatus.ACTIVE,
+                    afterId, range.untilId(), PageRequest.of(0, chunkSize));
+            if (!rows.isEmpty()) {
+                afterId = rows.get(rows.size() - 1).getId();
+                int created = tally.created, skipped = tally.skipped, errors = tally.errors;
+                billChunk(companyId, rows, invoiced, referenceMonth, today, tally);
+                listener.chunkCompleted(afterId, tally.created - created,
+                        tally.skipped - skipped, tally.errors - errors);
+            }
+        } while (rows.size() == chunkSize);
+
+        String referenceMonthLabel = referenceMonth.format(MONTH_FORMATTER);
+        log.info("Empresa #{} faixa {} mês={}: criadas={} ignoradas={} erros={}",
+                companyId, range, referenceMonthLabel, tally.created, tally.skipped, tally.errors);
 
-        List<Contract> activeContracts =
-                contractRepository.findByCompanyIdAndStatus(companyId, Contract.ContractStatus.ACTIVE);
+        return new BillingResultDTO(companyId, referenceMonthLabel,
+                tally.created, tally.skipped, tally.errors, tally.errorDetails);
+    }
+
+    /**
+     * Divide os contratos ACTIVE da empresa em faixas de até {@code partitionSize} contratos.
+     * A última faixa não tem limite superior: contratos ativados durante a execução entram nela.
+     */
+    public List<ContractRange> partition(Long companyId, int partitionSize) {
+        List<Long> ids = contractRepository.findIdsByCompanyIdAndStatus(companyId, Contract.ContractStatus.ACTIVE);
+        List<ContractRange> ranges = new ArrayList<>();
+        long afterId = 0L;
+        for (int end = partitionSize; end < ids.size(); end += partitionSize) {
+            long untilId = ids.get(end - 1);
+            ranges.add(new ContractRange(afterId, untilId));
+            afterId = untilId;
+        }
+        ranges.add(new ContractRange(afterId, Long.MAX_VALUE));
+        return ranges;
+    }
 
-        log.info("Contratos ACTIVE encontrados: {}", activeContracts.size());
+    /**
+     * Contadores acumulados ao longo dos blocos.
+     */
+    private static final class BillingTally {
+        int created;
+        int skipped;
+        int errors;
+        final List<String> errorDetails = new ArrayList<>();
 
-        int created = 0;
-        int skipped = 0;
-        int errors  = 0;
-        List<String> errorDetails = new ArrayList<>();
+        void error(Long companyId, BillingRow contract, Exception e) {
+            errors++;
+            errorDetails.add(String.format("Contrato #%d (cliente #%d): %s",
+                    contract.getId(), contract.getCustomerId(), e.getMessage()));
+            log.error("Erro ao gerar fatura para contrato #{} (empresa #{}): {}",
+                    contract.getId(), companyId, e.getMessage(), e);
+        }
+    }
 
-        for (Contract contract : activeContracts) {
+    private void billChunk(Long companyId, List<BillingRow> rows, Set<Long> invoiced,
+                           LocalDate referenceMonth, LocalDate today, BillingTally tally) {
+        List<BillingRow> pending = new ArrayList<>(rows.size());
+        List<Invoice> invoices = new ArrayList<>(rows.size());
+        for (BillingRow contract : rows) {
+            if (invoiced.contains(contract.getId())) {
+                tally.skipped++;
+                continue;
+            }
             try {
-                boolean wasCreated = invoiceCreator.createIfAbsent(contract, referenceMonth, today);
-                if (wasCreated) {
-                    created++;
-                } else {
-                    skipped++;
-                }
+                invoices.add(invoiceCreator.build(companyId, contract, referenceMonth, today));
+                pending.add(contract);
             } catch (Exception e) {
-                errors++;
-                String detail = String.format("Contrato #%d (cliente #%d): %s",
-                        contract.getId(), contract.getCustomerId(), e.getMessage());
-                errorDetails.add(detail);
-                log.error("Erro ao gerar fatura para contrato #{}: {}", contract.getId(), e.getMessage(), e);
+                tally.error(companyId, contract, e);
             }
         }
+        if (invoices.isEmpty()) {
+            return;
+        }
 
-        String referenceMonthLabel = referenceMonth.format(MONTH_FORMATTER);
-        log.info("========================================================");
-        log.info("GERAÇÃO CONCLUÍDA — empresa #{} mês={}  criadas={} ignoradas={} erros={}",
-                companyId, referenceMonthLabel, created, skipped, errors);
-        log.info("========================================================");
-
-        return new BillingResultDTO(companyId, referenceMonthLabel, created, skipped, errors, errorDetails);
+        try {
+            tally.created += invoiceCreator.createBatch(invoices);
+        } catch (Exception e) {
+            // Bloco revertido por inteiro: refaz contrato a contrato para isolar a falha
+            log.warn("Bloco de {} faturas rejeitado ({}); refazendo contrato a contrato",
+                    invoices.size(), e.getMessage());
+            for (BillingRow contract : pending) {
+                try {
+                    if (invoiceCreator.createIfAbsent(companyId, contract, referenceMonth, today)) {
+                        tally.created++;
+                    } else {
+                        tally.skipped++;
+                    }
+                } catch (DataIntegrityViolationException duplicate) {
+                    if (invoiceRepository.existsByContractIdAndReferenceMonth(contract.getId(), referenceMonth)) {
+                        // Outra execução faturou o contrato entre a verificação e o INSERT
+                        log.debug("Fatura do contrato #{} no mês {} criada por outra execução. Ignorando.",
+                                contract.getId(), referenceMonth);
+                        tally.skipped++;
+                    } else {
+                        tally.error(companyId, contract, duplicate);
+                    }
+                } catch (Exception single) {
+                    tally.error(companyId, contract, single);
+                }
+            }
+        }
     }
 }
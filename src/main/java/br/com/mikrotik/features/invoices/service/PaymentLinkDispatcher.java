@@ -0,0 +1,280 @@
+package br.com.mikrotik.features.invoices.service;
+
+import br.com.mikrotik.features.invoices.model.Invoice;
+import br.com.mikrotik.features.invoices.model.PaymentLinkQueue;
+import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
+import br.com.mikrotik.features.invoices.repository.PaymentLinkQueueRepository;
+import br.com.mikrotik.shared.infrastructure.exception.PaymentGatewayException;
+import br.com.mikrotik.shared.infrastructure.payment.PaymentGatewayPort;
+import br.com.mikrotik.shared.infrastructure.payment.PixChargeResult;
+import br.com.mikrotik.shared.util.RateLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Consome a fila de cobranças (payment_link_queue) e grava o link PIX das faturas.
+ *
+ * FLUXO:
+ *  1. BillingInvoiceCreator coloca as faturas na fila na mesma transação que as cria;
+ *     o InvoiceCreatedEvent (após commit) só acorda este dispatcher.
+ *  2. Cada ciclo lê um lote de entradas vencidas e as distribui no paymentLinkExecutor
+ *     (concorrência = abacatepay.dispatch.concurrency); todas as chamadas passam pelo
+ *     mesmo RateLimiter (abacatepay.dispatch.rate-per-second).
+ *  3. Por fatura: lease (claim) → chamada ao gateway fora de transação → link gravado
+ *     e entrada removida numa transação curta.
+ *  4. Falha retentável → nova tentativa com backoff exponencial e jitter (as faturas
+ *     recusadas juntas não voltam todas no mesmo instante). Recusa definitiva ou
+ *     máximo de tentativas → FAILED, fora do ciclo. Requisição enviada sem resposta
+ *     → RECONCILE: a cobrança pode existir no gateway e só é reenviada após conferência.
+ *  5. Varredura periódica recoloca na fila faturas PENDING sem cobrança (ex: criadas
+ *     com o gateway desabilitado ou por outro caminho).
+ *
+ * No dia de faturamento o backlog fica na tabela, não em memória: nada é descartado
+ * por fila cheia e um reinício retoma de onde parou. O ciclo roda na thread do
+ * paymentLinkDrainExecutor; o @Scheduled e o requestDrain() só o disparam.
+ */
+@Service
+@Slf4j
+public class PaymentLinkDispatcher {
+
+    private final PaymentLinkQueueRepository queueRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final PaymentGatewayPort paymentGateway;
+    private final Executor paymentLinkExecutor;
+    private final Executor drainExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final RateLimiter rateLimiter;
+
+    @Value("${abacatepay.dispatch.batch-size:200}")
+    private int batchSize;
+
+    @Value("${abacatepay.dispatch.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${abacatepay.dispatch.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${abacatepay.dispatch.retry-base-delay-ms:10000}")
+    private long retryBaseDelayMs;
+
+    @Value("${abacatepay.dispatch.retry-max-delay-ms:1800000}")
+    private long retryMaxDelayMs;
+
+    @Value("${abacatepay.dispatch.sweep-grace-ms:600000}")
+    private long sweepGraceMs;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicBoolean wakeScheduled = new AtomicBoolean();
+    private volatile boolean drainRequested;
+
+    public PaymentLinkDispatcher(PaymentLinkQueueRepository queueRepository,
+                                 InvoiceRepository invoiceRepository,
+                                 PaymentGatewayPort paymentGateway,
+                                 @Qualifier("paymentLinkExecutor") Executor paymentLinkExecutor,
+                                 @Qualifier("paymentLinkDrainExecutor") Executor drainExecutor,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${abacatepay.dispatch.rate-per-second:5}") double ratePerSecond) {
+        this.queueRepository = queueRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.paymentGateway = paymentGateway;
+        this.paymentLinkExecutor = paymentLinkExecutor;
+        this.drainExecutor = drainExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rateLimiter = new RateLimiter(ratePerSecond);
+    }
+
+    /**
+     * Antecipa o próximo ciclo (faturas recém-colocadas na fila). Chamadas repetidas
+     * durante um ciclo só marcam que há trabalho novo.
+     */
+    public void requestDrain() {
+        drainRequested = true;
+        if (draining.get() || !wakeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            drainExecutor.execute(() -> {
+                wakeScheduled.set(false);
+                drainLoop();
+            });
+        } catch (RejectedExecutionException e) {
+            wakeScheduled.set(false);
+            log.warn("Executor do ciclo de cobranças recusou o disparo; fila será processada na próxima varredura");
+        }
+    }
+
+    /**
+     * Varredura periódica: garante o processamento após reinícios e novas tentativas agendadas.
+     * Só dispara o ciclo — a thread do scheduler não espera o gateway.
+     */
+    @Scheduled(fixedDelayString = "${abacatepay.dispatch.poll-interval-ms:5000}")
+    public void drain() {
+        if (paymentGateway.isEnabled()) {
+            requestDrain();
+        }
+    }
+
+    private void drainLoop() {
+        if (!paymentGateway.isEnabled() || !draining.compareAndSet(false, true)) {
+            drainRequested = true;
+            return;
+        }
+        try {
+            int processed;
+            do {
+                drainRequested = false;
+                processed = drainOnce();
+            } while (processed >= batchSize || (drainRequested && processed > 0));
+        } catch (Exception e) {
+            log.error("❌ Erro ao processar fila de cobranças: {}", e.getMessage(), e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    /**
+     * Recoloca na fila faturas PENDING sem cobrança no gateway, criadas há mais de
+     * abacatepay.dispatch.sweep-grace-ms (as recentes ainda estão a caminho da fila).
+     */
+    @Scheduled(initialDelayString = "${abacatepay.dispatch.sweep-interval-ms:600000}",
+               fixedDelayString = "${abacatepay.dispatch.sweep-interval-ms:600000}")
+    public void sweepMissing() {
+        if (!paymentGateway.isEnabled()) {
+            return;
+        }
+        try {
+            int enqueued = queueRepository.enqueueMissing(LocalDateTime.now().minus(Duration.ofMillis(sweepGraceMs)));
+            if (enqueued > 0) {
+                log.info("💳 Varredura de cobranças: {} fatura(s) PENDING sem link recolocadas na fila", enqueued);
+                requestDrain();
+            }
+        } catch (Exception e) {
+            log.error("❌ Erro na varredura de faturas sem cobrança: {}", e.getMessage(), e);
+        }
+    }
+
+    private int drainOnce() {
+        List<PaymentLinkQueue> due = queueRepository.findDue(LocalDateTime.now(), PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        log.info("💳 Fila de cobranças: {} fatura(s) a processar", due.size());
+
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(due.size());
+        for (PaymentLinkQueue entry : due) {
+            try {
+                tasks.add(CompletableFuture.runAsync(() -> process(entry), paymentLinkExecutor));
+            } catch (RejectedExecutionException e) {
+                log.warn("Executor de cobranças cheio; {} fatura(s) ficam para o próximo ciclo",
+                        due.size() - tasks.size());
+                break;
+            }
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
+        return due.size();
+    }
+
+    private void process(PaymentLinkQueue entry) {
+        Long invoiceId = entry.getInvoiceId();
+        LocalDateTime now = LocalDateTime.now();
+        if (queueRepository.claim(invoiceId, now, now.plus(Duration.ofMillis(leaseMs))) == 0) {
+            return; // assumida por outra instância
+        }
+
+        int attempt = entry.getAttempts() + 1;
+        try {
+            Invoice invoice = invoiceRepository.findByIdWithCustomer(invoiceId).orElse(null);
+            if (invoice == null || invoice.getExternalId() != null || !isChargeable(invoice.getStatus())) {
+                log.debug("Fatura #{} não precisa mais de cobrança; removida da fila", invoiceId);
+                transactionTemplate.executeWithoutResult(tx -> queueRepository.deleteByInvoiceId(invoiceId));
+                return;
+            }
+
+            rateLimiter.acquire();
+            Optional<PixChargeResult> result = paymentGateway.generatePixCharge(invoice);
+            if (result.isEmpty()) {
+                // Integração desligada: não é falha da fatura, que continua PENDING na fila
+                postpone(entry, "Gateway não retornou cobrança (integração desabilitada?)");
+                return;
+            }
+
+            PixChargeResult charge = result.get();
+            transactionTemplate.executeWithoutResult(tx -> {
+                invoiceRepository.updatePaymentLink(invoiceId, charge.externalId(), charge.paymentLink(),
+                        LocalDateTime.now());
+                queueRepository.deleteByInvoiceId(invoiceId);
+            });
+            log.info("[AbacatePay] Link PIX gravado — fatura #{} externalId={}", invoiceId, charge.externalId());
+
+        } catch (PaymentGatewayException e) {
+            if (e.isOutcomeUnknown()) {
+                reconcile(invoiceId, attempt, e.getMessage());
+            } else {
+                fail(invoiceId, attempt, e.getMessage(), e.isRetryable());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // lease vence e a fatura volta ao ciclo
+        } catch (Exception e) {
+            fail(invoiceId, attempt, e.getMessage(), true);
+        }
+    }
+
+    private static boolean isChargeable(Invoice.InvoiceStatus status) {
+        return status == Invoice.InvoiceStatus.PENDING || status == Invoice.InvoiceStatus.OVERDUE;
+    }
+
+    /**
+     * Agenda nova tentativa com backoff exponencial e "equal jitter" (metade fixa, metade
+     * aleatória); recusa definitiva ou máximo de tentativas → FAILED.
+     */
+    private void fail(Long invoiceId, int attempt, String error, boolean retryable) {
+        if (!retryable || attempt >= maxAttempts) {
+            queueRepository.markFailed(invoiceId, attempt, error, LocalDateTime.now(), PaymentLinkQueue.Status.FAILED);
+            log.error("[AbacatePay] Cobrança da fatura #{} desistida após {} tentativa(s): {}",
+                    invoiceId, attempt, error);
+            return;
+        }
+        long delay = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempt - 1, 20));
+        long jittered = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        queueRepository.markFailed(invoiceId, attempt, error,
+                LocalDateTime.now().plus(Duration.ofMillis(jittered)), PaymentLinkQueue.Status.PENDING);
+        log.warn("[AbacatePay] Falha na cobrança da fatura #{} (tentativa {}): {} — nova tentativa em {}ms",
+                invoiceId, attempt, error, jittered);
+    }
+
+    /**
+     * Requisição enviada sem resposta: a cobrança pode ter sido criada no gateway.
+     * Fica RECONCILE, fora do ciclo, até alguém conferir INV-<id> e recolocar ou vincular.
+     */
+    private void reconcile(Long invoiceId, int attempt, String error) {
+        queueRepository.markFailed(invoiceId, attempt, error, LocalDateTime.now(), PaymentLinkQueue.Status.RECONCILE);
+        log.error("[AbacatePay] Cobrança da fatura #{} sem resposta após o envio — reconciliação manual (INV-{}): {}",
+                invoiceId, invoiceId, error);
+    }
+
+    /**
+     * Adia a entrada sem contar tentativa: continua PENDING e volta após retry-base-delay-ms.
+     */
+    private void postpone(PaymentLinkQueue entry, String reason) {
+        queueRepository.markFailed(entry.getInvoiceId(), entry.getAttempts(), reason,
+                LocalDateTime.now().plus(Duration.ofMillis(retryBaseDelayMs)), PaymentLinkQueue.Status.PENDING);
+        log.debug("[AbacatePay] Fatura #{} adiada: {}", entry.getInvoiceId(), reason);
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.mikrotik.features.network.drift.controller;
+
+import br.com.mikrotik.features.auth.model.ModuleAction;
+import br.com.mikrotik.features.auth.model.SystemModule;
+import br.com.mikrotik.shared.infrastructure.security.RequireModuleAccess;
+
+import br.com.mikrotik.features.network.drift.dto.RouterDriftCheckDTO;
+import br.com.mikrotik.features.network.drift.dto.RouterDriftDTO;
+import br.com.mikrotik.features.network.drift.model.RouterDrift;
+import br.com.mikrotik.features.network.drift.service.RouterDriftService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/router-drift")
+@RequiredArgsConstructor
+@Slf4j
+@SecurityRequirement(name = "Bearer Token")
+@Tag(name = "Drift Router x Banco", description = "Divergências entre os secrets nos routers e os usuários PPPoE no banco")
+public class RouterDriftController {
+
+    private final RouterDriftService driftService;
+
+    @GetMapping
+    @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.VIEW)
+    @Operation(
+        summary = "Listar divergências",
+        description = """
+            Divergências detectadas em segundo plano (um /ppp secret print por servidor, em rodízio):
+            - `PROFILE`           → perfil no router ≠ perfil do plano (ou BLOQUEADO para suspensos)
+            - `DISABLED`          → secret habilitado/desabilitado ao contrário do banco
+            - `PASSWORD`          → senha diferente (somente prefixos do SHA-256 são exibidos)
+            - `MISSING_ON_ROUTER` → usuário ativo no banco sem secret no router
+            - `MISSING_IN_DB`     → secret no router sem usuário no banco
+
+            Usuários com comando pendente no outbox não são comparados. Padrão: `status=OPEN`.
+            """
+    )
+    public ResponseEntity<Page<RouterDriftDTO>> list(@RequestParam(required = false) Long serverId,
+                                                     @RequestParam(required = false) RouterDrift.Status status,
+                                                     @PageableDefault(size = 50) Pageable pageable) {
+        return ResponseEntity.ok(driftService.list(serverId, status, pageable));
+    }
+
+    @PostMapping("/servers/{serverId}/check")
+    @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.EXECUTE)
+    @Operation(
+        summary = "Verificar drift de um servidor agora",
+        description = """
+            Lê o router uma vez e atualiza as divergências do servidor.
+            Com `heal=true`, perfil, flag disabled e senha divergentes são corrigidos no router
+            (um único lote). Secrets ausentes de um dos lados nunca são criados ou removidos.
+            """
+    )
+    public ResponseEntity<RouterDriftCheckDTO> check(@PathVariable Long serverId,
+                                                     @RequestParam(defaultValue = "false") boolean heal) {
+        log.info("POST /api/router-drift/servers/{}/check (heal: {})", serverId, heal);
+        return ResponseEntity.ok(driftService.checkNow(serverId, heal));
+    }
+}
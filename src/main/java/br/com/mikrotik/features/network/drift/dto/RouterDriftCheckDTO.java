@@ -0,0 +1,46 @@
+package br.com.mikrotik.features.network.drift.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Resultado de uma verificação de drift de um servidor")
+public class RouterDriftCheckDTO {
+
+    private Long serverId;
+    private String serverName;
+
+    @Schema(description = "Secrets lidos do router")
+    private int routerSecrets;
+
+    @Schema(description = "Usuários PPPoE do servidor no banco")
+    private int databaseUsers;
+
+    @Schema(description = "Usuários ignorados por terem intenção pendente no outbox")
+    private int skippedPending;
+
+    @Schema(description = "Divergências abertas após a verificação")
+    private int open;
+
+    @Schema(description = "Divergências novas nesta verificação")
+    private int detected;
+
+    @Schema(description = "Divergências que deixaram de existir")
+    private int resolved;
+
+    @Schema(description = "Divergências corrigidas no router nesta verificação")
+    private int healed;
+
+    @Schema(description = "Correções enviadas que falharam")
+    private int healFailed;
+
+    private LocalDateTime checkedAt;
+}
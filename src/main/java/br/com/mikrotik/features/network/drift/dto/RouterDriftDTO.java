@@ -0,0 +1,49 @@
+package br.com.mikrotik.features.network.drift.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Divergência entre o secret no router e o usuário PPPoE no banco")
+public class RouterDriftDTO {
+
+    @Schema(description = "ID da divergência", example = "15")
+    private Long id;
+
+    @Schema(description = "ID do servidor MikroTik", example = "1")
+    private Long serverId;
+
+    @Schema(description = "ID do usuário PPPoE (nulo se o secret só existe no router)", example = "320")
+    private Long pppoeUserId;
+
+    @Schema(description = "Username PPPoE", example = "elianabatista")
+    private String username;
+
+    @Schema(description = "Tipo da divergência", example = "PROFILE",
+            allowableValues = {"PROFILE", "DISABLED", "PASSWORD", "MISSING_ON_ROUTER", "MISSING_IN_DB"})
+    private String type;
+
+    @Schema(description = "Valor segundo o banco (PASSWORD: prefixo do SHA-256)", example = "PLANO-100M")
+    private String expectedValue;
+
+    @Schema(description = "Valor encontrado no router (PASSWORD: prefixo do SHA-256)", example = "PLANO-30M")
+    private String routerValue;
+
+    @Schema(description = "Situação", example = "OPEN", allowableValues = {"OPEN", "HEALED", "RESOLVED"})
+    private String status;
+
+    @Schema(description = "Falha da última correção automática")
+    private String lastError;
+
+    private LocalDateTime detectedAt;
+    private LocalDateTime lastSeenAt;
+    private LocalDateTime resolvedAt;
+}
@@ -0,0 +1,78 @@
+package br.com.mikrotik.features.network.drift.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Divergência entre o secret no router e o usuário PPPoE no banco.
+ *
+ * Mantida pelo detector de drift: cada verificação do servidor abre, atualiza ou
+ * resolve as linhas. Uma linha por (servidor, usuário, tipo) — a mesma divergência
+ * que volta a aparecer reabre a linha existente.
+ */
+@Entity
+@Table(name = "router_drift")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouterDrift {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "mikrotik_server_id", nullable = false)
+    private Long mikrotikServerId;
+
+    @Column(name = "pppoe_user_id")
+    private Long pppoeUserId;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "drift_type", nullable = false, length = 20)
+    private DriftType driftType;
+
+    @Column(name = "expected_value")
+    private String expectedValue;
+
+    @Column(name = "router_value")
+    private String routerValue;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.OPEN;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "detected_at", nullable = false)
+    private LocalDateTime detectedAt = LocalDateTime.now();
+
+    @Column(name = "last_seen_at", nullable = false)
+    private LocalDateTime lastSeenAt = LocalDateTime.now();
+
+    @Column(name = "resolved_at")
+    private LocalDateTime resolvedAt;
+
+    public enum DriftType {
+        PROFILE,            // perfil do secret ≠ perfil do plano (ou BLOQUEADO)
+        DISABLED,           // flag disabled do secret ≠ usuário ativo/inativo
+        PASSWORD,           // senha do secret ≠ senha do banco
+        MISSING_ON_ROUTER,  // usuário ativo no banco sem secret no router
+        MISSING_IN_DB       // secret no router sem usuário no banco
+    }
+
+    public enum Status {
+        OPEN,      // divergência presente na última verificação
+        HEALED,    // corrigida no router pelo detector
+        RESOLVED   // não apareceu mais (corrigida por fora ou pelo outbox)
+    }
+}
@@ -0,0 +1,21 @@
+package br.com.mikrotik.features.network.drift.repository;
+
+import br.com.mikrotik.features.network.drift.model.RouterDrift;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RouterDriftRepository extends JpaRepository<RouterDrift, Long> {
+
+    // Todas as linhas do servidor (uma consulta por verificação)
+    List<RouterDrift> findByMikrotikServerId(Long mikrotikServerId);
+
+    Page<RouterDrift> findByCompanyIdAndStatus(Long companyId, RouterDrift.Status status, Pageable pageable);
+
+    Page<RouterDrift> findByCompanyIdAndMikrotikServerIdAndStatus(Long companyId, Long mikrotikServerId,
+                                                                  RouterDrift.Status status, Pageable pageable);
+}
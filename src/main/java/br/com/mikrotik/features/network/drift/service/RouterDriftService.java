@@ -0,0 +1,442 @@
+package br.com.mikrotik.features.network.drift.service;
+
+import br.com.mikrotik.features.network.drift.dto.RouterDriftCheckDTO;
+import br.com.mikrotik.features.network.drift.dto.RouterDriftDTO;
+import br.com.mikrotik.features.network.drift.model.RouterDrift;
+import br.com.mikrotik.features.network.drift.model.RouterDrift.DriftType;
+import br.com.mikrotik.features.network.drift.repository.RouterDriftRepository;
+import br.com.mikrotik.features.network.outbox.repository.RouterCommandOutboxRepository;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
+import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository.DriftRow;
+import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
+import br.com.mikrotik.features.network.server.adapter.RouterOsBatchOperation;
+import br.com.mikrotik.features.network.server.adapter.RouterOsBatchResult;
+import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.server.repository.MikrotikServerRepository;
+import br.com.mikrotik.features.network.service.NetworkIntegrationService;
+import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import br.com.mikrotik.shared.util.CompanyContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detector de divergências entre os routers e o banco (drift).
+ *
+ * MOTIVAÇÃO:
+ * Secret editado no Winbox ou intenção do outbox abandonada após o máximo de tentativas
+ * deixam router e banco diferentes sem ninguém perceber até o cliente reclamar.
+ *
+ * FLUXO (por servidor):
+ * 1. Um único /ppp secret print e uma consulta de projeção em pppoe_users
+ * 2. Comparação em memória de perfil, flag disabled e SHA-256 da senha
+ *    (usuários com intenção pendente no outbox são ignorados: a divergência é esperada)
+ * 3. Com correção automática: um lote por router (executeBatch), limitado por execução
+ * 4. router_drift atualizada numa transação: novas → OPEN, corrigidas → HEALED,
+ *    desaparecidas → RESOLVED
+ *
+ * RITMO:
+ * Cada ciclo verifica no máximo N servidores, os verificados há mais tempo, e nenhum
+ * servidor é lido de novo antes do intervalo mínimo: o detector roda sem parar sem
+ * carregar os routers. Secrets que só existem no router nunca são removidos automaticamente.
+ */
+@Service
+@Slf4j
+public class RouterDriftService {
+
+    private static final int DIGEST_PREFIX = 12;
+
+    private final RouterDriftRepository repository;
+    private final MikrotikServerRepository serverRepository;
+    private final PppoeUserRepository pppoeUserRepository;
+    private final RouterCommandOutboxRepository outboxRepository;
+    private final MikrotikApiService mikrotikApiService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${mikrotik.drift.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mikrotik.drift.servers-per-tick:1}")
+    private int serversPerTick;
+
+    @Value("${mikrotik.drift.min-server-interval-ms:900000}")
+    private long minServerIntervalMs;
+
+    @Value("${mikrotik.drift.auto-heal:false}")
+    private boolean autoHeal;
+
+    @Value("${mikrotik.drift.max-heal-per-run:100}")
+    private int maxHealPerRun;
+
+    /** Última verificação de cada servidor (em memória: após reinício todos ficam vencidos). */
+    private final Map<Long, LocalDateTime> lastCheckedAt = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RouterDriftService(RouterDriftRepository repository,
+                              MikrotikServerRepository serverRepository,
+                              PppoeUserRepository pppoeUserRepository,
+                              RouterCommandOutboxRepository outboxRepository,
+                              MikrotikApiService mikrotikApiService,
+                              PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.serverRepository = serverRepository;
+        this.pppoeUserRepository = pppoeUserRepository;
+        this.outboxRepository = outboxRepository;
+        this.mikrotikApiService = mikrotikApiService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Divergência encontrada numa verificação.
+     *
+     * @param row usuário no banco (nulo para MISSING_IN_DB)
+     */
+    record Finding(String username, DriftRow row, DriftType type, String expected, String actual) {
+
+        String key() {
+            return key(username, type);
+        }
+
+        static String key(String username, DriftType type) {
+            return type.name() + ':' + username;
+        }
+    }
+
+    // ==================== AGENDAMENTO ====================
+
+    @Scheduled(initialDelayString = "${mikrotik.drift.initial-delay-ms:120000}",
+               fixedDelayString = "${mikrotik.drift.tick-ms:60000}")
+    public void checkDueServers() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LocalDateTime threshold = LocalDateTime.now().minus(Duration.ofMillis(minServerIntervalMs));
+            List<MikrotikServer> due = serverRepository.findByActiveTrue().stream()
+                    .filter(server -> {
+                        LocalDateTime last = lastCheckedAt.get(server.getId());
+                        return last == null || last.isBefore(threshold);
+                    })
+                    .sorted(Comparator.comparing(server -> lastCheckedAt.getOrDefault(server.getId(), LocalDateTime.MIN)))
+                    .limit(serversPerTick)
+                    .toList();
+
+            for (MikrotikServer server : due) {
+                try {
+                    check(server, autoHeal);
+                } catch (Exception e) {
+                    log.warn("⚠️ Verificação de drift do servidor {} falhou: {}", server.getName(), e.getMessage());
+                }
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // ==================== CONSULTA / EXECUÇÃO MANUAL ====================
+
+    @Transactional(readOnly = true)
+    public Page<RouterDriftDTO> list(Long serverId, RouterDrift.Status status, Pageable pageable) {
+        Long companyId = CompanyContextHolder.getCompanyId();
+        RouterDrift.Status effective = status != null ? status : RouterDrift.Status.OPEN;
+        Page<RouterDrift> page = serverId != null
+                ? repository.findByCompanyIdAndMikrotikServerIdAndStatus(companyId, serverId, effective, pageable)
+                : repository.findByCompanyIdAndStatus(companyId, effective, pageable);
+        return page.map(this::mapToDTO);
+    }
+
+    /**
+     * Verifica um servidor da empresa imediatamente (fora do ritmo do agendamento).
+     */
+    public RouterDriftCheckDTO checkNow(Long serverId, boolean heal) {
+        Long companyId = CompanyContextHolder.getCompanyId();
+        MikrotikServer server = serverRepository.findById(serverId)
+                .filter(candidate -> Objects.equals(companyId, candidate.getCompanyId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + serverId));
+        return check(server, heal);
+    }
+
+    // ==================== VERIFICAÇÃO ====================
+
+    RouterDriftCheckDTO check(MikrotikServer server, boolean heal) {
+        LocalDateTime now = LocalDateTime.now();
+        // Marcada antes da leitura: router inacessível também espera o intervalo mínimo
+        lastCheckedAt.put(server.getId(), now);
+
+        // 1. Leitura do router fora de transação
+        List<MikrotikPppoeUserDTO> secrets = mikrotikApiService.getPppoeUsersStructured(
+                server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword());
+        List<DriftRow> users = pppoeUserRepository.findDriftRows(server.getId());
+        Set<Long> pending = outboxRepository.findPendingPppoeUserIds(server.getId());
+
+        // 2. Comparação em memória
+        List<Finding> findings = compare(secrets, users, pending);
+
+        // 3. Correção opcional, um lote por router
+        Map<String, String> healErrors = new HashMap<>();
+        List<Finding> healed = heal ? heal(server, findings, healErrors) : List.of();
+
+        // 4. Estado em router_drift
+        RouterDriftCheckDTO result = transactionTemplate.execute(status ->
+                persist(server, findings, healed, healErrors, pending, now));
+        result.setRouterSecrets(secrets.size());
+        result.setDatabaseUsers(users.size());
+        result.setSkippedPending((int) users.stream().filter(user -> pending.contains(user.getId())).count());
+        result.setHealFailed(healErrors.size());
+
+        if (result.getDetected() > 0 || result.getHealed() > 0 || result.getResolved() > 0) {
+            log.info("🔎 Drift {}: {} abertas ({} novas, {} corrigidas, {} resolvidas)", server.getName(),
+                    result.getOpen(), result.getDetected(), result.getHealed(), result.getResolved());
+        } else {
+            log.debug("Drift {}: {} abertas, sem mudanças", server.getName(), result.getOpen());
+        }
+        return result;
+    }
+
+    static List<Finding> compare(List<MikrotikPppoeUserDTO> secrets, List<DriftRow> users, Set<Long> pending) {
+        Map<String, MikrotikPppoeUserDTO> routerByName = new HashMap<>();
+        for (MikrotikPppoeUserDTO secret : secrets) {
+            if (secret.getUsername() != null) {
+                routerByName.putIfAbsent(secret.getUsername(), secret);
+            }
+        }
+
+        List<Finding> findings = new ArrayList<>();
+        for (DriftRow user : users) {
+            MikrotikPppoeUserDTO secret = routerByName.remove(user.getUsername());
+            if (pending.contains(user.getId())) {
+                continue;
+            }
+            boolean active = !Boolean.FALSE.equals(user.getActive());
+            if (secret == null) {
+                // Usuário inativo pode ter sido removido do router (contrato cancelado)
+                if (active) {
+                    findings.add(new Finding(user.getUsername(), user, DriftType.MISSING_ON_ROUTER,
+                            expectedProfile(user), null));
+                }
+                continue;
+            }
+
+            String expectedProfile = expectedProfile(user);
+            if (!Objects.equals(expectedProfile, secret.getProfile())) {
+                findings.add(new Finding(user.getUsername(), user, DriftType.PROFILE, expectedProfile, secret.getProfile()));
+            }
+
+            boolean routerDisabled = Boolean.TRUE.equals(secret.getDisabled());
+            if (routerDisabled == active) {
+                findings.add(new Finding(user.getUsername(), user, DriftType.DISABLED,
+                        String.valueOf(!active), String.valueOf(routerDisabled)));
+            }
+
+            // Senha ausente na leitura = usuário da API sem permissão de leitura: não compara.
+            // Hash BCrypt legado no banco não é divergência: a sincronização grava a senha do router
+            if (secret.getPassword() != null && !PppoeUser.isLegacyPasswordHash(user.getPassword())) {
+                String expectedDigest = digest(user.getPassword());
+                String routerDigest = digest(secret.getPassword());
+                if (!expectedDigest.equals(routerDigest)) {
+                    findings.add(new Finding(user.getUsername(), user, DriftType.PASSWORD, expectedDigest, routerDigest));
+                }
+            }
+        }
+
+        // O que sobrou no router não existe no banco
+        routerByName.values().forEach(secret -> findings.add(new Finding(secret.getUsername(), null,
+                DriftType.MISSING_IN_DB, null, secret.getProfile())));
+        return findings;
+    }
+
+    /**
+     * Usuário bloqueado pelo outbox fica com status DISABLED e perfil BLOQUEADO no router;
+     * o perfil do plano continua gravado para o desbloqueio.
+     */
+    private static String expectedProfile(DriftRow user) {
+        return user.getStatus() == PppoeUser.UserStatus.DISABLED
+                ? NetworkIntegrationService.BLOCKED_PROFILE
+                : user.getProfileName();
+    }
+
+    /**
+     * Envia as correções num único lote. Ausências (MISSING_*) não são corrigidas:
+     * recriar ou remover secrets exige decisão do operador.
+     *
+     * @return divergências corrigidas
+     */
+    private List<Finding> heal(MikrotikServer server, List<Finding> findings, Map<String, String> errors) {
+        List<Finding> healable = new ArrayList<>();
+        List<RouterOsBatchOperation> operations = new ArrayList<>();
+        for (Finding finding : findings) {
+            if (healable.size() >= maxHealPerRun) {
+                break;
+            }
+            RouterOsBatchOperation operation = switch (finding.type()) {
+                case PROFILE -> RouterOsBatchOperation.changeProfile(finding.username(), finding.expected());
+                case DISABLED -> Boolean.parseBoolean(finding.expected())
+                        ? RouterOsBatchOperation.disableSecret(finding.username())
+                        : RouterOsBatchOperation.enableSecret(finding.username());
+                case PASSWORD -> PppoeUser.isLegacyPasswordHash(finding.row().getPassword()) ? null
+                        : RouterOsBatchOperation.changePassword(finding.username(), finding.row().getPassword());
+                case MISSING_ON_ROUTER, MISSING_IN_DB -> null;
+            };
+            if (operation != null) {
+                healable.add(finding);
+                operations.add(operation);
+            }
+        }
+        if (operations.isEmpty()) {
+            return List.of();
+        }
+
+        List<RouterOsBatchResult> results;
+        try {
+            results = mikrotikApiService.executeBatch(server.getIpAddress(), server.getApiPort(),
+                    server.getUsername(), server.getPassword(), operations);
+        } catch (Exception e) {
+            log.warn("⚠️ Correção de drift no router {} falhou: {}", server.getName(), e.getMessage());
+            healable.forEach(finding -> errors.put(finding.key(), e.getMessage()));
+            return List.of();
+        }
+
+        List<Finding> healed = new ArrayList<>();
+        for (int i = 0; i < healable.size(); i++) {
+            RouterOsBatchResult result = results.get(i);
+            if (result.isSuccess()) {
+                healed.add(healable.get(i));
+            } else {
+                errors.put(healable.get(i).key(), result.status() + ": " + result.message());
+            }
+        }
+        log.info("🩹 Drift {}: {} de {} correções aplicadas", server.getName(), healed.size(), healable.size());
+        return healed;
+    }
+
+    private RouterDriftCheckDTO persist(MikrotikServer server, List<Finding> findings, List<Finding> healed,
+                                        Map<String, String> healErrors, Set<Long> pending, LocalDateTime now) {
+        Map<String, RouterDrift> existing = new HashMap<>();
+        for (RouterDrift drift : repository.findByMikrotikServerId(server.getId())) {
+            existing.put(Finding.key(drift.getUsername(), drift.getDriftType()), drift);
+        }
+        Set<String> healedKeys = new HashSet<>();
+        healed.forEach(finding -> healedKeys.add(finding.key()));
+
+        int detected = 0;
+        int open = 0;
+        List<RouterDrift> changed = new ArrayList<>();
+        for (Finding finding : findings) {
+            RouterDrift drift = existing.remove(finding.key());
+            if (drift == null || drift.getStatus() != RouterDrift.Status.OPEN) {
+                if (drift == null) {
+                    drift = new RouterDrift();
+                    drift.setCompanyId(server.getCompanyId());
+                    drift.setMikrotikServerId(server.getId());
+                    drift.setUsername(finding.username());
+                    drift.setDriftType(finding.type());
+                }
+                drift.setDetectedAt(now);
+                drift.setResolvedAt(null);
+                detected++;
+            }
+            drift.setPppoeUserId(finding.row() != null ? finding.row().getId() : null);
+            drift.setExpectedValue(truncate(finding.expected()));
+            drift.setRouterValue(truncate(finding.actual()));
+            drift.setLastSeenAt(now);
+            drift.setLastError(healErrors.get(finding.key()));
+            if (healedKeys.contains(finding.key())) {
+                drift.setStatus(RouterDrift.Status.HEALED);
+                drift.setResolvedAt(now);
+            } else {
+                drift.setStatus(RouterDrift.Status.OPEN);
+                open++;
+            }
+            changed.add(drift);
+        }
+
+        // Abertas que não apareceram nesta leitura: corrigidas por fora (usuário com intenção em curso fica como está)
+        int resolved = 0;
+        for (RouterDrift drift : existing.values()) {
+            if (drift.getStatus() == RouterDrift.Status.OPEN
+                    && (drift.getPppoeUserId() == null || !pending.contains(drift.getPppoeUserId()))) {
+                drift.setStatus(RouterDrift.Status.RESOLVED);
+                drift.setResolvedAt(now);
+                changed.add(drift);
+                resolved++;
+            } else if (drift.getStatus() == RouterDrift.Status.OPEN) {
+                open++;
+            }
+        }
+        repository.saveAll(changed);
+
+        return RouterDriftCheckDTO.builder()
+                .serverId(server.getId())
+                .serverName(server.getName())
+                .open(open)
+                .detected(detected)
+                .resolved(resolved)
+                .healed(healed.size())
+                .checkedAt(now)
+                .build();
+    }
+
+    // ==================== AUXILIARES ====================
+
+    /**
+     * Prefixo do SHA-256: suficiente para comparar e nunca expõe a senha.
+     */
+    private static String digest(String password) {
+        if (password == null) {
+            return "";
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(password.getBytes(StandardCharsets.UTF_8)))
+                    .substring(0, DIGEST_PREFIX);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    private static String truncate(String value) {
+        return value != null && value.length() > 255 ? value.substring(0, 255) : value;
+    }
+
+    private RouterDriftDTO mapToDTO(RouterDrift drift) {
+        return RouterDriftDTO.builder()
+                .id(drift.getId())
+                .serverId(drift.getMikrotikServerId())
+                .pppoeUserId(drift.getPppoeUserId())
+                .username(drift.getUsername())
+                .type(drift.getDriftType().name())
+                .expectedValue(drift.getExpectedValue())
+                .routerValue(drift.getRouterValue())
+                .status(drift.getStatus().name())
+                .lastError(drift.getLastError())
+                .detectedAt(drift.getDetectedAt())
+                .lastSeenAt(drift.getLastSeenAt())
+                .resolvedAt(drift.getResolvedAt())
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package br.com.mikrotik.features.network.outbox.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Estado desejado pendente de um usuário PPPoE no router (outbox transacional).
+ *
+ * Uma linha por usuário: novas intenções sobrescrevem a anterior e incrementam
+ * a revisão. O dispatcher só remove a linha se a revisão aplicada ainda for a atual.
+ */
+@Entity
+@Table(name = "router_command_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouterCommandOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "pppoe_user_id", nullable = false, unique = true)
+    private Long pppoeUserId;
+
+    @Column(name = "mikrotik_server_id", nullable = false)
+    private Long mikrotikServerId;
+
+    @Column(name = "contract_id")
+    private Long contractId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "desired_state", nullable = false, length = 20)
+    private DesiredState desiredState;
+
+    @Column(name = "pppoe_profile_id")
+    private Long pppoeProfileId;
+
+    @Column(nullable = false)
+    private Long revision = 1L;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt = LocalDateTime.now();
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum DesiredState {
+        ACTIVE,   // perfil do plano aplicado
+        BLOCKED,  // perfil BLOQUEADO + sessão derrubada
+        DELETED   // sessão derrubada + secret removido
+    }
+
+    public enum Status {
+        PENDING,
+        FAILED    // máximo de tentativas atingido; aguarda intervenção ou nova intenção
+    }
+}
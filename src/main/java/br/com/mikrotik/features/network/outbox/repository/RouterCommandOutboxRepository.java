@@ -0,0 +1,125 @@
+package br.com.mikrotik.features.network.outbox.repository;
+
+import br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+@Repository
+public interface RouterCommandOutboxRepository extends JpaRepository<RouterCommandOutbox, Long> {
+
+    /**
+     * Grava (ou sobrescreve) a intenção do usuário numa única instrução.
+     * pppoe_profile_id nulo preserva o perfil já pendente (ex: troca de plano seguida de suspensão).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO router_command_outbox " +
+                   "(company_id, pppoe_user_id, mikrotik_server_id, contract_id, desired_state, pppoe_profile_id, " +
+                   " revision, status, attempts, next_attempt_at, created_at, updated_at) " +
+                   "VALUES (:companyId, :pppoeUserId, :serverId, :contractId, :desiredState, :profileId, " +
+                   " 1, 'PENDING', 0, NOW(), NOW(), NOW()) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   " mikrotik_server_id = VALUES(mikrotik_server_id), " +
+                   " contract_id = VALUES(contract_id), " +
+                   " desired_state = VALUES(desired_state), " +
+                   " pppoe_profile_id = COALESCE(VALUES(pppoe_profile_id), pppoe_profile_id), " +
+                   " revision = revision + 1, status = 'PENDING', attempts = 0, last_error = NULL, " +
+                   " next_attempt_at = NOW(), updated_at = NOW()",
+           nativeQuery = true)
+    int upsert(@Param("companyId") Long companyId,
+               @Param("pppoeUserId") Long pppoeUserId,
+               @Param("serverId") Long serverId,
+               @Param("contractId") Long contractId,
+               @Param("desiredState") String desiredState,
+               @Param("profileId") Long profileId);
+
+    /**
+     * Grava a mesma intenção para os usuários PPPoE de vários contratos numa única instrução
+     * (INSERT ... SELECT). next_attempt_at = :notBefore reserva as linhas para quem vai
+     * aplicá-las de imediato; a varredura só as assume depois desse instante.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO router_command_outbox " +
+                   "(company_id, pppoe_user_id, mikrotik_server_id, contract_id, desired_state, pppoe_profile_id, " +
+                   " revision, status, attempts, next_attempt_at, created_at, updated_at) " +
+                   "SELECT c.company_id, c.pppoe_user_id, u.mikrotik_server_id, c.id, :desiredState, NULL, " +
+                   " 1, 'PENDING', 0, :notBefore, NOW(), NOW() " +
+                   "FROM contracts c JOIN pppoe_users u ON u.id = c.pppoe_user_id " +
+                   "WHERE c.company_id = :companyId AND c.id IN (:contractIds) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   " mikrotik_server_id = VALUES(mikrotik_server_id), " +
+                   " contract_id = VALUES(contract_id), " +
+                   " desired_state = VALUES(desired_state), " +
+                   " revision = revision + 1, status = 'PENDING', attempts = 0, last_error = NULL, " +
+                   " next_attempt_at = VALUES(next_attempt_at), updated_at = NOW()",
+           nativeQuery = true)
+    int upsertForContracts(@Param("companyId") Long companyId,
+                           @Param("contractIds") Collection<Long> contractIds,
+                           @Param("desiredState") String desiredState,
+                           @Param("notBefore") LocalDateTime notBefore);
+
+    /**
+     * Registra o novo perfil do plano para os usuários PPPoE de todos os contratos do plano
+     * numa única instrução. Contrato suspenso continua BLOCKED (perfil aplicado no desbloqueio).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO router_command_outbox " +
+                   "(company_id, pppoe_user_id, mikrotik_server_id, contract_id, desired_state, pppoe_profile_id, " +
+                   " revision, status, attempts, next_attempt_at, created_at, updated_at) " +
+                   "SELECT c.company_id, c.pppoe_user_id, u.mikrotik_server_id, c.id, " +
+                   " CASE WHEN c.status = 'ACTIVE' THEN 'ACTIVE' ELSE 'BLOCKED' END, :profileId, " +
+                   " 1, 'PENDING', 0, NOW(), NOW(), NOW() " +
+                   "FROM contracts c JOIN pppoe_users u ON u.id = c.pppoe_user_id " +
+                   "WHERE c.company_id = :companyId AND c.service_plan_id = :servicePlanId " +
+                   "AND c.status IN ('ACTIVE', 'SUSPENDED_FINANCIAL', 'SUSPENDED_REQUEST') " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   " mikrotik_server_id = VALUES(mikrotik_server_id), " +
+                   " contract_id = VALUES(contract_id), " +
+                   " desired_state = VALUES(desired_state), " +
+                   " pppoe_profile_id = VALUES(pppoe_profile_id), " +
+                   " revision = revision + 1, status = 'PENDING', attempts = 0, last_error = NULL, " +
+                   " next_attempt_at = NOW(), updated_at = NOW()",
+           nativeQuery = true)
+    int upsertForServicePlan(@Param("companyId") Long companyId,
+                             @Param("servicePlanId") Long servicePlanId,
+                             @Param("profileId") Long profileId);
+
+    List<RouterCommandOutbox> findByPppoeUserIdIn(Collection<Long> pppoeUserIds);
+
+    @Query("SELECT o FROM RouterCommandOutbox o " +
+           "WHERE o.status = br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox.Status.PENDING " +
+           "AND o.nextAttemptAt <= :now ORDER BY o.nextAttemptAt, o.id")
+    List<RouterCommandOutbox> findDue(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Remove a intenção somente se nenhuma mais nova chegou enquanto era aplicada.
+     */
+    @Modifying
+    @Query("DELETE FROM RouterCommandOutbox o WHERE o.id = :id AND o.revision = :revision")
+    int deleteApplied(@Param("id") Long id, @Param("revision") Long revision);
+
+    @Modifying
+    @Query("UPDATE RouterCommandOutbox o SET o.attempts = o.attempts + 1, o.lastError = :error, " +
+           "o.nextAttemptAt = :nextAttemptAt, o.status = :status, o.updatedAt = CURRENT_TIMESTAMP " +
+           "WHERE o.id = :id AND o.revision = :revision")
+    int markFailed(@Param("id") Long id,
+                   @Param("revision") Long revision,
+                   @Param("error") String error,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("status") RouterCommandOutbox.Status status);
+
+    long countByStatus(RouterCommandOutbox.Status status);
+
+    // Usuários com intenção ainda em curso no servidor (divergência esperada, fora do detector de drift)
+    @Query("SELECT o.pppoeUserId FROM RouterCommandOutbox o WHERE o.mikrotikServerId = :serverId " +
+           "AND o.status = br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox.Status.PENDING")
+    Set<Long> findPendingPppoeUserIds(@Param("serverId") Long serverId);
+}
@@ -0,0 +1,283 @@
+package br.com.mikrotik.features.network.outbox.service;
+
+import br.com.mikrotik.features.contracts.model.Contract;
+import br.com.mikrotik.features.contracts.model.ServicePlan;
+import br.com.mikrotik.features.contracts.repository.ServicePlanRepository;
+import br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox;
+import br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox.DesiredState;
+import br.com.mikrotik.features.network.outbox.repository.RouterCommandOutboxRepository;
+import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
+import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeProfileRepository;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
+import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Outbox transacional de comandos para os routers.
+ *
+ * ESCRITA (dentro da transação do contrato):
+ * A mudança de status/plano grava o estado desejado do usuário PPPoE na mesma
+ * transação. Se a aplicação cair ou o executor estiver cheio, nada se perde:
+ * a linha continua lá até o dispatcher aplicá-la.
+ *
+ * COALESCÊNCIA:
+ * Uma linha por usuário. Suspender → ativar → suspender em sequência resulta em
+ * uma única intenção (BLOCKED) e um único conjunto de comandos no router.
+ *
+ * LEITURA (NetworkIntegrationService):
+ * O dispatcher busca as intenções vencidas, aplica em lote por router e chama
+ * {@link #markApplied} / {@link #markFailed} com a revisão que aplicou.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouterCommandOutboxService {
+
+    private final RouterCommandOutboxRepository repository;
+    private final PppoeUserRepository pppoeUserRepository;
+    private final PppoeProfileRepository pppoeProfileRepository;
+    private final ServicePlanRepository servicePlanRepository;
+
+    @Value("${mikrotik.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${mikrotik.outbox.retry-base-delay-ms:5000}")
+    private long retryBaseDelayMs;
+
+    @Value("${mikrotik.outbox.retry-max-delay-ms:600000}")
+    private long retryMaxDelayMs;
+
+    // ==================== ESCRITA (transação do chamador) ====================
+
+    /**
+     * Registra o estado desejado após mudança de status do contrato.
+     *
+     * @return true se a mudança exige ação no router
+     */
+    @Transactional
+    public boolean enqueueStatusChange(Contract contract, Contract.ContractStatus previousStatus,
+                                       Contract.ContractStatus newStatus) {
+        if (contract.getPppoeUserId() == null) {
+            return false;
+        }
+
+        DesiredState desiredState;
+        if (shouldBlockUser(previousStatus, newStatus)) {
+            desiredState = DesiredState.BLOCKED;
+        } else if (shouldUnblockUser(previousStatus, newStatus)) {
+            desiredState = DesiredState.ACTIVE;
+        } else if (shouldDeleteUser(newStatus)) {
+            desiredState = DesiredState.DELETED;
+        } else {
+            return false;
+        }
+
+        enqueue(contract, desiredState, null);
+        return true;
+    }
+
+    /**
+     * Registra o novo perfil após troca de plano. Contrato suspenso continua
+     * BLOQUEADO no router; o novo perfil é aplicado no desbloqueio.
+     *
+     * @return true se a mudança exige ação no router
+     */
+    @Transactional
+    public boolean enqueuePlanChange(Contract contract, Long newServicePlanId) {
+        if (contract.getPppoeUserId() == null || contract.getStatus() == Contract.ContractStatus.CANCELED) {
+            return false;
+        }
+
+        ServicePlan newPlan = servicePlanRepository.findByIdWithProfile(newServicePlanId)
+                .orElseThrow(() -> new ResourceNotFoundException("Plano de serviço não encontrado: " + newServicePlanId));
+        if (newPlan.getPppoeProfile() == null) {
+            throw new IllegalStateException(
+                    "Plano ID=" + newServicePlanId + " não possui perfil PPPoE configurado");
+        }
+
+        DesiredState desiredState = isSuspended(contract.getStatus()) ? DesiredState.BLOCKED : DesiredState.ACTIVE;
+        enqueue(contract, desiredState, newPlan.getPppoeProfile().getId());
+        return true;
+    }
+
+    /**
+     * Registra o novo perfil para todos os contratos do plano (perfil PPPoE do plano alterado).
+     *
+     * @return linhas gravadas/sobrescritas
+     */
+    @Transactional
+    public int enqueueServicePlanProfile(Long companyId, Long servicePlanId, Long profileId) {
+        int rows = repository.upsertForServicePlan(companyId, servicePlanId, profileId);
+        log.info("Perfil {} do plano {} registrado no outbox ({} linha(s))", profileId, servicePlanId, rows);
+        return rows;
+    }
+
+    /**
+     * Reconciliação após importação em lote: registra o estado desejado de um usuário
+     * cujo perfil no router diverge do contrato importado (usuário já carregado pelo chamador).
+     */
+    @Transactional
+    public void enqueueReconcile(Contract contract, PppoeUser pppoeUser, DesiredState desiredState, Long profileId) {
+        repository.upsert(contract.getCompanyId(), pppoeUser.getId(), pppoeUser.getMikrotikServer().getId(),
+                contract.getId(), desiredState.name(), profileId);
+        log.info("Reconciliação {} registrada no outbox: usuário PPPoE {} (contrato {})",
+                desiredState, pppoeUser.getUsername(), contract.getId());
+    }
+
+    /**
+     * Registra a mesma intenção para vários contratos numa única instrução (suspensão em lote).
+     * As linhas ficam reservadas até {@code notBefore}: o chamador as aplica logo após o commit
+     * ({@code NetworkIntegrationService.dispatchNow}); se não conseguir, a varredura assume depois.
+     *
+     * @return linhas gravadas/sobrescritas
+     */
+    @Transactional
+    public int enqueueBulk(Long companyId, Collection<Long> contractIds, DesiredState desiredState,
+                           LocalDateTime notBefore) {
+        if (contractIds.isEmpty()) {
+            return 0;
+        }
+        int rows = repository.upsertForContracts(companyId, contractIds, desiredState.name(), notBefore);
+        log.info("Intenção {} registrada no outbox para {} contrato(s) em lote", desiredState, contractIds.size());
+        return rows;
+    }
+
+    private void enqueue(Contract contract, DesiredState desiredState, Long profileId) {
+        PppoeUser pppoeUser = pppoeUserRepository.findById(contract.getPppoeUserId())
+                .orElseThrow(() -> new ResourceNotFoundException("Usuário PPPoE não encontrado: " + contract.getPppoeUserId()));
+
+        repository.upsert(contract.getCompanyId(), pppoeUser.getId(), pppoeUser.getMikrotikServer().getId(),
+                contract.getId(), desiredState.name(), profileId);
+        log.info("Intenção {} registrada no outbox: usuário PPPoE {} (contrato {})",
+                desiredState, pppoeUser.getUsername(), contract.getId());
+    }
+
+    // ==================== LEITURA / CONCLUSÃO (dispatcher) ====================
+
+    @Transactional(readOnly = true)
+    public List<RouterCommandOutbox> findDue(int limit) {
+        return repository.findDue(LocalDateTime.now(), PageRequest.of(0, limit));
+    }
+
+    @Transactional(readOnly = true)
+    public List<RouterCommandOutbox> findByPppoeUserIds(Collection<Long> pppoeUserIds) {
+        return pppoeUserIds.isEmpty() ? List.of() : repository.findByPppoeUserIdIn(pppoeUserIds);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<Long, PppoeProfile> findProfiles(List<Long> profileIds) {
+        return pppoeProfileRepository.findAllById(profileIds).stream()
+                .collect(Collectors.toMap(PppoeProfile::getId, Function.identity()));
+    }
+
+    /**
+     * Remove as intenções aplicadas e reflete o novo estado em pppoe_users.
+     * Intenções sobrescritas durante a aplicação permanecem para o próximo ciclo.
+     */
+    @Transactional
+    public int markApplied(List<RouterCommandOutbox> applied, Map<Long, PppoeProfile> profiles) {
+        List<RouterCommandOutbox> current = new ArrayList<>(applied.size());
+        for (RouterCommandOutbox intent : applied) {
+            if (repository.deleteApplied(intent.getId(), intent.getRevision()) == 1) {
+                current.add(intent);
+            }
+        }
+        if (current.isEmpty()) {
+            return 0;
+        }
+
+        Map<Long, PppoeUser> users = pppoeUserRepository.findAllById(
+                current.stream().map(RouterCommandOutbox::getPppoeUserId).toList()).stream()
+                .collect(Collectors.toMap(PppoeUser::getId, Function.identity()));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (RouterCommandOutbox intent : current) {
+            PppoeUser user = users.get(intent.getPppoeUserId());
+            if (user == null) {
+                continue;
+            }
+            switch (intent.getDesiredState()) {
+                case BLOCKED -> user.setStatus(PppoeUser.UserStatus.DISABLED);
+                case ACTIVE -> {
+                    if (user.getStatus() == PppoeUser.UserStatus.DISABLED) {
+                        user.setStatus(PppoeUser.UserStatus.OFFLINE);
+                    }
+                }
+                case DELETED -> {
+                    user.setActive(false);
+                    user.setStatus(PppoeUser.UserStatus.OFFLINE);
+                }
+            }
+            // Perfil do plano vale para ACTIVE e BLOCKED (restaurado no desbloqueio)
+            PppoeProfile profile = intent.getPppoeProfileId() != null ? profiles.get(intent.getPppoeProfileId()) : null;
+            if (profile != null && intent.getDesiredState() != DesiredState.DELETED) {
+                user.setProfile(profile);
+            }
+            user.setUpdatedAt(now);
+        }
+        pppoeUserRepository.saveAll(users.values());
+        return current.size();
+    }
+
+    /**
+     * Agenda nova tentativa com backoff exponencial; após o máximo de tentativas
+     * (ou falha permanente) a intenção fica FAILED até chegar uma nova.
+     */
+    @Transactional
+    public void markFailed(List<RouterCommandOutbox> failed, String error, boolean permanent) {
+        for (RouterCommandOutbox intent : failed) {
+            int attempts = intent.getAttempts() + 1;
+            boolean giveUp = permanent || attempts >= maxAttempts;
+            long delay = Math.min(retryMaxDelayMs, retryBaseDelayMs << Math.min(attempts - 1, 20));
+            repository.markFailed(intent.getId(), intent.getRevision(), truncate(error),
+                    LocalDateTime.now().plus(Duration.ofMillis(delay)),
+                    giveUp ? RouterCommandOutbox.Status.FAILED : RouterCommandOutbox.Status.PENDING);
+            if (giveUp) {
+                log.error("❌ Intenção {} do usuário PPPoE ID={} abandonada após {} tentativas: {}",
+                        intent.getDesiredState(), intent.getPppoeUserId(), attempts, error);
+            }
+        }
+    }
+
+    // ==================== REGRAS DE NEGÓCIO ====================
+
+    private boolean shouldBlockUser(Contract.ContractStatus previous, Contract.ContractStatus newStatus) {
+        return (previous == Contract.ContractStatus.ACTIVE || previous == Contract.ContractStatus.PENDING) &&
+               isSuspended(newStatus);
+    }
+
+    private boolean shouldUnblockUser(Contract.ContractStatus previous, Contract.ContractStatus newStatus) {
+        return isSuspended(previous) && newStatus == Contract.ContractStatus.ACTIVE;
+    }
+
+    private boolean shouldDeleteUser(Contract.ContractStatus newStatus) {
+        return newStatus == Contract.ContractStatus.CANCELED;
+    }
+
+    private boolean isSuspended(Contract.ContractStatus status) {
+        return status == Contract.ContractStatus.SUSPENDED_FINANCIAL ||
+               status == Contract.ContractStatus.SUSPENDED_REQUEST;
+    }
+
+    private String truncate(String error) {
+        if (error == null) {
+            return null;
+        }
+        return error.length() > 2000 ? error.substring(0, 2000) : error;
+    }
+}
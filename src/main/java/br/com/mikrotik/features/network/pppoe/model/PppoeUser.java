@@ -14,8 +14,11 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 public class PppoeUser {
+    // IDs alocados em blocos (id_generator): permite INSERT em lote via JDBC batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pppoe_users_id")
+    @TableGenerator(name = "pppoe_users_id", table = "id_generator", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "pppoe_users", allocationSize = 50)
     private Long id;
 
     @Column(name = "company_id", nullable = false)
@@ -72,4 +75,12 @@ public class PppoeUser {
         OFFLINE,
         DISABLED
     }
+
+    /**
+     * Senha legada criptografada (BCrypt): não é a senha real do router e é substituída
+     * pela do MikroTik na próxima sincronização — nunca deve ser enviada ao router.
+     */
+    public static boolean isLegacyPasswordHash(String password) {
+        return password != null && (password.startsWith("$2a$") || password.startsWith("$2b$"));
+    }
 }
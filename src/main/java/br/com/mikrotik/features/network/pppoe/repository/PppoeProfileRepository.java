@@ -6,6 +6,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +14,7 @@ import java.util.Optional;
 public interface PppoeProfileRepository extends JpaRepository<PppoeProfile, Long> {
     Optional<PppoeProfile> findByNameAndMikrotikServer(String name, MikrotikServer server);
     List<PppoeProfile> findByMikrotikServer(MikrotikServer server);
+    List<PppoeProfile> findByMikrotikServerIdAndNameIn(Long mikrotikServerId, Collection<String> names);
     Page<PppoeProfile> findByMikrotikServer(MikrotikServer server, Pageable pageable);
     List<PppoeProfile> findByActiveAndMikrotikServer(Boolean active, MikrotikServer server);
 }
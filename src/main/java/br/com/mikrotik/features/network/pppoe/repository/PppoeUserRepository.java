@@ -2,12 +2,19 @@ package br.com.mikrotik.features.network.pppoe.repository;
 
 import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PppoeUserRepository extends JpaRepository<PppoeUser, Long> {
@@ -16,6 +23,7 @@ public interface PppoeUserRepository extends JpaRepository<PppoeUser, Long> {
     Optional<PppoeUser> findByUsernameAndMikrotikServerId(String username, Long mikrotikServerId);
 
     List<PppoeUser> findByMikrotikServer(MikrotikServer server);
+    List<PppoeUser> findByMikrotikServerIdAndUsernameIn(Long mikrotikServerId, Collection<String> usernames);
     Page<PppoeUser> findByMikrotikServer(MikrotikServer server, Pageable pageable);
 
     List<PppoeUser> findByActiveAndMikrotikServer(Boolean active, MikrotikServer server);
@@ -41,6 +49,41 @@ public interface PppoeUserRepository extends JpaRepository<PppoeUser, Long> {
             Long companyId2, Long profileId2, String comment,
             Pageable pageable);
 
+    /**
+     * Linhas da pré-visualização de parsing, lidas em streaming (sem entidades no contexto).
+     * Fetch size MIN_VALUE: o Connector/J entrega linha a linha em vez de carregar o result set
+     * inteiro. Enquanto o stream estiver aberto a conexão não aceita outras consultas.
+     */
+    @Query("SELECT u.id AS id, u.username AS username, u.comment AS comment, p.name AS profileName " +
+           "FROM PppoeUser u JOIN u.profile p " +
+           "WHERE u.companyId = :companyId AND u.mikrotikServer.id = :serverId ORDER BY u.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    Stream<PreviewRow> streamPreviewRows(@Param("companyId") Long companyId, @Param("serverId") Long serverId);
+
+    interface PreviewRow {
+        Long getId();
+        String getUsername();
+        String getComment();
+        String getProfileName();
+    }
+
+    /**
+     * Estado esperado no router de cada usuário do servidor (detector de drift, sem entidades).
+     */
+    @Query("SELECT u.id AS id, u.username AS username, u.password AS password, u.active AS active, " +
+           "u.status AS status, p.name AS profileName " +
+           "FROM PppoeUser u JOIN u.profile p WHERE u.mikrotikServer.id = :serverId")
+    List<DriftRow> findDriftRows(@Param("serverId") Long serverId);
+
+    interface DriftRow {
+        Long getId();
+        String getUsername();
+        String getPassword();
+        Boolean getActive();
+        PppoeUser.UserStatus getStatus();
+        String getProfileName();
+    }
+
     // Contadores
     Long countByActiveTrue();
     Long countByCompanyId(Long companyId);
@@ -9,6 +9,7 @@ import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.server.service.ActiveSessionMonitor;
 import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import lombok.RequiredArgsConstructor;
@@ -36,6 +37,7 @@ public class ContractMonitoringService {
     private final CustomerRepository customerRepository;
     private final PppoeUserRepository pppoeUserRepository;
     private final MikrotikApiService mikrotikApiService;
+    private final ActiveSessionMonitor activeSessionMonitor;
 
     /**
      * Consulta a sessão PPPoE ativa de um contrato diretamente no Mikrotik.
@@ -87,11 +89,13 @@ public class ContractMonitoringService {
         String serverUser = server.getUsername();
         String serverPass = server.getPassword();
 
-        // ⚠️ Chamada ao Mikrotik FORA do escopo transacional (readOnly já encerrou acima).
+        // Cache do /ppp/active/listen sincronizado: resposta em memória, sem ir ao router.
+        // Caso contrário, consulta o Mikrotik FORA do escopo transacional (readOnly já encerrou acima).
         // Segue a Regra de Ouro: nenhuma chamada de rede dentro de @Transactional aberta.
-        Map<String, String> session = mikrotikApiService.getActivePppoeSessionByUsername(
-                serverIp, serverPort, serverUser, serverPass, pppoeUsername
-        );
+        Map<String, String> session = activeSessionMonitor.isLive(server.getId())
+                ? activeSessionMonitor.getSession(server.getId(), pppoeUsername)
+                : mikrotikApiService.getActivePppoeSessionByUsername(
+                        serverIp, serverPort, serverUser, serverPass, pppoeUsername);
 
         if (session == null || session.isEmpty()) {
             log.debug("Sem sessão ativa no Mikrotik para contrato={} username={}", contractId, pppoeUsername);
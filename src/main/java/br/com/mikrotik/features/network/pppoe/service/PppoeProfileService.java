@@ -177,24 +177,44 @@ public class PppoeProfileService {
 
     @Transactional
     public SyncResultDTO syncProfilesFromMikrotik(Long serverId) {
-        SyncResultDTO result = new SyncResultDTO();
-
-        // Buscar servidor
         MikrotikServer server = serverRepository.findById(serverId)
                 .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + serverId));
 
-        log.info("Iniciando sincronização de profiles do servidor {} (ID: {})", server.getName(), serverId);
-
+        List<MikrotikPppoeProfileDTO> mikrotikProfiles;
         try {
             // Buscar profiles do Mikrotik via API (✅ Comentários completos!)
             log.info("Usando MikrotikApiService para sincronização via porta API: {}", server.getApiPort());
-            List<MikrotikPppoeProfileDTO> mikrotikProfiles = apiService.getPppoeProfilesStructured(
+            mikrotikProfiles = apiService.getPppoeProfilesStructured(
                     server.getIpAddress(),
                     server.getApiPort(),
                     server.getUsername(),
                     server.getPassword()
             );
+        } catch (Exception e) {
+            log.error("Erro ao buscar profiles do Mikrotik: {}", e.getMessage(), e);
+            SyncResultDTO result = new SyncResultDTO();
+            result.getErrorMessages().add("Erro ao buscar profiles do Mikrotik: " + e.getMessage());
+            return result;
+        }
+
+        return syncProfilesFromMikrotik(serverId, mikrotikProfiles);
+    }
 
+    /**
+     * Sincroniza a partir de profiles já lidos do router. O FullSyncService reaproveita
+     * a sua leitura e, no modo incremental, envia apenas os profiles alterados.
+     */
+    @Transactional
+    public SyncResultDTO syncProfilesFromMikrotik(Long serverId, List<MikrotikPppoeProfileDTO> mikrotikProfiles) {
+        SyncResultDTO result = new SyncResultDTO();
+
+        // Buscar servidor
+        MikrotikServer server = serverRepository.findById(serverId)
+                .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + serverId));
+
+        log.info("Iniciando sincronização de profiles do servidor {} (ID: {})", server.getName(), serverId);
+
+        try {
             result.setTotalMikrotikUsers(mikrotikProfiles.size()); // Reutilizando campo do DTO
 
             for (MikrotikPppoeProfileDTO mikrotikProfile : mikrotikProfiles) {
@@ -268,8 +288,8 @@ public class PppoeProfileService {
                     result.getSkippedUsers(), result.getFailedUsers());
 
         } catch (Exception e) {
-            log.error("Erro ao buscar profiles do Mikrotik: {}", e.getMessage(), e);
-            result.getErrorMessages().add("Erro ao buscar profiles do Mikrotik: " + e.getMessage());
+            log.error("Erro ao sincronizar profiles do Mikrotik: {}", e.getMessage(), e);
+            result.getErrorMessages().add("Erro ao sincronizar profiles do Mikrotik: " + e.getMessage());
         }
 
         return result;
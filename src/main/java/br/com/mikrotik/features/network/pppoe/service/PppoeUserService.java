@@ -22,8 +22,15 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +42,9 @@ public class PppoeUserService {
     private final PppoeProfileRepository profileRepository;
     private final MikrotikApiService apiService; // API service for better performance
 
+    /** Até este tamanho, a sincronização consulta só os usernames recebidos (IN); acima, o servidor inteiro. */
+    private static final int USERNAME_LOOKUP_LIMIT = 1000;
+
     /**
      * Buscar todos os usuários PPPoE da empresa
      */
@@ -298,6 +308,43 @@ public class PppoeUserService {
 
     @Transactional
     public SyncResultDTO syncUsersFromMikrotik(Long serverId, Long forceProfileId) {
+        MikrotikServer server = serverRepository.findById(serverId)
+                .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + serverId));
+
+        List<MikrotikPppoeUserDTO> mikrotikUsers;
+        try {
+            // Buscar usuários do Mikrotik via API (✅ Comentários completos!)
+            log.info("Usando MikrotikApiService para sincronização via porta API: {}", server.getApiPort());
+            mikrotikUsers = apiService.getPppoeUsersStructured(
+                    server.getIpAddress(),
+                    server.getApiPort(),
+                    server.getUsername(),
+                    server.getPassword()
+            );
+        } catch (Exception e) {
+            log.error("Erro ao buscar usuários do Mikrotik: {}", e.getMessage(), e);
+            SyncResultDTO result = new SyncResultDTO();
+            result.getErrorMessages().add("Erro ao buscar usuários do Mikrotik: " + e.getMessage());
+            return result;
+        }
+
+        return syncUsersFromMikrotik(serverId, forceProfileId, mikrotikUsers);
+    }
+
+    /**
+     * Sincroniza a partir de secrets já lidos do router. O FullSyncService reaproveita
+     * a sua leitura e, no modo incremental, envia apenas os secrets alterados.
+     *
+     * OPERAÇÃO EM CONJUNTO (sem consultas por secret):
+     * 1. Usuários e perfis existentes carregados uma vez em mapas por nome
+     *    (lotes pequenos consultam só os usernames recebidos; lotes grandes, o servidor inteiro)
+     * 2. Inserts e trocas de senha calculados em memória
+     * 3. Novos usuários gravados com saveAll (IDs de id_generator → JDBC batch)
+     * 4. Trocas de senha aplicadas no mesmo flush: UPDATEs idênticos agrupados em JDBC batch
+     */
+    @Transactional
+    public SyncResultDTO syncUsersFromMikrotik(Long serverId, Long forceProfileId,
+                                               List<MikrotikPppoeUserDTO> mikrotikUsers) {
         SyncResultDTO result = new SyncResultDTO();
 
         // Buscar servidor
@@ -314,149 +361,152 @@ public class PppoeUserService {
             log.info("Sincronização mantendo perfis originais do MikroTik");
         }
 
-        log.info("Iniciando sincronização de usuários do servidor {} (ID: {})", server.getName(), serverId);
-
-        try {
-            // Buscar usuários do Mikrotik via API (✅ Comentários completos!)
-            log.info("Usando MikrotikApiService para sincronização via porta API: {}", server.getApiPort());
-            List<MikrotikPppoeUserDTO> mikrotikUsers = apiService.getPppoeUsersStructured(
-                    server.getIpAddress(),
-                    server.getApiPort(),
-                    server.getUsername(),
-                    server.getPassword()
-            );
-
-            result.setTotalMikrotikUsers(mikrotikUsers.size());
+        log.info("Iniciando sincronização de {} usuários do servidor {} (ID: {})",
+                mikrotikUsers.size(), server.getName(), serverId);
+
+        result.setTotalMikrotikUsers(mikrotikUsers.size());
+
+        Map<String, PppoeUser> existingUsers = loadExistingUsers(server, mikrotikUsers);
+        Map<String, PppoeProfile> profilesByName = forceProfile != null ? Map.of()
+                : profileRepository.findByMikrotikServer(server).stream()
+                        .collect(Collectors.toMap(PppoeProfile::getName, Function.identity(), (a, b) -> a));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<PppoeUser> newUsers = new ArrayList<>();
+        int passwordUpdates = 0;
+        Set<String> seen = new HashSet<>();
+
+        for (MikrotikPppoeUserDTO mikrotikUser : mikrotikUsers) {
+            String username = mikrotikUser.getUsername();
+            if (username == null || username.isBlank() || !seen.add(usernameKey(username))) {
+                result.setFailedUsers(result.getFailedUsers() + 1);
+                result.getErrorMessages().add(username == null || username.isBlank()
+                        ? "Secret sem nome ignorado"
+                        : "Secret duplicado no router ignorado: " + username);
+                continue;
+            }
 
-            for (MikrotikPppoeUserDTO mikrotikUser : mikrotikUsers) {
-                try {
-                    // Verificar se usuário já existe no banco
-                    Optional<PppoeUser> existingUserOpt = repository.findByUsernameAndMikrotikServer(
-                            mikrotikUser.getUsername(),
-                            server
-                    );
-
-                    if (existingUserOpt.isPresent()) {
-                        // Usuário já existe - ATUALIZAR SENHA do Mikrotik
-                        PppoeUser existingUser = existingUserOpt.get();
-
-                        String mikrotikPassword = mikrotikUser.getPassword() != null ?
-                                mikrotikUser.getPassword() : "synced123";
-
-                        // Verificar se senha está criptografada (BCrypt) e precisa ser atualizada
-                        boolean needsPasswordUpdate = existingUser.getPassword() == null ||
-                                                     existingUser.getPassword().isEmpty() ||
-                                                     existingUser.getPassword().startsWith("$2a$") ||
-                                                     existingUser.getPassword().startsWith("$2b$");
-
-                        if (needsPasswordUpdate || !existingUser.getPassword().equals(mikrotikPassword)) {
-                            // Atualizar senha (em texto plano do Mikrotik)
-                            existingUser.setPassword(mikrotikPassword);
-                            existingUser.setUpdatedAt(LocalDateTime.now());
-                            repository.save(existingUser);
-
-                            result.setSkippedUsers(result.getSkippedUsers() + 1);
-                            result.getSkippedUsernames().add(mikrotikUser.getUsername() + " (senha atualizada)");
-                            log.info("✅ Usuário {} - senha sincronizada do Mikrotik: {}",
-                                    mikrotikUser.getUsername(), mikrotikPassword);
-                        } else {
-                            result.setSkippedUsers(result.getSkippedUsers() + 1);
-                            result.getSkippedUsernames().add(mikrotikUser.getUsername());
-                            log.debug("Usuário {} já existe com senha correta, pulando", mikrotikUser.getUsername());
-                        }
-                        continue;
-                    }
-
-                    // Criar novo usuário no banco
-                    PppoeUser newUser = new PppoeUser();
-                    newUser.setCompanyId(server.getCompanyId());
-                    newUser.setUsername(mikrotikUser.getUsername());
-
-                    // Se a senha estiver disponível, usar; senão, usar padrão
-                    // Armazenar em texto plano (técnicos precisam visualizar)
-                    String password = mikrotikUser.getPassword() != null ?
-                            mikrotikUser.getPassword() : "synced123";
-                    newUser.setPassword(password);
-
-                    // Email padrão baseado no username
-                    newUser.setEmail(mikrotikUser.getUsername() + "@synced.local");
-
-                    // Comentário
-                    String comment = mikrotikUser.getComment() != null ?
-                            mikrotikUser.getComment() : "Sincronizado do Mikrotik";
-                    newUser.setComment(comment);
-
-                    // Status ativo
-                    newUser.setActive(mikrotikUser.getDisabled() == null || !mikrotikUser.getDisabled());
-
-                    // Determinar qual perfil usar
-                    PppoeProfile profileToUse;
-
-                    if (forceProfile != null) {
-                        // Se forceProfileId foi informado, usar esse perfil para todos
-                        profileToUse = forceProfile;
-                    } else {
-                        // Buscar perfil pelo nome do MikroTik
-                        if (mikrotikUser.getProfile() != null) {
-                            Optional<PppoeProfile> foundProfile = profileRepository
-                                    .findByNameAndMikrotikServer(mikrotikUser.getProfile(), server);
-                            if (foundProfile.isPresent()) {
-                                profileToUse = foundProfile.get();
-                            } else {
-                                // Perfil não encontrado no banco
-                                result.setFailedUsers(result.getFailedUsers() + 1);
-                                String errorMsg = String.format("Perfil '%s' do usuário '%s' não encontrado no banco. " +
-                                        "Sincronize os perfis primeiro ou use forceProfileId.",
-                                        mikrotikUser.getProfile(), mikrotikUser.getUsername());
-                                result.getErrorMessages().add(errorMsg);
-                                log.warn(errorMsg);
-                                continue;
-                            }
-                        } else {
-                            // Usuário do MikroTik sem perfil
-                            result.setFailedUsers(result.getFailedUsers() + 1);
-                            String errorMsg = String.format("Usuário '%s' não possui perfil no MikroTik. " +
-                                    "Use forceProfileId para definir um perfil padrão.",
-                                    mikrotikUser.getUsername());
-                            result.getErrorMessages().add(errorMsg);
-                            log.warn(errorMsg);
-                            continue;
-                        }
-                    }
-
-                    newUser.setProfile(profileToUse);
-                    newUser.setMikrotikServer(server);
-                    newUser.setCreatedAt(LocalDateTime.now());
-                    newUser.setUpdatedAt(LocalDateTime.now());
-
-                    repository.save(newUser);
-
-                    result.setSyncedUsers(result.getSyncedUsers() + 1);
-                    result.getSyncedUsernames().add(mikrotikUser.getUsername());
-                    log.info("Usuário {} sincronizado com perfil {}",
-                            mikrotikUser.getUsername(), profileToUse.getName());
+            // Se a senha estiver disponível, usar; senão, usar padrão
+            // Armazenar em texto plano (técnicos precisam visualizar)
+            String mikrotikPassword = mikrotikUser.getPassword() != null ?
+                    mikrotikUser.getPassword() : "synced123";
+
+            PppoeUser existingUser = existingUsers.get(usernameKey(username));
+            if (existingUser != null) {
+                // Usuário já existe - ATUALIZAR SENHA do Mikrotik
+                if (needsPasswordUpdate(existingUser, mikrotikPassword)) {
+                    // Entidade gerenciada: o UPDATE sai no flush, em lote com os demais
+                    existingUser.setPassword(mikrotikPassword);
+                    existingUser.setUpdatedAt(now);
+                    passwordUpdates++;
+
+                    result.setSkippedUsers(result.getSkippedUsers() + 1);
+                    result.getSkippedUsernames().add(username + " (senha atualizada)");
+                    log.debug("Usuário {} - senha sincronizada do Mikrotik", username);
+                } else {
+                    result.setSkippedUsers(result.getSkippedUsers() + 1);
+                    result.getSkippedUsernames().add(username);
+                    log.debug("Usuário {} já existe com senha correta, pulando", username);
+                }
+                continue;
+            }
 
-                } catch (Exception e) {
+            // Determinar qual perfil usar
+            PppoeProfile profileToUse = forceProfile;
+            if (profileToUse == null) {
+                if (mikrotikUser.getProfile() == null) {
+                    // Usuário do MikroTik sem perfil
                     result.setFailedUsers(result.getFailedUsers() + 1);
-                    String errorMsg = String.format("Erro ao sincronizar %s: %s",
-                            mikrotikUser.getUsername(), e.getMessage());
+                    String errorMsg = String.format("Usuário '%s' não possui perfil no MikroTik. " +
+                            "Use forceProfileId para definir um perfil padrão.", username);
                     result.getErrorMessages().add(errorMsg);
-                    log.error(errorMsg, e);
+                    log.warn(errorMsg);
+                    continue;
+                }
+                profileToUse = profilesByName.get(mikrotikUser.getProfile());
+                if (profileToUse == null) {
+                    // Perfil não encontrado no banco
+                    result.setFailedUsers(result.getFailedUsers() + 1);
+                    String errorMsg = String.format("Perfil '%s' do usuário '%s' não encontrado no banco. " +
+                            "Sincronize os perfis primeiro ou use forceProfileId.",
+                            mikrotikUser.getProfile(), username);
+                    result.getErrorMessages().add(errorMsg);
+                    log.warn(errorMsg);
+                    continue;
                 }
             }
 
-            log.info("Sincronização concluída. Total: {}, Sincronizados: {}, Pulados: {}, Falhas: {}",
-                    result.getTotalMikrotikUsers(), result.getSyncedUsers(),
-                    result.getSkippedUsers(), result.getFailedUsers());
-
-        } catch (Exception e) {
-            log.error("Erro ao buscar usuários do Mikrotik: {}", e.getMessage(), e);
-            result.getErrorMessages().add("Erro ao buscar usuários do Mikrotik: " + e.getMessage());
+            // Criar novo usuário no banco
+            PppoeUser newUser = new PppoeUser();
+            newUser.setCompanyId(server.getCompanyId());
+            newUser.setUsername(username);
+            newUser.setPassword(mikrotikPassword);
+            // Email padrão baseado no username
+            newUser.setEmail(username + "@synced.local");
+            newUser.setComment(mikrotikUser.getComment() != null ?
+                    mikrotikUser.getComment() : "Sincronizado do Mikrotik");
+            newUser.setActive(mikrotikUser.getDisabled() == null || !mikrotikUser.getDisabled());
+            newUser.setProfile(profileToUse);
+            newUser.setMikrotikServer(server);
+            newUser.setCreatedAt(now);
+            newUser.setUpdatedAt(now);
+            newUsers.add(newUser);
+
+            result.setSyncedUsers(result.getSyncedUsers() + 1);
+            result.getSyncedUsernames().add(username);
         }
 
+        // Inserts e UPDATEs de senha em JDBC batch; flush aqui para que erros de
+        // constraint apareçam nesta fase (o lote falha por inteiro e a transação é revertida)
+        repository.saveAll(newUsers);
+        repository.flush();
+
+        log.info("Sincronização concluída. Total: {}, Criados: {}, Senhas atualizadas: {}, Pulados: {}, Falhas: {}",
+                result.getTotalMikrotikUsers(), newUsers.size(), passwordUpdates,
+                result.getSkippedUsers(), result.getFailedUsers());
+
         return result;
     }
 
+    /**
+     * Usuários do servidor já cadastrados, por username normalizado. Lotes pequenos (blocos dos jobs
+     * assíncronos, modo incremental) consultam só os nomes recebidos.
+     */
+    private Map<String, PppoeUser> loadExistingUsers(MikrotikServer server, List<MikrotikPppoeUserDTO> mikrotikUsers) {
+        List<PppoeUser> users;
+        if (mikrotikUsers.size() <= USERNAME_LOOKUP_LIMIT) {
+            List<String> usernames = mikrotikUsers.stream()
+                    .map(MikrotikPppoeUserDTO::getUsername)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .toList();
+            users = usernames.isEmpty() ? List.of()
+                    : repository.findByMikrotikServerIdAndUsernameIn(server.getId(), usernames);
+        } else {
+            users = repository.findByMikrotikServer(server);
+        }
+        return users.stream().collect(Collectors.toMap(
+                user -> usernameKey(user.getUsername()), Function.identity(), (a, b) -> a));
+    }
+
+    /**
+     * Chave de comparação de username: a coluna usa collation case-insensitive,
+     * então "Joao" e "joao" são o mesmo registro para o banco.
+     */
+    private static String usernameKey(String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Senha vazia, criptografada (BCrypt legado) ou diferente da do router.
+     */
+    private static boolean needsPasswordUpdate(PppoeUser user, String mikrotikPassword) {
+        String current = user.getPassword();
+        return current == null || current.isEmpty()
+                || PppoeUser.isLegacyPasswordHash(current)
+                || !current.equals(mikrotikPassword);
+    }
+
     private PppoeUserDTO mapToDTO(PppoeUser user) {
         PppoeUserDTO dto = new PppoeUserDTO();
         dto.setId(user.getId());
@@ -2,45 +2,84 @@ package br.com.mikrotik.features.network.server.adapter;
 
 import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeProfileDTO;
 import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
+import br.com.mikrotik.features.network.server.dto.ConnectionPoolStatsDTO;
+import br.com.mikrotik.features.network.server.dto.RouterResilienceStatsDTO;
 import br.com.mikrotik.shared.infrastructure.exception.MikrotikConnectionException;
+import br.com.mikrotik.shared.infrastructure.exception.RouterUnavailableException;
 import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
 import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
 import me.legrange.mikrotik.ApiConnection;
+import me.legrange.mikrotik.MikrotikApiException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Serviço para comunicação com Mikrotik via API REST
  * Correção Final: Uso estrito de sintaxe CLI (numbers ao invés de .id)
+ *
+ * Todas as operações emprestam sessões do {@link RouterOsConnectionPool}
+ * em vez de abrir conexão + login a cada chamada, e resolvem .id pelo
+ * {@link RouterOsIdIndex} em vez de listar a tabela inteira.
+ * Cada chamada passa antes pelo {@link RouterResilienceRegistry} do router.
  */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class MikrotikApiService {
 
+    private final RouterOsConnectionPool connectionPool;
+    private final RouterOsIdIndex idIndex;
+    private final RouterOsVersionDetector versionDetector;
+    private final RouterOsBatchExecutor batchExecutor;
+    private final RouterResilienceRegistry resilience;
+
     // ==================================================================================
     // MÉTODOS PÚBLICOS
     // ==================================================================================
 
     public boolean testConnection(String host, Integer apiPort, String username, String password) {
-        ApiConnection connection = null;
         try {
             log.info("Testando conexão API com Mikrotik {}:{}", host, apiPort);
-            connection = connect(host, username, password);
-            connection.execute("/system/identity/print");
+            // Teste explícito ignora o circuit breaker: deve tentar conectar de fato
+            connectionPool.execute(RouterEndpoint.of(host, apiPort, username, password), connection -> {
+                connection.execute("/system/identity/print");
+                return null;
+            });
             log.info("✅ Conexão API com Mikrotik estabelecida com sucesso");
             return true;
         } catch (Exception e) {
             log.error("❌ Erro ao conectar com Mikrotik via API: {}", e.getMessage());
             throw new MikrotikConnectionException("Falha ao conectar com servidor Mikrotik via API: " + e.getMessage());
-        } finally {
-            closeConnection(connection);
         }
     }
 
+    /**
+     * Descarta as sessões em pool de um router (ex: servidor editado ou removido).
+     */
+    public void releaseConnections(String host, Integer apiPort, String username, String password) {
+        RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+        connectionPool.invalidate(endpoint);
+        idIndex.invalidate(endpoint);
+        resilience.invalidate(endpoint);
+    }
+
+    public Optional<ConnectionPoolStatsDTO> getConnectionPoolStats(String host, Integer apiPort,
+                                                                   String username, String password) {
+        return connectionPool.getStats(RouterEndpoint.of(host, apiPort, username, password));
+    }
+
+    public Optional<RouterResilienceStatsDTO> getResilienceStats(String host, Integer apiPort,
+                                                                 String username, String password) {
+        return resilience.getStats(RouterEndpoint.of(host, apiPort, username, password));
+    }
+
     public void createPppoeUser(String host, Integer apiPort, String username, String password,
                                 String pppoeUsername, String pppoePassword, String profileName) {
         createPppoeUserWithComment(host, apiPort, username, password, pppoeUsername, pppoePassword, profileName, null);
@@ -49,12 +88,10 @@ public class MikrotikApiService {
     public void createPppoeUserWithComment(String host, Integer apiPort, String username, String password,
                                            String pppoeUsername, String pppoePassword, String profileName,
                                            String comment) {
-        ApiConnection connection = null;
         try {
             String safeComment = sanitizeComment(comment);
 
             log.info("Criando usuário PPPoE: {} | Profile: {} | Comentário Safe: {}", pppoeUsername, profileName, safeComment);
-            connection = connect(host, username, password);
 
             // Sintaxe CLI (create funcionou assim)
             String cmd = String.format("/ppp/secret/add name=%s password=%s profile=%s service=pppoe",
@@ -66,158 +103,158 @@ public class MikrotikApiService {
                 cmd += " comment=" + formatParam(safeComment);
             }
 
-            connection.execute(cmd);
+            String finalCmd = cmd;
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> result = withConnection(endpoint, connection -> connection.execute(finalCmd));
+            idIndex.put(endpoint, Table.SECRET, pppoeUsername, extractCreatedId(result));
             log.info("✅ Usuário PPPoE criado com sucesso: {}", pppoeUsername);
 
         } catch (Exception e) {
             handleException("Erro ao criar usuário PPPoE", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void deletePppoeUser(String host, Integer apiPort, String username, String password, String pppoeUsername) {
-        ApiConnection connection = null;
         try {
-            connection = connect(host, username, password);
-            String id = findIdByNameListAll(connection, "/ppp/secret/print", pppoeUsername);
-
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                connection.execute(String.format("/ppp/secret/remove numbers=%s", id));
-                log.info("✅ Usuário PPPoE deletado: {}", pppoeUsername);
-            } else {
-                log.warn("Usuário PPPoE {} não encontrado para exclusão", pppoeUsername);
-            }
+                String id = executeOnItem(connection, endpoint, Table.SECRET, pppoeUsername,
+                        itemId -> connection.execute(String.format("/ppp/secret/remove numbers=%s", itemId)));
+
+                if (id != null) {
+                    idIndex.remove(endpoint, Table.SECRET, pppoeUsername);
+                    log.info("✅ Usuário PPPoE deletado: {}", pppoeUsername);
+                } else {
+                    log.warn("Usuário PPPoE {} não encontrado para exclusão", pppoeUsername);
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao deletar usuário PPPoE", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void disablePppoeUser(String host, Integer apiPort, String username, String password, String pppoeUsername) {
-        executeToggleCommand(host, username, password, "/ppp/secret", pppoeUsername, "disable");
+        executeToggleCommand(host, apiPort, username, password, Table.SECRET, pppoeUsername, "disable");
     }
 
     public void enablePppoeUser(String host, Integer apiPort, String username, String password, String pppoeUsername) {
-        executeToggleCommand(host, username, password, "/ppp/secret", pppoeUsername, "enable");
+        executeToggleCommand(host, apiPort, username, password, Table.SECRET, pppoeUsername, "enable");
     }
 
     public void changePppoeUserAll(String host, Integer apiPort, String username, String password,
                                    PppoeUser pppoeUser, PppoeProfile newProfile) {
 
-        ApiConnection connection = null;
         try {
             log.info("Alterando dados completos do usuário: {}", pppoeUser.getUsername());
-            connection = connect(host, username, password);
-
-            String id = findIdByNameListAll(connection, "/ppp/secret/print", pppoeUser.getUsername());
 
-            if (id != null) {
-                StringBuilder cmd = new StringBuilder("/ppp/secret/set numbers=" + id);
+            // Adiciona apenas os campos que foram informados no DTO
+            StringBuilder fields = new StringBuilder();
+            if (pppoeUser.getUsername() != null && !pppoeUser.getUsername().isEmpty()) {
+                fields.append(" name=").append(formatParam(pppoeUser.getUsername()));
+            }
+            if (pppoeUser.getPassword() != null && !pppoeUser.getPassword().isEmpty()) {
+                fields.append(" password=").append(formatParam(pppoeUser.getPassword()));
+            }
+            if (newProfile != null) {
+                fields.append(" profile=").append(formatParam(newProfile.getName()));
+            }
+            if (pppoeUser.getComment() != null) {
+                String safeComment = sanitizeComment(pppoeUser.getComment());
+                fields.append(" comment=").append(formatParam(safeComment));
+            }
 
-                // Adiciona apenas os campos que foram informados no DTO
-                if (pppoeUser.getUsername() != null && !pppoeUser.getUsername().isEmpty()) {
-                    cmd.append(" name=").append(formatParam(pppoeUser.getUsername()));
-                }
-                if (pppoeUser.getPassword() != null && !pppoeUser.getPassword().isEmpty()) {
-                    cmd.append(" password=").append(formatParam(pppoeUser.getPassword()));
-                }
-                if (newProfile != null) {
-                    cmd.append(" profile=").append(formatParam(newProfile.getName()));
-                }
-                if (pppoeUser.getComment() != null) {
-                    String safeComment = sanitizeComment(pppoeUser.getComment());
-                    cmd.append(" comment=").append(formatParam(safeComment));
-                }
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
+                String id = executeOnItem(connection, endpoint, Table.SECRET, pppoeUser.getUsername(),
+                        itemId -> connection.execute("/ppp/secret/set numbers=" + itemId + fields));
 
-                connection.execute(cmd.toString());
-                log.info("✅ Dados do usuário alterados com sucesso em uma única operação");
+                if (id != null) {
+                    log.info("✅ Dados do usuário alterados com sucesso em uma única operação");
                 } else {
-                throw new MikrotikConnectionException("Usuário PPPoE não encontrado: " + pppoeUser.getUsername());
-            }
+                    throw new MikrotikConnectionException("Usuário PPPoE não encontrado: " + pppoeUser.getUsername());
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao alterar dados do usuário PPPoE", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void changePppoeUserProfile(String host, Integer apiPort, String username, String password,
                                        String pppoeUsername, String newProfile) {
-        ApiConnection connection = null;
         try {
             log.info("Alterando perfil do usuário {} para {}", pppoeUsername, newProfile);
-            connection = connect(host, username, password);
-
-            String id = findIdByNameListAll(connection, "/ppp/secret/print", pppoeUsername);
 
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                String cmd = String.format("/ppp/secret/set numbers=%s profile=%s", id, formatParam(newProfile));
-                connection.execute(cmd);
-                log.info("✅ Perfil alterado com sucesso.");
-            } else {
-                throw new MikrotikConnectionException("Usuário PPPoE não encontrado: " + pppoeUsername);
-            }
+                String id = executeOnItem(connection, endpoint, Table.SECRET, pppoeUsername,
+                        itemId -> connection.execute(String.format("/ppp/secret/set numbers=%s profile=%s",
+                                itemId, formatParam(newProfile))));
+
+                if (id != null) {
+                    log.info("✅ Perfil alterado com sucesso.");
+                } else {
+                    throw new MikrotikConnectionException("Usuário PPPoE não encontrado: " + pppoeUsername);
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao alterar perfil", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void updatePppoeUserPassword(String host, Integer apiPort, String username, String password,
                                         String pppoeUsername, String newPassword) {
-        ApiConnection connection = null;
         try {
             log.info("Atualizando senha do usuário: {}", pppoeUsername);
-            connection = connect(host, username, password);
-
-            String id = findIdByNameListAll(connection, "/ppp/secret/print", pppoeUsername);
 
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                String cmd = String.format("/ppp/secret/set numbers=%s password=%s", id, formatParam(newPassword));
-                connection.execute(cmd);
-                log.info("✅ Senha atualizada com sucesso.");
-            }
+                String id = executeOnItem(connection, endpoint, Table.SECRET, pppoeUsername,
+                        itemId -> connection.execute(String.format("/ppp/secret/set numbers=%s password=%s",
+                                itemId, formatParam(newPassword))));
+
+                if (id != null) {
+                    log.info("✅ Senha atualizada com sucesso.");
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao atualizar senha", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void disconnectActivePppoeUser(String host, Integer apiPort, String username, String password,
                                           String pppoeUsername) {
-        ApiConnection connection = null;
         try {
-            connection = connect(host, username, password);
-            String id = findIdByNameListAll(connection, "/ppp/active/print", pppoeUsername);
-
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                connection.execute(String.format("/ppp/active/remove numbers=%s", id));
-                log.info("✅ Usuário desconectado da sessão ativa: {}", pppoeUsername);
-            } else {
-                log.info("Usuário {} não está conectado no momento.", pppoeUsername);
-            }
+                String id = executeOnItem(connection, endpoint, Table.ACTIVE, pppoeUsername,
+                        itemId -> connection.execute(String.format("/ppp/active/remove numbers=%s", itemId)));
+
+                if (id != null) {
+                    idIndex.remove(endpoint, Table.ACTIVE, pppoeUsername);
+                    log.info("✅ Usuário desconectado da sessão ativa: {}", pppoeUsername);
+                } else {
+                    log.info("Usuário {} não está conectado no momento.", pppoeUsername);
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao desconectar usuário", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void createPppoeProfile(String host, Integer apiPort, String username, String password,
                                    String profileName, Long maxBitrateDl, Long maxBitrateUl,
                                    Integer sessionTimeout, String description) {
-        ApiConnection connection = null;
         try {
             log.info("Criando Profile: {}", profileName);
-            connection = connect(host, username, password);
 
             StringBuilder cmd = new StringBuilder("/ppp/profile/add");
             cmd.append(" name=").append(formatParam(profileName));
@@ -235,13 +272,13 @@ public class MikrotikApiService {
                 cmd.append(" comment=").append(formatParam(sanitizeComment(description)));
             }
 
-            connection.execute(cmd.toString());
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> result = withConnection(endpoint, connection -> connection.execute(cmd.toString()));
+            idIndex.put(endpoint, Table.PROFILE, profileName, extractCreatedId(result));
             log.info("✅ Perfil criado com sucesso.");
 
         } catch (Exception e) {
             handleException("Erro ao criar perfil", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
@@ -249,69 +286,94 @@ public class MikrotikApiService {
                                    String oldProfileName, String newProfileName,
                                    Long maxBitrateDl, Long maxBitrateUl,
                                    Integer sessionTimeout, String description) {
-        ApiConnection connection = null;
         try {
             log.info("Atualizando Profile: {}", oldProfileName);
-            connection = connect(host, username, password);
 
-            String id = findIdByNameListAll(connection, "/ppp/profile/print", oldProfileName);
+            StringBuilder fields = new StringBuilder();
+            if (!oldProfileName.equals(newProfileName)) {
+                fields.append(" name=").append(formatParam(newProfileName));
+            }
+            if (maxBitrateDl != null && maxBitrateUl != null) {
+                String rateLimit = formatBandwidth(maxBitrateUl) + "/" + formatBandwidth(maxBitrateDl);
+                fields.append(" rate-limit=").append(formatParam(rateLimit));
+            }
+            if (sessionTimeout != null && sessionTimeout > 0) {
+                fields.append(" session-timeout=").append(sessionTimeout);
+            }
+            if (description != null && !description.isEmpty()) {
+                fields.append(" comment=").append(formatParam(sanitizeComment(description)));
+            }
 
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                StringBuilder cmd = new StringBuilder("/ppp/profile/set numbers=" + id);
-
-                if (!oldProfileName.equals(newProfileName)) {
-                    cmd.append(" name=").append(formatParam(newProfileName));
-                }
-                if (maxBitrateDl != null && maxBitrateUl != null) {
-                    String rateLimit = formatBandwidth(maxBitrateUl) + "/" + formatBandwidth(maxBitrateDl);
-                    cmd.append(" rate-limit=").append(formatParam(rateLimit));
-                }
-                if (sessionTimeout != null && sessionTimeout > 0) {
-                    cmd.append(" session-timeout=").append(sessionTimeout);
-                }
-                if (description != null && !description.isEmpty()) {
-                    cmd.append(" comment=").append(formatParam(sanitizeComment(description)));
+                String id = executeOnItem(connection, endpoint, Table.PROFILE, oldProfileName,
+                        itemId -> connection.execute("/ppp/profile/set numbers=" + itemId + fields));
+
+                if (id != null) {
+                    if (!oldProfileName.equals(newProfileName)) {
+                        idIndex.rename(endpoint, Table.PROFILE, oldProfileName, newProfileName, id);
+                    }
+                    log.info("✅ Perfil atualizado com sucesso.");
+                } else {
+                    log.warn("Perfil não encontrado: {}", oldProfileName);
                 }
-
-                connection.execute(cmd.toString());
-                log.info("✅ Perfil atualizado com sucesso.");
-            } else {
-                log.warn("Perfil não encontrado: {}", oldProfileName);
-            }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao atualizar perfil", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public void deletePppoeProfile(String host, Integer apiPort, String username, String password, String profileName) {
-        ApiConnection connection = null;
         try {
-            connection = connect(host, username, password);
-            String id = findIdByNameListAll(connection, "/ppp/profile/print", profileName);
-
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                connection.execute(String.format("/ppp/profile/remove numbers=%s", id));
-                log.info("✅ Perfil deletado: {}", profileName);
-            }
+                String id = executeOnItem(connection, endpoint, Table.PROFILE, profileName,
+                        itemId -> connection.execute(String.format("/ppp/profile/remove numbers=%s", itemId)));
+
+                if (id != null) {
+                    idIndex.remove(endpoint, Table.PROFILE, profileName);
+                    log.info("✅ Perfil deletado: {}", profileName);
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao deletar perfil", e);
-        } finally {
-            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Aplica um lote de operações em um único router: uma sessão, um print por
+     * tabela para resolver os .id e comandos enviados em pipeline.
+     *
+     * @return um resultado por operação, na mesma ordem
+     */
+    public List<RouterOsBatchResult> executeBatch(String host, Integer apiPort, String username, String password,
+                                                  List<RouterOsBatchOperation> operations) {
+        if (operations == null || operations.isEmpty()) {
+            return List.of();
+        }
+        try {
+            log.info("Executando lote de {} operações em {}", operations.size(), host);
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            return withConnection(endpoint, connection -> batchExecutor.execute(connection, endpoint, operations));
+        } catch (Exception e) {
+            handleException("Erro ao executar lote de operações", e);
+            return List.of();
         }
     }
 
     // LISTAGEM ESTRUTURADA
     public List<MikrotikPppoeUserDTO> getPppoeUsersStructured(String host, Integer apiPort, String username, String password) {
-        ApiConnection connection = null;
         List<MikrotikPppoeUserDTO> users = new ArrayList<>();
 
         try {
-            connection = connect(host, username, password);
-            List<Map<String, String>> results = connection.execute("/ppp/secret/print");
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> results = withConnection(endpoint,
+                    connection -> connection.execute("/ppp/secret/print"));
+            idIndex.load(endpoint, Table.SECRET, results);
 
             if (results != null) {
                 for (Map<String, String> item : results) {
@@ -330,18 +392,17 @@ public class MikrotikApiService {
         } catch (Exception e) {
             handleException("Erro ao listar usuários", e);
             return new ArrayList<>();
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public List<MikrotikPppoeProfileDTO> getPppoeProfilesStructured(String host, Integer apiPort, String username, String password) {
-        ApiConnection connection = null;
         List<MikrotikPppoeProfileDTO> profiles = new ArrayList<>();
 
         try {
-            connection = connect(host, username, password);
-            List<Map<String, String>> results = connection.execute("/ppp/profile/print");
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> results = withConnection(endpoint,
+                    connection -> connection.execute("/ppp/profile/print"));
+            idIndex.load(endpoint, Table.PROFILE, results);
 
             if (results != null) {
                 for (Map<String, String> item : results) {
@@ -361,30 +422,28 @@ public class MikrotikApiService {
         } catch (Exception e) {
             handleException("Erro ao listar perfis", e);
             return new ArrayList<>();
-        } finally {
-            closeConnection(connection);
         }
     }
 
     public List<Map<String, String>> listActivePppoeConnections(String host, Integer apiPort, String username, String password) {
-        ApiConnection connection = null;
         try {
-            connection = connect(host, username, password);
-            return connection.execute("/ppp/active/print");
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> results = withConnection(endpoint,
+                    connection -> connection.execute("/ppp/active/print"));
+            idIndex.load(endpoint, Table.ACTIVE, results);
+            return results;
         } catch (Exception e) {
             handleException("Erro ao listar conexões ativas", e);
             return new ArrayList<>();
-        } finally {
-            closeConnection(connection);
         }
     }
 
     /**
      * Busca a sessão PPPoE ativa de um usuário específico diretamente no Mikrotik.
      *
-     * Estratégia: lista todas as sessões e filtra no Java (mesma abordagem do
-     * findIdByNameListAll) para evitar incompatibilidades de sintaxe entre versões
-     * da RouterOS API.
+     * Estratégia: em RouterOS com suporte a filtro no servidor, consulta
+     * apenas a sessão do usuário (?name=). Em firmware antigo, lista todas as
+     * sessões e filtra no Java (o print completo reabastece o índice de .id).
      *
      * @return Map com os campos da sessão (address, uptime, service, etc.)
      *         ou null se o usuário não estiver conectado.
@@ -392,10 +451,21 @@ public class MikrotikApiService {
     public Map<String, String> getActivePppoeSessionByUsername(
             String host, Integer apiPort, String username, String password, String pppoeUsername) {
 
-        ApiConnection connection = null;
         try {
-            connection = connect(host, username, password);
-            List<Map<String, String>> results = connection.execute("/ppp/active/print");
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            List<Map<String, String>> results = withConnection(endpoint, connection -> {
+                if (versionDetector.supportsServerSideQuery(connection, endpoint)) {
+                    List<Map<String, String>> exact =
+                            connection.execute("/ppp/active/print where name=" + formatParam(pppoeUsername));
+                    if (!exact.isEmpty()) {
+                        return exact;
+                    }
+                    // where name= diferencia maiúsculas; o banco não. Sem resultado exato → varredura completa
+                }
+                List<Map<String, String>> all = connection.execute("/ppp/active/print");
+                idIndex.load(endpoint, Table.ACTIVE, all);
+                return all;
+            });
             if (results == null || results.isEmpty()) {
                 return null;
             }
@@ -406,8 +476,6 @@ public class MikrotikApiService {
         } catch (Exception e) {
             log.warn("Erro ao buscar sessão ativa para username={}: {}", pppoeUsername, e.getMessage());
             return null;
-        } finally {
-            closeConnection(connection);
         }
     }
 
@@ -415,15 +483,55 @@ public class MikrotikApiService {
     // MÉTODOS AUXILIARES PRIVADOS
     // ==================================================================================
 
-    private ApiConnection connect(String host, String username, String password) throws Exception {
-        ApiConnection con = ApiConnection.connect(host);
-        con.login(username, password);
-        return con;
+    private <T> T withConnection(RouterEndpoint endpoint, RouterOsConnectionPool.RouterOsCallback<T> callback) throws Exception {
+        return resilience.execute(endpoint, () -> connectionPool.execute(endpoint, callback));
+    }
+
+    @FunctionalInterface
+    private interface ItemCommand {
+        void execute(String id) throws Exception;
+    }
+
+    /**
+     * Resolve o .id pelo índice e executa o comando sobre o item.
+     * Se o .id estiver obsoleto, recarrega o índice e tenta uma única vez mais.
+     *
+     * @return o .id utilizado, ou null se o item não existe no router
+     */
+    private String executeOnItem(ApiConnection connection, RouterEndpoint endpoint, Table table,
+                                 String name, ItemCommand command) throws Exception {
+        String id = idIndex.resolve(connection, endpoint, table, name);
+        if (id == null) {
+            return null;
+        }
+        try {
+            command.execute(id);
+        } catch (MikrotikApiException e) {
+            if (!RouterOsIdIndex.isStaleIdError(e)) {
+                throw e;
+            }
+            log.debug(".id {} obsoleto para '{}' em {}. Resolvendo novamente no índice {}.", id, name, endpoint, table);
+            id = idIndex.resolveFresh(connection, endpoint, table, name);
+            if (id == null) {
+                return null;
+            }
+            command.execute(id);
+        }
+        return id;
+    }
+
+    /**
+     * Comandos "add" devolvem o .id criado no campo "ret".
+     */
+    private String extractCreatedId(List<Map<String, String>> result) {
+        if (result == null || result.isEmpty()) {
+            return null;
+        }
+        return result.get(0).get("ret");
     }
 
     private String formatParam(String value) {
-        if (value == null) return "\"\"";
-        return "\"" + value + "\"";
+        return RouterOsValues.quote(value);
     }
 
     private String sanitizeComment(String comment) {
@@ -436,48 +544,22 @@ public class MikrotikApiService {
                 .trim();
     }
 
-    private String findIdByName(ApiConnection connection, String printCommand, String name) throws Exception {
-        String cmd = String.format("%s ?name=%s", printCommand, name);
-        List<Map<String, String>> results = connection.execute(cmd);
-
-        if (results != null && !results.isEmpty()) {
-            return results.get(0).get(".id");
-        }
-        return null;
-    }
-
-    private String findIdByNameListAll(ApiConnection connection, String printCommand, String name) throws Exception {
-        // ABORDAGEM SEGURA: Listar tudo e filtrar no Java.
-        // Isso evita erros de sintaxe de query (where/?) que variam entre versões da lib.
-        List<Map<String, String>> results = connection.execute(printCommand);
-
-        if (results != null) {
-            for (Map<String, String> item : results) {
-                // Compara o nome que buscamos com o nome no Map
-                // Usamos equalsIgnoreCase para ser mais robusto
-                if (name.equalsIgnoreCase(item.get("name"))) {
-                    return item.get(".id");
-                }
-            }
-        }
-        return null;
-    }
-
-    private void executeToggleCommand(String host, String username, String password, String basePath, String pppoeUsername, String action) {
-        ApiConnection connection = null;
+    private void executeToggleCommand(String host, Integer apiPort, String username, String password,
+                                      Table table, String pppoeUsername, String action) {
         try {
-            connection = connect(host, username, password);
-            String id = findIdByNameListAll(connection, basePath + "/print", pppoeUsername);
-
-            if (id != null) {
+            RouterEndpoint endpoint = RouterEndpoint.of(host, apiPort, username, password);
+            withConnection(endpoint, connection -> {
                 // CORREÇÃO: numbers ao invés de .id
-                connection.execute(String.format("%s/%s numbers=%s", basePath, action, id));
-                log.info("✅ Usuário {}: {}", action, pppoeUsername);
-            }
+                String id = executeOnItem(connection, endpoint, table, pppoeUsername,
+                        itemId -> connection.execute(String.format("%s/%s numbers=%s", table.getPath(), action, itemId)));
+
+                if (id != null) {
+                    log.info("✅ Usuário {}: {}", action, pppoeUsername);
+                }
+                return null;
+            });
         } catch (Exception e) {
             handleException("Erro ao " + action + " usuário", e);
-        } finally {
-            closeConnection(connection);
         }
     }
 
@@ -489,19 +571,13 @@ public class MikrotikApiService {
         return bps.toString();
     }
 
-    private void closeConnection(ApiConnection connection) {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (Exception e) {
-                log.warn("Erro ao fechar conexão (ignorado): {}", e.getMessage());
-            }
-        }
-    }
-
     private void handleException(String msg, Exception e) {
+        if (e instanceof RouterUnavailableException unavailable) {
+            // Circuito aberto: propaga o tipo para o chamador não retentar
+            log.warn("{}: {}", msg, e.getMessage());
+            throw unavailable;
+        }
         log.error("❌ {}: {}", msg, e.getMessage());
         throw new MikrotikConnectionException(msg + ": " + e.getMessage());
     }
 }
-
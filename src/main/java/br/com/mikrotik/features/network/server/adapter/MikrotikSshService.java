@@ -4,19 +4,25 @@ import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeProfileDTO;
 import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
 import br.com.mikrotik.shared.infrastructure.exception.MikrotikConnectionException;
 import com.jcraft.jsch.*;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class MikrotikSshService {
 
+    private static final int DEFAULT_SSH_PORT = 22;
+
+    private final SshSessionPool sessionPool;
+
     public boolean testConnection(String host, Integer port, String username, String password) {
         try {
             JSch jsch = new JSch();
@@ -32,72 +38,75 @@ public class MikrotikSshService {
         }
     }
 
+    /**
+     * Executa um comando e devolve todo o STDOUT em memória.
+     * Para saídas grandes, prefira {@link #streamCommand}.
+     */
     public List<String> executeCommand(String host, Integer port, String username, String password, String command) {
         List<String> result = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
+        streamCommand(host, port, username, password, command, result::add);
+        return result;
+    }
 
-        log.info(">>> EXECUTANDO COMANDO MIKROTIK <<<");
-        log.info("Host: {}:{}", host, port);
-        log.info("Comando: {}", command);
+    /**
+     * Executa um comando na sessão SSH persistente do router, entregando cada linha
+     * do STDOUT ao consumidor conforme chega (sem acumular a saída inteira).
+     *
+     * @return quantidade de linhas entregues
+     */
+    public int streamCommand(String host, Integer port, String username, String password,
+                             String command, Consumer<String> lineConsumer) {
+        RouterEndpoint endpoint = endpoint(host, port, username, password);
+        long startedAt = System.currentTimeMillis();
+        log.debug("Executando comando SSH em {}: {}", endpoint, command);
 
         try {
-            JSch jsch = new JSch();
-            Session session = jsch.getSession(username, host, port);
-            session.setPassword(password);
-            session.setConfig("StrictHostKeyChecking", "no");
-            session.connect(5000);
-
-            ChannelExec channelExec = (ChannelExec) session.openChannel("exec");
-            channelExec.setCommand(command);
-            channelExec.setInputStream(null);
-
-            // Capturar STDOUT
-            BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(channelExec.getInputStream())
-            );
-
-            // Capturar STDERR
-            BufferedReader errorReader = new BufferedReader(
-                    new InputStreamReader(channelExec.getErrStream())
-            );
-
-            channelExec.connect();
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.add(line);
-                log.info("STDOUT: {}", line);
-            }
-
-            while ((line = errorReader.readLine()) != null) {
-                errors.add(line);
-                log.error("STDERR: {}", line);
-            }
-
-            int exitStatus = channelExec.getExitStatus();
-            log.info("Exit Status: {}", exitStatus);
-
-            channelExec.disconnect();
-            session.disconnect();
+            int lines = sessionPool.exec(endpoint, command, channel -> {
+                int count = 0;
+                BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(channel.getStdout(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    log.trace("STDOUT: {}", line);
+                    lineConsumer.accept(line);
+                    count++;
+                }
 
-            if (!errors.isEmpty()) {
-                log.error("❌ COMANDO EXECUTADO COM ERROS!");
-                throw new MikrotikConnectionException("Erro no Mikrotik: " + String.join(", ", errors));
-            }
+                String errors = channel.getStderr();
+                if (!errors.isBlank()) {
+                    log.error("❌ Comando em {} retornou erros: {}", endpoint, errors.strip());
+                    throw new MikrotikConnectionException("Erro no Mikrotik: " + errors.strip().replace("\n", ", "));
+                }
 
-            if (exitStatus != 0 && exitStatus != -1) {
-                log.error("❌ COMANDO RETORNOU EXIT STATUS: {}", exitStatus);
-            } else {
-                log.info("✅ COMANDO EXECUTADO COM SUCESSO");
-            }
+                int exitStatus = channel.getExitStatus();
+                if (exitStatus != 0 && exitStatus != -1) {
+                    log.error("❌ Comando em {} retornou exit status: {}", endpoint, exitStatus);
+                }
+                return count;
+            });
 
-            return result;
-        } catch (JSchException | java.io.IOException e) {
-            log.error("❌ ERRO AO EXECUTAR COMANDO NO MIKROTIK: {}", e.getMessage());
+            log.debug("Comando SSH em {} concluído: {} linhas em {} ms",
+                    endpoint, lines, System.currentTimeMillis() - startedAt);
+            return lines;
+        } catch (MikrotikConnectionException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("❌ ERRO AO EXECUTAR COMANDO NO MIKROTIK {}: {}", endpoint, e.getMessage());
             throw new MikrotikConnectionException("Erro ao executar comando: " + e.getMessage());
         }
     }
 
+    /**
+     * Encerra a sessão SSH persistente de um router (ex: credenciais alteradas ou servidor removido).
+     */
+    public void releaseSessions(String host, Integer port, String username, String password) {
+        sessionPool.invalidate(endpoint(host, port, username, password));
+    }
+
+    private RouterEndpoint endpoint(String host, Integer port, String username, String password) {
+        return new RouterEndpoint(host, port != null ? port : DEFAULT_SSH_PORT, username, password);
+    }
+
     public void createPppoeUser(String host, Integer port, String username, String password,
                                String pppoeUsername, String pppoePassword, String profileName) {
         String command = String.format(
@@ -319,48 +328,37 @@ public class MikrotikSshService {
         List<MikrotikPppoeUserDTO> users = new ArrayList<>();
 
         try {
-            // Comando para listar secrets PPPoE com detalhes
-            String command = "/ppp secret print detail";
-            List<String> output = executeCommand(host, port, username, password, command);
-
-            MikrotikPppoeUserDTO currentUser = null;
-
-            for (String line : output) {
-                line = line.trim();
+            // Saída lida em stream e tokenizada em passada única (sem regex por campo)
+            RouterOsDetailParser parser = new RouterOsDetailParser(new RouterOsDetailParser.Handler() {
+                private MikrotikPppoeUserDTO current;
+
+                @Override
+                public void startEntry(String flags) {
+                    current = new MikrotikPppoeUserDTO();
+                    current.setDisabled(flags.indexOf('X') >= 0);
+                }
 
-                // Nova entrada de usuário
-                if (line.startsWith("Flags:") || line.matches("^\\d+.*")) {
-                    if (currentUser != null && currentUser.getUsername() != null) {
-                        users.add(currentUser);
+                @Override
+                public void attribute(String key, String value) {
+                    switch (key) {
+                        case "name" -> current.setUsername(value);
+                        case "password" -> current.setPassword(value);
+                        case "profile" -> current.setProfile(value);
+                        case "service" -> current.setService(value);
+                        case "comment" -> current.setComment(value);
+                        default -> { }
                     }
-                    currentUser = new MikrotikPppoeUserDTO();
-                    currentUser.setDisabled(line.contains("X") || line.contains("D"));
                 }
 
-                if (currentUser != null) {
-                    // Parsear campos
-                    if (line.contains("name=")) {
-                        currentUser.setUsername(extractValue(line, "name"));
-                    }
-                    if (line.contains("password=")) {
-                        currentUser.setPassword(extractValue(line, "password"));
-                    }
-                    if (line.contains("profile=")) {
-                        currentUser.setProfile(extractValue(line, "profile"));
-                    }
-                    if (line.contains("service=")) {
-                        currentUser.setService(extractValue(line, "service"));
-                    }
-                    if (line.contains("comment=")) {
-                        currentUser.setComment(extractValue(line, "comment"));
+                @Override
+                public void endEntry() {
+                    if (current.getUsername() != null) {
+                        users.add(current);
                     }
                 }
-            }
-
-            // Adicionar último usuário
-            if (currentUser != null && currentUser.getUsername() != null) {
-                users.add(currentUser);
-            }
+            });
+            streamCommand(host, port, username, password, "/ppp secret print detail without-paging", parser::accept);
+            parser.finish();
 
             log.info("Total de {} usuários PPPoE encontrados no Mikrotik", users.size());
             return users;
@@ -371,69 +369,41 @@ public class MikrotikSshService {
         }
     }
 
-    private String extractValue(String line, String key) {
-        try {
-            // Padrão: key="value" ou key=value
-            Pattern pattern = Pattern.compile(key + "=\"?([^\"\\s]+)\"?");
-            Matcher matcher = pattern.matcher(line);
-            if (matcher.find()) {
-                return matcher.group(1);
-            }
-        } catch (Exception e) {
-            log.warn("Erro ao extrair valor de '{}': {}", key, e.getMessage());
-        }
-        return null;
-    }
-
     public List<MikrotikPppoeProfileDTO> getPppoeProfilesStructured(String host, Integer port, String username, String password) {
         List<MikrotikPppoeProfileDTO> profiles = new ArrayList<>();
 
         try {
-            // Comando para listar profiles PPPoE com detalhes
-            String command = "/ppp profile print detail";
-            List<String> output = executeCommand(host, port, username, password, command);
-
-            MikrotikPppoeProfileDTO currentProfile = null;
+            RouterOsDetailParser parser = new RouterOsDetailParser(new RouterOsDetailParser.Handler() {
+                private MikrotikPppoeProfileDTO current;
 
-            for (String line : output) {
-                line = line.trim();
+                @Override
+                public void startEntry(String flags) {
+                    current = new MikrotikPppoeProfileDTO();
+                    current.setDisabled(flags.indexOf('X') >= 0);
+                }
 
-                // Nova entrada de profile
-                if (line.startsWith("Flags:") || line.matches("^\\d+.*")) {
-                    if (currentProfile != null && currentProfile.getName() != null) {
-                        profiles.add(currentProfile);
+                @Override
+                public void attribute(String key, String value) {
+                    switch (key) {
+                        case "name" -> current.setName(value);
+                        case "local-address" -> current.setLocalAddress(value);
+                        case "remote-address" -> current.setRemoteAddress(value);
+                        case "rate-limit" -> current.setRateLimit(value);
+                        case "session-timeout" -> current.setSessionTimeout(value);
+                        case "comment" -> current.setComment(value);
+                        default -> { }
                     }
-                    currentProfile = new MikrotikPppoeProfileDTO();
-                    currentProfile.setDisabled(line.contains("X") || line.contains("D"));
                 }
 
-                if (currentProfile != null) {
-                    // Parsear campos
-                    if (line.contains("name=")) {
-                        currentProfile.setName(extractValue(line, "name"));
-                    }
-                    if (line.contains("local-address=")) {
-                        currentProfile.setLocalAddress(extractValue(line, "local-address"));
-                    }
-                    if (line.contains("remote-address=")) {
-                        currentProfile.setRemoteAddress(extractValue(line, "remote-address"));
-                    }
-                    if (line.contains("rate-limit=")) {
-                        currentProfile.setRateLimit(extractValue(line, "rate-limit"));
-                    }
-                    if (line.contains("session-timeout=")) {
-                        currentProfile.setSessionTimeout(extractValue(line, "session-timeout"));
-                    }
-                    if (line.contains("comment=")) {
-                        currentProfile.setComment(extractValue(line, "comment"));
+                @Override
+                public void endEntry() {
+                    if (current.getName() != null) {
+                        profiles.add(current);
                     }
                 }
-            }
-
-            // Adicionar último profile
-            if (currentProfile != null && currentProfile.getName() != null) {
-                profiles.add(currentProfile);
-            }
+            });
+            streamCommand(host, port, username, password, "/ppp profile print detail without-paging", parser::accept);
+            parser.finish();
 
             log.info("Total de {} profiles PPPoE encontrados no Mikrotik", profiles.size());
             return profiles;
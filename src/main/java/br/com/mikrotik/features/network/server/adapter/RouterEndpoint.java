@@ -0,0 +1,25 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import me.legrange.mikrotik.ApiConnection;
+
+/**
+ * Identifica um concentrador RouterOS (host + porta API + credenciais).
+ *
+ * É a chave usada pelo pool de sessões e pelos caches do adapter. Na prática
+ * corresponde 1:1 a um MikrotikServer cadastrado: se as credenciais mudam,
+ * a chave muda e as sessões antigas deixam de ser reaproveitadas.
+ */
+public record RouterEndpoint(String host, int port, String username, String password) {
+
+    public static RouterEndpoint of(String host, Integer apiPort, String username, String password) {
+        return new RouterEndpoint(host, apiPort != null ? apiPort : ApiConnection.DEFAULT_PORT, username, password);
+    }
+
+    /**
+     * Não expõe a senha em logs.
+     */
+    @Override
+    public String toString() {
+        return username + "@" + host + ":" + port;
+    }
+}
@@ -0,0 +1,270 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.features.network.server.adapter.RouterOsBatchResult.Status;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnection;
+import me.legrange.mikrotik.ApiConnectionException;
+import me.legrange.mikrotik.MikrotikApiException;
+import me.legrange.mikrotik.ResultListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executa um lote de comandos em UMA sessão RouterOS, com pipelining.
+ *
+ * SEQUÊNCIA:
+ * 1. Um único print por tabela envolvida resolve todos os .id (via {@link RouterOsIdIndex})
+ * 2. Os comandos são enviados em ondas: a primeira operação de cada item vai na onda 1,
+ *    a segunda na onda 2, e assim por diante. Dentro da onda os comandos são enviados
+ *    com tag (execute assíncrono da lib), sem esperar a resposta do anterior — limitado
+ *    a uma janela de comandos em voo. Assim o "set profile" de um usuário é confirmado
+ *    antes do "remove" da sessão dele, e o cliente não reconecta no perfil antigo.
+ * 3. Cada resposta (!done / !trap) é associada à operação de origem pela tag
+ * 4. Itens com .id obsoleto são resolvidos de novo e reenviados individualmente,
+ *    antes da onda seguinte; operação cuja anterior falhou não é enviada
+ *
+ * Falha de conexão ou prazo do lote esgotado não viram resultados por item: a sessão é
+ * fechada (respostas atrasadas a deixariam inconsistente) e a exceção sobe, para o
+ * circuit breaker do router (RouterResilienceRegistry) contabilizá-la.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RouterOsBatchExecutor {
+
+    @Value("${mikrotik.api.batch.max-in-flight:32}")
+    private int maxInFlight;
+
+    @Value("${mikrotik.api.batch.timeout-ms:120000}")
+    private long timeoutMs;
+
+    private final RouterOsIdIndex idIndex;
+
+    public List<RouterOsBatchResult> execute(ApiConnection connection, RouterEndpoint endpoint,
+                                             List<RouterOsBatchOperation> operations) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + timeoutMs;
+
+        // 1. Resolver todos os .id com um print por tabela
+        Set<Table> tables = EnumSet.noneOf(Table.class);
+        operations.forEach(op -> tables.add(op.table()));
+        for (Table table : tables) {
+            idIndex.refresh(connection, endpoint, table);
+        }
+
+        // 2. Montar as ondas: operações de um mesmo item ficam em ondas consecutivas
+        int size = operations.size();
+        int[] previous = new int[size]; // operação anterior do mesmo item (-1 = primeira)
+        int[] waveOf = new int[size];
+        List<List<Integer>> waves = new ArrayList<>();
+        Map<String, Integer> lastByItem = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Integer prev = lastByItem.put(operations.get(i).name(), i);
+            previous[i] = prev != null ? prev : -1;
+            waveOf[i] = prev != null ? waveOf[prev] + 1 : 0;
+            if (waves.size() == waveOf[i]) {
+                waves.add(new ArrayList<>());
+            }
+            waves.get(waveOf[i]).add(i);
+        }
+
+        // 3. Enviar cada onda em pipeline
+        RouterOsBatchResult[] results = new RouterOsBatchResult[size];
+        for (List<Integer> wave : waves) {
+            List<Integer> ready = new ArrayList<>(wave.size());
+            for (int i : wave) {
+                if (previous[i] >= 0 && results[previous[i]].status() == Status.FAILED) {
+                    results[i] = new RouterOsBatchResult(operations.get(i), Status.FAILED,
+                            "Não enviada: operação anterior do item falhou");
+                } else {
+                    ready.add(i);
+                }
+            }
+            sendWave(connection, endpoint, operations, ready, deadline, results);
+        }
+
+        int ok = 0;
+        for (RouterOsBatchResult result : results) {
+            if (result.isSuccess()) {
+                ok++;
+                RouterOsBatchOperation op = result.operation();
+                if ("remove".equals(op.action())) {
+                    idIndex.remove(endpoint, op.table(), op.name());
+                }
+            }
+        }
+
+        log.info("Lote em {}: {} operações em {} onda(s), {} OK, {} ms",
+                endpoint, size, waves.size(), ok, System.currentTimeMillis() - startedAt);
+        return List.of(results);
+    }
+
+    private void sendWave(ApiConnection connection, RouterEndpoint endpoint, List<RouterOsBatchOperation> operations,
+                          List<Integer> indices, long deadline, RouterOsBatchResult[] results) throws Exception {
+        int size = indices.size();
+        PendingCommand[] pending = new PendingCommand[size];
+        Wave wave = new Wave(maxInFlight, size);
+        boolean timedOut = false;
+
+        for (int k = 0; k < size && wave.failure == null; k++) {
+            RouterOsBatchOperation op = operations.get(indices.get(k));
+            String id = idIndex.peek(endpoint, op.table(), op.name());
+            if (id == null) {
+                wave.done.countDown();
+                continue;
+            }
+            if (!wave.window.tryAcquire(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                timedOut = true;
+                break;
+            }
+            PendingCommand command = new PendingCommand(id, wave);
+            pending[k] = command;
+            try {
+                connection.execute(buildCommand(op, id), command);
+            } catch (ApiConnectionException e) {
+                throw e;
+            } catch (MikrotikApiException e) {
+                command.error(e);
+            }
+        }
+
+        if (!timedOut && wave.failure == null) {
+            timedOut = !wave.done.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        }
+        if (wave.failure != null) {
+            throw wave.failure;
+        }
+        if (timedOut) {
+            log.warn("Lote em {} excedeu {} ms. Fechando sessão.", endpoint, timeoutMs);
+            try {
+                connection.close();
+            } catch (Exception e) {
+                log.debug("Erro ao fechar sessão após timeout do lote: {}", e.getMessage());
+            }
+            throw new MikrotikApiException("Lote em " + endpoint + " excedeu " + timeoutMs + " ms",
+                    new SocketTimeoutException("Sem resposta do router dentro do prazo do lote"));
+        }
+
+        for (int k = 0; k < size; k++) {
+            int i = indices.get(k);
+            RouterOsBatchOperation op = operations.get(i);
+            PendingCommand command = pending[k];
+            if (command == null) {
+                results[i] = new RouterOsBatchResult(op, Status.NOT_FOUND, null);
+            } else if (command.error == null) {
+                results[i] = new RouterOsBatchResult(op, Status.OK, null);
+            } else if (RouterOsIdIndex.isStaleIdMessage(command.error)) {
+                results[i] = retryWithFreshId(connection, endpoint, op);
+            } else {
+                results[i] = new RouterOsBatchResult(op, Status.FAILED, command.error);
+            }
+        }
+    }
+
+    private RouterOsBatchResult retryWithFreshId(ApiConnection connection, RouterEndpoint endpoint,
+                                                 RouterOsBatchOperation op) throws ApiConnectionException {
+        try {
+            String id = idIndex.resolveFresh(connection, endpoint, op.table(), op.name());
+            if (id == null) {
+                return new RouterOsBatchResult(op, Status.NOT_FOUND, null);
+            }
+            connection.execute(buildCommand(op, id));
+            return new RouterOsBatchResult(op, Status.OK, null);
+        } catch (ApiConnectionException e) {
+            throw e;
+        } catch (Exception e) {
+            return new RouterOsBatchResult(op, Status.FAILED, e.getMessage());
+        }
+    }
+
+    private String buildCommand(RouterOsBatchOperation op, String id) {
+        StringBuilder cmd = new StringBuilder(op.table().getPath())
+                .append('/').append(op.action())
+                .append(" numbers=").append(id);
+        for (Map.Entry<String, String> attribute : op.attributes().entrySet()) {
+            cmd.append(' ').append(attribute.getKey()).append('=').append(RouterOsValues.quote(attribute.getValue()));
+        }
+        return cmd.toString();
+    }
+
+    /**
+     * Estado compartilhado pelos comandos de uma onda.
+     */
+    private static final class Wave {
+        private final Semaphore window;
+        private final CountDownLatch done;
+        private volatile ApiConnectionException failure;
+
+        private Wave(int maxInFlight, int size) {
+            this.window = new Semaphore(maxInFlight);
+            this.done = new CountDownLatch(size);
+        }
+
+        /**
+         * Conexão perdida: nenhuma outra resposta virá, libera a espera da onda.
+         */
+        private void abort(ApiConnectionException e) {
+            failure = e;
+            while (done.getCount() > 0) {
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Listener de um comando do lote. Recebe !trap (error) seguido de !done (completed);
+     * apenas o primeiro evento terminal libera a janela.
+     */
+    private static final class PendingCommand implements ResultListener {
+        private final String id;
+        private final Wave wave;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile String error;
+
+        private PendingCommand(String id, Wave wave) {
+            this.id = id;
+            this.wave = wave;
+        }
+
+        @Override
+        public void receive(Map<String, String> result) {
+            // set/remove/enable/disable não retornam linhas
+        }
+
+        @Override
+        public void error(MikrotikApiException e) {
+            if (e instanceof ApiConnectionException connectionFailure) {
+                wave.abort(connectionFailure);
+                return;
+            }
+            error = e.getMessage() != null ? e.getMessage() : "Erro RouterOS no item " + id;
+            finish();
+        }
+
+        @Override
+        public void completed() {
+            finish();
+        }
+
+        private void finish() {
+            if (finished.compareAndSet(false, true)) {
+                wave.window.release();
+                wave.done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Operação de um lote enviado a um único router via {@link MikrotikApiService#executeBatch}.
+ *
+ * @param table      Tabela PPP alvo
+ * @param action     Comando RouterOS aplicado ao item (set, remove, enable, disable)
+ * @param name       Nome do item (username PPPoE / nome do perfil)
+ * @param attributes Atributos do "set" (ex: profile=plano-100mb); vazio para os demais comandos
+ */
+public record RouterOsBatchOperation(Table table, String action, String name, Map<String, String> attributes) {
+
+    public static RouterOsBatchOperation changeProfile(String pppoeUsername, String profileName) {
+        return new RouterOsBatchOperation(Table.SECRET, "set", pppoeUsername, Map.of("profile", profileName));
+    }
+
+    public static RouterOsBatchOperation changePassword(String pppoeUsername, String password) {
+        return new RouterOsBatchOperation(Table.SECRET, "set", pppoeUsername, Map.of("password", password));
+    }
+
+    public static RouterOsBatchOperation disableSecret(String pppoeUsername) {
+        return new RouterOsBatchOperation(Table.SECRET, "disable", pppoeUsername, Map.of());
+    }
+
+    public static RouterOsBatchOperation enableSecret(String pppoeUsername) {
+        return new RouterOsBatchOperation(Table.SECRET, "enable", pppoeUsername, Map.of());
+    }
+
+    public static RouterOsBatchOperation removeSecret(String pppoeUsername) {
+        return new RouterOsBatchOperation(Table.SECRET, "remove", pppoeUsername, Map.of());
+    }
+
+    public static RouterOsBatchOperation disconnect(String pppoeUsername) {
+        return new RouterOsBatchOperation(Table.ACTIVE, "remove", pppoeUsername, Map.of());
+    }
+
+    public RouterOsBatchOperation {
+        attributes = attributes != null ? new LinkedHashMap<>(attributes) : Map.of();
+    }
+}
@@ -0,0 +1,19 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+/**
+ * Resultado de uma operação de lote, na mesma ordem das operações enviadas.
+ *
+ * @param operation Operação de origem
+ * @param status    OK, NOT_FOUND (item inexistente no router) ou FAILED
+ * @param message   Mensagem de erro do RouterOS quando status = FAILED
+ */
+public record RouterOsBatchResult(RouterOsBatchOperation operation, Status status, String message) {
+
+    public enum Status {
+        OK, NOT_FOUND, FAILED
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK;
+    }
+}
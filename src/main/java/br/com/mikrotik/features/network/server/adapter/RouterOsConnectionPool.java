@@ -0,0 +1,295 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.features.network.server.dto.ConnectionPoolStatsDTO;
+import br.com.mikrotik.shared.infrastructure.exception.MikrotikConnectionException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnection;
+import me.legrange.mikrotik.ApiConnectionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.net.SocketFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de sessões RouterOS API (TCP + login) por concentrador.
+ *
+ * MOTIVAÇÃO:
+ * Cada operação abria conexão, fazia login e fechava. Em concentradores
+ * carregados isso custa 150–400 ms por chamada e, em lote, esbarra no
+ * rate limit de login do RouterOS.
+ *
+ * COMPORTAMENTO:
+ * - Máximo de sessões simultâneas por router (semáforo)
+ * - Reuso LIFO: a sessão mais "quente" é entregue primeiro
+ * - Health-check (/system/identity/print) em sessões paradas há mais que o intervalo de validação
+ * - Sessão que cai no meio do comando é descartada e o comando é refeito uma vez
+ *   em sessão nova (novo login) — só quando a sessão vinha do pool
+ * - Sessões ociosas são fechadas periodicamente
+ */
+@Component
+@Slf4j
+public class RouterOsConnectionPool {
+
+    private static final String HEALTH_CHECK_COMMAND = "/system/identity/print";
+
+    @Value("${mikrotik.api.pool.max-sessions-per-router:4}")
+    private int maxSessionsPerRouter;
+
+    @Value("${mikrotik.api.pool.borrow-timeout-ms:10000}")
+    private long borrowTimeoutMs;
+
+    @Value("${mikrotik.api.pool.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${mikrotik.api.pool.validation-interval-ms:30000}")
+    private long validationIntervalMs;
+
+    @Value("${mikrotik.api.pool.connect-timeout-ms:10000}")
+    private int connectTimeoutMs;
+
+    private final Map<RouterEndpoint, RouterPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Callback executado com uma sessão emprestada do pool.
+     */
+    @FunctionalInterface
+    public interface RouterOsCallback<T> {
+        T doWith(ApiConnection connection) throws Exception;
+    }
+
+    /**
+     * Empresta uma sessão, executa o callback e devolve a sessão ao pool.
+     */
+    public <T> T execute(RouterEndpoint endpoint, RouterOsCallback<T> callback) throws Exception {
+        RouterPool pool = pools.computeIfAbsent(endpoint, RouterPool::new);
+        PooledSession session = pool.borrow();
+        try {
+            return callback.doWith(session.connection);
+        } catch (ApiConnectionException e) {
+            session.broken = true;
+            if (!session.reused) {
+                throw e;
+            }
+            // Sessão reaproveitada ficou obsoleta (router reiniciou, NAT expirou...):
+            // reabre com novo login e refaz o comando uma única vez.
+            log.warn("Sessão RouterOS obsoleta em {} ({}). Refazendo login.", endpoint, e.getMessage());
+            pool.release(session);
+            session = null;
+            session = pool.borrowFresh();
+            return callback.doWith(session.connection);
+        } catch (Exception e) {
+            if (!session.connection.isConnected()) {
+                session.broken = true;
+            }
+            throw e;
+        } finally {
+            pool.release(session);
+        }
+    }
+
+    /**
+     * Fecha e descarta todas as sessões de um router (ex: credenciais alteradas ou servidor removido).
+     */
+    public void invalidate(RouterEndpoint endpoint) {
+        RouterPool pool = pools.remove(endpoint);
+        if (pool != null) {
+            pool.close();
+            log.info("Pool RouterOS de {} encerrado", endpoint);
+        }
+    }
+
+    /**
+     * Métricas do pool do router; vazio se o router não tem sessões abertas.
+     */
+    public Optional<ConnectionPoolStatsDTO> getStats(RouterEndpoint endpoint) {
+        return Optional.ofNullable(pools.get(endpoint)).map(RouterPool::stats);
+    }
+
+    @Scheduled(fixedDelayString = "${mikrotik.api.pool.eviction-interval-ms:60000}")
+    public void evictIdleSessions() {
+        pools.values().forEach(RouterPool::evictIdle);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pools.values().forEach(RouterPool::close);
+        pools.clear();
+    }
+
+    // ==================================================================================
+    // ESTRUTURAS INTERNAS
+    // ==================================================================================
+
+    private static final class PooledSession {
+        private final ApiConnection connection;
+        private long lastUsedAt = System.currentTimeMillis();
+        private boolean reused;
+        private boolean broken;
+
+        private PooledSession(ApiConnection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private final class RouterPool {
+        private final RouterEndpoint endpoint;
+        private final Semaphore permits;
+        private final LinkedBlockingDeque<PooledSession> idle = new LinkedBlockingDeque<>();
+        private final AtomicLong created = new AtomicLong();
+        private final AtomicLong reused = new AtomicLong();
+        private final AtomicLong invalidated = new AtomicLong();
+        private final AtomicLong evicted = new AtomicLong();
+        private final AtomicLong borrowTimeouts = new AtomicLong();
+        private volatile boolean closed;
+
+        private RouterPool(RouterEndpoint endpoint) {
+            this.endpoint = endpoint;
+            this.permits = new Semaphore(maxSessionsPerRouter, true);
+        }
+
+        private PooledSession borrow() throws Exception {
+            acquirePermit();
+            try {
+                PooledSession session;
+                while ((session = idle.pollFirst()) != null) {
+                    if (isHealthy(session)) {
+                        session.reused = true;
+                        reused.incrementAndGet();
+                        return session;
+                    }
+                    invalidated.incrementAndGet();
+                    closeQuietly(session);
+                }
+                return open();
+            } catch (Exception e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Abre uma sessão nova ignorando as ociosas (usado após detectar sessão obsoleta).
+         */
+        private PooledSession borrowFresh() throws Exception {
+            acquirePermit();
+            try {
+                return open();
+            } catch (Exception e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        private void release(PooledSession session) {
+            if (session == null) {
+                return;
+            }
+            try {
+                if (closed || session.broken || !session.connection.isConnected()) {
+                    invalidated.incrementAndGet();
+                    closeQuietly(session);
+                } else {
+                    session.lastUsedAt = System.currentTimeMillis();
+                    idle.offerFirst(session);
+                }
+            } finally {
+                permits.release();
+            }
+        }
+
+        private void acquirePermit() throws InterruptedException {
+            if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                borrowTimeouts.incrementAndGet();
+                throw new MikrotikConnectionException(
+                        "Tempo esgotado aguardando sessão livre com " + endpoint +
+                        " (máximo de " + maxSessionsPerRouter + " sessões simultâneas)");
+            }
+        }
+
+        private PooledSession open() throws Exception {
+            ApiConnection connection = ApiConnection.connect(
+                    SocketFactory.getDefault(), endpoint.host(), endpoint.port(), connectTimeoutMs);
+            try {
+                connection.login(endpoint.username(), endpoint.password());
+            } catch (Exception e) {
+                try {
+                    connection.close();
+                } catch (Exception ignored) {
+                    // conexão já inutilizada
+                }
+                throw e;
+            }
+            created.incrementAndGet();
+            log.debug("Nova sessão RouterOS aberta com {}", endpoint);
+            return new PooledSession(connection);
+        }
+
+        private boolean isHealthy(PooledSession session) {
+            if (!session.connection.isConnected()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - session.lastUsedAt < validationIntervalMs) {
+                return true;
+            }
+            try {
+                session.connection.execute(HEALTH_CHECK_COMMAND);
+                return true;
+            } catch (Exception e) {
+                log.debug("Health-check falhou para sessão de {}: {}", endpoint, e.getMessage());
+                return false;
+            }
+        }
+
+        private void evictIdle() {
+            long limit = System.currentTimeMillis() - idleTimeoutMs;
+            Iterator<PooledSession> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledSession session = it.next();
+                if (session.lastUsedAt < limit && idle.removeFirstOccurrence(session)) {
+                    evicted.incrementAndGet();
+                    closeQuietly(session);
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            PooledSession session;
+            while ((session = idle.pollFirst()) != null) {
+                closeQuietly(session);
+            }
+        }
+
+        private ConnectionPoolStatsDTO stats() {
+            return ConnectionPoolStatsDTO.builder()
+                    .router(endpoint.host() + ":" + endpoint.port())
+                    .maxSessions(maxSessionsPerRouter)
+                    .activeSessions(maxSessionsPerRouter - permits.availablePermits())
+                    .idleSessions(idle.size())
+                    .created(created.get())
+                    .reused(reused.get())
+                    .invalidated(invalidated.get())
+                    .evicted(evicted.get())
+                    .borrowTimeouts(borrowTimeouts.get())
+                    .build();
+        }
+
+        private void closeQuietly(PooledSession session) {
+            try {
+                session.connection.close();
+            } catch (Exception e) {
+                log.warn("Erro ao fechar sessão RouterOS de {} (ignorado): {}", endpoint, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tokenizador da saída textual do RouterOS ({@code print detail} / {@code print terse}).
+ *
+ * FORMATO:
+ * <pre>
+ * Flags: X - disabled
+ *  0   name="user1" service=pppoe password="abc" profile=default
+ *      routes="" limit-bytes-in=0
+ *  1 X ;;; comentário com espaços
+ *      name="user2" ...
+ * </pre>
+ *
+ * Cada linha é percorrida uma única vez, sem regex: o cabeçalho ({@code N flags ;;; comentário})
+ * abre um item e os pares {@code chave=valor} seguintes — na mesma linha ou nas de continuação —
+ * são entregues ao {@link Handler}. Valores entre aspas podem conter espaços e escapes ({@code \"}).
+ * Bytes fora do ASCII vêm como escapes hexadecimais ({@code Jos\C3\A9}) e são decodificados
+ * como UTF-8, inclusive em comentários {@code ;;;}.
+ *
+ * Uso incremental: {@link #accept(String)} para cada linha e {@link #finish()} ao final.
+ * Não é thread-safe (uma instância por leitura).
+ */
+public final class RouterOsDetailParser {
+
+    /**
+     * Recebe os itens conforme são reconhecidos.
+     */
+    public interface Handler {
+        /** Início de um item; {@code flags} são as letras do cabeçalho (ex: "X", "D", "" se nenhuma). */
+        void startEntry(String flags);
+
+        /** Atributo do item corrente. Comentários {@code ;;;} chegam como chave {@code comment}. */
+        void attribute(String key, String value);
+
+        /** Fim do item corrente. */
+        void endEntry();
+    }
+
+    private final Handler handler;
+    private boolean inEntry;
+
+    public RouterOsDetailParser(Handler handler) {
+        this.handler = handler;
+    }
+
+    public void accept(String line) {
+        int length = line.length();
+        int pos = skipSpaces(line, 0);
+        if (pos >= length) {
+            return;
+        }
+
+        if (Character.isDigit(line.charAt(pos))) {
+            int end = pos;
+            while (end < length && Character.isDigit(line.charAt(end))) {
+                end++;
+            }
+            if (end == length || line.charAt(end) == ' ') {
+                pos = startEntry(line, end);
+            }
+        } else if (!inEntry) {
+            // "Flags: ..." e demais linhas antes do primeiro item
+            return;
+        }
+
+        parseAttributes(line, pos);
+    }
+
+    public void finish() {
+        if (inEntry) {
+            handler.endEntry();
+            inEntry = false;
+        }
+    }
+
+    /**
+     * Lê as flags após o índice e o comentário ";;;", se houver. Retorna a posição dos atributos.
+     */
+    private int startEntry(String line, int pos) {
+        if (inEntry) {
+            handler.endEntry();
+        }
+        inEntry = true;
+
+        int length = line.length();
+        StringBuilder flags = null;
+        pos = skipSpaces(line, pos);
+        // Flags: caracteres isolados que não formam "chave=" (ex: "X", "D", "R", "*")
+        while (pos < length) {
+            int end = tokenEnd(line, pos);
+            if (end - pos != 1 || line.charAt(pos) == ';' || (end < length && line.charAt(end) == '=')) {
+                break;
+            }
+            if (flags == null) {
+                flags = new StringBuilder(4);
+            }
+            flags.append(line.charAt(pos));
+            pos = skipSpaces(line, end);
+        }
+        handler.startEntry(flags == null ? "" : flags.toString());
+
+        if (line.startsWith(";;;", pos)) {
+            handler.attribute("comment", unescape(line, pos + 3, length).strip());
+            return length;
+        }
+        return pos;
+    }
+
+    private void parseAttributes(String line, int pos) {
+        int length = line.length();
+        while ((pos = skipSpaces(line, pos)) < length) {
+            int eq = pos;
+            while (eq < length && line.charAt(eq) != '=' && line.charAt(eq) != ' ') {
+                eq++;
+            }
+            if (eq >= length || line.charAt(eq) != '=') {
+                pos = eq; // token solto (não é chave=valor)
+                continue;
+            }
+            String key = line.substring(pos, eq);
+            pos = eq + 1;
+
+            if (pos < length && line.charAt(pos) == '"') {
+                pos = readQuoted(line, pos + 1, key);
+            } else {
+                int end = pos;
+                while (end < length && !Character.isWhitespace(line.charAt(end))) {
+                    end++;
+                }
+                handler.attribute(key, unescape(line, pos, end));
+                pos = end;
+            }
+        }
+    }
+
+    /**
+     * Lê um valor entre aspas a partir de {@code start} (após a aspa de abertura).
+     */
+    private int readQuoted(String line, int start, String key) {
+        int length = line.length();
+        int pos = start;
+        while (pos < length && line.charAt(pos) != '"') {
+            pos += line.charAt(pos) == '\\' ? 2 : 1;
+        }
+        pos = Math.min(pos, length);
+        handler.attribute(key, unescape(line, start, pos));
+        return pos + 1;
+    }
+
+    /**
+     * Remove os escapes do trecho [start, end). {@code \XX} (hexadecimal maiúsculo) é um byte
+     * UTF-8; {@code \n}, {@code \t}, {@code \r} e {@code \_} são controle/espaço; nos demais
+     * casos o caractere após a barra vale literalmente. Só aloca se houver barra.
+     */
+    private static String unescape(String line, int start, int end) {
+        int slash = line.indexOf('\\', start);
+        if (slash < 0 || slash >= end) {
+            return line.substring(start, end);
+        }
+        StringBuilder out = new StringBuilder(end - start).append(line, start, slash);
+        byte[] bytes = new byte[end - slash];
+        int pending = 0;
+        int pos = slash;
+        while (pos < end) {
+            char c = line.charAt(pos);
+            if (c == '\\' && pos + 2 < end && isHex(line.charAt(pos + 1)) && isHex(line.charAt(pos + 2))) {
+                bytes[pending++] = (byte) Integer.parseInt(line, pos + 1, pos + 3, 16);
+                pos += 3;
+                continue;
+            }
+            if (pending > 0) {
+                out.append(new String(bytes, 0, pending, StandardCharsets.UTF_8));
+                pending = 0;
+            }
+            if (c == '\\' && pos + 1 < end) {
+                char next = line.charAt(pos + 1);
+                out.append(switch (next) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    case 'r' -> '\r';
+                    case '_' -> ' ';
+                    default -> next;
+                });
+                pos += 2;
+            } else {
+                out.append(c);
+                pos++;
+            }
+        }
+        if (pending > 0) {
+            out.append(new String(bytes, 0, pending, StandardCharsets.UTF_8));
+        }
+        return out.toString();
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F');
+    }
+
+    private static int skipSpaces(String line, int pos) {
+        int length = line.length();
+        while (pos < length && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int tokenEnd(String line, int pos) {
+        int length = line.length();
+        while (pos < length && !Character.isWhitespace(line.charAt(pos)) && line.charAt(pos) != '=') {
+            pos++;
+        }
+        return pos;
+    }
+}
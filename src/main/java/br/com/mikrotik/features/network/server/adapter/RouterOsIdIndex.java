@@ -0,0 +1,222 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice em memória nome → .id das tabelas PPP de cada router.
+ *
+ * MOTIVAÇÃO:
+ * Resolver o .id de um secret exigia um /ppp/secret/print completo + varredura
+ * linear em Java a cada bloqueio, troca de perfil ou desconexão. Com milhares
+ * de secrets, cada operação trafegava megabytes.
+ *
+ * ESTRATÉGIA:
+ * - Carga preguiçosa: um único print por tabela/router preenche o índice
+ * - Escritas feitas pela própria aplicação (add/remove/rename) atualizam o índice
+ * - Listagens completas feitas por outros fluxos reabastecem o índice "de graça"
+ * - Miss: em RouterOS com filtro no servidor, consulta só o item
+ *   (print where name=... return .id,name → uma linha). O filtro diferencia maiúsculas
+ *   (o banco não): sem resultado, ou em firmware antigo, recarga completa limitada a uma
+ *   por intervalo mínimo e comparação pelo nome normalizado
+ * - Erro de .id obsoleto ("no such item") descarta a entrada e resolve de novo
+ *
+ * Nomes são indexados em minúsculas (mesmo critério equalsIgnoreCase usado antes).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RouterOsIdIndex {
+
+    public enum Table {
+        SECRET("/ppp/secret"),
+        PROFILE("/ppp/profile"),
+        ACTIVE("/ppp/active");
+
+        private final String path;
+
+        Table(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+    }
+
+    @Value("${mikrotik.api.id-index.min-refresh-interval-ms:5000}")
+    private long minRefreshIntervalMs;
+
+    private final RouterOsVersionDetector versionDetector;
+
+    private final Map<IndexKey, TableIndex> indexes = new ConcurrentHashMap<>();
+
+    private record IndexKey(RouterEndpoint endpoint, Table table) {}
+
+    private static final class TableIndex {
+        private volatile Map<String, String> ids = new ConcurrentHashMap<>();
+        private volatile long loadedAt;
+    }
+
+    /**
+     * Resolve o .id de um item pelo nome. Retorna null se o item não existir no router.
+     */
+    public String resolve(ApiConnection connection, RouterEndpoint endpoint, Table table, String name) throws Exception {
+        TableIndex index = indexFor(endpoint, table);
+        String id = index.ids.get(normalize(name));
+        if (id != null) {
+            return id;
+        }
+
+        if (versionDetector.supportsServerSideQuery(connection, endpoint)) {
+            id = lookup(connection, table, name);
+            if (id != null) {
+                index.ids.put(normalize(name), id);
+                return id;
+            }
+        }
+
+        long observedLoad = index.loadedAt;
+        if (observedLoad == 0 || System.currentTimeMillis() - observedLoad >= minRefreshIntervalMs) {
+            reload(connection, endpoint, table, index, observedLoad);
+        }
+        return index.ids.get(normalize(name));
+    }
+
+    /**
+     * Consulta apenas o índice em memória, sem ir ao router.
+     */
+    public String peek(RouterEndpoint endpoint, Table table, String name) {
+        return name == null ? null : indexFor(endpoint, table).ids.get(normalize(name));
+    }
+
+    /**
+     * Descarta a entrada (ex: .id obsoleto) e resolve novamente direto no router,
+     * ignorando o intervalo mínimo de recarga.
+     */
+    public String resolveFresh(ApiConnection connection, RouterEndpoint endpoint, Table table, String name) throws Exception {
+        remove(endpoint, table, name);
+        if (!versionDetector.supportsServerSideQuery(connection, endpoint)) {
+            refresh(connection, endpoint, table);
+        }
+        return resolve(connection, endpoint, table, name);
+    }
+
+    /**
+     * Força a recarga da tabela (ex: após erro de .id obsoleto).
+     */
+    public void refresh(ApiConnection connection, RouterEndpoint endpoint, Table table) throws Exception {
+        TableIndex index = indexFor(endpoint, table);
+        reload(connection, endpoint, table, index, index.loadedAt);
+    }
+
+    /**
+     * Reabastece o índice a partir de um print completo já obtido por outro fluxo.
+     */
+    public void load(RouterEndpoint endpoint, Table table, List<Map<String, String>> rows) {
+        TableIndex index = indexFor(endpoint, table);
+        index.ids = toIdMap(rows);
+        index.loadedAt = System.currentTimeMillis();
+    }
+
+    public void put(RouterEndpoint endpoint, Table table, String name, String id) {
+        if (name == null || id == null) {
+            return;
+        }
+        indexFor(endpoint, table).ids.put(normalize(name), id);
+    }
+
+    public void remove(RouterEndpoint endpoint, Table table, String name) {
+        if (name == null) {
+            return;
+        }
+        indexFor(endpoint, table).ids.remove(normalize(name));
+    }
+
+    public void rename(RouterEndpoint endpoint, Table table, String oldName, String newName, String id) {
+        remove(endpoint, table, oldName);
+        put(endpoint, table, newName, id);
+    }
+
+    /**
+     * Descarta todos os índices de um router (ex: credenciais alteradas ou servidor removido).
+     */
+    public void invalidate(RouterEndpoint endpoint) {
+        indexes.keySet().removeIf(key -> key.endpoint().equals(endpoint));
+        versionDetector.invalidate(endpoint);
+    }
+
+    /**
+     * RouterOS responde "no such item" quando o .id informado não existe mais
+     * (item removido/recriado fora da aplicação, sessão PPP reconectada...).
+     */
+    public static boolean isStaleIdError(Exception e) {
+        return isStaleIdMessage(e.getMessage());
+    }
+
+    public static boolean isStaleIdMessage(String message) {
+        return message != null && message.toLowerCase(Locale.ROOT).contains("no such item");
+    }
+
+    private TableIndex indexFor(RouterEndpoint endpoint, Table table) {
+        return indexes.computeIfAbsent(new IndexKey(endpoint, table), key -> new TableIndex());
+    }
+
+    private void reload(ApiConnection connection, RouterEndpoint endpoint, Table table,
+                        TableIndex index, long observedLoad) throws Exception {
+        synchronized (index) {
+            // Outra thread já recarregou enquanto esperávamos o lock
+            if (index.loadedAt != observedLoad) {
+                return;
+            }
+            String command = table.getPath() + "/print";
+            if (versionDetector.supportsServerSideQuery(connection, endpoint)) {
+                command += " return .id,name"; // .proplist: só os campos do índice
+            }
+            List<Map<String, String>> rows = connection.execute(command);
+            index.ids = toIdMap(rows);
+            index.loadedAt = System.currentTimeMillis();
+            log.debug("Índice {} de {} recarregado: {} itens", table, endpoint, index.ids.size());
+        }
+    }
+
+    /**
+     * Consulta exata no router; null se não houver item com o nome (ou se o nome não
+     * puder ir no comando) — o chamador recorre à recarga completa.
+     */
+    private String lookup(ApiConnection connection, Table table, String name) throws Exception {
+        String quoted = RouterOsValues.tryQuote(name);
+        if (quoted == null) {
+            return null;
+        }
+        List<Map<String, String>> rows = connection.execute(
+                table.getPath() + "/print where name=" + quoted + " return .id,name");
+        return rows == null || rows.isEmpty() ? null : rows.get(0).get(".id");
+    }
+
+    private Map<String, String> toIdMap(List<Map<String, String>> rows) {
+        Map<String, String> ids = new ConcurrentHashMap<>();
+        if (rows != null) {
+            for (Map<String, String> row : rows) {
+                String name = row.get("name");
+                String id = row.get(".id");
+                if (name != null && id != null) {
+                    ids.putIfAbsent(normalize(name), id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
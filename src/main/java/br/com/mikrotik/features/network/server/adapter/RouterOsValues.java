@@ -0,0 +1,48 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+/**
+ * Valores de parâmetros nos comandos enviados pela API (me.legrange.mikrotik).
+ *
+ * O tokenizador da biblioteca aceita texto entre aspas duplas ou simples e não tem
+ * escapes: o valor termina na próxima aspa igual à de abertura e não pode conter
+ * quebra de linha. Valor com aspas duplas vai entre aspas simples; com os dois tipos
+ * de aspa (ou com quebra de linha) não há como representá-lo no comando.
+ */
+public final class RouterOsValues {
+
+    private RouterOsValues() {
+    }
+
+    /**
+     * Valor entre aspas para o comando, ou null se não for representável.
+     */
+    public static String tryQuote(String value) {
+        if (value == null) {
+            return "\"\"";
+        }
+        if (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return null;
+        }
+        if (value.indexOf('"') < 0) {
+            return "\"" + value + "\"";
+        }
+        if (value.indexOf('\'') < 0) {
+            return "'" + value + "'";
+        }
+        return null;
+    }
+
+    /**
+     * Valor entre aspas para o comando.
+     *
+     * @throws IllegalArgumentException valor com aspas simples e duplas ou com quebra de linha
+     */
+    public static String quote(String value) {
+        String quoted = tryQuote(value);
+        if (quoted == null) {
+            throw new IllegalArgumentException(
+                    "Valor não suportado pela API do RouterOS (aspas simples e duplas ou quebra de linha): " + value);
+        }
+        return quoted;
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Versão do RouterOS reportada em /system/resource/print (ex: "6.49.7 (long-term)", "7.14.3 (stable)").
+ */
+public record RouterOsVersion(int major, int minor, String raw) {
+
+    public static final RouterOsVersion UNKNOWN = new RouterOsVersion(0, 0, "unknown");
+
+    private static final Pattern VERSION_PATTERN = Pattern.compile("^(\\d+)(?:\\.(\\d+))?");
+
+    public static RouterOsVersion parse(String raw) {
+        if (raw == null) {
+            return UNKNOWN;
+        }
+        Matcher matcher = VERSION_PATTERN.matcher(raw.trim());
+        if (!matcher.find()) {
+            return UNKNOWN;
+        }
+        int major = Integer.parseInt(matcher.group(1));
+        int minor = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 0;
+        return new RouterOsVersion(major, minor, raw.trim());
+    }
+
+    public boolean isKnown() {
+        return major > 0;
+    }
+
+    public boolean isAtLeast(RouterOsVersion other) {
+        return major > other.major || (major == other.major && minor >= other.minor);
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
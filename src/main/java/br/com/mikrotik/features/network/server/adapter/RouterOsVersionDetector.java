@@ -0,0 +1,66 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnection;
+import me.legrange.mikrotik.ApiConnectionException;
+import me.legrange.mikrotik.MikrotikApiException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detecta (uma vez por router) a versão do RouterOS e decide se o adapter pode
+ * filtrar no servidor (?name= / .proplist) ou precisa listar e filtrar em Java.
+ *
+ * Firmware antigo ou versão não identificada → fallback list-and-filter (comportamento anterior).
+ */
+@Component
+@Slf4j
+public class RouterOsVersionDetector {
+
+    @Value("${mikrotik.api.server-side-query-min-version:6.0}")
+    private String serverSideQueryMinVersion;
+
+    private final Map<RouterEndpoint, RouterOsVersion> versions = new ConcurrentHashMap<>();
+
+    public RouterOsVersion getVersion(ApiConnection connection, RouterEndpoint endpoint) throws ApiConnectionException {
+        RouterOsVersion cached = versions.get(endpoint);
+        if (cached != null) {
+            return cached;
+        }
+        RouterOsVersion detected = detect(connection, endpoint);
+        versions.put(endpoint, detected);
+        return detected;
+    }
+
+    public boolean supportsServerSideQuery(ApiConnection connection, RouterEndpoint endpoint) throws ApiConnectionException {
+        RouterOsVersion version = getVersion(connection, endpoint);
+        return version.isKnown() && version.isAtLeast(RouterOsVersion.parse(serverSideQueryMinVersion));
+    }
+
+    public void invalidate(RouterEndpoint endpoint) {
+        versions.remove(endpoint);
+    }
+
+    private RouterOsVersion detect(ApiConnection connection, RouterEndpoint endpoint) throws ApiConnectionException {
+        try {
+            List<Map<String, String>> rows = connection.execute("/system/resource/print");
+            RouterOsVersion version = rows != null && !rows.isEmpty()
+                    ? RouterOsVersion.parse(rows.get(0).get("version"))
+                    : RouterOsVersion.UNKNOWN;
+            log.info("RouterOS {} detectado em {} (filtro no servidor: {})", version, endpoint,
+                    version.isKnown() && version.isAtLeast(RouterOsVersion.parse(serverSideQueryMinVersion)));
+            return version;
+        } catch (ApiConnectionException e) {
+            // Falha de conexão não diz nada sobre a versão: não cachear
+            throw e;
+        } catch (MikrotikApiException e) {
+            log.warn("Não foi possível detectar a versão do RouterOS em {}: {}. Usando list-and-filter.",
+                    endpoint, e.getMessage());
+            return RouterOsVersion.UNKNOWN;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.features.network.server.dto.RouterResilienceStatsDTO;
+import br.com.mikrotik.shared.infrastructure.exception.MikrotikConnectionException;
+import br.com.mikrotik.shared.infrastructure.exception.RouterUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnectionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Isolamento por concentrador: bulkhead, limite de taxa e circuit breaker.
+ *
+ * MOTIVAÇÃO:
+ * Com um router fora do ar, cada tentativa do @Retryable esperava o timeout de
+ * conexão segurando uma thread do networkIntegrationExecutor (5 threads). Os
+ * demais routers ficavam sem thread para trabalhar.
+ *
+ * POR ROUTER:
+ * - Bulkhead: no máximo N chamadas simultâneas; quem esperar além do limite desiste
+ * - Token bucket: taxa sustentada de chamadas com rajada limitada (um lote conta como uma chamada)
+ * - Circuit breaker: após K falhas de conexão seguidas o circuito abre e as chamadas
+ *   falham na hora ({@link RouterUnavailableException}); passado o intervalo, uma única
+ *   chamada de teste (half-open) decide se fecha ou reabre
+ *
+ * Só falhas de conectividade contam para o circuito. Erros do RouterOS (!trap, item
+ * inexistente, login recusado) mostram que o router está respondendo.
+ */
+@Component
+@Slf4j
+public class RouterResilienceRegistry {
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    @Value("${mikrotik.api.resilience.max-concurrent-calls:4}")
+    private int maxConcurrentCalls;
+
+    @Value("${mikrotik.api.resilience.max-wait-ms:2000}")
+    private long maxWaitMs;
+
+    @Value("${mikrotik.api.resilience.calls-per-second:20}")
+    private double callsPerSecond;
+
+    @Value("${mikrotik.api.resilience.burst:40}")
+    private int burst;
+
+    @Value("${mikrotik.api.resilience.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${mikrotik.api.resilience.open-duration-ms:30000}")
+    private long openDurationMs;
+
+    private final Map<RouterEndpoint, RouterGuard> guards = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface GuardedCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Executa a chamada sob as proteções do router.
+     */
+    public <T> T execute(RouterEndpoint endpoint, GuardedCall<T> call) throws Exception {
+        RouterGuard guard = guards.computeIfAbsent(endpoint, RouterGuard::new);
+        boolean probe = guard.acquirePermission();
+        boolean admitted = false;
+        boolean invoked = false;
+        try {
+            guard.enterBulkhead();
+            admitted = true;
+            guard.acquireToken();
+            invoked = true;
+            T result = call.call();
+            guard.onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (invoked) {
+                if (isConnectivityFailure(e)) {
+                    guard.onFailure(e);
+                } else {
+                    guard.onSuccess(); // router respondeu (!trap, item inexistente...)
+                }
+            }
+            throw e;
+        } finally {
+            if (admitted) {
+                guard.leaveBulkhead();
+            }
+            if (probe) {
+                guard.endProbe();
+            }
+        }
+    }
+
+    public CircuitState getState(RouterEndpoint endpoint) {
+        RouterGuard guard = guards.get(endpoint);
+        return guard == null ? CircuitState.CLOSED : guard.currentState();
+    }
+
+    /**
+     * Descarta o estado do router (ex: credenciais alteradas ou servidor removido).
+     */
+    public void invalidate(RouterEndpoint endpoint) {
+        guards.remove(endpoint);
+    }
+
+    /**
+     * Estado de resiliência do router; vazio se o router ainda não foi chamado.
+     */
+    public Optional<RouterResilienceStatsDTO> getStats(RouterEndpoint endpoint) {
+        return Optional.ofNullable(guards.get(endpoint)).map(RouterGuard::stats);
+    }
+
+    private static boolean isConnectivityFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof ApiConnectionException || t instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================================================================================
+    // ESTRUTURAS INTERNAS
+    // ==================================================================================
+
+    private final class RouterGuard {
+        private final RouterEndpoint endpoint;
+        private final Semaphore bulkhead;
+        private final AtomicLong rejectedByCircuit = new AtomicLong();
+        private final AtomicLong rejectedByBulkhead = new AtomicLong();
+        private final AtomicLong rejectedByRateLimit = new AtomicLong();
+
+        // Circuit breaker (protegido por this)
+        private CircuitState state = CircuitState.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean probeInFlight;
+
+        // Token bucket (protegido por this)
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+
+        private RouterGuard(RouterEndpoint endpoint) {
+            this.endpoint = endpoint;
+            this.bulkhead = new Semaphore(maxConcurrentCalls, true);
+            this.tokens = burst;
+        }
+
+        /**
+         * @return true se esta chamada é o teste do estado half-open
+         */
+        private synchronized boolean acquirePermission() {
+            if (state == CircuitState.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+                state = CircuitState.HALF_OPEN;
+                log.info("Circuito de {} em HALF_OPEN: testando o router", endpoint);
+            }
+            if (state == CircuitState.CLOSED) {
+                return false;
+            }
+            if (state == CircuitState.HALF_OPEN && !probeInFlight) {
+                probeInFlight = true;
+                return true;
+            }
+            rejectedByCircuit.incrementAndGet();
+            throw new RouterUnavailableException("Router " + endpoint + " indisponível (circuito " + state +
+                    " após " + consecutiveFailures + " falhas de conexão seguidas)");
+        }
+
+        private synchronized void endProbe() {
+            probeInFlight = false;
+        }
+
+        private synchronized void onSuccess() {
+            if (state != CircuitState.CLOSED) {
+                log.info("✅ Circuito de {} FECHADO: router respondendo novamente", endpoint);
+            }
+            state = CircuitState.CLOSED;
+            consecutiveFailures = 0;
+        }
+
+        private synchronized void onFailure(Exception e) {
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN
+                    || (state == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = CircuitState.OPEN;
+                openedAt = System.currentTimeMillis();
+                log.warn("⚠️ Circuito de {} ABERTO por {} ms após {} falhas de conexão: {}",
+                        endpoint, openDurationMs, consecutiveFailures, e.getMessage());
+            }
+        }
+
+        private void enterBulkhead() throws InterruptedException {
+            if (!bulkhead.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                rejectedByBulkhead.incrementAndGet();
+                throw new MikrotikConnectionException("Router " + endpoint + " ocupado: " +
+                        maxConcurrentCalls + " chamadas em andamento");
+            }
+        }
+
+        private void leaveBulkhead() {
+            bulkhead.release();
+        }
+
+        /**
+         * Reserva um token; se o bucket estiver vazio, espera a reposição (até max-wait).
+         */
+        private void acquireToken() throws InterruptedException {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens--;
+                    return;
+                }
+                waitNanos = (long) ((1 - tokens) / callsPerSecond * 1_000_000_000L);
+                if (waitNanos > TimeUnit.MILLISECONDS.toNanos(maxWaitMs)) {
+                    rejectedByRateLimit.incrementAndGet();
+                    throw new MikrotikConnectionException("Limite de " + callsPerSecond +
+                            " chamadas/s atingido para " + endpoint);
+                }
+                tokens--; // reserva: o saldo negativo é pago pela espera abaixo
+            }
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1_000_000_000.0 * callsPerSecond);
+            lastRefillNanos = now;
+        }
+
+        private synchronized CircuitState currentState() {
+            return state;
+        }
+
+        private synchronized RouterResilienceStatsDTO stats() {
+            refill();
+            return RouterResilienceStatsDTO.builder()
+                    .router(endpoint.host() + ":" + endpoint.port())
+                    .circuitState(state.name())
+                    .consecutiveFailures(consecutiveFailures)
+                    .openedAt(openedAt == 0 ? null
+                            : LocalDateTime.ofInstant(Instant.ofEpochMilli(openedAt), ZoneId.systemDefault()))
+                    .maxConcurrentCalls(maxConcurrentCalls)
+                    .activeCalls(maxConcurrentCalls - bulkhead.availablePermits())
+                    .availableTokens(Math.max(0, tokens))
+                    .rejectedByCircuit(rejectedByCircuit.get())
+                    .rejectedByBulkhead(rejectedByBulkhead.get())
+                    .rejectedByRateLimit(rejectedByRateLimit.get())
+                    .build();
+        }
+    }
+}
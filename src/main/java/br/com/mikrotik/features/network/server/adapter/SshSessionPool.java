@@ -0,0 +1,241 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.shared.infrastructure.exception.MikrotikConnectionException;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sessões SSH persistentes por concentrador, multiplexadas em canais exec.
+ *
+ * MOTIVAÇÃO:
+ * Cada comando SSH fazia handshake completo (troca de chaves + autenticação)
+ * e desconectava em seguida — centenas de ms por comando, inviável em lote.
+ *
+ * COMPORTAMENTO:
+ * - Uma Session autenticada por router, mantida viva com keep-alive
+ * - Cada comando abre apenas um canal exec sobre essa sessão
+ * - Canais simultâneos por router limitados (sshd do RouterOS aceita poucos)
+ * - Sessão caída é reaberta; se a abertura do canal falhar numa sessão
+ *   reaproveitada, reconecta e tenta uma única vez (o comando ainda não foi aceito)
+ * - Sessões sem uso além do idle-timeout são encerradas periodicamente
+ */
+@Component
+@Slf4j
+public class SshSessionPool {
+
+    @Value("${mikrotik.ssh.pool.max-channels-per-router:4}")
+    private int maxChannelsPerRouter;
+
+    @Value("${mikrotik.ssh.pool.borrow-timeout-ms:10000}")
+    private long borrowTimeoutMs;
+
+    @Value("${mikrotik.ssh.pool.idle-timeout-ms:300000}")
+    private long idleTimeoutMs;
+
+    @Value("${mikrotik.ssh.pool.keepalive-interval-ms:30000}")
+    private int keepAliveIntervalMs;
+
+    @Value("${mikrotik.ssh.pool.connect-timeout-ms:5000}")
+    private int connectTimeoutMs;
+
+    private final Map<RouterEndpoint, RouterSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Callback executado com um canal exec já conectado.
+     */
+    @FunctionalInterface
+    public interface ExecCallback<T> {
+        T doWith(ExecChannel channel) throws Exception;
+    }
+
+    /**
+     * Canal exec em andamento: STDOUT em stream, STDERR acumulado em memória
+     * (pequeno e lido ao final, sem risco de travar o STDOUT).
+     */
+    public static final class ExecChannel {
+        private final ChannelExec channel;
+        private final InputStream stdout;
+        private final ByteArrayOutputStream stderr;
+
+        private ExecChannel(ChannelExec channel, InputStream stdout, ByteArrayOutputStream stderr) {
+            this.channel = channel;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        public InputStream getStdout() {
+            return stdout;
+        }
+
+        public String getStderr() {
+            return stderr.toString(StandardCharsets.UTF_8);
+        }
+
+        public int getExitStatus() {
+            return channel.getExitStatus();
+        }
+    }
+
+    /**
+     * Abre um canal exec na sessão do router, executa o callback e fecha o canal
+     * (a sessão permanece aberta para os próximos comandos).
+     */
+    public <T> T exec(RouterEndpoint endpoint, String command, ExecCallback<T> callback) throws Exception {
+        RouterSession router = sessions.computeIfAbsent(endpoint, RouterSession::new);
+        router.acquire();
+        ExecChannel channel = null;
+        try {
+            channel = router.open(command);
+            return callback.doWith(channel);
+        } finally {
+            if (channel != null) {
+                channel.channel.disconnect();
+            }
+            router.release();
+        }
+    }
+
+    /**
+     * Encerra a sessão de um router (ex: credenciais alteradas ou servidor removido).
+     */
+    public void invalidate(RouterEndpoint endpoint) {
+        RouterSession router = sessions.remove(endpoint);
+        if (router != null) {
+            router.close();
+            log.info("Sessão SSH de {} encerrada", endpoint);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mikrotik.ssh.pool.eviction-interval-ms:60000}")
+    public void evictIdleSessions() {
+        long limit = System.currentTimeMillis() - idleTimeoutMs;
+        sessions.values().forEach(router -> router.closeIfIdle(limit));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sessions.values().forEach(RouterSession::close);
+        sessions.clear();
+    }
+
+    // ==================================================================================
+    // ESTRUTURAS INTERNAS
+    // ==================================================================================
+
+    private final class RouterSession {
+        private final RouterEndpoint endpoint;
+        private final Semaphore channels;
+        private Session session;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        private RouterSession(RouterEndpoint endpoint) {
+            this.endpoint = endpoint;
+            this.channels = new Semaphore(maxChannelsPerRouter, true);
+        }
+
+        private void acquire() throws InterruptedException {
+            if (!channels.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MikrotikConnectionException(
+                        "Tempo esgotado aguardando canal SSH livre com " + endpoint +
+                        " (máximo de " + maxChannelsPerRouter + " canais simultâneos)");
+            }
+        }
+
+        private void release() {
+            lastUsedAt = System.currentTimeMillis();
+            channels.release();
+        }
+
+        private ExecChannel open(String command) throws Exception {
+            Session current = connectedSession();
+            boolean reused = current != null;
+            if (current == null) {
+                current = reconnect(null);
+            }
+            try {
+                return openChannel(current, command);
+            } catch (JSchException e) {
+                if (!reused) {
+                    throw e;
+                }
+                // Sessão reaproveitada caiu sem o keep-alive perceber: reconecta uma vez
+                log.warn("Sessão SSH obsoleta em {} ({}). Reconectando.", endpoint, e.getMessage());
+                return openChannel(reconnect(current), command);
+            }
+        }
+
+        private ExecChannel openChannel(Session current, String command) throws Exception {
+            ChannelExec channel = (ChannelExec) current.openChannel("exec");
+            try {
+                channel.setCommand(command);
+                channel.setInputStream(null);
+                ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+                channel.setErrStream(stderr);
+                InputStream stdout = channel.getInputStream();
+                channel.connect(connectTimeoutMs);
+                return new ExecChannel(channel, stdout, stderr);
+            } catch (Exception e) {
+                channel.disconnect();
+                throw e;
+            }
+        }
+
+        private synchronized Session connectedSession() {
+            return session != null && session.isConnected() ? session : null;
+        }
+
+        /**
+         * Reabre a sessão, a menos que outra thread já tenha trocado a sessão observada.
+         */
+        private synchronized Session reconnect(Session observed) throws JSchException {
+            if (session != null && session != observed && session.isConnected()) {
+                return session;
+            }
+            if (session != null) {
+                session.disconnect();
+            }
+            Session fresh = new JSch().getSession(endpoint.username(), endpoint.host(), endpoint.port());
+            fresh.setPassword(endpoint.password());
+            fresh.setConfig("StrictHostKeyChecking", "no");
+            fresh.setServerAliveInterval(keepAliveIntervalMs);
+            fresh.setServerAliveCountMax(3);
+            fresh.connect(connectTimeoutMs);
+            session = fresh;
+            log.debug("Nova sessão SSH aberta com {}", endpoint);
+            return fresh;
+        }
+
+        private void closeIfIdle(long limit) {
+            // Só encerra se nenhum canal estiver em uso
+            if (lastUsedAt < limit && channels.tryAcquire(maxChannelsPerRouter)) {
+                try {
+                    close();
+                } finally {
+                    channels.release(maxChannelsPerRouter);
+                }
+            }
+        }
+
+        private synchronized void close() {
+            if (session != null) {
+                session.disconnect();
+                session = null;
+            }
+        }
+    }
+}
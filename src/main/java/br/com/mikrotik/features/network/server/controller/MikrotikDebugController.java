@@ -9,11 +9,18 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -38,4 +45,31 @@ public class MikrotikDebugController {
         );
         return ResponseEntity.ok(output);
     }
+
+    @GetMapping(value = "/pppoe-active-raw/stream", produces = MediaType.TEXT_PLAIN_VALUE)
+    @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.EXECUTE)
+    @Operation(summary = "Listar PPPoE ativos (raw, streaming)",
+               description = "Envia o output do /ppp active print linha a linha, sem acumular em memória")
+    public ResponseEntity<StreamingResponseBody> streamPppoeActiveRaw() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            sshService.streamCommand(
+                    mikrotikConfig.getHost(),
+                    mikrotikConfig.getPort(),
+                    mikrotikConfig.getUsername(),
+                    mikrotikConfig.getPassword(),
+                    "/ppp active print",
+                    line -> {
+                        try {
+                            writer.write(line);
+                            writer.write('\n');
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+            );
+            writer.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+    }
 }
@@ -4,7 +4,9 @@ import br.com.mikrotik.features.auth.model.ModuleAction;
 import br.com.mikrotik.features.auth.model.SystemModule;
 import br.com.mikrotik.shared.infrastructure.security.RequireModuleAccess;
 
+import br.com.mikrotik.features.network.server.dto.ConnectionPoolStatsDTO;
 import br.com.mikrotik.features.network.server.dto.MikrotikServerDTO;
+import br.com.mikrotik.features.network.server.dto.RouterResilienceStatsDTO;
 import br.com.mikrotik.features.network.server.service.MikrotikServerService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -41,6 +43,20 @@ public class MikrotikServerController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
+    @GetMapping("/connection-pool")
+    @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.VIEW)
+    @Operation(summary = "Métricas do pool de conexões", description = "Retorna sessões abertas, reuso e falhas do pool RouterOS API por servidor da empresa")
+    public ResponseEntity<List<ConnectionPoolStatsDTO>> getConnectionPoolStats() {
+        return ResponseEntity.ok(service.getConnectionPoolStats());
+    }
+
+    @GetMapping("/resilience")
+    @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.VIEW)
+    @Operation(summary = "Estado de resiliência por servidor", description = "Retorna estado do circuit breaker, chamadas em andamento e recusas por router da empresa")
+    public ResponseEntity<List<RouterResilienceStatsDTO>> getResilienceStats() {
+        return ResponseEntity.ok(service.getResilienceStats());
+    }
+
     @GetMapping("/{id}")
     @RequireModuleAccess(module = SystemModule.NETWORK, action = ModuleAction.VIEW)
     @Operation(summary = "Obter servidor por ID", description = "Retorna detalhes de um servidor Mikrotik específico")
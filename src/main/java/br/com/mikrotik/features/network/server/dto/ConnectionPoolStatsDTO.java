@@ -0,0 +1,24 @@
+package br.com.mikrotik.features.network.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConnectionPoolStatsDTO {
+    private Long serverId;
+    private String serverName;
+    private String router;          // "host:porta"
+    private Integer maxSessions;
+    private Integer activeSessions; // emprestadas neste momento
+    private Integer idleSessions;   // abertas e disponíveis para reuso
+    private Long created;           // sessões abertas (connect + login)
+    private Long reused;            // empréstimos atendidos por sessão já aberta
+    private Long invalidated;       // sessões descartadas por falha/health-check
+    private Long evicted;           // sessões fechadas por ociosidade
+    private Long borrowTimeouts;    // pedidos que esgotaram a espera por sessão
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,4 +17,6 @@ public class ConnectionStatusDTO {
     private Long totalCapacity;
     private Double utilizationPercentage;
     private String message;
+    private Boolean staleData;          // algum servidor entrou com o último valor conhecido
+    private List<String> staleServers;  // servidores que não responderam a tempo
 }
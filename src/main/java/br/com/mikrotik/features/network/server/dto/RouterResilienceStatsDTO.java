@@ -0,0 +1,27 @@
+package br.com.mikrotik.features.network.server.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RouterResilienceStatsDTO {
+    private Long serverId;
+    private String serverName;
+    private String router;                // "host:porta"
+    private String circuitState;          // CLOSED, OPEN, HALF_OPEN
+    private Integer consecutiveFailures;
+    private LocalDateTime openedAt;       // última abertura do circuito
+    private Integer maxConcurrentCalls;
+    private Integer activeCalls;
+    private Double availableTokens;       // token bucket de chamadas
+    private Long rejectedByCircuit;       // chamadas recusadas com circuito aberto
+    private Long rejectedByBulkhead;      // chamadas que esgotaram a espera por vaga
+    private Long rejectedByRateLimit;     // chamadas que esperariam demais por token
+}
@@ -19,6 +19,8 @@ public interface MikrotikServerRepository extends JpaRepository<MikrotikServer,
 
     Long countByActiveTrue();
 
+    List<MikrotikServer> findByActiveTrue();
+
     // Novos métodos com suporte multi-tenant
     Page<MikrotikServer> findByCompanyId(Long companyId, Pageable pageable);
 
@@ -26,6 +28,8 @@ public interface MikrotikServerRepository extends JpaRepository<MikrotikServer,
 
     List<MikrotikServer> findByCompanyIdAndActiveTrue(Long companyId);
 
+    List<MikrotikServer> findByCompanyId(Long companyId);
+
     Optional<MikrotikServer> findByNameAndCompanyId(String name, Long companyId);
 
     boolean existsByNameAndCompanyId(String name, Long companyId);
@@ -0,0 +1,458 @@
+package br.com.mikrotik.features.network.server.service;
+
+import br.com.mikrotik.features.network.server.adapter.RouterEndpoint;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
+import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.server.repository.MikrotikServerRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import me.legrange.mikrotik.ApiConnection;
+import me.legrange.mikrotik.MikrotikApiException;
+import me.legrange.mikrotik.ResultListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.net.SocketFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache em memória das sessões PPPoE ativas (/ppp/active) de cada servidor Mikrotik.
+ *
+ * MOTIVAÇÃO:
+ * Dashboard e consulta "ao vivo" de contrato faziam /ppp/active/print completo a
+ * cada requisição HTTP. Com este monitor a leitura vira um lookup em memória.
+ *
+ * FUNCIONAMENTO:
+ * - Um assinante por servidor ativo, com conexão API dedicada (fora do pool,
+ *   pois o listen ocupa a sessão indefinidamente)
+ * - /ppp/active/listen recebe conexões/desconexões em tempo real
+ * - Após (re)conectar, um print completo ressincroniza o cache: o snapshot é montado à
+ *   parte, os eventos recebidos desde o início do listen são reaplicados sobre ele e só
+ *   então ele substitui o cache anterior
+ * - Queda da conexão → cache marcado como "não confiável" e reconexão com backoff
+ * - Enquanto o cache não está confiável, os chamadores consultam o router (fallback)
+ *
+ * O uptime é recalculado na leitura a partir do instante de conexão, já que o
+ * listen não notifica a passagem do tempo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveSessionMonitor {
+
+    private static final long INITIAL_RECONNECT_BACKOFF_MS = 5_000;
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+)([wdhms])");
+    private static final Pattern CLOCK_DURATION = Pattern.compile("(?:(\\d+)d\\s*)?(\\d+):(\\d{2}):(\\d{2})");
+
+    @Value("${mikrotik.api.live-sessions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mikrotik.api.live-sessions.max-reconnect-backoff-ms:300000}")
+    private long maxReconnectBackoffMs;
+
+    @Value("${mikrotik.api.pool.connect-timeout-ms:10000}")
+    private int connectTimeoutMs;
+
+    private final MikrotikServerRepository serverRepository;
+    private final RouterOsIdIndex idIndex;
+
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * Mantém um assinante por servidor ativo: cria os novos, reinicia os que
+     * caíram ou tiveram credenciais alteradas e encerra os desativados/removidos.
+     */
+    @Scheduled(initialDelayString = "${mikrotik.api.live-sessions.reconcile-interval-ms:15000}",
+               fixedDelayString = "${mikrotik.api.live-sessions.reconcile-interval-ms:15000}")
+    public void reconcileSubscribers() {
+        if (!enabled) {
+            return;
+        }
+
+        List<MikrotikServer> servers = serverRepository.findByActiveTrue();
+        Set<Long> activeIds = new HashSet<>();
+        servers.forEach(server -> activeIds.add(server.getId()));
+
+        subscribers.entrySet().removeIf(entry -> {
+            if (!activeIds.contains(entry.getKey())) {
+                entry.getValue().stop();
+                return true;
+            }
+            return false;
+        });
+
+        for (MikrotikServer server : servers) {
+            RouterEndpoint endpoint = RouterEndpoint.of(
+                    server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword());
+
+            Subscriber subscriber = subscribers.get(server.getId());
+            if (subscriber != null && !subscriber.endpoint.equals(endpoint)) {
+                subscriber.stop();
+                subscriber = null;
+            }
+            if (subscriber == null) {
+                subscriber = new Subscriber(server.getId(), server.getName(), endpoint);
+                subscribers.put(server.getId(), subscriber);
+            }
+            subscriber.ensureRunning();
+        }
+    }
+
+    /**
+     * Indica se o cache do servidor está sincronizado e recebendo eventos.
+     */
+    public boolean isLive(Long serverId) {
+        Subscriber subscriber = subscribers.get(serverId);
+        return subscriber != null && subscriber.isLive();
+    }
+
+    /**
+     * Sessão ativa do usuário (campos de /ppp/active) ou null se offline.
+     * Só é confiável quando {@link #isLive(Long)} retorna true.
+     */
+    public Map<String, String> getSession(Long serverId, String pppoeUsername) {
+        Subscriber subscriber = subscribers.get(serverId);
+        return subscriber != null ? subscriber.getSession(pppoeUsername) : null;
+    }
+
+    /**
+     * Quantidade de sessões ativas, ou null se o cache do servidor não está confiável.
+     */
+    public Integer countSessions(Long serverId) {
+        Subscriber subscriber = subscribers.get(serverId);
+        return subscriber != null && subscriber.isLive() ? subscriber.sessions.size() : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(Subscriber::stop);
+        subscribers.clear();
+    }
+
+    // ==================================================================================
+    // ASSINANTE POR SERVIDOR
+    // ==================================================================================
+
+    private final class Subscriber implements ResultListener {
+        private final Long serverId;
+        private final String serverName;
+        private final RouterEndpoint endpoint;
+
+        private final LiveSessions sessions;
+
+        private final AtomicBoolean starting = new AtomicBoolean();
+        private volatile ApiConnection connection;
+        private volatile boolean live;
+        private volatile boolean stopped;
+        private volatile long nextAttemptAt;
+        private long backoffMs = INITIAL_RECONNECT_BACKOFF_MS;
+
+        private Subscriber(Long serverId, String serverName, RouterEndpoint endpoint) {
+            this.serverId = serverId;
+            this.serverName = serverName;
+            this.endpoint = endpoint;
+            this.sessions = new LiveSessions(endpoint, idIndex);
+        }
+
+        private boolean isLive() {
+            ApiConnection current = connection;
+            return live && current != null && current.isConnected();
+        }
+
+        private void ensureRunning() {
+            if (stopped || isLive()) {
+                return;
+            }
+            if (live) {
+                markDown("conexão perdida");
+            }
+            if (System.currentTimeMillis() < nextAttemptAt || !starting.compareAndSet(false, true)) {
+                return;
+            }
+            // Thread virtual: um router inalcançável não segura o scheduler durante o connect timeout
+            Thread.ofVirtual().name("live-sessions-" + serverId).start(this::start);
+        }
+
+        private void start() {
+            try {
+                ApiConnection con = ApiConnection.connect(
+                        SocketFactory.getDefault(), endpoint.host(), endpoint.port(), connectTimeoutMs);
+                con.login(endpoint.username(), endpoint.password());
+                connection = con;
+
+                // listen antes do print: eventos durante a ressincronização ficam retidos
+                // e são reaplicados sobre o snapshot, em vez de se perderem
+                sessions.beginResync();
+                con.execute("/ppp/active/listen", this);
+                sessions.completeResync(con.execute("/ppp/active/print"));
+
+                live = true;
+                backoffMs = INITIAL_RECONNECT_BACKOFF_MS;
+                log.info("📡 Cache de sessões ativas do servidor {} sincronizado: {} sessões",
+                        serverName, sessions.size());
+            } catch (Exception e) {
+                sessions.cancelResync();
+                log.warn("Falha ao assinar /ppp/active do servidor {} ({}): {}. Nova tentativa em {} ms",
+                        serverName, endpoint, e.getMessage(), backoffMs);
+                closeConnection();
+                nextAttemptAt = System.currentTimeMillis() + backoffMs;
+                backoffMs = Math.min(backoffMs * 2, maxReconnectBackoffMs);
+            } finally {
+                starting.set(false);
+            }
+        }
+
+        private Map<String, String> getSession(String pppoeUsername) {
+            return sessions.getSession(pppoeUsername);
+        }
+
+        @Override
+        public void receive(Map<String, String> row) {
+            sessions.receive(row);
+        }
+
+        @Override
+        public void error(MikrotikApiException e) {
+            markDown(e.getMessage());
+        }
+
+        @Override
+        public void completed() {
+            // listen só termina se for cancelado ou a sessão cair
+            if (!stopped) {
+                markDown("listen encerrado pelo router");
+            }
+        }
+
+        private void markDown(String reason) {
+            if (!live && connection == null) {
+                return;
+            }
+            live = false;
+            log.warn("⚠️  Cache de sessões ativas do servidor {} indisponível ({}). Reconectando.", serverName, reason);
+            closeConnection();
+            nextAttemptAt = 0;
+        }
+
+        private void stop() {
+            stopped = true;
+            live = false;
+            closeConnection();
+        }
+
+        private void closeConnection() {
+            ApiConnection current = connection;
+            connection = null;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (Exception e) {
+                    log.debug("Erro ao fechar conexão de listen do servidor {}: {}", serverName, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // ==================================================================================
+    // SESSÕES DE UM SERVIDOR
+    // ==================================================================================
+
+    /**
+     * Sessões ativas de um servidor, alimentadas pelos eventos do listen.
+     *
+     * Entre {@link #beginResync()} e {@link #completeResync(List)} os eventos ficam
+     * retidos; o print é carregado num snapshot novo, os eventos retidos são reaplicados
+     * sobre ele e o snapshot substitui o atual de uma vez. O cache em uso nunca é
+     * esvaziado com o listen rodando.
+     */
+    static final class LiveSessions {
+        private final RouterEndpoint endpoint;
+        private final RouterOsIdIndex idIndex;
+
+        private volatile Snapshot current = new Snapshot();
+        private List<Map<String, String>> retained; // guardado por this
+
+        LiveSessions(RouterEndpoint endpoint, RouterOsIdIndex idIndex) {
+            this.endpoint = endpoint;
+            this.idIndex = idIndex;
+        }
+
+        synchronized void beginResync() {
+            retained = new ArrayList<>();
+        }
+
+        synchronized void cancelResync() {
+            retained = null;
+        }
+
+        void completeResync(List<Map<String, String>> rows) {
+            Snapshot fresh = new Snapshot();
+            if (rows != null) {
+                rows.forEach(fresh::apply);
+            }
+            synchronized (this) {
+                idIndex.load(endpoint, Table.ACTIVE, rows);
+                if (retained != null) {
+                    retained.forEach(row -> onEvent(fresh, row));
+                }
+                retained = null;
+                current = fresh;
+            }
+        }
+
+        synchronized void receive(Map<String, String> row) {
+            if (retained != null) {
+                retained.add(row);
+            } else {
+                onEvent(current, row);
+            }
+        }
+
+        int size() {
+            return current.sessionsById.size();
+        }
+
+        Map<String, String> getSession(String pppoeUsername) {
+            return pppoeUsername != null ? current.getSession(pppoeUsername) : null;
+        }
+
+        private void onEvent(Snapshot target, Map<String, String> row) {
+            if (isDead(row)) {
+                String name = target.remove(row.get(".id"));
+                if (name != null) {
+                    idIndex.remove(endpoint, Table.ACTIVE, name);
+                }
+            } else {
+                String name = target.apply(row);
+                if (name != null) {
+                    idIndex.put(endpoint, Table.ACTIVE, name, row.get(".id"));
+                }
+            }
+        }
+
+        /**
+         * RouterOS sinaliza a remoção no listen com .dead=yes.
+         */
+        private static boolean isDead(Map<String, String> row) {
+            String dead = row.get(".dead");
+            return "yes".equals(dead) || "true".equals(dead);
+        }
+    }
+
+    private static final class Snapshot {
+        private final Map<String, Map<String, String>> sessionsById = new ConcurrentHashMap<>();
+        private final Map<String, String> idByUsername = new ConcurrentHashMap<>();
+        private final Map<String, Long> connectedAtById = new ConcurrentHashMap<>();
+
+        /**
+         * @return nome do usuário da sessão, se conhecido
+         */
+        private String apply(Map<String, String> row) {
+            String id = row.get(".id");
+            if (id == null) {
+                return null;
+            }
+            Map<String, String> merged = sessionsById.compute(id, (key, existing) -> {
+                Map<String, String> session = existing != null ? new HashMap<>(existing) : new HashMap<>();
+                session.putAll(row);
+                return session;
+            });
+            connectedAtById.computeIfAbsent(id,
+                    key -> System.currentTimeMillis() - parseDurationSeconds(merged.get("uptime")) * 1000);
+
+            String name = merged.get("name");
+            if (name != null) {
+                idByUsername.put(name.toLowerCase(Locale.ROOT), id);
+            }
+            return name;
+        }
+
+        /**
+         * @return nome do usuário da sessão removida, se havia
+         */
+        private String remove(String id) {
+            if (id == null) {
+                return null;
+            }
+            Map<String, String> removed = sessionsById.remove(id);
+            connectedAtById.remove(id);
+            String name = removed != null ? removed.get("name") : null;
+            if (name != null) {
+                idByUsername.remove(name.toLowerCase(Locale.ROOT), id);
+            }
+            return name;
+        }
+
+        private Map<String, String> getSession(String pppoeUsername) {
+            String id = idByUsername.get(pppoeUsername.toLowerCase(Locale.ROOT));
+            Map<String, String> session = id != null ? sessionsById.get(id) : null;
+            if (session == null) {
+                return null;
+            }
+            Map<String, String> copy = new HashMap<>(session);
+            Long connectedAt = connectedAtById.get(id);
+            if (connectedAt != null) {
+                copy.put("uptime", formatDuration((System.currentTimeMillis() - connectedAt) / 1000));
+            }
+            return copy;
+        }
+    }
+
+    // ==================================================================================
+    // UPTIME (formatos RouterOS: "1w2d3h4m5s" ou "1d 03:04:05")
+    // ==================================================================================
+
+    static long parseDurationSeconds(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        Matcher clock = CLOCK_DURATION.matcher(value.trim());
+        if (clock.matches()) {
+            long days = clock.group(1) != null ? Long.parseLong(clock.group(1)) : 0;
+            return days * 86_400 + Long.parseLong(clock.group(2)) * 3_600
+                    + Long.parseLong(clock.group(3)) * 60 + Long.parseLong(clock.group(4));
+        }
+        long seconds = 0;
+        Matcher parts = DURATION_PART.matcher(value);
+        while (parts.find()) {
+            long amount = Long.parseLong(parts.group(1));
+            seconds += switch (parts.group(2)) {
+                case "w" -> amount * 604_800;
+                case "d" -> amount * 86_400;
+                case "h" -> amount * 3_600;
+                case "m" -> amount * 60;
+                default -> amount;
+            };
+        }
+        return seconds;
+    }
+
+    static String formatDuration(long totalSeconds) {
+        long seconds = Math.max(0, totalSeconds);
+        StringBuilder sb = new StringBuilder();
+        long weeks = seconds / 604_800;
+        long days = (seconds % 604_800) / 86_400;
+        long hours = (seconds % 86_400) / 3_600;
+        long minutes = (seconds % 3_600) / 60;
+        long secs = seconds % 60;
+        if (weeks > 0) sb.append(weeks).append('w');
+        if (days > 0) sb.append(days).append('d');
+        if (hours > 0) sb.append(hours).append('h');
+        if (minutes > 0) sb.append(minutes).append('m');
+        if (secs > 0 || sb.isEmpty()) sb.append(secs).append('s');
+        return sb.toString();
+    }
+}
@@ -1,12 +1,16 @@
 package br.com.mikrotik.features.network.server.service;
 
+import br.com.mikrotik.features.network.server.dto.ConnectionPoolStatsDTO;
 import br.com.mikrotik.features.network.server.dto.MikrotikServerDTO;
+import br.com.mikrotik.features.network.server.dto.RouterResilienceStatsDTO;
 import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import br.com.mikrotik.shared.infrastructure.exception.ValidationException;
 import br.com.mikrotik.features.companies.model.Company;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
 import br.com.mikrotik.features.companies.repository.CompanyRepository;
 import br.com.mikrotik.features.network.server.repository.MikrotikServerRepository;
 import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
+import br.com.mikrotik.features.network.server.adapter.MikrotikSshService;
 import br.com.mikrotik.shared.util.CompanyContextHolder;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,6 +20,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +31,7 @@ public class MikrotikServerService {
     private final MikrotikServerRepository repository;
     private final MikrotikApiService apiService; // Usar API ao invés de SSH
     private final CompanyRepository companyRepository;
+    private final MikrotikSshService sshService;
 
     @Transactional
     public MikrotikServerDTO create(MikrotikServerDTO dto) {
@@ -103,6 +110,10 @@ public class MikrotikServerService {
             apiService.testConnection(dto.getIpAddress(), dto.getApiPort(), dto.getUsername(), dto.getPassword());
         }
 
+        // Sessões em pool usam as credenciais antigas — descartar
+        apiService.releaseConnections(server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword());
+        sshService.releaseSessions(server.getIpAddress(), server.getPort(), server.getUsername(), server.getPassword());
+
         server.setName(dto.getName());
         server.setIpAddress(dto.getIpAddress());
         server.setPort(dto.getPort());
@@ -123,6 +134,8 @@ public class MikrotikServerService {
         MikrotikServer server = repository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + id));
         repository.delete(server);
+        apiService.releaseConnections(server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword());
+        sshService.releaseSessions(server.getIpAddress(), server.getPort(), server.getUsername(), server.getPassword());
         log.info("Servidor Mikrotik deletado: {}", id);
     }
 
@@ -132,6 +145,49 @@ public class MikrotikServerService {
         return apiService.testConnection(server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword());
     }
 
+    /**
+     * Métricas do pool de sessões RouterOS API dos servidores da empresa do contexto
+     * (uma entrada por router com sessões abertas).
+     */
+    public List<ConnectionPoolStatsDTO> getConnectionPoolStats() {
+        List<ConnectionPoolStatsDTO> stats = new ArrayList<>();
+        for (MikrotikServer server : findCompanyServers()) {
+            apiService.getConnectionPoolStats(server.getIpAddress(), server.getApiPort(),
+                            server.getUsername(), server.getPassword())
+                    .ifPresent(stat -> {
+                        stat.setServerId(server.getId());
+                        stat.setServerName(server.getName());
+                        stats.add(stat);
+                    });
+        }
+        return stats;
+    }
+
+    /**
+     * Estado do circuit breaker e do bulkhead dos servidores da empresa do contexto.
+     */
+    public List<RouterResilienceStatsDTO> getResilienceStats() {
+        List<RouterResilienceStatsDTO> stats = new ArrayList<>();
+        for (MikrotikServer server : findCompanyServers()) {
+            apiService.getResilienceStats(server.getIpAddress(), server.getApiPort(),
+                            server.getUsername(), server.getPassword())
+                    .ifPresent(stat -> {
+                        stat.setServerId(server.getId());
+                        stat.setServerName(server.getName());
+                        stats.add(stat);
+                    });
+        }
+        return stats;
+    }
+
+    private List<MikrotikServer> findCompanyServers() {
+        Long companyId = CompanyContextHolder.getCompanyId();
+        if (companyId == null) {
+            throw new ValidationException("Company ID não encontrado no contexto");
+        }
+        return repository.findByCompanyId(companyId);
+    }
+
     private MikrotikServerDTO mapToDTO(MikrotikServer server) {
         MikrotikServerDTO dto = new MikrotikServerDTO();
         dto.setId(server.getId());
@@ -0,0 +1,77 @@
+package br.com.mikrotik.features.network.server.service;
+
+import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Consulta vários routers em paralelo (uma virtual thread por router) sob um prazo único.
+ *
+ * A latência total passa a ser a do router mais lento que respondeu dentro do prazo,
+ * e não a soma de todos. Routers que estouram o prazo voltam como {@code timedOut};
+ * a tarefa continua em segundo plano (não é interrompida para não derrubar a sessão
+ * em pool) e o chamador decide o que reportar no lugar.
+ */
+@Component
+@Slf4j
+public class RouterFanOut {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Resultado da consulta de um router.
+     */
+    public record Result<T>(T value, Exception error, boolean timedOut) {
+        public boolean isSuccess() {
+            return error == null && !timedOut;
+        }
+    }
+
+    /**
+     * @return resultado por id do servidor, na ordem recebida
+     */
+    public <T> Map<Long, Result<T>> invokeAll(Collection<MikrotikServer> servers,
+                                              Function<MikrotikServer, T> task,
+                                              Duration deadline) {
+        Map<Long, Future<T>> futures = new LinkedHashMap<>();
+        for (MikrotikServer server : servers) {
+            futures.put(server.getId(), executor.submit(() -> task.apply(server)));
+        }
+
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        Map<Long, Result<T>> results = new LinkedHashMap<>();
+        for (Map.Entry<Long, Future<T>> entry : futures.entrySet()) {
+            long remaining = Math.max(0, deadlineNanos - System.nanoTime());
+            try {
+                results.put(entry.getKey(), new Result<>(entry.getValue().get(remaining, TimeUnit.NANOSECONDS), null, false));
+            } catch (TimeoutException e) {
+                results.put(entry.getKey(), new Result<>(null, null, true));
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ex ? ex : e;
+                results.put(entry.getKey(), new Result<>(null, cause, false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.put(entry.getKey(), new Result<>(null, e, false));
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
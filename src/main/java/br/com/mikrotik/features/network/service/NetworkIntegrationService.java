@@ -2,27 +2,42 @@ package br.com.mikrotik.features.network.service;
 
 import br.com.mikrotik.features.contracts.event.ContractPlanChangedEvent;
 import br.com.mikrotik.features.contracts.event.ContractStatusChangedEvent;
-import br.com.mikrotik.features.contracts.model.Contract;
-import br.com.mikrotik.features.contracts.model.ServicePlan;
-import br.com.mikrotik.features.contracts.repository.ServicePlanRepository;
+import br.com.mikrotik.features.network.outbox.model.RouterCommandOutbox;
+import br.com.mikrotik.features.network.outbox.service.RouterCommandOutboxService;
 import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
 import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
+import br.com.mikrotik.features.network.server.adapter.RouterOsBatchOperation;
+import br.com.mikrotik.features.network.server.adapter.RouterOsBatchResult;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
-import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
-import lombok.RequiredArgsConstructor;
+import br.com.mikrotik.shared.infrastructure.exception.RouterUnavailableException;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
-import org.springframework.transaction.event.TransactionalEventListener;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service responsável por integrações de rede (Mikrotik) de forma assíncrona.
@@ -30,342 +45,306 @@ import java.time.LocalDateTime;
  * PRINCÍPIO ARQUITETURAL:
  * "NUNCA execute chamadas externas (SSH, API) dentro de @Transactional."
  *
- * Este service recebe eventos de mudança de status de contratos e processa
- * as integrações de forma assíncrona, fora do contexto transacional.
+ * FLUXO (outbox transacional):
+ * 1. ContractService grava o estado desejado do usuário PPPoE em router_command_outbox
+ *    na mesma transação da mudança do contrato
+ * 2. Após o commit, o evento do contrato apenas acorda este dispatcher
+ * 3. O dispatcher lê as intenções vencidas, agrupa por router e envia UM lote
+ *    por router (executeBatch); routers são processados em paralelo
+ * 4. Intenção aplicada → removida do outbox e refletida em pppoe_users;
+ *    falha → nova tentativa com backoff exponencial
  *
  * RESILIÊNCIA:
- * - @Async: Execução em thread separada
- * - @Retryable: 3 tentativas com backoff exponencial (2s, 4s, 8s)
- * - Logs estruturados para troubleshooting
- * - Não lança exceção para não bloquear o fluxo principal
+ * - Reinício da aplicação ou executor cheio não perdem mudanças (varredura periódica)
+ * - Intenções seguidas do mesmo usuário se fundem numa só (um conjunto de comandos por usuário por lote)
+ * - Router com circuito aberto não atrasa os demais
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
-public class  NetworkIntegrationService {
+public class NetworkIntegrationService {
+
+    /** Perfil aplicado no router para usuários suspensos. */
+    public static final String BLOCKED_PROFILE = "BLOQUEADO";
 
+    private final RouterCommandOutboxService outboxService;
     private final PppoeUserRepository pppoeUserRepository;
-    private final ServicePlanRepository servicePlanRepository;
     private final MikrotikApiService mikrotikApiService;
-
-    /**
-     * Self-reference injetada via @Lazy para garantir que blockUserInMikrotik,
-     * unblockUserInMikrotik e deleteUserInMikrotik passem pelo proxy AOP do Spring,
-     * ativando o @Retryable corretamente.
-     *
-     * SEM isso: this.blockUserInMikrotik() → bypass do proxy → retry NUNCA ocorre.
-     * COM isso: self.blockUserInMikrotik() → passa pelo proxy → retry funciona.
-     *
-     * @Lazy evita dependência circular na inicialização do contexto Spring.
-     */
-    @Lazy
-    @Autowired
-    private NetworkIntegrationService self;
+    private final Executor networkIntegrationExecutor;
+
+    @Value("${mikrotik.outbox.batch-size:500}")
+    private int batchSize;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private volatile boolean drainRequested;
+
+    public NetworkIntegrationService(RouterCommandOutboxService outboxService,
+                                     PppoeUserRepository pppoeUserRepository,
+                                     MikrotikApiService mikrotikApiService,
+                                     @Qualifier("networkIntegrationExecutor") Executor networkIntegrationExecutor) {
+        this.outboxService = outboxService;
+        this.pppoeUserRepository = pppoeUserRepository;
+        this.mikrotikApiService = mikrotikApiService;
+        this.networkIntegrationExecutor = networkIntegrationExecutor;
+    }
 
     // ==================== HANDLERS ====================
 
     /**
-     * Processa mudanças de status de contrato que requerem ação no Mikrotik.
-     *
-     * CASOS DE USO:
-     * - ACTIVE → SUSPENDED_FINANCIAL: Bloquear usuário
-     * - ACTIVE → SUSPENDED_REQUEST: Bloquear usuário
-     * - ACTIVE → CANCELED: Deletar usuário
-     * - SUSPENDED_* → ACTIVE: Desbloquear usuário
+     * Mudança de status já está no outbox (mesma transação): só antecipa o processamento.
      */
-    @Async("networkIntegrationExecutor")
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void handleContractStatusChange(ContractStatusChangedEvent event) {
-        log.info("==========================================================");
-        log.info("📡 PROCESSANDO INTEGRAÇÃO MIKROTIK - Contrato ID: {}", event.getContractId());
-        log.info("Status: {} → {}", event.getPreviousStatus(), event.getNewStatus());
-        log.info("Motivo: {}", event.getReason());
-        log.info("==========================================================");
-
-        // Validar se contrato tem usuário PPPoE
-        if (event.getPppoeUserId() == null) {
-            log.warn("⚠️  Contrato {} não possui usuário PPPoE vinculado - Integração ignorada",
-                    event.getContractId());
-            return;
-        }
-
-        try {
-            // Chamadas via self para passar pelo proxy AOP e garantir @Retryable
-            if (shouldBlockUser(event.getPreviousStatus(), event.getNewStatus())) {
-                self.blockUserInMikrotik(event.getPppoeUserId(), event.getContractId());
-
-            } else if (shouldUnblockUser(event.getPreviousStatus(), event.getNewStatus())) {
-                self.unblockUserInMikrotik(event.getPppoeUserId(), event.getContractId());
-
-            } else if (shouldDeleteUser(event.getNewStatus())) {
-                self.deleteUserInMikrotik(event.getPppoeUserId(), event.getContractId());
-
-            } else {
-                log.info("ℹ️  Nenhuma ação necessária no Mikrotik para esta mudança de status");
-            }
-
-        } catch (Exception e) {
-            log.error("❌ ERRO ao processar integração Mikrotik para contrato {} após todas as tentativas de retry: {}",
-                    event.getContractId(), e.getMessage(), e);
+        if (event.getPppoeUserId() != null) {
+            log.debug("Contrato {}: {} → {} — acordando dispatcher do outbox",
+                    event.getContractId(), event.getPreviousStatus(), event.getNewStatus());
+            requestDrain();
         }
     }
 
     /**
-     * Bloqueia usuário no Mikrotik com retry automático.
+     * Mudança de plano já está no outbox (mesma transação): só antecipa o processamento.
      */
-    @Retryable(
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2.0),
-        retryFor = {Exception.class}
-    )
-    public void blockUserInMikrotik(Long pppoeUserId, Long contractId) {
-        log.info(">>> BLOQUEANDO usuário PPPoE ID: {} (Contrato: {}) <<<", pppoeUserId, contractId);
-
-        PppoeUser pppoeUser = pppoeUserRepository.findById(pppoeUserId)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuário PPPoE não encontrado: " + pppoeUserId));
-
-        MikrotikServer server = pppoeUser.getMikrotikServer();
-        log.info("Servidor: {} ({}:{})", server.getName(), server.getIpAddress(), server.getApiPort());
-
-        // 1. Alterar perfil para BLOQUEADO
-        log.info("Alterando perfil para 'BLOQUEADO'...");
-        mikrotikApiService.changePppoeUserProfile(
-                server.getIpAddress(),
-                server.getApiPort(),
-                server.getUsername(),
-                server.getPassword(),
-                pppoeUser.getUsername(),
-                "BLOQUEADO"
-        );
-        log.info("✅ Perfil alterado");
-
-        // 2. Desconectar sessão ativa
-        log.info("Desconectando sessão ativa...");
-        mikrotikApiService.disconnectActivePppoeUser(
-                server.getIpAddress(),
-                server.getApiPort(),
-                server.getUsername(),
-                server.getPassword(),
-                pppoeUser.getUsername()
-        );
-        log.info("✅ Sessão desconectada");
-
-        // 3. Atualizar status local
-        pppoeUser.setStatus(PppoeUser.UserStatus.DISABLED);
-        pppoeUser.setUpdatedAt(LocalDateTime.now());
-        pppoeUserRepository.save(pppoeUser);
-        log.info("✅ Status atualizado no banco: DISABLED");
-
-        log.info("==========================================================");
-        log.info("✅ BLOQUEIO CONCLUÍDO - Usuário: {}", pppoeUser.getUsername());
-        log.info("==========================================================");
-    }
-
-    /**
-     * Desbloqueia usuário no Mikrotik com retry automático.
-     */
-    @Retryable(
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2.0),
-        retryFor = {Exception.class}
-    )
-    public void unblockUserInMikrotik(Long pppoeUserId, Long contractId) {
-        log.info(">>> DESBLOQUEANDO usuário PPPoE ID: {} (Contrato: {}) <<<", pppoeUserId, contractId);
-
-        PppoeUser pppoeUser = pppoeUserRepository.findById(pppoeUserId)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuário PPPoE não encontrado: " + pppoeUserId));
-
-        MikrotikServer server = pppoeUser.getMikrotikServer();
-
-        // Buscar perfil original do plano
-        String originalProfile = pppoeUser.getProfile().getName();
-        log.info("Restaurando perfil original: {}", originalProfile);
-
-        // 1. Restaurar perfil original
-        mikrotikApiService.changePppoeUserProfile(
-                server.getIpAddress(),
-                server.getApiPort(),
-                server.getUsername(),
-                server.getPassword(),
-                pppoeUser.getUsername(),
-                originalProfile
-        );
-        log.info("✅ Perfil restaurado");
-
-        // 2. Atualizar status local
-        pppoeUser.setStatus(PppoeUser.UserStatus.OFFLINE);
-        pppoeUser.setUpdatedAt(LocalDateTime.now());
-        pppoeUserRepository.save(pppoeUser);
-        log.info("✅ Status atualizado no banco: OFFLINE");
-
-        log.info("==========================================================");
-        log.info("✅ DESBLOQUEIO CONCLUÍDO - Usuário: {}", pppoeUser.getUsername());
-        log.info("==========================================================");
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void handlePlanChange(ContractPlanChangedEvent event) {
+        if (event.getPppoeUserId() != null) {
+            log.debug("Contrato {}: plano {} → {} — acordando dispatcher do outbox",
+                    event.getContractId(), event.getPreviousServicePlanId(), event.getNewServicePlanId());
+            requestDrain();
+        }
     }
 
     /**
-     * Deleta usuário do Mikrotik com retry automático.
+     * Agenda um ciclo do dispatcher no executor de integrações. Se o executor
+     * recusar, a varredura periódica processa a intenção de qualquer forma.
      */
-    @Retryable(
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2.0),
-        retryFor = {Exception.class}
-    )
-    public void deleteUserInMikrotik(Long pppoeUserId, Long contractId) {
-        log.info(">>> DELETANDO usuário PPPoE ID: {} (Contrato: {}) <<<", pppoeUserId, contractId);
-
-        PppoeUser pppoeUser = pppoeUserRepository.findById(pppoeUserId)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuário PPPoE não encontrado: " + pppoeUserId));
-
-        MikrotikServer server = pppoeUser.getMikrotikServer();
-
-        // 1. Desconectar sessão se ativa
+    public void requestDrain() {
+        drainRequested = true;
+        if (draining.get()) {
+            return;
+        }
         try {
-            mikrotikApiService.disconnectActivePppoeUser(
-                    server.getIpAddress(),
-                    server.getApiPort(),
-                    server.getUsername(),
-                    server.getPassword(),
-                    pppoeUser.getUsername()
-            );
-            log.info("✅ Sessão desconectada");
-        } catch (Exception e) {
-            log.warn("⚠️  Falha ao desconectar (talvez já estivesse offline): {}", e.getMessage());
+            networkIntegrationExecutor.execute(this::drainOutbox);
+        } catch (RejectedExecutionException e) {
+            log.warn("Executor de integrações cheio; outbox será processado na próxima varredura");
         }
-
-        // 2. Deletar do Mikrotik
-        mikrotikApiService.deletePppoeUser(
-                server.getIpAddress(),
-                server.getApiPort(),
-                server.getUsername(),
-                server.getPassword(),
-                pppoeUser.getUsername()
-        );
-        log.info("✅ Usuário deletado do Mikrotik");
-
-        // 3. Marcar como inativo no banco (não deletar para auditoria)
-        pppoeUser.setActive(false);
-        pppoeUser.setStatus(PppoeUser.UserStatus.OFFLINE);
-        pppoeUser.setUpdatedAt(LocalDateTime.now());
-        pppoeUserRepository.save(pppoeUser);
-        log.info("✅ Usuário marcado como inativo no banco");
-
-        log.info("==========================================================");
-        log.info("✅ DELEÇÃO CONCLUÍDA - Usuário: {}", pppoeUser.getUsername());
-        log.info("==========================================================");
     }
 
-    // ==================== REGRAS DE NEGÓCIO ====================
-
-    // ==================== MUDANÇA DE PLANO (UPGRADE / DOWNGRADE) ====================
+    // ==================== DISPATCHER ====================
 
     /**
-     * Recebe o evento de mudança de plano e despacha para o worker com retry.
-     *
-     * @Async + @Retryable não podem estar no mesmo método (conflito de proxies Spring).
-     * Por isso separamos: listener (@Async) → worker (@Retryable).
+     * Varredura periódica: garante o processamento após reinícios, recusas do
+     * executor e novas tentativas agendadas.
      */
-    @Async("networkIntegrationExecutor")
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-    public void handlePlanChange(ContractPlanChangedEvent event) {
-        log.info("==========================================================");
-        log.info("📡 PROPAGANDO MUDANÇA DE PLANO - Contrato ID: {}", event.getContractId());
-        log.info("Plano: {} → {} | PPPoE User ID: {}",
-                 event.getPreviousServicePlanId(), event.getNewServicePlanId(), event.getPppoeUserId());
-        log.info("==========================================================");
-
-        if (event.getPppoeUserId() == null) {
-            log.warn("⚠️  Contrato {} sem PPPoE vinculado — propagação ignorada", event.getContractId());
+    @Scheduled(fixedDelayString = "${mikrotik.outbox.poll-interval-ms:2000}")
+    public void drainOutbox() {
+        if (!draining.compareAndSet(false, true)) {
+            drainRequested = true;
             return;
         }
-
         try {
-            applyPlanChangeInMikrotik(event.getPppoeUserId(), event.getNewServicePlanId(), event.getContractId());
+            List<String> previous = List.of();
+            int processed;
+            do {
+                drainRequested = false;
+                List<RouterCommandOutbox> due = outboxService.findDue(batchSize);
+                processed = due.size();
+                if (processed == 0) {
+                    break;
+                }
+                // Mesmas intenções (id + revisão) de volta: nada foi marcado, não adianta insistir agora
+                List<String> batch = due.stream().map(intent -> intent.getId() + "@" + intent.getRevision()).toList();
+                if (batch.equals(previous)) {
+                    log.warn("⚠️ Outbox sem progresso em {} intenções; nova tentativa na próxima varredura", processed);
+                    break;
+                }
+                previous = batch;
+                dispatch(due);
+            } while (processed >= batchSize || (drainRequested && processed > 0));
         } catch (Exception e) {
-            log.error("❌ ERRO ao propagar mudança de plano para contrato {} após todas as tentativas",
-                      event.getContractId(), e);
-            // TODO: persistir AutomationLog de falha para revisão manual / reprocessamento
+            log.error("❌ Erro ao processar outbox de comandos Mikrotik: {}", e.getMessage(), e);
+        } finally {
+            draining.set(false);
         }
     }
 
     /**
-     * Executa a troca de perfil no Mikrotik e sincroniza o banco.
-     *
-     * Deve ser public para que o proxy do @Retryable funcione corretamente
-     * (Spring AOP exige chamada via proxy, não chamada interna/direta).
+     * Aplica de imediato as intenções pendentes dos usuários informados (ex: suspensão em lote),
+     * um lote por router, routers em paralelo. Intenções com falha seguem o backoff do outbox.
      *
-     * SEQUÊNCIA:
-     * 1. Carrega PppoeUser + novo ServicePlan → PppoeProfile
-     * 2. Chama changePppoeUserProfile no Mikrotik
-     * 3. Atualiza PppoeUser.profile no banco
+     * @return resultado por usuário PPPoE: null = aplicada; caso contrário, a descrição do erro.
+     *         Usuários sem intenção pendente não aparecem.
      */
-    @Retryable(
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2.0),
-        retryFor = {Exception.class}
-    )
-    public void applyPlanChangeInMikrotik(Long pppoeUserId, Long newServicePlanId, Long contractId) {
-        log.info(">>> APLICANDO MUDANÇA DE PLANO - PPPoE ID: {}, Novo Plano: {}, Contrato: {}",
-                 pppoeUserId, newServicePlanId, contractId);
+    public Map<Long, String> dispatchNow(Collection<Long> pppoeUserIds) {
+        List<RouterCommandOutbox> intents = outboxService.findByPppoeUserIds(pppoeUserIds);
+        return intents.isEmpty() ? Map.of() : dispatch(intents);
+    }
 
-        // 1. Carregar usuário PPPoE
-        PppoeUser pppoeUser = pppoeUserRepository.findById(pppoeUserId)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuário PPPoE não encontrado: " + pppoeUserId));
+    private Map<Long, String> dispatch(List<RouterCommandOutbox> due) {
+        Map<Long, PppoeUser> users = pppoeUserRepository.findAllById(
+                due.stream().map(RouterCommandOutbox::getPppoeUserId).toList()).stream()
+                .collect(Collectors.toMap(PppoeUser::getId, Function.identity()));
+        Map<Long, PppoeProfile> profiles = outboxService.findProfiles(
+                due.stream().map(RouterCommandOutbox::getPppoeProfileId).filter(Objects::nonNull).distinct().toList());
+
+        Map<Long, String> outcomes = new HashMap<>();
+        Map<Long, List<RouterCommandOutbox>> byServer = new LinkedHashMap<>();
+        List<RouterCommandOutbox> orphans = new ArrayList<>();
+        for (RouterCommandOutbox intent : due) {
+            if (users.containsKey(intent.getPppoeUserId())) {
+                byServer.computeIfAbsent(intent.getMikrotikServerId(), id -> new ArrayList<>()).add(intent);
+            } else {
+                orphans.add(intent);
+            }
+        }
+        if (!orphans.isEmpty()) {
+            String error = "Usuário PPPoE não existe mais no banco";
+            outboxService.markFailed(orphans, error, true);
+            orphans.forEach(intent -> outcomes.put(intent.getPppoeUserId(), error));
+        }
 
-        // 2. Carregar novo plano → perfil PPPoE via JOIN FETCH (LAZY-safe para thread @Async)
-        ServicePlan newPlan = servicePlanRepository.findByIdWithProfile(newServicePlanId)
-                .orElseThrow(() -> new ResourceNotFoundException("Plano de serviço não encontrado: " + newServicePlanId));
+        log.info("📡 Outbox: {} intenções pendentes em {} router(s)", due.size(), byServer.size());
 
-        PppoeProfile newProfile = newPlan.getPppoeProfile();
-        if (newProfile == null) {
-            throw new IllegalStateException(
-                    "Plano ID=" + newServicePlanId + " não possui perfil PPPoE configurado");
+        // Um lote por router, routers em paralelo: um router lento não segura os demais
+        List<Future<Map<Long, String>>> perServer = new ArrayList<>(byServer.size());
+        try (ExecutorService perRouter = Executors.newVirtualThreadPerTaskExecutor()) {
+            byServer.values().forEach(intents ->
+                    perServer.add(perRouter.submit(() -> dispatchToServer(intents, users, profiles))));
         }
+        for (Future<Map<Long, String>> future : perServer) {
+            try {
+                outcomes.putAll(future.get());
+            } catch (ExecutionException e) {
+                log.error("❌ Erro ao despachar lote: {}", e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return outcomes;
+    }
 
-        MikrotikServer server = pppoeUser.getMikrotikServer();
-        String previousProfileName = pppoeUser.getProfile() != null
-                ? pppoeUser.getProfile().getName() : "N/A";
+    /**
+     * Qualquer falha no envio ou na confirmação agenda nova tentativa (backoff do outbox)
+     * para as intenções ainda não resolvidas — nenhuma fica vencida sem mudança.
+     *
+     * @return resultado por usuário PPPoE (null = aplicada)
+     */
+    private Map<Long, String> dispatchToServer(List<RouterCommandOutbox> intents, Map<Long, PppoeUser> users,
+                                               Map<Long, PppoeProfile> profiles) {
+        MikrotikServer server = users.get(intents.get(0).getPppoeUserId()).getMikrotikServer();
+        Map<Long, String> outcomes = new HashMap<>();
+        Set<Long> settled = new HashSet<>();
 
-        log.info("Alterando perfil: {} → {} | Usuário: {} | Servidor: {}",
-                 previousProfileName, newProfile.getName(), pppoeUser.getUsername(), server.getName());
+        try {
+            List<RouterCommandOutbox> sent = new ArrayList<>(intents.size());
+            List<RouterOsBatchOperation> operations = new ArrayList<>();
+            List<int[]> ranges = new ArrayList<>(intents.size()); // [início, fim) das operações de cada intenção
+            for (RouterCommandOutbox intent : intents) {
+                List<RouterOsBatchOperation> intentOperations;
+                try {
+                    intentOperations = toOperations(intent, users.get(intent.getPppoeUserId()), profiles);
+                } catch (RuntimeException e) {
+                    // Dado inconsistente no banco: nova tentativa não resolve
+                    String error = "Intenção inválida: " + e.getMessage();
+                    outboxService.markFailed(List.of(intent), error, true);
+                    settled.add(intent.getId());
+                    outcomes.put(intent.getPppoeUserId(), error);
+                    continue;
+                }
+                int start = operations.size();
+                operations.addAll(intentOperations);
+                ranges.add(new int[]{start, operations.size()});
+                sent.add(intent);
+            }
+            if (sent.isEmpty()) {
+                return outcomes;
+            }
 
-        // 3. Atualizar no Mikrotik — esta chamada tem retry automático via @Retryable
-        mikrotikApiService.changePppoeUserProfile(
-                server.getIpAddress(),
-                server.getApiPort(),
-                server.getUsername(),
-                server.getPassword(),
-                pppoeUser.getUsername(),
-                newProfile.getName()
-        );
-        log.info("✅ Perfil alterado no Mikrotik: {}", newProfile.getName());
+            List<RouterOsBatchResult> results;
+            try {
+                results = mikrotikApiService.executeBatch(server.getIpAddress(), server.getApiPort(),
+                        server.getUsername(), server.getPassword(), operations);
+            } catch (RouterUnavailableException e) {
+                log.warn("⚠️ Router {} indisponível: {} intenções adiadas", server.getName(), sent.size());
+                throw e;
+            }
 
-        // 4. Sincronizar banco somente após Mikrotik confirmar (consistência eventual garantida)
-        pppoeUser.setProfile(newProfile);
-        pppoeUser.setUpdatedAt(LocalDateTime.now());
-        pppoeUserRepository.save(pppoeUser);
-        log.info("✅ PppoeUser ID={} atualizado no banco: profile={}", pppoeUserId, newProfile.getName());
+            List<RouterCommandOutbox> applied = new ArrayList<>();
+            for (int i = 0; i < sent.size(); i++) {
+                RouterCommandOutbox intent = sent.get(i);
+                String error = evaluate(intent, results.subList(ranges.get(i)[0], ranges.get(i)[1]));
+                outcomes.put(intent.getPppoeUserId(), error);
+                if (error == null) {
+                    applied.add(intent);
+                } else {
+                    // Secret inexistente no router não se resolve com nova tentativa
+                    boolean permanent = error.startsWith("NOT_FOUND");
+                    outboxService.markFailed(List.of(intent), error, permanent);
+                    settled.add(intent.getId());
+                }
+            }
 
-        log.info("==========================================================");
-        log.info("✅ MUDANÇA DE PLANO CONCLUÍDA - Usuário: {} | Perfil: {}",
-                 pppoeUser.getUsername(), newProfile.getName());
-        log.info("==========================================================");
-    }
+            int confirmed = applied.isEmpty() ? 0 : outboxService.markApplied(applied, profiles);
+            applied.forEach(intent -> settled.add(intent.getId()));
+            log.info("✅ Router {}: {} de {} intenções aplicadas", server.getName(), confirmed, intents.size());
+            return outcomes;
 
-    private boolean shouldBlockUser(Contract.ContractStatus previous, Contract.ContractStatus newStatus) {
-        return (previous == Contract.ContractStatus.ACTIVE || previous == Contract.ContractStatus.PENDING) &&
-               (newStatus == Contract.ContractStatus.SUSPENDED_FINANCIAL ||
-                newStatus == Contract.ContractStatus.SUSPENDED_REQUEST);
+        } catch (Exception e) {
+            List<RouterCommandOutbox> unsettled = intents.stream()
+                    .filter(intent -> !settled.contains(intent.getId()))
+                    .toList();
+            if (!(e instanceof RouterUnavailableException)) {
+                log.error("❌ Falha ao despachar lote para {}: {}", server.getName(), e.getMessage(), e);
+            }
+            String error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            outboxService.markFailed(unsettled, error, false);
+            unsettled.forEach(intent -> outcomes.put(intent.getPppoeUserId(), error));
+            return outcomes;
+        }
     }
 
-    private boolean shouldUnblockUser(Contract.ContractStatus previous, Contract.ContractStatus newStatus) {
-        return (previous == Contract.ContractStatus.SUSPENDED_FINANCIAL ||
-                previous == Contract.ContractStatus.SUSPENDED_REQUEST) &&
-               newStatus == Contract.ContractStatus.ACTIVE;
+    private List<RouterOsBatchOperation> toOperations(RouterCommandOutbox intent, PppoeUser user,
+                                                      Map<Long, PppoeProfile> profiles) {
+        String username = user.getUsername();
+        return switch (intent.getDesiredState()) {
+            case BLOCKED -> List.of(
+                    RouterOsBatchOperation.changeProfile(username, BLOCKED_PROFILE),
+                    RouterOsBatchOperation.disconnect(username));
+            case ACTIVE -> {
+                PppoeProfile target = intent.getPppoeProfileId() != null
+                        ? profiles.get(intent.getPppoeProfileId()) : null;
+                String profileName = target != null ? target.getName()
+                        : user.getProfile() != null ? user.getProfile().getName() : null;
+                if (profileName == null) {
+                    throw new IllegalStateException("usuário PPPoE " + username + " sem perfil definido");
+                }
+                yield List.of(RouterOsBatchOperation.changeProfile(username, profileName));
+            }
+            case DELETED -> List.of(
+                    RouterOsBatchOperation.disconnect(username),
+                    RouterOsBatchOperation.removeSecret(username));
+        };
     }
 
-    private boolean shouldDeleteUser(Contract.ContractStatus newStatus) {
-        return newStatus == Contract.ContractStatus.CANCELED;
+    /**
+     * @return null se a intenção foi aplicada; caso contrário, a descrição do erro
+     */
+    private String evaluate(RouterCommandOutbox intent, List<RouterOsBatchResult> results) {
+        for (RouterOsBatchResult result : results) {
+            RouterOsBatchOperation op = result.operation();
+            switch (result.status()) {
+                case OK -> { }
+                case NOT_FOUND -> {
+                    // Sessão inativa ou secret já removido: estado desejado já vale
+                    boolean harmless = "remove".equals(op.action());
+                    if (!harmless) {
+                        return "NOT_FOUND: usuário PPPoE " + op.name() + " não existe no router";
+                    }
+                }
+                case FAILED -> {
+                    return op.action() + " " + op.name() + ": " + result.message();
+                }
+            }
+        }
+        return null;
     }
 }
-
@@ -7,15 +7,26 @@ import br.com.mikrotik.shared.infrastructure.security.RequireModuleAccess;
 import br.com.mikrotik.features.sync.dto.FullSyncConfigDTO;
 import br.com.mikrotik.features.sync.dto.FullSyncResultDTO;
 import br.com.mikrotik.features.sync.dto.ParsePreviewDTO;
+import br.com.mikrotik.features.sync.dto.SyncJobDTO;
 import br.com.mikrotik.features.sync.service.FullSyncService;
+import br.com.mikrotik.features.sync.service.MultiServerSyncService;
+import br.com.mikrotik.features.sync.service.SyncJobService;
+import br.com.mikrotik.shared.util.CompanyContextHolder;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/sync")
@@ -26,6 +37,12 @@ import org.springframework.web.bind.annotation.*;
 public class FullSyncController {
 
     private final FullSyncService fullSyncService;
+    private final SyncJobService syncJobService;
+    private final MultiServerSyncService multiServerSyncService;
+    private final JsonMapper jsonMapper;
+
+    /** Flush da resposta em streaming a cada N itens (o primeiro item sai imediatamente). */
+    private static final int STREAM_FLUSH_EVERY = 200;
 
     @PostMapping("/full-sync")
     @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.DELETE)
@@ -59,6 +76,9 @@ public class FullSyncController {
             - `createMissingCustomers`: Criar clientes automaticamente (padrão: true)
             - `createContracts`: Criar contratos automaticamente (padrão: true)
             - `autoActivateContracts`: Ativar contratos automaticamente (padrão: true)
+            - `incremental`: Processar apenas secrets/profiles adicionados ou alterados desde a última
+              sincronização (padrão: false). Sem alterações no router, termina após uma leitura do router
+              e uma consulta ao banco
             
             **IMPORTANTE:**
             - Usuários, clientes e contratos existentes são ignorados (não duplica)
@@ -103,6 +123,34 @@ public class FullSyncController {
         return ResponseEntity.ok(result);
     }
 
+    @PostMapping("/full-sync/all-servers")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.DELETE)
+    @Operation(
+        summary = "Sincronização completa de todos os servidores da empresa",
+        description = """
+            Mesmas fases e configurações do `POST /api/sync/full-sync` (o `serverId` é ignorado),
+            para todos os servidores MikroTik ativos da empresa:
+            
+            1. Profiles e secrets de todos os routers são lidos **em paralelo**
+            2. As fases de banco rodam **uma única vez** sobre o snapshot combinado
+               (clientes e contratos não são reprocessados por servidor)
+            
+            Tempo total ≈ router mais lento + uma passada no banco. Servidor inacessível é listado
+            em `failedServerNames` e fica fora desta execução; os demais são sincronizados.
+            """
+    )
+    public ResponseEntity<FullSyncResultDTO> fullSyncAllServers(@Valid @RequestBody FullSyncConfigDTO config) {
+        log.info("POST /api/sync/full-sync/all-servers - Sincronização de todos os servidores (incremental: {})",
+                config.getIncremental());
+
+        FullSyncResultDTO result = multiServerSyncService.syncAllServers(config);
+
+        log.info("Servidores: {} sincronizados, {} com falha | Tempo: {}s",
+                result.getServerNames().size(), result.getFailedServerNames().size(),
+                result.getExecutionTimeSeconds());
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/parse-preview/{serverId}")
     @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.VIEW)
     @Operation(
@@ -121,11 +169,94 @@ public class FullSyncController {
             - `warning`             → aviso de parsing (se houver)
             
             Use este endpoint **antes** do full-sync para validar os dados.
+            Para empresas grandes, prefira `GET /api/sync/parse-preview/{serverId}/stream` (NDJSON).
             """
     )
     public ResponseEntity<ParsePreviewDTO> parsePreview(@PathVariable Long serverId) {
         log.info("GET /api/sync/parse-preview/{} - Pré-visualização de parsing", serverId);
         return ResponseEntity.ok(fullSyncService.parsePreview(serverId));
     }
-}
 
+    @GetMapping(value = "/parse-preview/{serverId}/stream", produces = "application/x-ndjson")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.VIEW)
+    @Operation(
+        summary = "Pré-visualização do parsing em streaming (NDJSON)",
+        description = """
+            Mesmos campos de `GET /api/sync/parse-preview/{serverId}`, restritos aos usuários do servidor
+            informado, enviados **um objeto JSON por linha** à medida que são analisados.
+            
+            - O primeiro item chega sem esperar a empresa inteira ser processada
+            - Memória do servidor constante, independente da quantidade de usuários
+            - Não há envelope (`total`/`items`): conte as linhas recebidas
+            """
+    )
+    public ResponseEntity<StreamingResponseBody> streamParsePreview(@PathVariable Long serverId) {
+        log.info("GET /api/sync/parse-preview/{}/stream - Pré-visualização de parsing (NDJSON)", serverId);
+        // A resposta é escrita em outra thread: empresa e servidor resolvidos aqui
+        Long companyId = CompanyContextHolder.getCompanyId();
+        fullSyncService.requireCompanyServer(companyId, serverId);
+
+        StreamingResponseBody body = out -> {
+            int[] written = {0};
+            fullSyncService.streamParsePreview(companyId, serverId, item -> {
+                try {
+                    out.write(jsonMapper.writeValueAsBytes(item));
+                    out.write('\n');
+                    if (++written[0] % STREAM_FLUSH_EVERY == 1) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    // Cliente desconectou: interrompe o cursor e libera a conexão
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    @PostMapping("/jobs")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.DELETE)
+    @Operation(
+        summary = "Iniciar sincronização completa em segundo plano",
+        description = """
+            Mesmas fases e configurações do `POST /api/sync/full-sync`, executadas como job assíncrono.
+            Retorna imediatamente (202) com o ID do job.
+            
+            - Cada fase é processada em blocos de N itens, um bloco por transação
+            - O progresso (fase, itens processados/total, resultado parcial) é gravado a cada bloco
+            - Se a aplicação cair, o job é retomado a partir do último bloco confirmado
+            - Apenas um job ativo por servidor
+            
+            Acompanhe com `GET /api/sync/jobs/{id}`.
+            """
+    )
+    public ResponseEntity<SyncJobDTO> startJob(@Valid @RequestBody FullSyncConfigDTO config) {
+        log.info("POST /api/sync/jobs - Job de sincronização para o servidor {}", config.getServerId());
+        return ResponseEntity.accepted().body(syncJobService.start(config));
+    }
+
+    @GetMapping("/jobs")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.VIEW)
+    @Operation(summary = "Listar jobs de sincronização recentes", description = "Últimos 20 jobs da empresa")
+    public ResponseEntity<List<SyncJobDTO>> listJobs() {
+        return ResponseEntity.ok(syncJobService.listRecent());
+    }
+
+    @GetMapping("/jobs/{id}")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.VIEW)
+    @Operation(summary = "Progresso de um job de sincronização",
+            description = "Status, fase corrente, itens processados/total e resultado acumulado até o último bloco confirmado")
+    public ResponseEntity<SyncJobDTO> getJob(@PathVariable Long id) {
+        return ResponseEntity.ok(syncJobService.get(id));
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    @RequireModuleAccess(module = SystemModule.SYNC, action = ModuleAction.DELETE)
+    @Operation(summary = "Cancelar job de sincronização",
+            description = "Job em execução para ao fim do bloco corrente; blocos já confirmados permanecem no banco")
+    public ResponseEntity<SyncJobDTO> cancelJob(@PathVariable Long id) {
+        log.info("POST /api/sync/jobs/{}/cancel", id);
+        return ResponseEntity.ok(syncJobService.cancel(id));
+    }
+}
@@ -3,7 +3,6 @@ package br.com.mikrotik.features.sync.dto;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
-import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -18,8 +17,8 @@ import java.math.BigDecimal;
 @Schema(description = "Configuração para sincronização completa do MikroTik")
 public class FullSyncConfigDTO {
 
-    @NotNull(message = "ID do servidor é obrigatório")
-    @Schema(description = "ID do servidor MikroTik", example = "1", requiredMode = Schema.RequiredMode.REQUIRED)
+    // Obrigatório na sincronização de um servidor (validado no serviço); ignorado em /full-sync/all-servers
+    @Schema(description = "ID do servidor MikroTik (ignorado na sincronização de todos os servidores)", example = "1")
     private Long serverId;
 
     @Builder.Default
@@ -47,5 +46,9 @@ public class FullSyncConfigDTO {
     @Builder.Default
     @Schema(description = "Ativar automaticamente os contratos criados", example = "true")
     private Boolean autoActivateContracts = true;
+
+    @Builder.Default
+    @Schema(description = "Processar apenas secrets/profiles adicionados ou alterados desde a última sincronização", example = "false")
+    private Boolean incremental = false;
 }
 
@@ -16,6 +16,15 @@ import java.util.List;
 @Schema(description = "Resultado detalhado da sincronização completa")
 public class FullSyncResultDTO {
 
+    // Servers
+    @Builder.Default
+    @Schema(description = "Servidores MikroTik lidos nesta sincronização")
+    private List<String> serverNames = new ArrayList<>();
+
+    @Builder.Default
+    @Schema(description = "Servidores que não puderam ser lidos (ignorados nesta execução)")
+    private List<String> failedServerNames = new ArrayList<>();
+
     // Profiles
     @Builder.Default
     @Schema(description = "Total de profiles encontrados no MikroTik")
@@ -77,6 +86,27 @@ public class FullSyncResultDTO {
     @Schema(description = "Contratos que falharam")
     private Integer failedContracts = 0;
 
+    // Incremental
+    @Builder.Default
+    @Schema(description = "Sincronização executada no modo incremental")
+    private Boolean incremental = false;
+
+    @Builder.Default
+    @Schema(description = "Profiles sem alteração desde a última sincronização")
+    private Integer unchangedProfiles = 0;
+
+    @Builder.Default
+    @Schema(description = "Usuários PPPoE sem alteração desde a última sincronização")
+    private Integer unchangedPppoeUsers = 0;
+
+    @Builder.Default
+    @Schema(description = "Profiles que não existem mais no MikroTik")
+    private List<String> removedProfileNames = new ArrayList<>();
+
+    @Builder.Default
+    @Schema(description = "Usuários PPPoE que não existem mais no MikroTik")
+    private List<String> removedPppoeUsernames = new ArrayList<>();
+
     // Details
     @Builder.Default
     @Schema(description = "Lista de nomes de profiles sincronizados")
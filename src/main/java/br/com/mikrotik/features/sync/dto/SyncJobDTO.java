@@ -0,0 +1,54 @@
+package br.com.mikrotik.features.sync.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Job assíncrono de sincronização completa")
+public class SyncJobDTO {
+
+    @Schema(description = "ID do job", example = "42")
+    private Long id;
+
+    @Schema(description = "ID do servidor MikroTik", example = "1")
+    private Long serverId;
+
+    @Schema(description = "Status do job", example = "RUNNING",
+            allowableValues = {"PENDING", "RUNNING", "COMPLETED", "FAILED", "CANCELED"})
+    private String status;
+
+    @Schema(description = "Fase corrente", example = "PPPOE_USERS",
+            allowableValues = {"PROFILES", "SERVICE_PLANS", "PPPOE_USERS", "CUSTOMERS", "CONTRACTS", "FINALIZING"})
+    private String phase;
+
+    @Schema(description = "Itens confirmados na fase corrente", example = "1500")
+    private Integer processed;
+
+    @Schema(description = "Itens da fase corrente", example = "4200")
+    private Integer total;
+
+    @Schema(description = "Cancelamento solicitado (o job para ao fim do bloco corrente)")
+    private Boolean cancelRequested;
+
+    @Schema(description = "Execuções do job (1 + retomadas após queda)", example = "1")
+    private Integer attempts;
+
+    @Schema(description = "Motivo da falha, se houver")
+    private String errorMessage;
+
+    @Schema(description = "Resultado acumulado até o último bloco confirmado")
+    private FullSyncResultDTO result;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime heartbeatAt;
+    private LocalDateTime finishedAt;
+}
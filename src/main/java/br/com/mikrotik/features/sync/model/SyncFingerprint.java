@@ -0,0 +1,49 @@
+package br.com.mikrotik.features.sync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hash dos campos relevantes de um secret/profile do router na última sincronização.
+ *
+ * O modo incremental do full-sync compara o snapshot atual do router com estes
+ * hashes: só itens adicionados ou alterados passam pelas fases de sincronização.
+ */
+@Entity
+@Table(name = "sync_fingerprint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncFingerprint {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "mikrotik_server_id", nullable = false)
+    private Long mikrotikServerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "item_type", nullable = false, length = 20)
+    private ItemType itemType;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    public enum ItemType {
+        SECRET,   // /ppp/secret
+        PROFILE   // /ppp/profile
+    }
+}
@@ -0,0 +1,92 @@
+package br.com.mikrotik.features.sync.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job assíncrono de sincronização completa.
+ *
+ * O progresso (fase, cursor, contadores, resultado parcial) é gravado na mesma transação
+ * de cada bloco processado: um job interrompido é retomado a partir do último bloco confirmado.
+ */
+@Entity
+@Table(name = "sync_job")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SyncJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "company_id", nullable = false)
+    private Long companyId;
+
+    @Column(name = "mikrotik_server_id", nullable = false)
+    private Long mikrotikServerId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Status status = Status.PENDING;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Phase phase = Phase.PROFILES;
+
+    @Column(name = "cursor_key")
+    private String cursorKey;
+
+    @Column(nullable = false)
+    private Integer processed = 0;
+
+    @Column(nullable = false)
+    private Integer total = 0;
+
+    @Column(name = "config_json", nullable = false, columnDefinition = "TEXT")
+    private String configJson;
+
+    @Column(name = "state_json", columnDefinition = "MEDIUMTEXT")
+    private String stateJson;
+
+    @Column(name = "cancel_requested", nullable = false)
+    private Boolean cancelRequested = false;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime heartbeatAt;
+
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        PENDING,    // aguardando executor
+        RUNNING,    // em execução (ou órfão, se o heartbeat parou)
+        COMPLETED,
+        FAILED,
+        CANCELED
+    }
+
+    /**
+     * Fases na ordem de execução (mesma ordem do FullSyncService).
+     */
+    public enum Phase {
+        PROFILES,
+        SERVICE_PLANS,
+        PPPOE_USERS,
+        CUSTOMERS,
+        CONTRACTS,
+        FINALIZING
+    }
+}
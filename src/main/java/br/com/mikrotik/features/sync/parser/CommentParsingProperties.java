@@ -0,0 +1,42 @@
+package br.com.mikrotik.features.sync.parser;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Regras de parsing dos comentários PPPoE, por empresa.
+ *
+ * mikrotik:
+ *   sync:
+ *     comment-parsing:
+ *       rules: [LEGACY_MARKER, PHONE, CPF, NUMBER, NEIGHBORHOOD, NEIGHBORHOOD_SUFFIX]
+ *       companies:
+ *         7: [CPF, NUMBER, NEIGHBORHOOD]   # POP sem telefone nem bairro abreviado
+ *       parallel-threshold: 2000
+ */
+@Configuration
+@ConfigurationProperties(prefix = "mikrotik.sync.comment-parsing")
+@Data
+public class CommentParsingProperties {
+
+    /** Ordem padrão das regras (formato observado nos routers atuais). */
+    private List<CommentRule> rules = new ArrayList<>(List.of(
+            CommentRule.LEGACY_MARKER,
+            CommentRule.PHONE,
+            CommentRule.CPF,
+            CommentRule.NUMBER,
+            CommentRule.NEIGHBORHOOD,
+            CommentRule.NEIGHBORHOOD_SUFFIX));
+
+    /** Ordem específica por empresa (companyId → regras); substitui a padrão. */
+    private Map<Long, List<CommentRule>> companies = new HashMap<>();
+
+    /** A partir deste volume, {@link CustomerInfoParser#parseAll} usa vários núcleos. */
+    private int parallelThreshold = 2000;
+}
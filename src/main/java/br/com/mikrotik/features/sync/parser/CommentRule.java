@@ -0,0 +1,143 @@
+package br.com.mikrotik.features.sync.parser;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Regras de extração aplicadas ao comentário do usuário PPPoE, na ordem configurada
+ * para a empresa ({@code mikrotik.sync.comment-parsing}).
+ *
+ * Cada regra lê e reduz o texto de trabalho ({@link ParseState#text}); o que sobra ao
+ * final vira a rua. Os padrões são compilados uma única vez (constantes da classe).
+ */
+public enum CommentRule {
+
+    /** Remove marcadores legados {@code [CUSTOMER_ID:n]} de versões anteriores. */
+    LEGACY_MARKER {
+        @Override
+        void apply(ParseState state) {
+            if (state.text.contains("[CUSTOMER_ID:")) {
+                state.text = Patterns.LEGACY_MARKER.matcher(state.text).replaceAll("").trim();
+            }
+        }
+    },
+
+    /**
+     * Telefone: 8 a 11 dígitos isolados. Com "CPF" no texto, 11 dígitos são tratados como CPF.
+     * Não remove o trecho do texto (a regra CPF ou NUMBER cuidam disso).
+     */
+    PHONE {
+        @Override
+        void apply(ParseState state) {
+            Matcher matcher = Patterns.PHONE.matcher(state.text);
+            if (matcher.find()) {
+                boolean isCpf = containsIgnoreCase(state.text, "CPF");
+                if (!isCpf || matcher.group(1).length() != 11) {
+                    state.phone = matcher.group(1);
+                }
+            }
+        }
+    },
+
+    /** Remove o CPF do texto de endereço (ex: "- CPF 95266413587"). */
+    CPF {
+        @Override
+        void apply(ParseState state) {
+            if (state.text.contains("CPF")) {
+                state.text = Patterns.CPF.matcher(state.text).replaceAll("").trim();
+            }
+        }
+    },
+
+    /** Número do imóvel ("n120", ", 135"); o texto é cortado no início do número. */
+    NUMBER {
+        @Override
+        void apply(ParseState state) {
+            Matcher matcher = Patterns.NUMBER.matcher(state.text);
+            if (matcher.find()) {
+                state.addressNumber = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+                state.text = state.text.substring(0, matcher.start()).trim();
+            }
+        }
+    },
+
+    /** Bairro explícito: "bairro Bela Vista" até o fim do texto. */
+    NEIGHBORHOOD {
+        @Override
+        void apply(ParseState state) {
+            if (state.neighborhood != null) {
+                return;
+            }
+            Matcher matcher = Patterns.NEIGHBORHOOD.matcher(state.text);
+            if (matcher.find()) {
+                state.neighborhood = CustomerInfoParser.capitalizeWords(matcher.group(1).trim());
+                state.text = state.text.substring(0, matcher.start()).trim();
+            }
+        }
+    },
+
+    /**
+     * Bairro abreviado ao final (ex: "pg", "cj"): palavra de 1 a 4 letras, só depois de
+     * um número já extraído e se nenhum bairro explícito foi encontrado.
+     */
+    NEIGHBORHOOD_SUFFIX {
+        @Override
+        void apply(ParseState state) {
+            if (state.neighborhood != null || state.addressNumber == null) {
+                return;
+            }
+            Matcher matcher = Patterns.SUFFIX.matcher(state.text);
+            if (matcher.find() && isShortWord(matcher.group(1))) {
+                state.neighborhood = CustomerInfoParser.capitalizeWords(matcher.group(1));
+                state.text = state.text.substring(0, matcher.start()).trim();
+            }
+        }
+    };
+
+    abstract void apply(ParseState state);
+
+    /**
+     * Estado de um parsing (uma instância por comentário; não compartilhada entre threads).
+     */
+    static final class ParseState {
+        String text;
+        String phone;
+        String addressNumber;
+        String neighborhood;
+
+        ParseState(String text) {
+            this.text = text;
+        }
+    }
+
+    private static boolean containsIgnoreCase(String text, String token) {
+        for (int i = 0, last = text.length() - token.length(); i <= last; i++) {
+            if (text.regionMatches(true, i, token, 0, token.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isShortWord(String candidate) {
+        if (candidate.isEmpty() || candidate.length() > 4) {
+            return false;
+        }
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = candidate.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Patterns {
+        static final Pattern LEGACY_MARKER = Pattern.compile("\\[CUSTOMER_ID:\\d+]");
+        static final Pattern PHONE = Pattern.compile("\\b(\\d{8,11})\\b");
+        static final Pattern CPF = Pattern.compile("[-–]?\\s*CPF\\s+\\d+");
+        static final Pattern NUMBER = Pattern.compile("\\bn\\s*(\\d+)|,\\s*(\\d+)(?=\\s|$)", Pattern.CASE_INSENSITIVE);
+        static final Pattern NEIGHBORHOOD = Pattern.compile("\\bbairro\\s+(.+)$", Pattern.CASE_INSENSITIVE);
+        static final Pattern SUFFIX = Pattern.compile("\\s+(\\w{1,4})$", Pattern.CASE_INSENSITIVE);
+    }
+}
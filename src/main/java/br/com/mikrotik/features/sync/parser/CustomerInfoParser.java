@@ -0,0 +1,156 @@
+package br.com.mikrotik.features.sync.parser;
+
+import br.com.mikrotik.features.sync.dto.CustomerInfoParseResult;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Interpreta usuário PPPoE → dados do cliente (usado pela sincronização e pelo parse-preview).
+ * <p>
+ * ESTRATÉGIA (baseada nos dados reais observados):
+ * <pre>
+ *  Campo "Name" (username) no MikroTik  → NOME DO CLIENTE
+ *    ex: "elianabatista"   → "Elianabatista"
+ *    ex: "fabioRamos"      → "Fabio Ramos"
+ *    ex: "eva"             → "Eva"
+ *
+ *  Campo "Comment" no MikroTik          → ENDEREÇO / LOCALIZAÇÃO
+ *    ex: "rua 1 n120"                   → rua: "Rua 1", número: "120"
+ *    ex: "manoel b paixa n63"            → rua: "Manoel B Paixa", número: "63"
+ *    ex: "Rua Dr Alterives Marciel, 135 Bairro Bela Vista - CPF 95266413587"
+ *                                        → rua: "Rua Dr Alterives Marciel", número: "135", CPF ignorado
+ *    ex: "casa azul bairro novo horizonte" → rua: "Casa Azul", bairro: "Novo Horizonte"
+ *    ex: "dene"                          → rua: "Dene" (referência de localização)
+ *    ex: vazio / null                    → sem endereço
+ * </pre>
+ * O texto após o número é descartado. Casos registrados em src/test/resources/sync/comment-corpus.tsv.
+ * As regras do comentário ({@link CommentRule}) rodam na ordem configurada para a empresa;
+ * os padrões são pré-compilados e nome/capitalização não usam regex. Thread-safe.
+ */
+@Component
+@RequiredArgsConstructor
+public class CustomerInfoParser {
+
+    private final CommentParsingProperties properties;
+
+    /**
+     * Entrada do parsing em lote (campos já lidos da entidade, seguro entre threads).
+     */
+    public record Input(String username, String comment) {
+    }
+
+    public CustomerInfoParseResult parse(Long companyId, String username, String comment) {
+        return parse(rulesFor(companyId), username, comment);
+    }
+
+    /**
+     * Parsing em lote, na ordem da entrada; volumes grandes usam vários núcleos.
+     */
+    public List<CustomerInfoParseResult> parseAll(Long companyId, List<Input> inputs) {
+        List<CommentRule> rules = rulesFor(companyId);
+        IntStream indexes = IntStream.range(0, inputs.size());
+        if (inputs.size() >= properties.getParallelThreshold()) {
+            indexes = indexes.parallel();
+        }
+        return indexes.mapToObj(i -> parse(rules, inputs.get(i).username(), inputs.get(i).comment())).toList();
+    }
+
+    public List<CommentRule> rulesFor(Long companyId) {
+        List<CommentRule> companyRules = companyId != null ? properties.getCompanies().get(companyId) : null;
+        return companyRules != null ? companyRules : properties.getRules();
+    }
+
+    private CustomerInfoParseResult parse(List<CommentRule> rules, String username, String comment) {
+        CustomerInfoParseResult result = CustomerInfoParseResult.builder()
+                .customerName(customerName(username))
+                .originalComment(comment)
+                .parseSuccess(true)
+                .build();
+
+        // Sem comentário: apenas nome, sem endereço
+        if (comment == null || comment.isBlank()) {
+            result.setWarningMessage("PPPoE '" + username + "': sem comentário — endereço não preenchido");
+            return result;
+        }
+
+        CommentRule.ParseState state = new CommentRule.ParseState(comment.trim());
+        for (CommentRule rule : rules) {
+            rule.apply(state);
+        }
+
+        // Rua/localização: tudo que restou do comentário
+        result.setAddress(state.text.isEmpty() ? null : capitalizeWords(state.text));
+        result.setAddressNumber(state.addressNumber);
+        result.setNeighborhood(state.neighborhood);
+        result.setPhone(state.phone);
+        return result;
+    }
+
+    /**
+     * Username sem espaços → nome capitalizado.
+     * - Já contém espaço → apenas capitaliza as palavras
+     * - camelCase (minúscula seguida de maiúscula) → divide e capitaliza ("fabioRamos" → "Fabio Ramos")
+     * - Tudo junto ("elianabatista") → sem dicionário não há como achar os limites;
+     *   capitaliza só a 1ª letra e o operador corrige depois
+     */
+    static String customerName(String username) {
+        if (username == null || username.isBlank()) {
+            return "Desconhecido";
+        }
+        if (username.indexOf(' ') >= 0) {
+            return capitalizeWords(username);
+        }
+
+        StringBuilder split = null;
+        for (int i = 1; i < username.length(); i++) {
+            char previous = username.charAt(i - 1);
+            char current = username.charAt(i);
+            if (previous >= 'a' && previous <= 'z' && current >= 'A' && current <= 'Z') {
+                if (split == null) {
+                    split = new StringBuilder(username.length() + 4).append(username, 0, i);
+                }
+                split.append(' ');
+            }
+            if (split != null) {
+                split.append(current);
+            }
+        }
+        if (split != null) {
+            return capitalizeWords(split.toString());
+        }
+
+        return Character.toUpperCase(username.charAt(0)) + username.substring(1).toLowerCase();
+    }
+
+    /**
+     * Capitaliza cada palavra e normaliza os espaços entre elas.
+     */
+    static String capitalizeWords(String text) {
+        if (text == null || text.isBlank()) {
+            return text;
+        }
+        String lower = text.toLowerCase();
+        StringBuilder result = new StringBuilder(lower.length());
+        int i = 0;
+        int length = lower.length();
+        while (i < length) {
+            while (i < length && Character.isWhitespace(lower.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(lower.charAt(i))) {
+                i++;
+            }
+            if (start < i) {
+                if (!result.isEmpty()) {
+                    result.append(' ');
+                }
+                result.append(Character.toUpperCase(lower.charAt(start))).append(lower, start + 1, i);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,39 @@
+package br.com.mikrotik.features.sync.repository;
+
+import br.com.mikrotik.features.sync.model.SyncFingerprint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SyncFingerprintRepository extends JpaRepository<SyncFingerprint, Long> {
+
+    List<SyncFingerprint> findByMikrotikServerId(Long mikrotikServerId);
+
+    /**
+     * Grava (ou substitui) o hash do item numa única instrução.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO sync_fingerprint " +
+                   "(company_id, mikrotik_server_id, item_type, name, fingerprint, updated_at) " +
+                   "VALUES (:companyId, :serverId, :itemType, :name, :fingerprint, NOW()) " +
+                   "ON DUPLICATE KEY UPDATE fingerprint = VALUES(fingerprint), updated_at = NOW()",
+           nativeQuery = true)
+    int upsert(@Param("companyId") Long companyId,
+               @Param("serverId") Long serverId,
+               @Param("itemType") String itemType,
+               @Param("name") String name,
+               @Param("fingerprint") String fingerprint);
+
+    @Modifying
+    @Query("DELETE FROM SyncFingerprint f WHERE f.mikrotikServerId = :serverId " +
+           "AND f.itemType = :itemType AND f.name IN :names")
+    int deleteByNames(@Param("serverId") Long serverId,
+                      @Param("itemType") SyncFingerprint.ItemType itemType,
+                      @Param("names") Collection<String> names);
+}
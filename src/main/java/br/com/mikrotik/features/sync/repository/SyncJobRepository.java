@@ -0,0 +1,79 @@
+package br.com.mikrotik.features.sync.repository;
+
+import br.com.mikrotik.features.sync.model.SyncJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SyncJobRepository extends JpaRepository<SyncJob, Long> {
+
+    Optional<SyncJob> findByIdAndCompanyId(Long id, Long companyId);
+
+    List<SyncJob> findTop20ByCompanyIdOrderByIdDesc(Long companyId);
+
+    boolean existsByMikrotikServerIdAndStatusIn(Long mikrotikServerId, Collection<SyncJob.Status> statuses);
+
+    // Jobs sem executor vivo: heartbeat parado (ou nunca iniciados) há mais que o limite
+    @Query("SELECT j.id FROM SyncJob j WHERE j.status IN ('PENDING', 'RUNNING') " +
+           "AND ((j.heartbeatAt IS NULL AND j.createdAt < :staleBefore) OR j.heartbeatAt < :staleBefore) " +
+           "ORDER BY j.id")
+    List<Long> findStaleJobIds(@Param("staleBefore") LocalDateTime staleBefore);
+
+    // Assume a execução do job; só uma instância vence (heartbeat nulo ou parado)
+    @Modifying
+    @Transactional
+    @Query("UPDATE SyncJob j SET j.status = 'RUNNING', j.heartbeatAt = :now, " +
+           "j.startedAt = COALESCE(j.startedAt, :now), j.attempts = j.attempts + 1 " +
+           "WHERE j.id = :id AND j.status IN ('PENDING', 'RUNNING') " +
+           "AND (j.heartbeatAt IS NULL OR j.heartbeatAt < :staleBefore)")
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Progresso do bloco (chamado dentro da transação do bloco); não toca em cancel_requested.
+    // attempts funciona como fencing token: 0 linhas = outra execução assumiu o job
+    @Modifying
+    @Query("UPDATE SyncJob j SET j.phase = :phase, j.cursorKey = :cursorKey, j.processed = :processed, " +
+           "j.total = :total, j.stateJson = :stateJson, j.heartbeatAt = :now " +
+           "WHERE j.id = :id AND j.attempts = :attempt")
+    int updateProgress(@Param("id") Long id,
+                       @Param("attempt") int attempt,
+                       @Param("phase") SyncJob.Phase phase,
+                       @Param("cursorKey") String cursorKey,
+                       @Param("processed") int processed,
+                       @Param("total") int total,
+                       @Param("stateJson") String stateJson,
+                       @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SyncJob j SET j.status = :status, j.errorMessage = :errorMessage, j.finishedAt = :now, " +
+           "j.heartbeatAt = :now WHERE j.id = :id AND j.attempts = :attempt")
+    int finish(@Param("id") Long id,
+               @Param("attempt") int attempt,
+               @Param("status") SyncJob.Status status,
+               @Param("errorMessage") String errorMessage,
+               @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SyncJob j SET j.cancelRequested = true WHERE j.id = :id AND j.status IN ('PENDING', 'RUNNING')")
+    int requestCancel(@Param("id") Long id);
+
+    // Job ainda não assumido por nenhum executor: cancela direto
+    @Modifying
+    @Transactional
+    @Query("UPDATE SyncJob j SET j.status = 'CANCELED', j.cancelRequested = true, j.finishedAt = :now " +
+           "WHERE j.id = :id AND j.status = 'PENDING' AND j.heartbeatAt IS NULL")
+    int cancelPending(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    @Query("SELECT j.cancelRequested FROM SyncJob j WHERE j.id = :id")
+    boolean isCancelRequested(@Param("id") Long id);
+}
@@ -6,8 +6,15 @@ import br.com.mikrotik.features.sync.dto.SyncResultDTO;
 import br.com.mikrotik.features.sync.dto.CustomerInfoParseResult;
 import br.com.mikrotik.features.sync.dto.ParsePreviewDTO;
 import br.com.mikrotik.features.sync.dto.ParsePreviewDTO.ParsePreviewItemDTO;
+import br.com.mikrotik.features.sync.model.SyncFingerprint;
+import br.com.mikrotik.features.sync.parser.CustomerInfoParser;
+import br.com.mikrotik.features.sync.service.SyncFingerprintService.SnapshotDelta;
 import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import br.com.mikrotik.shared.infrastructure.exception.ValidationException;
+import br.com.mikrotik.features.network.server.adapter.MikrotikApiService;
 import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeProfileDTO;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
 import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
 import br.com.mikrotik.features.network.pppoe.model.PppoeProfile;
 import br.com.mikrotik.features.customers.model.Customer;
@@ -19,6 +26,7 @@ import br.com.mikrotik.features.network.pppoe.service.PppoeProfileService;
 import br.com.mikrotik.features.network.pppoe.service.PppoeUserService;
 import br.com.mikrotik.features.contracts.service.ContractService;
 import br.com.mikrotik.features.network.pppoe.repository.PppoeProfileRepository;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository;
 import br.com.mikrotik.features.customers.repository.CustomerRepository;
 import br.com.mikrotik.features.customers.repository.AddressRepository;
 import br.com.mikrotik.features.contracts.repository.ContractRepository;
@@ -28,18 +36,24 @@ import br.com.mikrotik.shared.util.CompanyContextHolder;
 import jakarta.persistence.EntityManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -52,11 +66,18 @@ public class FullSyncService {
     private final PppoeUserService pppoeUserService;
     private final ServicePlanRepository servicePlanRepository;
     private final PppoeProfileRepository profileRepository;
+    private final PppoeUserRepository pppoeUserRepository;
     private final CustomerRepository customerRepository;
     private final ContractRepository contractRepository;
     private final ContractService contractService;
     private final AddressRepository addressRepository;
     private final EntityManager entityManager;
+    private final MikrotikApiService apiService;
+    private final SyncFingerprintService fingerprintService;
+    private final CustomerInfoParser customerInfoParser;
+
+    @Value("${mikrotik.sync.flush-interval:500}")
+    private int flushInterval;
 
     /**
      * Pré-visualização do parsing: retorna o que seria criado para cada PPPoE
@@ -66,13 +87,19 @@ public class FullSyncService {
     public ParsePreviewDTO parsePreview(Long serverId) {
         Long companyId = CompanyContextHolder.getCompanyId();
         List<PppoeUser> users = pppoeUserService.findAll();
-        List<ParsePreviewItemDTO> items = new ArrayList<>();
+        Map<Long, Long> contractCustomerIds = loadContractCustomerIds(companyId);
+        List<ParsePreviewItemDTO> items = new ArrayList<>(users.size());
+
+        // Parsing em lote (paralelo em volumes grandes); as entidades só são lidas nesta thread
+        List<CustomerInfoParseResult> parsedUsers = customerInfoParser.parseAll(companyId, users.stream()
+                .map(user -> new CustomerInfoParser.Input(user.getUsername(), user.getComment()))
+                .toList());
 
-        for (PppoeUser user : users) {
-            CustomerInfoParseResult parsed = parseCustomerInfo(user);
+        for (int i = 0; i < users.size(); i++) {
+            PppoeUser user = users.get(i);
+            CustomerInfoParseResult parsed = parsedUsers.get(i);
 
-            boolean alreadySynced = contractRepository.findByPppoeUserIdAndCompanyId(
-                    user.getId(), companyId).isPresent();
+            boolean alreadySynced = contractCustomerIds.containsKey(user.getId());
 
             items.add(ParsePreviewItemDTO.builder()
                     .pppoeUsername(user.getUsername())
@@ -95,9 +122,64 @@ public class FullSyncService {
                 .build();
     }
 
+    /**
+     * Pré-visualização em streaming: entrega cada item ao consumidor assim que é analisado.
+     * <p>
+     * Os usuários vêm de um cursor do banco (projeção, sem entidades gerenciadas) e
+     * "já sincronizado" é decidido por um único conjunto de IDs pré-carregado. Memória e
+     * tempo até o primeiro item não dependem do tamanho da empresa.
+     * <p>
+     * Roda fora da thread da requisição: companyId é recebido explicitamente.
+     *
+     * @return total de itens entregues
+     */
+    @Transactional(readOnly = true)
+    public int streamParsePreview(Long companyId, Long serverId, Consumer<ParsePreviewItemDTO> sink) {
+        Set<Long> linkedUserIds = contractRepository.findLinkedPppoeUserIdsByCompanyId(companyId);
+
+        int count = 0;
+        try (Stream<PppoeUserRepository.PreviewRow> rows = pppoeUserRepository.streamPreviewRows(companyId, serverId)) {
+            for (PppoeUserRepository.PreviewRow row : (Iterable<PppoeUserRepository.PreviewRow>) rows::iterator) {
+                CustomerInfoParseResult parsed = customerInfoParser.parse(companyId, row.getUsername(), row.getComment());
+                sink.accept(ParsePreviewItemDTO.builder()
+                        .pppoeUsername(row.getUsername())
+                        .resolvedCustomerName(parsed.getCustomerName())
+                        .originalComment(parsed.getOriginalComment())
+                        .parsedStreet(parsed.getAddress())
+                        .parsedNumber(parsed.getAddressNumber())
+                        .parsedNeighborhood(parsed.getNeighborhood())
+                        .parsedPhone(parsed.getPhone())
+                        .profile(row.getProfileName())
+                        .alreadySynced(linkedUserIds.contains(row.getId()))
+                        .warning(parsed.getWarningMessage())
+                        .build());
+                count++;
+            }
+        }
+
+        log.info("Parse preview (streaming): {} usuários analisados (servidor: {})", count, serverId);
+        return count;
+    }
+
+    /**
+     * Garante que o servidor pertence à empresa (validação antes de abrir a resposta em streaming).
+     */
+    @Transactional(readOnly = true)
+    public void requireCompanyServer(Long companyId, Long serverId) {
+        serverRepository.findById(serverId)
+                .filter(server -> companyId.equals(server.getCompanyId()))
+                .orElseThrow(() -> new ResourceNotFoundException("Servidor Mikrotik não encontrado: " + serverId));
+    }
+
     /**
      * Sincronização completa: Profiles → ServicePlans → PPPoE Users → Customers → Contracts
      * ⚠️ OPERAÇÃO APENAS DE LEITURA NO MIKROTIK - NÃO MODIFICA NADA NO ROTEADOR
+     * <p>
+     * O router é lido uma única vez (profiles + secrets) e o snapshot é comparado com os
+     * fingerprints da última execução. No modo incremental as fases 1–5 só recebem os itens
+     * adicionados ou alterados; sem alterações, a execução termina logo após a comparação.
+     * Itens que falham em alguma fase não têm o fingerprint gravado e voltam na próxima execução.
+     * Mudar as opções de criação (planos, clientes, contratos) exige uma execução completa.
      */
     @Transactional
     public FullSyncResultDTO fullSync(FullSyncConfigDTO config) {
@@ -108,7 +190,56 @@ public class FullSyncService {
         log.info("Servidor ID: {}", config.getServerId());
         log.info("==========================================================");
 
-        FullSyncResultDTO result = FullSyncResultDTO.builder().build();
+        requireServerId(config);
+        boolean incremental = Boolean.TRUE.equals(config.getIncremental());
+        FullSyncResultDTO result = FullSyncResultDTO.builder().incremental(incremental).build();
+
+        try {
+            SyncPlan plan = prepare(config, result);
+            result.getServerNames().add(plan.server().getName());
+
+            if (incremental && plan.delta().isEmpty()) {
+                log.info("Modo incremental: nenhuma alteração no router desde a última sincronização");
+                fillSnapshotTotals(result, List.of(plan));
+                result.setSuccess(true);
+                return finish(result, startTime);
+            }
+
+            reconcilePhases(config, List.of(plan), result);
+            result.setSuccess(true);
+
+        } catch (Exception e) {
+            log.error("Erro durante sincronização completa: {}", e.getMessage(), e);
+            result.setSuccess(false);
+            result.getErrorMessages().add("Erro crítico: " + e.getMessage());
+        }
+
+        return finish(result, startTime);
+    }
+
+    /**
+     * Passada única no banco sobre snapshots já lidos de um ou mais routers (MultiServerSyncService).
+     * <p>
+     * Fases 1 e 3 rodam por servidor (profiles e secrets pertencem ao router); as fases 2, 4 e 5
+     * rodam uma única vez sobre a união, com uma pré-carga por entidade para a empresa inteira.
+     * Não lê nenhum router: a transação não espera rede.
+     */
+    @Transactional
+    public FullSyncResultDTO reconcile(FullSyncConfigDTO config, List<SyncPlan> plans, FullSyncResultDTO result) {
+        long startTime = System.currentTimeMillis();
+        try {
+            reconcilePhases(config, plans, result);
+            result.setSuccess(true);
+        } catch (Exception e) {
+            log.error("Erro durante sincronização dos servidores: {}", e.getMessage(), e);
+            result.setSuccess(false);
+            result.getErrorMessages().add("Erro crítico: " + e.getMessage());
+        }
+        return finish(result, startTime);
+    }
+
+    private void reconcilePhases(FullSyncConfigDTO config, List<SyncPlan> plans, FullSyncResultDTO result) {
+        boolean incremental = Boolean.TRUE.equals(config.getIncremental());
         Long companyId = CompanyContextHolder.getCompanyId();
 
         // ✅ Mapa em memória: pppoeUserId → customerId
@@ -117,75 +248,226 @@ public class FullSyncService {
         // que a Fase 5 pudesse lê-lo — o Map persiste durante toda a execução do sync.
         Map<Long, Long> pppoeUserToCustomerMap = new HashMap<>();
 
-        try {
-            // Validar servidor
-            MikrotikServer server = serverRepository.findById(config.getServerId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Servidor MikroTik não encontrado"));
+        // Itens com falha em alguma fase: fingerprint não é gravado (nova tentativa na próxima execução).
+        // Com vários servidores o nome vale para todos: um homônimo em outro router também é reprocessado
+        Set<String> unsettledProfiles = new HashSet<>();
+        Set<String> unsettledUsers = new HashSet<>();
 
-            log.info("Servidor encontrado: {} ({}:{})", server.getName(), server.getIpAddress(), server.getApiPort());
+        // FASE 1: Sincronizar Profiles
+        log.info("\n--- FASE 1: Sincronizando Profiles{} ---", incremental ? " (incremental)" : "");
+        for (SyncPlan plan : plans) {
+            syncProfilesPhase(plan.server().getId(), plan.profilesToSync(), result);
+        }
+
+        // ⚠️ CRÍTICO: Flush e clear após cada fase
+        entityManager.flush();
+        entityManager.clear();
 
-            // FASE 1: Sincronizar Profiles
-            log.info("\n--- FASE 1: Sincronizando Profiles ---");
-            syncProfilesPhase(config, result);
+        // FASE 2: Criar Service Plans para Profiles sem plano
+        if (config.getCreateMissingServicePlans()) {
+            log.info("\n--- FASE 2: Criando Planos de Serviço ---");
+            createServicePlansPhase(config, result, companyId,
+                    incremental ? pendingProfiles(plans) : profileRepository.findAll(),
+                    unsettledProfiles);
 
-            // ⚠️ CRÍTICO: Flush e clear após cada fase
+            // ⚠️ CRÍTICO: Flush e clear após criar planos
             entityManager.flush();
             entityManager.clear();
+        }
 
-            // FASE 2: Criar Service Plans para Profiles sem plano
-            if (config.getCreateMissingServicePlans()) {
-                log.info("\n--- FASE 2: Criando Planos de Serviço ---");
-                createServicePlansPhase(config, result, companyId);
+        // FASE 3: Sincronizar Usuários PPPoE
+        log.info("\n--- FASE 3: Sincronizando Usuários PPPoE{} ---", incremental ? " (incremental)" : "");
+        for (SyncPlan plan : plans) {
+            syncPppoeUsersPhase(plan.server().getId(), plan.secretsToSync(), result);
+        }
 
-                // ⚠️ CRÍTICO: Flush e clear após criar planos
-                entityManager.flush();
-                entityManager.clear();
-            }
+        // ⚠️ CRÍTICO: Flush e clear após sincronizar usuários
+        entityManager.flush();
+        entityManager.clear();
 
-            // FASE 3: Sincronizar Usuários PPPoE
-            log.info("\n--- FASE 3: Sincronizando Usuários PPPoE ---");
-            syncPppoeUsersPhase(config, result);
+        // FASE 4: Criar Clientes a partir dos comentários PPPoE
+        if (config.getCreateMissingCustomers()) {
+            log.info("\n--- FASE 4: Criando Clientes ---");
+            createCustomersPhase(result, companyId, pppoeUserToCustomerMap,
+                    incremental ? pendingPppoeUsers(plans) : pppoeUserService.findAll(),
+                    unsettledUsers);
 
-            // ⚠️ CRÍTICO: Flush e clear após sincronizar usuários
+            // ⚠️ CRÍTICO: Flush e clear após criar clientes
             entityManager.flush();
             entityManager.clear();
+        }
 
-            // FASE 4: Criar Clientes a partir dos comentários PPPoE
-            if (config.getCreateMissingCustomers()) {
-                log.info("\n--- FASE 4: Criando Clientes ---");
-                createCustomersPhase(result, companyId, pppoeUserToCustomerMap);
+        // FASE 5: Criar Contratos
+        if (config.getCreateContracts()) {
+            log.info("\n--- FASE 5: Criando Contratos ---");
+            createContractsPhase(config, result, companyId, pppoeUserToCustomerMap,
+                    incremental ? pendingPppoeUsers(plans) : pppoeUserService.findAll(),
+                    unsettledUsers);
 
-                // ⚠️ CRÍTICO: Flush e clear após criar clientes
-                entityManager.flush();
-                entityManager.clear();
-            }
+            // ⚠️ CRÍTICO: Flush final
+            entityManager.flush();
+        }
 
-            // FASE 5: Criar Contratos
-            if (config.getCreateContracts()) {
-                log.info("\n--- FASE 5: Criando Contratos ---");
-                createContractsPhase(config, result, companyId, pppoeUserToCustomerMap);
+        for (SyncPlan plan : plans) {
+            recordFingerprints(plan.server(), companyId, plan.delta(), incremental, unsettledProfiles, unsettledUsers);
+        }
+        fillSnapshotTotals(result, plans);
+    }
 
-                // ⚠️ CRÍTICO: Flush final
-                entityManager.flush();
-            }
+    private List<PppoeProfile> pendingProfiles(List<SyncPlan> plans) {
+        List<PppoeProfile> profiles = new ArrayList<>();
+        for (SyncPlan plan : plans) {
+            profiles.addAll(findProfiles(plan.server().getId(),
+                    plan.profilesToSync().stream().map(MikrotikPppoeProfileDTO::getName).toList()));
+        }
+        return profiles;
+    }
 
-            result.setSuccess(true);
+    private List<PppoeUser> pendingPppoeUsers(List<SyncPlan> plans) {
+        List<PppoeUser> users = new ArrayList<>();
+        for (SyncPlan plan : plans) {
+            users.addAll(findPppoeUsers(plan.server().getId(),
+                    plan.secretsToSync().stream().map(MikrotikPppoeUserDTO::getUsername).toList()));
+        }
+        return users;
+    }
 
-        } catch (Exception e) {
-            log.error("Erro durante sincronização completa: {}", e.getMessage(), e);
-            result.setSuccess(false);
-            result.getErrorMessages().add("Erro crítico: " + e.getMessage());
+    public static void requireServerId(FullSyncConfigDTO config) {
+        if (config.getServerId() == null) {
+            throw new ValidationException("ID do servidor é obrigatório");
+        }
+    }
+
+    // ==================== EXECUÇÃO EM BLOCOS (SyncJobService) ====================
+
+    /**
+     * Snapshot do router já comparado com os fingerprints: o que cada fase deve processar.
+     * Listas ordenadas por nome, para que um job retomado percorra os itens na mesma ordem.
+     */
+    public record SyncPlan(MikrotikServer server,
+                           SnapshotDelta delta,
+                           List<MikrotikPppoeProfileDTO> routerProfiles,
+                           List<MikrotikPppoeUserDTO> routerSecrets,
+                           List<MikrotikPppoeProfileDTO> profilesToSync,
+                           List<MikrotikPppoeUserDTO> secretsToSync) {
+    }
+
+    /**
+     * Lê o router (profiles + secrets) e calcula o que processar. Não abre transação:
+     * a leitura do router não deve segurar conexão do banco.
+     */
+    public SyncPlan prepare(FullSyncConfigDTO config, FullSyncResultDTO result) {
+        MikrotikServer server = serverRepository.findById(config.getServerId())
+                .orElseThrow(() -> new ResourceNotFoundException("Servidor MikroTik não encontrado"));
+
+        log.info("Servidor encontrado: {} ({}:{})", server.getName(), server.getIpAddress(), server.getApiPort());
+
+        // Snapshot do router: uma leitura de profiles e uma de secrets para todas as fases
+        List<MikrotikPppoeProfileDTO> routerProfiles = new ArrayList<>(apiService.getPppoeProfilesStructured(
+                server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword()));
+        List<MikrotikPppoeUserDTO> routerSecrets = new ArrayList<>(apiService.getPppoeUsersStructured(
+                server.getIpAddress(), server.getApiPort(), server.getUsername(), server.getPassword()));
+        routerProfiles.removeIf(profile -> profile.getName() == null);
+        routerSecrets.removeIf(secret -> secret.getUsername() == null);
+        routerProfiles.sort(Comparator.comparing(MikrotikPppoeProfileDTO::getName));
+        routerSecrets.sort(Comparator.comparing(MikrotikPppoeUserDTO::getUsername));
+
+        SnapshotDelta delta = fingerprintService.diff(server.getId(), routerProfiles, routerSecrets);
+        reportRemoved(delta, result);
+
+        boolean incremental = Boolean.TRUE.equals(config.getIncremental());
+        List<MikrotikPppoeProfileDTO> profilesToSync = routerProfiles;
+        List<MikrotikPppoeUserDTO> secretsToSync = routerSecrets;
+        if (incremental) {
+            profilesToSync = new ArrayList<>(delta.profiles().pending());
+            secretsToSync = new ArrayList<>(delta.secrets().pending());
+            profilesToSync.sort(Comparator.comparing(MikrotikPppoeProfileDTO::getName));
+            secretsToSync.sort(Comparator.comparing(MikrotikPppoeUserDTO::getUsername));
         }
+        return new SyncPlan(server, delta, routerProfiles, routerSecrets, profilesToSync, secretsToSync);
+    }
+
+    /** FASE 1 sobre um bloco de profiles do snapshot. */
+    public void syncProfilesChunk(FullSyncConfigDTO config, List<MikrotikPppoeProfileDTO> chunk,
+                                  FullSyncResultDTO result) {
+        syncProfilesPhase(config.getServerId(), chunk, result);
+    }
+
+    /** IDs dos profiles candidatos à FASE 2, em ordem crescente. */
+    public List<Long> servicePlanCandidateIds(SyncPlan plan, boolean incremental) {
+        List<PppoeProfile> profiles = incremental
+                ? findProfiles(plan.server().getId(),
+                        plan.profilesToSync().stream().map(MikrotikPppoeProfileDTO::getName).toList())
+                : profileRepository.findAll();
+        return profiles.stream().map(PppoeProfile::getId).sorted().toList();
+    }
 
+    /** FASE 2 sobre um bloco de profiles. */
+    public void createServicePlansChunk(FullSyncConfigDTO config, FullSyncResultDTO result, Long companyId,
+                                        List<Long> profileIds, Set<String> unsettledProfiles) {
+        List<PppoeProfile> profiles = new ArrayList<>(profileRepository.findAllById(profileIds));
+        profiles.sort(Comparator.comparing(PppoeProfile::getId));
+        createServicePlansPhase(config, result, companyId, profiles, unsettledProfiles);
+    }
+
+    /** FASE 3 sobre um bloco de secrets do snapshot. */
+    public void syncPppoeUsersChunk(FullSyncConfigDTO config, List<MikrotikPppoeUserDTO> chunk,
+                                    FullSyncResultDTO result) {
+        syncPppoeUsersPhase(config.getServerId(), chunk, result);
+    }
+
+    /** IDs dos usuários PPPoE candidatos às FASES 4 e 5, em ordem crescente. */
+    public List<Long> pppoeUserCandidateIds(SyncPlan plan, boolean incremental) {
+        List<PppoeUser> users = incremental
+                ? findPppoeUsers(plan.server().getId(),
+                        plan.secretsToSync().stream().map(MikrotikPppoeUserDTO::getUsername).toList())
+                : pppoeUserService.findAll();
+        return users.stream().map(PppoeUser::getId).sorted().toList();
+    }
+
+    /**
+     * FASE 4 sobre um bloco de usuários. O mapa usuário → cliente não sobrevive entre
+     * blocos (nem a um reinício): a FASE 5 localiza o cliente pelo nome, como no fallback.
+     */
+    public void createCustomersChunk(FullSyncResultDTO result, Long companyId, List<Long> pppoeUserIds,
+                                     Set<String> unsettledUsers) {
+        createCustomersPhase(result, companyId, new HashMap<>(), loadPppoeUsers(pppoeUserIds), unsettledUsers);
+    }
+
+    /** FASE 5 sobre um bloco de usuários. */
+    public void createContractsChunk(FullSyncConfigDTO config, FullSyncResultDTO result, Long companyId,
+                                     List<Long> pppoeUserIds, Set<String> unsettledUsers) {
+        createContractsPhase(config, result, companyId, new HashMap<>(), loadPppoeUsers(pppoeUserIds),
+                unsettledUsers);
+    }
+
+    /**
+     * Encerramento: grava os fingerprints e os totais do snapshot.
+     */
+    public void complete(SyncPlan plan, Long companyId, boolean incremental, Set<String> unsettledProfiles,
+                         Set<String> unsettledUsers, FullSyncResultDTO result) {
+        recordFingerprints(plan.server(), companyId, plan.delta(), incremental, unsettledProfiles, unsettledUsers);
+        fillSnapshotTotals(result, List.of(plan));
+    }
+
+    private List<PppoeUser> loadPppoeUsers(List<Long> ids) {
+        List<PppoeUser> users = new ArrayList<>(pppoeUserRepository.findAllById(ids));
+        users.sort(Comparator.comparing(PppoeUser::getId));
+        return users;
+    }
+
+    private FullSyncResultDTO finish(FullSyncResultDTO result, long startTime) {
         long endTime = System.currentTimeMillis();
         result.setExecutionTimeSeconds((endTime - startTime) / 1000);
 
         log.info("\n==========================================================");
         log.info(">>> SINCRONIZAÇÃO COMPLETA FINALIZADA <<<");
         log.info("Tempo: {}s | Sucesso: {}", result.getExecutionTimeSeconds(), result.getSuccess());
-        log.info("Profiles: {}/{}", result.getSyncedProfiles(), result.getTotalProfiles());
+        log.info("Profiles: {}/{} ({} sem alteração)", result.getSyncedProfiles(), result.getTotalProfiles(),
+                result.getUnchangedProfiles());
         log.info("Planos: {} criados", result.getCreatedServicePlans());
-        log.info("PPPoE Users: {}/{}", result.getSyncedPppoeUsers(), result.getTotalPppoeUsers());
+        log.info("PPPoE Users: {}/{} ({} sem alteração)", result.getSyncedPppoeUsers(), result.getTotalPppoeUsers(),
+                result.getUnchangedPppoeUsers());
         log.info("Clientes: {} criados", result.getCreatedCustomers());
         log.info("Contratos: {} criados, {} ativados, {} suspensos",
                 result.getCreatedContracts(), result.getActivatedContracts(), result.getSuspendedContracts());
@@ -194,17 +476,83 @@ public class FullSyncService {
         return result;
     }
 
+    /**
+     * Itens que sumiram do router: apenas reportados (a sincronização não remove registros do banco).
+     */
+    private void reportRemoved(SnapshotDelta delta, FullSyncResultDTO result) {
+        result.getRemovedProfileNames().addAll(delta.profiles().removed());
+        result.getRemovedPppoeUsernames().addAll(delta.secrets().removed());
+        delta.profiles().removed().forEach(name ->
+                result.getWarnings().add("Profile não existe mais no MikroTik: " + name + " (registro no banco mantido)"));
+        delta.secrets().removed().forEach(name ->
+                result.getWarnings().add("Usuário PPPoE não existe mais no MikroTik: " + name + " (registro no banco mantido)"));
+    }
+
+    public void fillSnapshotTotals(FullSyncResultDTO result, List<SyncPlan> plans) {
+        result.setTotalProfiles(plans.stream().mapToInt(plan -> plan.routerProfiles().size()).sum());
+        result.setTotalPppoeUsers(plans.stream().mapToInt(plan -> plan.routerSecrets().size()).sum());
+        result.setUnchangedProfiles(plans.stream().mapToInt(plan -> plan.delta().profiles().unchanged()).sum());
+        result.setUnchangedPppoeUsers(plans.stream().mapToInt(plan -> plan.delta().secrets().unchanged()).sum());
+    }
+
+    /**
+     * Grava os fingerprints dos itens alterados que passaram por todas as fases e esquece
+     * os removidos. Na execução completa, itens com falha também perdem o fingerprint
+     * para serem reprocessados pelo modo incremental.
+     */
+    private void recordFingerprints(MikrotikServer server, Long companyId, SnapshotDelta delta, boolean incremental,
+                                    Set<String> unsettledProfiles, Set<String> unsettledUsers) {
+        Map<String, String> profileFingerprints = new HashMap<>(delta.profiles().fingerprints());
+        Map<String, String> secretFingerprints = new HashMap<>(delta.secrets().fingerprints());
+
+        // Fases 1 e 3 falham por item sem lançar: o que não chegou ao banco fica pendente
+        if (!profileFingerprints.isEmpty()) {
+            Set<String> persisted = new HashSet<>();
+            findProfiles(server.getId(), profileFingerprints.keySet()).forEach(p -> persisted.add(p.getName()));
+            profileFingerprints.keySet().removeIf(name -> !persisted.contains(name) || unsettledProfiles.contains(name));
+        }
+        if (!secretFingerprints.isEmpty()) {
+            Set<String> persisted = new HashSet<>();
+            findPppoeUsers(server.getId(), secretFingerprints.keySet()).forEach(u -> persisted.add(u.getUsername()));
+            secretFingerprints.keySet().removeIf(name -> !persisted.contains(name) || unsettledUsers.contains(name));
+        }
+
+        fingerprintService.record(companyId, server.getId(), SyncFingerprint.ItemType.PROFILE, profileFingerprints);
+        fingerprintService.record(companyId, server.getId(), SyncFingerprint.ItemType.SECRET, secretFingerprints);
+        fingerprintService.forget(server.getId(), SyncFingerprint.ItemType.PROFILE, delta.profiles().removed());
+        fingerprintService.forget(server.getId(), SyncFingerprint.ItemType.SECRET, delta.secrets().removed());
+        if (!incremental) {
+            fingerprintService.forget(server.getId(), SyncFingerprint.ItemType.PROFILE, unsettledProfiles);
+            fingerprintService.forget(server.getId(), SyncFingerprint.ItemType.SECRET, unsettledUsers);
+        }
+
+        log.info("Fingerprints gravados: {} profiles, {} secrets | pendentes: {} profiles, {} secrets",
+                profileFingerprints.size(), secretFingerprints.size(),
+                delta.profiles().fingerprints().size() - profileFingerprints.size(),
+                delta.secrets().fingerprints().size() - secretFingerprints.size());
+    }
+
+    private List<PppoeProfile> findProfiles(Long serverId, Collection<String> names) {
+        return names.isEmpty() ? List.of() : profileRepository.findByMikrotikServerIdAndNameIn(serverId, names);
+    }
+
+    private List<PppoeUser> findPppoeUsers(Long serverId, Collection<String> usernames) {
+        return usernames.isEmpty() ? List.of() : pppoeUserRepository.findByMikrotikServerIdAndUsernameIn(serverId, usernames);
+    }
+
     /**
      * FASE 1: Sincronizar Profiles do MikroTik
      * ⚠️ APENAS LEITURA - Não modifica nada no MikroTik
      */
-    private void syncProfilesPhase(FullSyncConfigDTO config, FullSyncResultDTO result) {
+    private void syncProfilesPhase(Long serverId, List<MikrotikPppoeProfileDTO> profiles,
+                                   FullSyncResultDTO result) {
         try {
-            SyncResultDTO profileSyncResult = profileService.syncProfilesFromMikrotik(config.getServerId());
+            SyncResultDTO profileSyncResult = profileService.syncProfilesFromMikrotik(serverId, profiles);
 
-            result.setTotalProfiles(profileSyncResult.getTotalMikrotikUsers()); // Reusa o campo
-            result.setSyncedProfiles(profileSyncResult.getSyncedUsers());
-            result.setSkippedProfiles(profileSyncResult.getSkippedUsers());
+            // Acumula: a fase pode rodar em blocos (jobs assíncronos)
+            result.setTotalProfiles(result.getTotalProfiles() + profileSyncResult.getTotalMikrotikUsers()); // Reusa o campo
+            result.setSyncedProfiles(result.getSyncedProfiles() + profileSyncResult.getSyncedUsers());
+            result.setSkippedProfiles(result.getSkippedProfiles() + profileSyncResult.getSkippedUsers());
             result.getSyncedProfileNames().addAll(profileSyncResult.getSyncedUsernames());
 
             if (!profileSyncResult.getErrorMessages().isEmpty()) {
@@ -222,23 +570,21 @@ public class FullSyncService {
     /**
      * FASE 2: Criar Service Plans para Profiles que não têm plano
      */
-    private void createServicePlansPhase(FullSyncConfigDTO config, FullSyncResultDTO result, Long companyId) {
+    private void createServicePlansPhase(FullSyncConfigDTO config, FullSyncResultDTO result, Long companyId,
+                                         List<PppoeProfile> allProfiles, Set<String> unsettledProfiles) {
         try {
-            List<PppoeProfile> allProfiles = profileRepository.findAll();
+            // Pré-carga: planos da empresa por profile (uma consulta para a fase inteira)
+            Map<Long, ServicePlan> plansByProfile = loadServicePlansByProfile(companyId);
 
             for (PppoeProfile profile : allProfiles) {
                 try {
                     // Verificar se já existe um ServicePlan para este profile
-                    Optional<ServicePlan> existingPlan = servicePlanRepository.findByPppoeProfileIdAndCompanyId(
-                            profile.getId(), companyId);
-
-                    if (existingPlan.isPresent()) {
+                    if (plansByProfile.containsKey(profile.getId())) {
                         result.setExistingServicePlans(result.getExistingServicePlans() + 1);
                         log.debug("Plano já existe para profile: {}", profile.getName());
                     } else {
-                        // ⚠️ CRÍTICO: Recarregar o profile do banco para garantir que está attached
-                        PppoeProfile attachedProfile = profileRepository.findById(profile.getId())
-                                .orElseThrow(() -> new ResourceNotFoundException("Profile não encontrado: " + profile.getId()));
+                        // Apenas id e nome do profile são usados (já carregados): não é preciso recarregá-lo
+                        PppoeProfile attachedProfile = profile;
 
                         // Criar ServicePlan automaticamente
                         ServicePlan newPlan = ServicePlan.builder()
@@ -252,11 +598,11 @@ public class FullSyncService {
                                 .updatedAt(LocalDateTime.now())
                                 .build();
 
-                        servicePlanRepository.save(newPlan);
-                        entityManager.flush(); // ⚠️ CRÍTICO: Flush para garantir que ID seja gerado
-                        entityManager.clear(); // ⚠️ CRÍTICO: Limpar sessão para evitar conflitos
+                        servicePlanRepository.save(newPlan); // ID já atribuído (id_generator); INSERT vai no lote
+                        plansByProfile.put(attachedProfile.getId(), newPlan);
 
                         result.setCreatedServicePlans(result.getCreatedServicePlans() + 1);
+                        flushEvery(result.getCreatedServicePlans());
                         result.getCreatedServicePlanNames().add(newPlan.getName());
 
                         log.info("Plano criado: {} (ID: {}, R$ {}) para profile: {}",
@@ -264,6 +610,7 @@ public class FullSyncService {
                     }
                 } catch (Exception e) {
                     log.error("Erro ao criar plano para profile {}: {}", profile.getName(), e.getMessage());
+                    unsettledProfiles.add(profile.getName());
                     result.getErrorMessages().add("Erro ao criar plano para " + profile.getName() + ": " + e.getMessage());
                 }
             }
@@ -281,13 +628,15 @@ public class FullSyncService {
      * FASE 3: Sincronizar Usuários PPPoE
      * ⚠️ APENAS LEITURA - Não modifica nada no MikroTik
      */
-    private void syncPppoeUsersPhase(FullSyncConfigDTO config, FullSyncResultDTO result) {
+    private void syncPppoeUsersPhase(Long serverId, List<MikrotikPppoeUserDTO> secrets,
+                                     FullSyncResultDTO result) {
         try {
-            SyncResultDTO userSyncResult = pppoeUserService.syncUsersFromMikrotik(config.getServerId(), null);
+            SyncResultDTO userSyncResult = pppoeUserService.syncUsersFromMikrotik(serverId, null, secrets);
 
-            result.setTotalPppoeUsers(userSyncResult.getTotalMikrotikUsers());
-            result.setSyncedPppoeUsers(userSyncResult.getSyncedUsers());
-            result.setSkippedPppoeUsers(userSyncResult.getSkippedUsers());
+            // Acumula: a fase pode rodar em blocos (jobs assíncronos)
+            result.setTotalPppoeUsers(result.getTotalPppoeUsers() + userSyncResult.getTotalMikrotikUsers());
+            result.setSyncedPppoeUsers(result.getSyncedPppoeUsers() + userSyncResult.getSyncedUsers());
+            result.setSkippedPppoeUsers(result.getSkippedPppoeUsers() + userSyncResult.getSkippedUsers());
             result.getSyncedPppoeUsernames().addAll(userSyncResult.getSyncedUsernames());
 
             if (!userSyncResult.getErrorMessages().isEmpty()) {
@@ -313,18 +662,18 @@ public class FullSyncService {
      * eliminando o hack de escrita no campo comment (que era perdido após entityManager.clear()).
      */
     private void createCustomersPhase(FullSyncResultDTO result, Long companyId,
-                                      Map<Long, Long> pppoeUserToCustomerMap) {
+                                      Map<Long, Long> pppoeUserToCustomerMap,
+                                      List<PppoeUser> allPppoeUsers, Set<String> unsettledUsers) {
         try {
-            List<PppoeUser> allPppoeUsers = pppoeUserService.findAll();
+            // Pré-carga: contratos e clientes da empresa (uma consulta por entidade para a fase inteira)
+            Map<Long, Long> contractCustomerIds = loadContractCustomerIds(companyId);
+            Map<String, Long> customerIdsByName = loadCustomerIdsByName(companyId);
 
             for (PppoeUser pppoeUser : allPppoeUsers) {
                 try {
                     // ── 1. Re-sync: contrato já existe → registrar no mapa e pular ──
-                    Optional<Contract> existingContract = contractRepository.findByPppoeUserIdAndCompanyId(
-                            pppoeUser.getId(), companyId);
-
-                    if (existingContract.isPresent()) {
-                        Long existingCustomerId = existingContract.get().getCustomerId();
+                    if (contractCustomerIds.containsKey(pppoeUser.getId())) {
+                        Long existingCustomerId = contractCustomerIds.get(pppoeUser.getId());
                         pppoeUserToCustomerMap.put(pppoeUser.getId(), existingCustomerId);
                         result.setExistingCustomers(result.getExistingCustomers() + 1);
                         log.debug("Contrato já existe para PPPoE: {} → customerId: {}",
@@ -333,19 +682,18 @@ public class FullSyncService {
                     }
 
                     // ── 2. Parse: username = nome; comment = endereço ──
-                    CustomerInfoParseResult parseResult = parseCustomerInfo(pppoeUser);
+                    CustomerInfoParseResult parseResult = parseCustomerInfo(companyId, pppoeUser);
 
                     if (parseResult.getWarningMessage() != null) {
                         result.getWarnings().add(parseResult.getWarningMessage());
                     }
 
                     // ── 3. Deduplicação por nome normalizado ──
-                    Optional<Customer> existingCustomer = customerRepository.findByNameAndCompanyId(
-                            parseResult.getCustomerName(), companyId);
+                    Long existingCustomerId = customerIdsByName.get(nameKey(parseResult.getCustomerName()));
 
-                    if (existingCustomer.isPresent()) {
+                    if (existingCustomerId != null) {
                         result.setExistingCustomers(result.getExistingCustomers() + 1);
-                        pppoeUserToCustomerMap.put(pppoeUser.getId(), existingCustomer.get().getId());
+                        pppoeUserToCustomerMap.put(pppoeUser.getId(), existingCustomerId);
                         log.debug("Cliente já existe: {} (PPPoE: {})",
                                 parseResult.getCustomerName(), pppoeUser.getUsername());
                         continue;
@@ -370,11 +718,11 @@ public class FullSyncService {
                             .updatedAt(LocalDateTime.now())
                             .build();
 
-                    customerRepository.save(newCustomer);
-                    entityManager.flush(); // ⚠️ Garantir ID antes de criar endereço
+                    customerRepository.save(newCustomer); // ID já atribuído (id_generator); INSERT vai no lote
 
-                    // ✅ Registrar no mapa em memória para Fase 5
+                    // ✅ Registrar no mapa em memória para Fase 5 (e deduplicar os próximos da mesma execução)
                     pppoeUserToCustomerMap.put(pppoeUser.getId(), newCustomer.getId());
+                    customerIdsByName.put(nameKey(newCustomer.getName()), newCustomer.getId());
 
                     // ── 5. Endereço de instalação (extraído do comment) ──
                     if (parseResult.getAddress() != null) {
@@ -393,10 +741,10 @@ public class FullSyncService {
                                 .build();
 
                         addressRepository.save(address);
-                        entityManager.flush();
                     }
 
                     result.setCreatedCustomers(result.getCreatedCustomers() + 1);
+                    flushEvery(result.getCreatedCustomers());
                     result.getCreatedCustomerNames().add(newCustomer.getName());
 
                     log.info("✅ Cliente criado: {} (ID: {}) | PPPoE: {} | Endereço: {}",
@@ -405,6 +753,7 @@ public class FullSyncService {
 
                 } catch (Exception e) {
                     log.error("Erro ao criar cliente para PPPoE {}: {}", pppoeUser.getUsername(), e.getMessage());
+                    unsettledUsers.add(pppoeUser.getUsername());
                     result.getErrorMessages().add("Erro ao criar cliente para "
                             + pppoeUser.getUsername() + ": " + e.getMessage());
                 }
@@ -427,17 +776,23 @@ public class FullSyncService {
      * de cada PPPoE sem depender de escrita no campo comment (hack removido).
      */
     private void createContractsPhase(FullSyncConfigDTO config, FullSyncResultDTO result,
-                                      Long companyId, Map<Long, Long> pppoeUserToCustomerMap) {
+                                      Long companyId, Map<Long, Long> pppoeUserToCustomerMap,
+                                      List<PppoeUser> allPppoeUsers, Set<String> unsettledUsers) {
         try {
-            List<PppoeUser> allPppoeUsers = pppoeUserService.findAll();
+            // Pré-carga: contratos, clientes, planos e endereços da empresa (uma consulta por entidade)
+            Map<Long, Long> contractCustomerIds = loadContractCustomerIds(companyId);
+            Map<String, Long> customerIdsByName = loadCustomerIdsByName(companyId);
+            Map<Long, ServicePlan> plansByProfile = loadServicePlansByProfile(companyId);
+            Map<Long, Long> firstAddressIds = loadFirstAddressIds(companyId);
+
+            // Contratos montados aqui e gravados numa única importação em lote ao final da fase
+            List<ContractDTO> pending = new ArrayList<>();
+            Map<Long, String> usernames = new HashMap<>();
 
             for (PppoeUser pppoeUser : allPppoeUsers) {
                 try {
                     // Verificar se já existe contrato para este PPPoE
-                    Optional<Contract> existingContract = contractRepository.findByPppoeUserIdAndCompanyId(
-                            pppoeUser.getId(), companyId);
-
-                    if (existingContract.isPresent()) {
+                    if (contractCustomerIds.containsKey(pppoeUser.getId())) {
                         log.debug("Contrato já existe para PPPoE: {}", pppoeUser.getUsername());
                         continue;
                     }
@@ -447,38 +802,46 @@ public class FullSyncService {
 
                     if (customerId == null) {
                         // Fallback: tentar pelo nome derivado do username
-                        CustomerInfoParseResult parseResult = parseCustomerInfo(pppoeUser);
-                        Optional<Customer> customer = customerRepository.findByNameAndCompanyId(
-                                parseResult.getCustomerName(), companyId);
+                        CustomerInfoParseResult parseResult = parseCustomerInfo(companyId, pppoeUser);
+                        Long customerIdByName = customerIdsByName.get(nameKey(parseResult.getCustomerName()));
 
-                        if (customer.isPresent()) {
-                            customerId = customer.get().getId();
+                        if (customerIdByName != null) {
+                            customerId = customerIdByName;
                             pppoeUserToCustomerMap.put(pppoeUser.getId(), customerId);
                         } else {
                             result.getWarnings().add("Cliente não encontrado para PPPoE: "
                                     + pppoeUser.getUsername() + " — execute a Fase 4 primeiro");
                             result.setFailedContracts(result.getFailedContracts() + 1);
+                            unsettledUsers.add(pppoeUser.getUsername());
                             continue;
                         }
                     }
 
                     // Buscar ServicePlan para o profile deste PPPoE
-                    Optional<ServicePlan> servicePlan = servicePlanRepository.findByPppoeProfileIdAndCompanyId(
-                            pppoeUser.getProfile().getId(), companyId);
+                    Optional<ServicePlan> servicePlan = Optional.ofNullable(
+                            plansByProfile.get(pppoeUser.getProfile().getId()));
 
                     if (servicePlan.isEmpty()) {
                         result.getWarnings().add("Plano de serviço não encontrado para profile: " +
                                 pppoeUser.getProfile().getName());
                         result.setFailedContracts(result.getFailedContracts() + 1);
+                        unsettledUsers.add(pppoeUser.getUsername());
                         continue;
                     }
 
                     // Buscar endereço de instalação do cliente
-                    List<Address> addresses = addressRepository.findByCustomerId(customerId);
-                    Long installationAddressId = addresses.isEmpty() ? null : addresses.getFirst().getId();
+                    Long installationAddressId = firstAddressIds.get(customerId);
 
-                    // Criar contrato
-                    ContractDTO contractDTO = ContractDTO.builder()
+                    // ⚠️ EXCEÇÃO: PPPoE com profile BLOQUEADO → contrato SUSPENSO
+                    // O status final já vai no DTO: reflete o router, nada a aplicar nele
+                    Contract.ContractStatus status = Contract.ContractStatus.DRAFT;
+                    if (config.getAutoActivateContracts()) {
+                        status = isBlockedProfile(pppoeUser.getProfile().getName())
+                                ? Contract.ContractStatus.SUSPENDED_FINANCIAL
+                                : Contract.ContractStatus.ACTIVE;
+                    }
+
+                    pending.add(ContractDTO.builder()
                             .customerId(customerId)
                             .servicePlanId(servicePlan.get().getId())
                             .pppoeUserId(pppoeUser.getId())
@@ -486,44 +849,21 @@ public class FullSyncService {
                             .startDate(LocalDate.now())
                             .billingDay(config.getDefaultBillingDay())
                             .amount(servicePlan.get().getPrice())
-                            .status(Contract.ContractStatus.DRAFT)
-                            .build();
-
-                    ContractDTO createdContract = contractService.create(contractDTO);
-
-                    // ⚠️ EXCEÇÃO: PPPoE com profile BLOQUEADO → Suspender financeiramente
-                    String profileName = pppoeUser.getProfile().getName();
-                    boolean isBlocked = isBlockedProfile(profileName);
-
-                    // Ativar ou suspender contrato conforme profile
-                    if (config.getAutoActivateContracts()) {
-                        if (isBlocked) {
-                            // Profile BLOQUEADO: Criar contrato SUSPENSO
-                            contractService.suspendFinancial(createdContract.getId());
-                            result.setSuspendedContracts(result.getSuspendedContracts() + 1);
-                            log.warn("⚠️ Contrato {} criado SUSPENSO - Profile BLOQUEADO: {} | PPPoE: {}",
-                                    createdContract.getId(), profileName, pppoeUser.getUsername());
-                        } else {
-                            // Profile normal: Ativar contrato
-                            contractService.activate(createdContract.getId());
-                            result.setActivatedContracts(result.getActivatedContracts() + 1);
-                        }
-                    }
-
-                    result.setCreatedContracts(result.getCreatedContracts() + 1);
-                    result.getCreatedContractIds().add(createdContract.getId().toString());
-
-                    log.info("Contrato criado: ID {} para cliente {} | PPPoE: {} | Plano: {} | Status: {}",
-                            createdContract.getId(), customerId, pppoeUser.getUsername(),
-                            servicePlan.get().getName(), isBlocked ? "SUSPENDED_FINANCIAL" : "ACTIVE");
+                            .status(status)
+                            .build());
+                    usernames.put(pppoeUser.getId(), pppoeUser.getUsername());
+                    contractCustomerIds.put(pppoeUser.getId(), customerId);
 
                 } catch (Exception e) {
-                    log.error("Erro ao criar contrato para PPPoE {}: {}", pppoeUser.getUsername(), e.getMessage());
+                    log.error("Erro ao preparar contrato para PPPoE {}: {}", pppoeUser.getUsername(), e.getMessage());
                     result.getErrorMessages().add("Erro ao criar contrato para " + pppoeUser.getUsername() + ": " + e.getMessage());
+                    unsettledUsers.add(pppoeUser.getUsername());
                     result.setFailedContracts(result.getFailedContracts() + 1);
                 }
             }
 
+            importContracts(pending, usernames, result, unsettledUsers);
+
             log.info("Contratos: {} criados, {} ativados, {} suspensos (profile BLOQUEADO), {} falharam",
                     result.getCreatedContracts(), result.getActivatedContracts(),
                     result.getSuspendedContracts(), result.getFailedContracts());
@@ -535,164 +875,117 @@ public class FullSyncService {
     }
 
     /**
-     * Parse inteligente das informações de um usuário PPPoE do MikroTik.
-     * <p>
-     * ESTRATÉGIA (baseada nos dados reais observados):
-     * <pre>
-     *  Campo "Name" (username) no MikroTik  → NOME DO CLIENTE
-     *    ex: "elianabatista"   → "Eliana Batista"
-     *    ex: "emersonmoura"    → "Emerson Moura"
-     *    ex: "eva"             → "Eva"
-     *
-     *  Campo "Comment" no MikroTik          → ENDEREÇO / LOCALIZAÇÃO
-     *    ex: "rua 1 n120"                   → rua: "Rua 1", número: "120"
-     *    ex: "manoel b paixa n63"            → rua: "Manoel B Paixa", número: "63"
-     *    ex: "rua po?oes n90 pg"             → rua: "Rua Po?oes", número: "90", bairro: "Pg"
-     *    ex: "Rua Dr Alterives Marciel, 135 Bairro Bela Vista - CPF 95266413587"
-     *                                        → rua: "Rua Dr Alterives Marciel", número: "135",
-     *                                           bairro: "Bela Vista", CPF ignorado
-     *    ex: "dene"                          → rua: "Dene" (referência de localização)
-     *    ex: vazio / null                    → sem endereço
-     * </pre>
+     * Grava os contratos da FASE 5 pelo modo de importação do ContractService: validação em lote,
+     * sem evento de integração por contrato (o router já está no estado importado) e uma única
+     * reconciliação via outbox para os usuários cujo perfil diverge do contrato.
      */
-    private CustomerInfoParseResult parseCustomerInfo(PppoeUser pppoeUser) {
-        String username = pppoeUser.getUsername();
-        String comment  = pppoeUser.getComment();
-
-        // ── Nome do cliente: derivado do username ──
-        String customerName = splitCamelCaseUsername(username);
-
-        CustomerInfoParseResult result = CustomerInfoParseResult.builder()
-                .customerName(customerName)
-                .originalComment(comment)
-                .parseSuccess(true)
-                .build();
-
-        // Sem comentário: apenas nome, sem endereço
-        if (comment == null || comment.isBlank()) {
-            result.setWarningMessage("PPPoE '" + username + "': sem comentário — endereço não preenchido");
-            return result;
-        }
-
-        // Remover marcadores legados de CUSTOMER_ID (caso existam de versões anteriores)
-        String rawComment = comment.replaceAll("\\[CUSTOMER_ID:\\d+]", "").trim();
-
-        // ── Extrair telefone (padrão: 8 a 11 dígitos isolados) ──
-        Pattern phonePattern = Pattern.compile("\\b(\\d{8,11})\\b");
-        Matcher phoneMatcher  = phonePattern.matcher(rawComment);
-        String phone = null;
-        if (phoneMatcher.find()) {
-            // Verificar se não parece CPF (11 dígitos contíguos com contexto de CPF)
-            boolean isCpf = rawComment.toUpperCase().contains("CPF");
-            if (!isCpf || phoneMatcher.group(1).length() != 11) {
-                phone = phoneMatcher.group(1);
-            }
+    private void importContracts(List<ContractDTO> pending, Map<Long, String> usernames,
+                                 FullSyncResultDTO result, Set<String> unsettledUsers) {
+        if (pending.isEmpty()) {
+            return;
         }
-
-        // Remover CPF do texto de endereço (ex: "- CPF 95266413587")
-        String cleanedComment = rawComment.replaceAll("[-–]?\\s*CPF\\s+\\d+", "").trim();
-
-        // ── Extrair número do imóvel: padrão "n<dígitos>", ",<espaço><dígitos>" ──
-        String addressNumber = null;
-        Pattern numPattern = Pattern.compile("\\bn\\s*(\\d+)|,\\s*(\\d+)(?=\\s|$)", Pattern.CASE_INSENSITIVE);
-        Matcher numMatcher  = numPattern.matcher(cleanedComment);
-        if (numMatcher.find()) {
-            addressNumber = numMatcher.group(1) != null ? numMatcher.group(1) : numMatcher.group(2);
-            // Remover o trecho do número do texto de rua
-            cleanedComment = cleanedComment.substring(0, numMatcher.start()).trim();
+        ContractService.ImportResult imported;
+        try {
+            imported = contractService.importContracts(pending);
+        } catch (Exception e) {
+            log.error("Erro na importação de {} contratos: {}", pending.size(), e.getMessage(), e);
+            result.getErrorMessages().add("Erro ao importar contratos: " + e.getMessage());
+            unsettledUsers.addAll(usernames.values());
+            result.setFailedContracts(result.getFailedContracts() + pending.size());
+            return;
         }
 
-        // ── Extrair bairro: após "bairro" ou "pg" isolado ao final ──
-        String neighborhood = null;
-        Pattern bairroPattern = Pattern.compile("\\bbairro\\s+(.+)$", Pattern.CASE_INSENSITIVE);
-        Matcher bairroMatcher  = bairroPattern.matcher(cleanedComment);
-        if (bairroMatcher.find()) {
-            neighborhood   = capitalizeWords(bairroMatcher.group(1).trim());
-            cleanedComment = cleanedComment.substring(0, bairroMatcher.start()).trim();
-        } else {
-            // Sufixo de bairro abreviado ao final (ex: "pg", "cj")
-            Pattern suffixPattern = Pattern.compile("\\s+(\\w{1,4})$", Pattern.CASE_INSENSITIVE);
-            Matcher suffixMatcher  = suffixPattern.matcher(cleanedComment);
-            if (suffixMatcher.find()) {
-                String candidate = suffixMatcher.group(1);
-                // Só trata como bairro se for palavra curta não-numérica após o número já removido
-                if (candidate.matches("[a-zA-Z]{1,4}") && addressNumber != null) {
-                    neighborhood   = capitalizeWords(candidate);
-                    cleanedComment = cleanedComment.substring(0, suffixMatcher.start()).trim();
+        for (ContractDTO contract : imported.imported()) {
+            switch (contract.getStatus()) {
+                case ACTIVE -> result.setActivatedContracts(result.getActivatedContracts() + 1);
+                case SUSPENDED_FINANCIAL -> {
+                    result.setSuspendedContracts(result.getSuspendedContracts() + 1);
+                    log.warn("⚠️ Contrato {} criado SUSPENSO - Profile BLOQUEADO | PPPoE: {}",
+                            contract.getId(), usernames.get(contract.getPppoeUserId()));
                 }
+                default -> { }
             }
+            result.setCreatedContracts(result.getCreatedContracts() + 1);
+            result.getCreatedContractIds().add(contract.getId().toString());
+        }
+        imported.rejected().forEach((pppoeUserId, error) -> {
+            String username = usernames.get(pppoeUserId);
+            result.getErrorMessages().add("Erro ao criar contrato para " + username + ": " + error);
+            unsettledUsers.add(username);
+            result.setFailedContracts(result.getFailedContracts() + 1);
+        });
+        if (imported.reconciled() > 0) {
+            result.getWarnings().add(imported.reconciled() +
+                    " usuário(s) PPPoE com perfil divergente do contrato enviados ao outbox para ajuste no router");
         }
-
-        // ── Rua/localização: tudo que restou no comment limpo ──
-        String street = cleanedComment.isEmpty() ? null : capitalizeWords(cleanedComment);
-
-        result.setAddress(street);
-        result.setAddressNumber(addressNumber);
-        result.setNeighborhood(neighborhood);
-        result.setPhone(phone);
-
-        return result;
     }
 
     /**
-     * Converte um username sem espaços (camelCase ou tudo junto) em nome capitalizado.
-     * <p>
-     * Estratégia:
-     * - Se já contém espaço → apenas capitaliza as palavras.
-     * - Se parece camelCase (letra maiúscula no meio) → divide e capitaliza.
-     * - Se tudo minúsculo sem separador (caso mais comum: "elianabatista") →
-     *   não há como saber os limites sem dicionário; capitaliza apenas a 1ª letra
-     *   e deixa para o operador corrigir depois (comportamento seguro e não-destrutivo).
-     * <p>
-     * Exemplos:
-     *   "elianabatista"         → "Elianabatista"  (operador corrige depois)
-     *   "emersonmoura"          → "Emersonmoura"
-     *   "elisangelasilvalima"   → "Elisangelasilvalima"
-     *   "eva"                   → "Eva"
-     *   "fabioRamos"            → "Fabio Ramos"    (camelCase detectado)
-     *   "fabio ramos"           → "Fabio Ramos"    (já tem espaço)
+     * Envia os inserts acumulados em JDBC batch e libera o contexto a cada N linhas criadas
+     * (em vez de um flush por linha). As fases só leem campos simples das entidades da
+     * lista em iteração, que continuam válidos após o clear.
      */
-    private String splitCamelCaseUsername(String username) {
-        if (username == null || username.isBlank()) {
-            return "Desconhecido";
+    private void flushEvery(int created) {
+        if (created % flushInterval == 0) {
+            entityManager.flush();
+            entityManager.clear();
         }
+    }
 
-        // Já tem espaço: apenas capitaliza
-        if (username.contains(" ")) {
-            return capitalizeWords(username);
-        }
+    // ==================== PRÉ-CARGA (uma consulta por entidade) ====================
 
-        // CamelCase: divide em palavras onde maiúscula aparece
-        // ex: "fabioRamos" → "Fabio Ramos"
-        String camelSplit = username.replaceAll("([a-z])([A-Z])", "$1 $2");
-        if (!camelSplit.equals(username)) {
-            return capitalizeWords(camelSplit);
+    /**
+     * pppoeUserId → customerId dos contratos da empresa.
+     */
+    private Map<Long, Long> loadContractCustomerIds(Long companyId) {
+        Map<Long, Long> map = new HashMap<>();
+        for (Object[] row : contractRepository.findPppoeUserCustomerPairs(companyId)) {
+            map.putIfAbsent((Long) row[0], (Long) row[1]);
         }
-
-        // Tudo junto minúsculo: capitaliza apenas a 1ª letra (seguro)
-        return Character.toUpperCase(username.charAt(0)) + username.substring(1).toLowerCase();
+        return map;
     }
 
     /**
-     * Capitaliza palavras de uma string
+     * Nome normalizado → id do cliente. A chave ignora caixa e espaços nas pontas,
+     * como a comparação do MySQL fazia em findByNameAndCompanyId.
      */
-    private String capitalizeWords(String text) {
-        if (text == null || text.trim().isEmpty()) {
-            return text;
+    private Map<String, Long> loadCustomerIdsByName(Long companyId) {
+        Map<String, Long> map = new HashMap<>();
+        for (Object[] row : customerRepository.findIdsByName(companyId)) {
+            map.merge(nameKey((String) row[0]), (Long) row[1], Math::min);
         }
+        return map;
+    }
 
-        String[] words = text.trim().toLowerCase().split("\\s+");
-        StringBuilder result = new StringBuilder();
+    /**
+     * pppoeProfileId → plano de serviço da empresa (o mais antigo, se houver mais de um).
+     */
+    private Map<Long, ServicePlan> loadServicePlansByProfile(Long companyId) {
+        Map<Long, ServicePlan> map = new HashMap<>();
+        servicePlanRepository.findByCompanyId(companyId).stream()
+                .filter(plan -> plan.getPppoeProfileId() != null)
+                .sorted(Comparator.comparing(ServicePlan::getId))
+                .forEach(plan -> map.putIfAbsent(plan.getPppoeProfileId(), plan));
+        return map;
+    }
 
-        for (String word : words) {
-            if (!word.isEmpty()) {
-                result.append(Character.toUpperCase(word.charAt(0)))
-                      .append(word.substring(1))
-                      .append(" ");
-            }
+    /**
+     * customerId → primeiro endereço cadastrado.
+     */
+    private Map<Long, Long> loadFirstAddressIds(Long companyId) {
+        Map<Long, Long> map = new HashMap<>();
+        for (Object[] row : addressRepository.findFirstAddressIds(companyId)) {
+            map.put((Long) row[0], (Long) row[1]);
         }
+        return map;
+    }
+
+    private static String nameKey(String name) {
+        return name == null ? "" : name.strip().toLowerCase(Locale.ROOT);
+    }
 
-        return result.toString().trim();
+    private CustomerInfoParseResult parseCustomerInfo(Long companyId, PppoeUser pppoeUser) {
+        return customerInfoParser.parse(companyId, pppoeUser.getUsername(), pppoeUser.getComment());
     }
 
     /**
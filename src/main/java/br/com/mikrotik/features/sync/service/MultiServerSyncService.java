@@ -0,0 +1,125 @@
+package br.com.mikrotik.features.sync.service;
+
+import br.com.mikrotik.features.network.server.model.MikrotikServer;
+import br.com.mikrotik.features.network.server.repository.MikrotikServerRepository;
+import br.com.mikrotik.features.network.server.service.RouterFanOut;
+import br.com.mikrotik.features.sync.dto.FullSyncConfigDTO;
+import br.com.mikrotik.features.sync.dto.FullSyncResultDTO;
+import br.com.mikrotik.features.sync.service.FullSyncService.SyncPlan;
+import br.com.mikrotik.shared.infrastructure.exception.ValidationException;
+import br.com.mikrotik.shared.util.CompanyContextHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sincronização completa de todos os servidores ativos da empresa.
+ *
+ * MOTIVAÇÃO:
+ * Com vários concentradores, o full-sync era chamado uma vez por servidor, em série,
+ * e cada chamada repetia as fases de clientes e contratos sobre todos os usuários da empresa.
+ *
+ * FLUXO:
+ * 1. Leitura dos routers em paralelo (RouterFanOut, uma virtual thread por servidor, prazo único):
+ *    profiles + secrets de cada servidor, comparados com os fingerprints
+ * 2. Uma única passada no banco ({@link FullSyncService#reconcile}) sobre o snapshot combinado
+ *
+ * Tempo total ≈ router mais lento + uma passada no banco. Servidor que falha ou estoura
+ * o prazo é reportado em failedServerNames e fica fora desta execução; os demais seguem.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MultiServerSyncService {
+
+    private final MikrotikServerRepository serverRepository;
+    private final FullSyncService fullSyncService;
+    private final RouterFanOut routerFanOut;
+
+    @Value("${mikrotik.sync.router-read-deadline-ms:120000}")
+    private long routerReadDeadlineMs;
+
+    public FullSyncResultDTO syncAllServers(FullSyncConfigDTO config) {
+        long startTime = System.currentTimeMillis();
+        Long companyId = CompanyContextHolder.getCompanyId();
+        boolean incremental = Boolean.TRUE.equals(config.getIncremental());
+
+        List<MikrotikServer> servers = serverRepository.findByCompanyIdAndActiveTrue(companyId);
+        if (servers.isEmpty()) {
+            throw new ValidationException("Nenhum servidor MikroTik ativo cadastrado para a empresa");
+        }
+
+        log.info("==========================================================");
+        log.info(">>> SINCRONIZAÇÃO DE {} SERVIDORES (leitura em paralelo) <<<", servers.size());
+        log.info("==========================================================");
+
+        // Cada leitura recebe config e resultado próprios (threads diferentes)
+        Map<Long, RouterFanOut.Result<ServerSnapshot>> reads = routerFanOut.invokeAll(servers, server -> {
+            FullSyncConfigDTO serverConfig = copyFor(config, server.getId());
+            FullSyncResultDTO serverResult = FullSyncResultDTO.builder().build();
+            return new ServerSnapshot(fullSyncService.prepare(serverConfig, serverResult), serverResult);
+        }, Duration.ofMillis(routerReadDeadlineMs));
+
+        FullSyncResultDTO result = FullSyncResultDTO.builder().incremental(incremental).build();
+        List<SyncPlan> plans = new ArrayList<>();
+        for (MikrotikServer server : servers) {
+            RouterFanOut.Result<ServerSnapshot> read = reads.get(server.getId());
+            if (read.isSuccess()) {
+                plans.add(read.value().plan());
+                result.getServerNames().add(server.getName());
+                result.getWarnings().addAll(read.value().result().getWarnings());
+                result.getRemovedProfileNames().addAll(read.value().result().getRemovedProfileNames());
+                result.getRemovedPppoeUsernames().addAll(read.value().result().getRemovedPppoeUsernames());
+            } else {
+                String reason = read.timedOut()
+                        ? "prazo de " + routerReadDeadlineMs + " ms esgotado"
+                        : read.error().getMessage();
+                log.warn("⚠️ Servidor {} ignorado nesta sincronização: {}", server.getName(), reason);
+                result.getFailedServerNames().add(server.getName());
+                result.getErrorMessages().add("Falha ao ler o servidor " + server.getName() + ": " + reason);
+            }
+        }
+        log.info("Leitura dos routers: {} de {} servidores em {} ms", plans.size(), servers.size(),
+                System.currentTimeMillis() - startTime);
+
+        if (plans.isEmpty()) {
+            result.setSuccess(false);
+            result.setExecutionTimeSeconds((System.currentTimeMillis() - startTime) / 1000);
+            return result;
+        }
+
+        if (incremental && plans.stream().allMatch(plan -> plan.delta().isEmpty())) {
+            log.info("Modo incremental: nenhuma alteração nos routers desde a última sincronização");
+            fullSyncService.fillSnapshotTotals(result, plans);
+            result.setSuccess(true);
+            result.setExecutionTimeSeconds((System.currentTimeMillis() - startTime) / 1000);
+            return result;
+        }
+
+        fullSyncService.reconcile(config, plans, result);
+        result.setExecutionTimeSeconds((System.currentTimeMillis() - startTime) / 1000);
+        return result;
+    }
+
+    private record ServerSnapshot(SyncPlan plan, FullSyncResultDTO result) {
+    }
+
+    private static FullSyncConfigDTO copyFor(FullSyncConfigDTO config, Long serverId) {
+        return FullSyncConfigDTO.builder()
+                .serverId(serverId)
+                .defaultBillingDay(config.getDefaultBillingDay())
+                .defaultPlanPrice(config.getDefaultPlanPrice())
+                .createMissingServicePlans(config.getCreateMissingServicePlans())
+                .createMissingCustomers(config.getCreateMissingCustomers())
+                .createContracts(config.getCreateContracts())
+                .autoActivateContracts(config.getAutoActivateContracts())
+                .incremental(config.getIncremental())
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package br.com.mikrotik.features.sync.service;
+
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeProfileDTO;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
+import br.com.mikrotik.features.sync.model.SyncFingerprint;
+import br.com.mikrotik.features.sync.model.SyncFingerprint.ItemType;
+import br.com.mikrotik.features.sync.repository.SyncFingerprintRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fingerprints da última sincronização por servidor (modo incremental do full-sync).
+ *
+ * Cada secret/profile do router vira um SHA-256 dos campos que a sincronização usa.
+ * Comparando o snapshot atual com os hashes gravados, o full-sync sabe quais itens
+ * foram adicionados, alterados ou removidos sem consultar contratos, clientes e planos
+ * item a item. Todos os hashes do servidor são lidos numa única consulta.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SyncFingerprintService {
+
+    private static final char FIELD_SEPARATOR = '\u001F';
+    private static final String NULL_FIELD = "\u0000";
+
+    private final SyncFingerprintRepository repository;
+
+    /**
+     * Diferença entre o snapshot do router e a última sincronização.
+     *
+     * @param fingerprints hash atual de cada item adicionado ou alterado (a gravar após processá-lo)
+     */
+    public record Delta<T>(List<T> added, List<T> changed, List<String> removed, int unchanged,
+                           Map<String, String> fingerprints) {
+
+        /** Itens a processar: adicionados + alterados. */
+        public List<T> pending() {
+            List<T> pending = new ArrayList<>(added.size() + changed.size());
+            pending.addAll(added);
+            pending.addAll(changed);
+            return pending;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    public record SnapshotDelta(Delta<MikrotikPppoeProfileDTO> profiles, Delta<MikrotikPppoeUserDTO> secrets) {
+        public boolean isEmpty() {
+            return profiles.isEmpty() && secrets.isEmpty();
+        }
+    }
+
+    /**
+     * Compara o snapshot do router com os hashes gravados (uma consulta ao banco).
+     */
+    @Transactional(readOnly = true)
+    public SnapshotDelta diff(Long serverId, List<MikrotikPppoeProfileDTO> profiles,
+                              List<MikrotikPppoeUserDTO> secrets) {
+        Map<ItemType, Map<String, String>> stored = new EnumMap<>(ItemType.class);
+        for (ItemType type : ItemType.values()) {
+            stored.put(type, new HashMap<>());
+        }
+        for (SyncFingerprint fingerprint : repository.findByMikrotikServerId(serverId)) {
+            stored.get(fingerprint.getItemType()).put(fingerprint.getName(), fingerprint.getFingerprint());
+        }
+
+        SnapshotDelta delta = new SnapshotDelta(
+                diff(profiles, MikrotikPppoeProfileDTO::getName, SyncFingerprintService::fingerprint,
+                        stored.get(ItemType.PROFILE)),
+                diff(secrets, MikrotikPppoeUserDTO::getUsername, SyncFingerprintService::fingerprint,
+                        stored.get(ItemType.SECRET)));
+
+        log.info("Snapshot do servidor {}: profiles +{} ~{} -{} ={} | secrets +{} ~{} -{} ={}", serverId,
+                delta.profiles().added().size(), delta.profiles().changed().size(),
+                delta.profiles().removed().size(), delta.profiles().unchanged(),
+                delta.secrets().added().size(), delta.secrets().changed().size(),
+                delta.secrets().removed().size(), delta.secrets().unchanged());
+        return delta;
+    }
+
+    private <T> Delta<T> diff(List<T> snapshot, Function<T, String> nameOf, Function<T, String> hashOf,
+                              Map<String, String> stored) {
+        List<T> added = new ArrayList<>();
+        List<T> changed = new ArrayList<>();
+        Map<String, String> fingerprints = new LinkedHashMap<>();
+        Map<String, String> remaining = new HashMap<>(stored);
+        int unchanged = 0;
+
+        for (T item : snapshot) {
+            String name = nameOf.apply(item);
+            if (name == null) {
+                continue;
+            }
+            String current = hashOf.apply(item);
+            String previous = remaining.remove(name);
+            if (previous == null) {
+                added.add(item);
+                fingerprints.put(name, current);
+            } else if (!previous.equals(current)) {
+                changed.add(item);
+                fingerprints.put(name, current);
+            } else {
+                unchanged++;
+            }
+        }
+        return new Delta<>(added, changed, new ArrayList<>(remaining.keySet()), unchanged, fingerprints);
+    }
+
+    /**
+     * Grava os hashes dos itens processados com sucesso.
+     */
+    @Transactional
+    public void record(Long companyId, Long serverId, ItemType type, Map<String, String> fingerprints) {
+        fingerprints.forEach((name, fingerprint) ->
+                repository.upsert(companyId, serverId, type.name(), name, fingerprint));
+    }
+
+    /**
+     * Esquece os itens (removidos do router ou pendentes de nova tentativa).
+     */
+    @Transactional
+    public void forget(Long serverId, ItemType type, Collection<String> names) {
+        if (!names.isEmpty()) {
+            repository.deleteByNames(serverId, type, names);
+        }
+    }
+
+    // ==================== HASH ====================
+
+    static String fingerprint(MikrotikPppoeUserDTO secret) {
+        return hash(secret.getUsername(), secret.getPassword(), secret.getProfile(), secret.getService(),
+                String.valueOf(secret.getDisabled()), secret.getComment());
+    }
+
+    static String fingerprint(MikrotikPppoeProfileDTO profile) {
+        return hash(profile.getName(), profile.getLocalAddress(), profile.getRemoteAddress(),
+                profile.getRateLimit(), profile.getSessionTimeout(), String.valueOf(profile.getDisabled()),
+                profile.getComment());
+    }
+
+    private static String hash(String... fields) {
+        StringBuilder joined = new StringBuilder();
+        for (String field : fields) {
+            joined.append(field != null ? field : NULL_FIELD).append(FIELD_SEPARATOR);
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(joined.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+}
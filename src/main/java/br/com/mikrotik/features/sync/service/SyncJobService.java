@@ -0,0 +1,374 @@
+package br.com.mikrotik.features.sync.service;
+
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeProfileDTO;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
+import br.com.mikrotik.features.sync.dto.FullSyncConfigDTO;
+import br.com.mikrotik.features.sync.dto.FullSyncResultDTO;
+import br.com.mikrotik.features.sync.dto.SyncJobDTO;
+import br.com.mikrotik.features.sync.model.SyncJob;
+import br.com.mikrotik.features.sync.repository.SyncJobRepository;
+import br.com.mikrotik.features.sync.service.FullSyncService.SyncPlan;
+import br.com.mikrotik.shared.infrastructure.exception.ResourceNotFoundException;
+import br.com.mikrotik.shared.infrastructure.exception.ValidationException;
+import br.com.mikrotik.shared.util.CompanyContextHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Sincronização completa como job assíncrono, em blocos.
+ *
+ * MOTIVAÇÃO:
+ * O POST /api/sync/full-sync roda tudo numa única transação dentro da requisição HTTP:
+ * com milhares de secrets a requisição expira, e uma queda no meio desfaz tudo.
+ *
+ * FLUXO:
+ * 1. {@link #start} grava o job (PENDING) e o entrega ao syncJobExecutor
+ * 2. O router é lido uma vez ({@link FullSyncService#prepare}), fora de transação
+ * 3. Cada fase percorre seus itens em ordem estável (nome ou ID), N por transação;
+ *    o progresso (fase, cursor, contadores, resultado parcial) é gravado na mesma
+ *    transação do bloco
+ * 4. Entre blocos o job verifica o pedido de cancelamento
+ *
+ * RETOMADA:
+ * Job PENDING/RUNNING com heartbeat parado além de stale-after-ms é reassumido pela
+ * varredura periódica (reinício da aplicação, executor cheio) e continua do cursor
+ * gravado, ou seja, do último bloco confirmado. O contador attempts é o fencing token:
+ * uma execução antiga que acorde depois da retomada não consegue gravar progresso.
+ * Por isso stale-after-ms deve ser bem maior que a duração de um bloco.
+ */
+@Service
+@Slf4j
+public class SyncJobService {
+
+    private static final List<SyncJob.Status> ACTIVE_STATUSES = List.of(SyncJob.Status.PENDING, SyncJob.Status.RUNNING);
+
+    /** Limite de cada lista de detalhes do resultado gravado no job (state_json). */
+    private static final int MAX_RESULT_ENTRIES = 1000;
+
+    private final SyncJobRepository repository;
+    private final FullSyncService fullSyncService;
+    private final JsonMapper jsonMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Executor syncJobExecutor;
+
+    @Value("${mikrotik.sync.job.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${mikrotik.sync.job.stale-after-ms:300000}")
+    private long staleAfterMs;
+
+    public SyncJobService(SyncJobRepository repository,
+                          FullSyncService fullSyncService,
+                          JsonMapper jsonMapper,
+                          PlatformTransactionManager transactionManager,
+                          @Qualifier("syncJobExecutor") Executor syncJobExecutor) {
+        this.repository = repository;
+        this.fullSyncService = fullSyncService;
+        this.jsonMapper = jsonMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.syncJobExecutor = syncJobExecutor;
+    }
+
+    /**
+     * Resultado parcial e itens com falha (sem fingerprint no encerramento), gravados a cada bloco.
+     */
+    record JobState(FullSyncResultDTO result, Set<String> unsettledProfiles, Set<String> unsettledUsers) {
+    }
+
+    /**
+     * Execução corrente de um job (o attempt é o fencing token das gravações).
+     */
+    private record JobRun(Long jobId, int attempt, Long companyId, FullSyncConfigDTO config, boolean incremental,
+                          SyncPlan plan, JobState state) {
+    }
+
+    // ==================== API ====================
+
+    /**
+     * Cria o job e agenda a execução. Um servidor tem no máximo um job ativo.
+     * Sem transação: o job precisa estar gravado antes de o executor o assumir.
+     */
+    public SyncJobDTO start(FullSyncConfigDTO config) {
+        FullSyncService.requireServerId(config);
+        Long companyId = CompanyContextHolder.getCompanyId();
+        // Servidor de outra empresa = não encontrado (antes de consultar jobs do servidor)
+        fullSyncService.requireCompanyServer(companyId, config.getServerId());
+        if (repository.existsByMikrotikServerIdAndStatusIn(config.getServerId(), ACTIVE_STATUSES)) {
+            throw new ValidationException("Já existe uma sincronização em andamento para o servidor " +
+                    config.getServerId());
+        }
+
+        SyncJob job = new SyncJob();
+        job.setCompanyId(companyId);
+        job.setMikrotikServerId(config.getServerId());
+        job.setConfigJson(jsonMapper.writeValueAsString(config));
+        job = repository.save(job);
+
+        log.info("Job de sincronização {} criado para o servidor {}", job.getId(), config.getServerId());
+        submit(job.getId());
+        return toDTO(job);
+    }
+
+    public SyncJobDTO get(Long id) {
+        return toDTO(findForCompany(id));
+    }
+
+    public List<SyncJobDTO> listRecent() {
+        return repository.findTop20ByCompanyIdOrderByIdDesc(CompanyContextHolder.getCompanyId()).stream()
+                .map(this::toDTO)
+                .toList();
+    }
+
+    /**
+     * Job ainda não iniciado é cancelado na hora; em execução, para ao fim do bloco corrente.
+     * Blocos já confirmados permanecem no banco.
+     */
+    public SyncJobDTO cancel(Long id) {
+        SyncJob job = findForCompany(id);
+        if (!ACTIVE_STATUSES.contains(job.getStatus())) {
+            throw new ValidationException("Job " + id + " já finalizado com status " + job.getStatus());
+        }
+        if (repository.cancelPending(id, LocalDateTime.now()) == 0) {
+            repository.requestCancel(id);
+        }
+        log.info("Cancelamento solicitado para o job de sincronização {}", id);
+        return toDTO(findForCompany(id));
+    }
+
+    /**
+     * Reassume jobs sem executor vivo (queda da aplicação, executor cheio).
+     */
+    @Scheduled(fixedDelayString = "${mikrotik.sync.job.resume-interval-ms:60000}")
+    public void resumeStaleJobs() {
+        List<Long> stale = repository.findStaleJobIds(LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs)));
+        if (!stale.isEmpty()) {
+            log.warn("⚠️ {} job(s) de sincronização sem progresso; retomando: {}", stale.size(), stale);
+            stale.forEach(this::submit);
+        }
+    }
+
+    private void submit(Long jobId) {
+        // Recusa do executor apenas registra: o job continua PENDING e a varredura o retoma
+        syncJobExecutor.execute(() -> run(jobId));
+    }
+
+    // ==================== EXECUÇÃO ====================
+
+    private void run(Long jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (repository.claim(jobId, now, now.minus(Duration.ofMillis(staleAfterMs))) == 0) {
+            log.debug("Job de sincronização {} já assumido por outra execução", jobId);
+            return;
+        }
+        SyncJob job = repository.findById(jobId).orElseThrow();
+        int attempt = job.getAttempts();
+        CompanyContextHolder.setCompanyId(job.getCompanyId());
+        try {
+            log.info(">>> Job de sincronização {} iniciado (tentativa {}, fase {}, cursor {}) <<<",
+                    jobId, attempt, job.getPhase(), job.getCursorKey());
+            execute(job, attempt);
+        } catch (Exception e) {
+            log.error("❌ Job de sincronização {} falhou: {}", jobId, e.getMessage(), e);
+            repository.finish(jobId, attempt, SyncJob.Status.FAILED, truncate(e.getMessage()), LocalDateTime.now());
+        } finally {
+            CompanyContextHolder.clear();
+        }
+    }
+
+    private void execute(SyncJob job, int attempt) {
+        FullSyncConfigDTO config = jsonMapper.readValue(job.getConfigJson(), FullSyncConfigDTO.class);
+        boolean incremental = Boolean.TRUE.equals(config.getIncremental());
+        boolean resumed = job.getStateJson() != null;
+        JobState state = resumed
+                ? jsonMapper.readValue(job.getStateJson(), JobState.class)
+                : new JobState(FullSyncResultDTO.builder().incremental(incremental).build(),
+                        new HashSet<>(), new HashSet<>());
+
+        // Na retomada os avisos de itens removidos já estão no estado gravado
+        SyncPlan plan = fullSyncService.prepare(config,
+                resumed ? FullSyncResultDTO.builder().build() : state.result());
+        JobRun run = new JobRun(job.getId(), attempt, job.getCompanyId(), config, incremental, plan, state);
+
+        for (SyncJob.Phase phase : SyncJob.Phase.values()) {
+            if (phase.ordinal() < job.getPhase().ordinal() || !isEnabled(phase, config)) {
+                continue;
+            }
+            if (phase == SyncJob.Phase.FINALIZING) {
+                break;
+            }
+            boolean resumingPhase = phase == job.getPhase();
+            if (!runPhase(run, phase, resumingPhase ? job.getCursorKey() : null,
+                    resumingPhase ? job.getProcessed() : 0)) {
+                return;
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            fullSyncService.complete(plan, run.companyId(), incremental,
+                    state.unsettledProfiles(), state.unsettledUsers(), state.result());
+            state.result().setSuccess(true);
+            state.result().setExecutionTimeSeconds(
+                    Duration.between(job.getStartedAt() != null ? job.getStartedAt() : job.getCreatedAt(),
+                            LocalDateTime.now()).toSeconds());
+            saveProgress(run, SyncJob.Phase.FINALIZING, null, 0, 0);
+        });
+        repository.finish(run.jobId(), attempt, SyncJob.Status.COMPLETED, null, LocalDateTime.now());
+
+        FullSyncResultDTO result = state.result();
+        log.info(">>> Job de sincronização {} concluído: {} profiles, {} PPPoE, {} clientes, {} contratos <<<",
+                run.jobId(), result.getSyncedProfiles(), result.getSyncedPppoeUsers(),
+                result.getCreatedCustomers(), result.getCreatedContracts());
+    }
+
+    private boolean isEnabled(SyncJob.Phase phase, FullSyncConfigDTO config) {
+        return switch (phase) {
+            case SERVICE_PLANS -> Boolean.TRUE.equals(config.getCreateMissingServicePlans());
+            case CUSTOMERS -> Boolean.TRUE.equals(config.getCreateMissingCustomers());
+            case CONTRACTS -> Boolean.TRUE.equals(config.getCreateContracts());
+            default -> true;
+        };
+    }
+
+    /**
+     * @return false se o job foi cancelado
+     */
+    private boolean runPhase(JobRun run, SyncJob.Phase phase, String cursor, int alreadyProcessed) {
+        FullSyncConfigDTO config = run.config();
+        FullSyncResultDTO result = run.state().result();
+        Comparator<String> byName = Comparator.naturalOrder();
+        Comparator<String> byId = Comparator.comparingLong(Long::parseLong);
+
+        return switch (phase) {
+            case PROFILES -> runChunks(run, phase, run.plan().profilesToSync(), MikrotikPppoeProfileDTO::getName,
+                    byName, cursor, alreadyProcessed,
+                    chunk -> fullSyncService.syncProfilesChunk(config, chunk, result));
+            case SERVICE_PLANS -> runChunks(run, phase,
+                    fullSyncService.servicePlanCandidateIds(run.plan(), run.incremental()), String::valueOf,
+                    byId, cursor, alreadyProcessed,
+                    chunk -> fullSyncService.createServicePlansChunk(config, result, run.companyId(), chunk,
+                            run.state().unsettledProfiles()));
+            case PPPOE_USERS -> runChunks(run, phase, run.plan().secretsToSync(), MikrotikPppoeUserDTO::getUsername,
+                    byName, cursor, alreadyProcessed,
+                    chunk -> fullSyncService.syncPppoeUsersChunk(config, chunk, result));
+            case CUSTOMERS -> runChunks(run, phase,
+                    fullSyncService.pppoeUserCandidateIds(run.plan(), run.incremental()), String::valueOf,
+                    byId, cursor, alreadyProcessed,
+                    chunk -> fullSyncService.createCustomersChunk(result, run.companyId(), chunk,
+                            run.state().unsettledUsers()));
+            case CONTRACTS -> runChunks(run, phase,
+                    fullSyncService.pppoeUserCandidateIds(run.plan(), run.incremental()), String::valueOf,
+                    byId, cursor, alreadyProcessed,
+                    chunk -> fullSyncService.createContractsChunk(config, result, run.companyId(), chunk,
+                            run.state().unsettledUsers()));
+            case FINALIZING -> true;
+        };
+    }
+
+    /**
+     * Processa os itens posteriores ao cursor, um bloco por transação (bloco + progresso juntos).
+     */
+    private <T> boolean runChunks(JobRun run, SyncJob.Phase phase, List<T> items, Function<T, String> keyOf,
+                                  Comparator<String> keyOrder, String cursor, int alreadyProcessed,
+                                  Consumer<List<T>> work) {
+        int start = 0;
+        if (cursor != null) {
+            while (start < items.size() && keyOrder.compare(keyOf.apply(items.get(start)), cursor) <= 0) {
+                start++;
+            }
+        }
+        int total = alreadyProcessed + items.size() - start;
+        log.info("Job {}: fase {} — {} itens a processar{}", run.jobId(), phase, items.size() - start,
+                cursor != null ? " (retomando após " + cursor + ")" : "");
+
+        for (int from = start; from < items.size(); from += chunkSize) {
+            if (repository.isCancelRequested(run.jobId())) {
+                repository.finish(run.jobId(), run.attempt(), SyncJob.Status.CANCELED, null, LocalDateTime.now());
+                log.info("Job de sincronização {} cancelado na fase {}", run.jobId(), phase);
+                return false;
+            }
+            List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+            String lastKey = keyOf.apply(chunk.get(chunk.size() - 1));
+            int processed = alreadyProcessed + (from - start) + chunk.size();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                work.accept(chunk);
+                saveProgress(run, phase, lastKey, processed, total);
+            });
+            log.debug("Job {}: fase {} — {}/{}", run.jobId(), phase, processed, total);
+        }
+        return true;
+    }
+
+    private void saveProgress(JobRun run, SyncJob.Phase phase, String cursor, int processed, int total) {
+        capDetails(run.state().result());
+        int updated = repository.updateProgress(run.jobId(), run.attempt(), phase, cursor, processed, total,
+                jsonMapper.writeValueAsString(run.state()), LocalDateTime.now());
+        if (updated == 0) {
+            // Desfaz o bloco: outra execução assumiu o job
+            throw new IllegalStateException("Job " + run.jobId() + " foi assumido por outra execução");
+        }
+    }
+
+    // ==================== AUXILIARES ====================
+
+    private SyncJob findForCompany(Long id) {
+        return repository.findByIdAndCompanyId(id, CompanyContextHolder.getCompanyId())
+                .orElseThrow(() -> new ResourceNotFoundException("Job de sincronização não encontrado: " + id));
+    }
+
+    private SyncJobDTO toDTO(SyncJob job) {
+        FullSyncResultDTO result = job.getStateJson() != null
+                ? jsonMapper.readValue(job.getStateJson(), JobState.class).result()
+                : null;
+        return SyncJobDTO.builder()
+                .id(job.getId())
+                .serverId(job.getMikrotikServerId())
+                .status(job.getStatus().name())
+                .phase(job.getPhase().name())
+                .processed(job.getProcessed())
+                .total(job.getTotal())
+                .cancelRequested(job.getCancelRequested())
+                .attempts(job.getAttempts())
+                .errorMessage(job.getErrorMessage())
+                .result(result)
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .heartbeatAt(job.getHeartbeatAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    private static void capDetails(FullSyncResultDTO result) {
+        List.of(result.getSyncedProfileNames(), result.getCreatedServicePlanNames(), result.getSyncedPppoeUsernames(),
+                result.getCreatedCustomerNames(), result.getCreatedContractIds(), result.getErrorMessages(),
+                result.getWarnings(), result.getRemovedProfileNames(), result.getRemovedPppoeUsernames())
+                .forEach(list -> {
+                    if (list.size() > MAX_RESULT_ENTRIES) {
+                        list.subList(MAX_RESULT_ENTRIES, list.size()).clear();
+                    }
+                });
+    }
+
+    private String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 2000 ? message.substring(0, 2000) : message;
+    }
+}
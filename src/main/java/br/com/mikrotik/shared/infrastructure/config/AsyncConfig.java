@@ -1,7 +1,9 @@
 package br.com.mikrotik.shared.infrastructure.config;
 
+import br.com.mikrotik.shared.util.CompanyContextTaskDecorator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
@@ -55,6 +57,91 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    /**
+     * Thread pool dos jobs de sincronização completa (SyncJobService).
+     *
+     * Separado do networkIntegrationExecutor: um job pode levar minutos e não deve
+     * atrasar bloqueios/desbloqueios. Job recusado continua PENDING no banco e é
+     * retomado pela varredura periódica.
+     */
+    @Bean(name = "syncJobExecutor")
+    public Executor syncJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(20);
+        executor.setThreadNamePrefix("sync-job-");
+        executor.setRejectedExecutionHandler((r, exec) ->
+                log.warn("⚠️ Fila de jobs de sincronização cheia; job será retomado pela varredura"));
+        executor.initialize();
+
+        log.info("✅ SyncJobExecutor configurado: core=2, max=2, queue=20");
+        return executor;
+    }
+
+    /**
+     * Thread pool do faturamento (partições empresa x faixa de contratos).
+     *
+     * Tamanho fixo = billing.run.parallelism: cada partição segura uma conexão do banco
+     * enquanto grava seus blocos, então o pool precisa ficar abaixo do Hikari. A fila
+     * comporta a execução mensal inteira; o CompanyContextHolder de quem submete é
+     * propagado para a thread do pool (CompanyContextTaskDecorator).
+     */
+    @Bean(name = "billingExecutor")
+    public Executor billingExecutor(@Value("${billing.run.parallelism:4}") int parallelism) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(10_000);
+        executor.setThreadNamePrefix("billing-");
+        executor.setTaskDecorator(new CompanyContextTaskDecorator());
+        executor.initialize();
+
+        log.info("✅ BillingExecutor configurado: core={}, max={}, queue=10000", parallelism, parallelism);
+        return executor;
+    }
+
+    /**
+     * Thread pool das chamadas ao gateway de pagamento (PaymentLinkDispatcher).
+     *
+     * Tamanho fixo = abacatepay.dispatch.concurrency: limita as requisições simultâneas
+     * ao gateway, independente da taxa. A fila só guarda o lote em curso — o backlog
+     * fica na tabela payment_link_queue, não em memória.
+     */
+    @Bean(name = "paymentLinkExecutor")
+    public Executor paymentLinkExecutor(@Value("${abacatepay.dispatch.concurrency:4}") int concurrency,
+                                        @Value("${abacatepay.dispatch.batch-size:200}") int batchSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(batchSize);
+        executor.setThreadNamePrefix("payment-link-");
+        executor.initialize();
+
+        log.info("✅ PaymentLinkExecutor configurado: core={}, max={}, queue={}", concurrency, concurrency, batchSize);
+        return executor;
+    }
+
+    /**
+     * Thread única do ciclo da fila de cobranças (PaymentLinkDispatcher).
+     *
+     * O ciclo pode levar minutos no dia de faturamento (aguarda o lote inteiro no gateway);
+     * rodando aqui ele não ocupa uma das threads do taskScheduler. Fila de 1: um disparo
+     * pendente basta — os demais só marcam que há trabalho novo.
+     */
+    @Bean(name = "paymentLinkDrainExecutor")
+    public Executor paymentLinkDrainExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("payment-link-drain-");
+        executor.initialize();
+
+        log.info("✅ PaymentLinkDrainExecutor configurado: core=1, max=1, queue=1");
+        return executor;
+    }
+
     /**
      * Scheduler dedicado para @Scheduled (crons).
      *
@@ -0,0 +1,38 @@
+package br.com.mikrotik.shared.infrastructure.exception;
+
+/**
+ * Falha ao gerar cobrança no gateway de pagamento.
+ * {@code retryable} = falha transitória (conexão recusada, 5xx, 429); caso contrário o gateway
+ * recusou a cobrança e repetir a mesma requisição não adianta.
+ * {@code outcomeUnknown} = a requisição foi enviada mas a resposta não chegou (timeout de
+ * leitura, conexão caída, 2xx sem corpo): a cobrança pode ter sido criada e reenviar pode duplicá-la.
+ */
+public class PaymentGatewayException extends RuntimeException {
+
+    private final boolean retryable;
+    private final boolean outcomeUnknown;
+
+    public PaymentGatewayException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+        this.outcomeUnknown = false;
+    }
+
+    public PaymentGatewayException(String message, boolean retryable, Throwable cause) {
+        this(message, retryable, false, cause);
+    }
+
+    public PaymentGatewayException(String message, boolean retryable, boolean outcomeUnknown, Throwable cause) {
+        super(message, cause);
+        this.retryable = retryable;
+        this.outcomeUnknown = outcomeUnknown;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    public boolean isOutcomeUnknown() {
+        return outcomeUnknown;
+    }
+}
@@ -0,0 +1,11 @@
+package br.com.mikrotik.shared.infrastructure.exception;
+
+/**
+ * Router com circuito aberto: a chamada falha imediatamente, sem tentar conectar.
+ * Não deve ser retentada — o circuito decide quando testar o router de novo.
+ */
+public class RouterUnavailableException extends MikrotikConnectionException {
+    public RouterUnavailableException(String message) {
+        super(message);
+    }
+}
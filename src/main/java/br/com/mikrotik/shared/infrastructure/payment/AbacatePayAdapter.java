@@ -1,12 +1,23 @@
 package br.com.mikrotik.shared.infrastructure.payment;
 
 import br.com.mikrotik.features.invoices.model.Invoice;
+import br.com.mikrotik.shared.infrastructure.exception.PaymentGatewayException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClient;
-
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Optional;
 
@@ -16,8 +27,17 @@ import java.util.Optional;
  * Documentação AbacatePay: https://abacatepay.readme.io/reference
  *
  * TRADE-OFF: Usamos RestClient (Spring 6 / Boot 3) síncrono propositalmente.
- * Esta chamada já é executada fora de qualquer transação (via @TransactionalEventListener
- * AFTER_COMMIT + @Async). Adicionar reatividade aqui seria over-engineering.
+ * Esta chamada é executada pelo PaymentLinkDispatcher, fora de qualquer transação,
+ * com taxa e concorrência limitadas. Adicionar reatividade aqui seria over-engineering.
+ *
+ * CONEXÕES: um único java.net.http.HttpClient para todas as chamadas — ele mantém as
+ * conexões keep-alive abertas e as reaproveita (sem novo handshake TLS por fatura).
+ * O pool cresce até a concorrência do dispatcher.
+ *
+ * Falhas viram PaymentGatewayException: falha de conexão (requisição não enviada), 429 e
+ * 5xx são retentáveis; demais 4xx e respostas sem os campos esperados não são. Timeout de
+ * leitura ou erro de I/O depois do envio NÃO são retentados: o POST não é idempotente e a
+ * cobrança pode ter sido criada — a fatura vai para reconciliação manual (INV-<id>).
  *
  * Se abacatepay.enabled=false (ex: ambiente de dev sem credenciais), o método
  * retorna Optional.empty() sem lançar exceção — a fatura fica PENDING sem link,
@@ -28,22 +48,37 @@ import java.util.Optional;
 public class AbacatePayAdapter implements PaymentGatewayPort {
 
     private final RestClient restClient;
-
-    @Value("${abacatepay.enabled:false}")
-    private boolean enabled;
-
-    @Value("${abacatepay.api-key:}")
-    private String apiKey;
+    private final boolean enabled;
+    private final String apiKey;
 
     public AbacatePayAdapter(
-            @Value("${abacatepay.base-url:https://api.abacatepay.com/v1}") String baseUrl) {
+            @Value("${abacatepay.base-url:https://api.abacatepay.com/v1}") String baseUrl,
+            @Value("${abacatepay.api-key:}") String apiKey,
+            @Value("${abacatepay.enabled:false}") boolean enabled,
+            @Value("${abacatepay.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${abacatepay.read-timeout-ms:15000}") long readTimeoutMs) {
+        this.enabled = enabled;
+        this.apiKey = apiKey;
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+
         this.restClient = RestClient.builder()
                 .baseUrl(baseUrl)
+                .requestFactory(requestFactory)
                 .defaultHeader("Content-Type", MediaType.APPLICATION_JSON_VALUE)
                 .defaultHeader("Accept", MediaType.APPLICATION_JSON_VALUE)
                 .build();
     }
 
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
     @Override
     public Optional<PixChargeResult> generatePixCharge(Invoice invoice) {
         if (!enabled) {
@@ -52,78 +87,102 @@ public class AbacatePayAdapter implements PaymentGatewayPort {
             return Optional.empty();
         }
 
+        log.debug("[AbacatePay] Gerando cobrança PIX para fatura #{}  valor=R${}",
+                invoice.getId(), invoice.getFinalAmount());
+
+        // Monta o payload conforme a API AbacatePay
+        // Referência: POST /billing/create
+        var payload = Map.of(
+                "frequency",   "ONE_TIME",
+                "methods",     new String[]{"PIX"},
+                "returnUrl",   "",
+                "completionUrl", "",
+                "customer",    Map.of(
+                        "name",     invoice.getCustomer() != null
+                                    ? invoice.getCustomer().getName()
+                                    : "Cliente #" + invoice.getCustomerId(),
+                        "cellphone", invoice.getCustomer() != null
+                                     && invoice.getCustomer().getPhonePrimary() != null
+                                     ? invoice.getCustomer().getPhonePrimary() : "",
+                        "email",    invoice.getCustomer() != null
+                                    && invoice.getCustomer().getEmail() != null
+                                    ? invoice.getCustomer().getEmail() : "",
+                        "taxId",    invoice.getCustomer() != null
+                                    ? invoice.getCustomer().getDocument() : ""
+                ),
+                "products",    new Object[]{Map.of(
+                        "externalId", "INV-" + invoice.getId(),
+                        "name",       invoice.getDescription() != null
+                                      ? invoice.getDescription() : "Mensalidade Internet",
+                        "quantity",   1,
+                        "price",      invoice.getFinalAmount()
+                                          .multiply(java.math.BigDecimal.valueOf(100))
+                                          .intValue() // AbacatePay usa centavos
+                )}
+        );
+
+        Map<String, Object> response;
         try {
-            log.info("[AbacatePay] Gerando cobrança PIX para fatura #{}  valor=R${}",
-                    invoice.getId(), invoice.getFinalAmount());
-
-            // Monta o payload conforme a API AbacatePay
-            // Referência: POST /billing/create
-            var payload = Map.of(
-                    "frequency",   "ONE_TIME",
-                    "methods",     new String[]{"PIX"},
-                    "returnUrl",   "",
-                    "completionUrl", "",
-                    "customer",    Map.of(
-                            "name",     invoice.getCustomer() != null
-                                        ? invoice.getCustomer().getName()
-                                        : "Cliente #" + invoice.getCustomerId(),
-                            "cellphone", invoice.getCustomer() != null
-                                         && invoice.getCustomer().getPhonePrimary() != null
-                                         ? invoice.getCustomer().getPhonePrimary() : "",
-                            "email",    invoice.getCustomer() != null
-                                        && invoice.getCustomer().getEmail() != null
-                                        ? invoice.getCustomer().getEmail() : "",
-                            "taxId",    invoice.getCustomer() != null
-                                        ? invoice.getCustomer().getDocument() : ""
-                    ),
-                    "products",    new Object[]{Map.of(
-                            "externalId", "INV-" + invoice.getId(),
-                            "name",       invoice.getDescription() != null
-                                          ? invoice.getDescription() : "Mensalidade Internet",
-                            "quantity",   1,
-                            "price",      invoice.getFinalAmount()
-                                              .multiply(java.math.BigDecimal.valueOf(100))
-                                              .intValue() // AbacatePay usa centavos
-                    )}
-            );
-
             @SuppressWarnings("unchecked")
-            Map<String, Object> response = restClient.post()
+            Map<String, Object> body = restClient.post()
                     .uri("/billing/create")
                     .header("Authorization", "Bearer " + apiKey)
                     .body(payload)
                     .retrieve()
                     .body(Map.class);
-
-            if (response == null) {
-                log.warn("[AbacatePay] Resposta nula para fatura #{}", invoice.getId());
-                return Optional.empty();
+            response = body;
+        } catch (RestClientResponseException e) {
+            int status = e.getStatusCode().value();
+            boolean retryable = status == 429 || e.getStatusCode().is5xxServerError();
+            throw new PaymentGatewayException("HTTP " + status + ": " + e.getResponseBodyAsString(), retryable, e);
+        } catch (ResourceAccessException e) {
+            if (isConnectFailure(e)) {
+                throw new PaymentGatewayException("Falha de conexão: " + e.getMessage(), true, e);
             }
+            throw new PaymentGatewayException("Sem resposta após o envio da cobrança INV-" + invoice.getId()
+                    + " (verificar no gateway antes de reenviar): " + e.getMessage(), false, true, e);
+        } catch (RestClientException e) {
+            throw new PaymentGatewayException("Resposta inválida: " + e.getMessage(), false, e);
+        }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Object> data = (Map<String, Object>) response.get("data");
-            if (data == null) {
-                log.warn("[AbacatePay] Campo 'data' ausente na resposta para fatura #{}", invoice.getId());
-                return Optional.empty();
-            }
+        if (response == null) {
+            // 2xx sem corpo: a cobrança pode ter sido criada — reenviar às cegas pode duplicá-la
+            throw new PaymentGatewayException("Resposta vazia para a cobrança INV-" + invoice.getId()
+                    + " (verificar no gateway antes de reenviar)", false, true, null);
+        }
 
-            String externalId  = String.valueOf(data.getOrDefault("id", ""));
-            String paymentLink = String.valueOf(data.getOrDefault("url", ""));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> data = (Map<String, Object>) response.get("data");
+        if (data == null || data.get("id") == null) {
+            throw new PaymentGatewayException("Campo 'data.id' ausente na resposta: " + response.get("error"), false);
+        }
 
-            // QR Code PIX pode vir aninhado em methods[0].pixQrCode dependendo da versão da API
-            String pixQrCode = extractPixQrCode(data);
+        String externalId  = String.valueOf(data.get("id"));
+        String paymentLink = String.valueOf(data.getOrDefault("url", ""));
 
-            log.info("[AbacatePay] Cobrança gerada com sucesso. externalId={} fatura=#{}",
-                    externalId, invoice.getId());
+        // QR Code PIX pode vir aninhado em methods[0].pixQrCode dependendo da versão da API
+        String pixQrCode = extractPixQrCode(data);
 
-            return Optional.of(new PixChargeResult(externalId, paymentLink, pixQrCode));
+        log.debug("[AbacatePay] Cobrança gerada com sucesso. externalId={} fatura=#{}",
+                externalId, invoice.getId());
 
-        } catch (Exception e) {
-            // Fail-safe: gateway indisponível não deve impedir a geração da fatura
-            log.error("[AbacatePay] Falha ao gerar cobrança PIX para fatura #{}: {}",
-                    invoice.getId(), e.getMessage(), e);
-            return Optional.empty();
+        return Optional.of(new PixChargeResult(externalId, paymentLink, pixQrCode));
+    }
+
+    /**
+     * Falha antes de a requisição sair (conexão recusada, timeout de conexão, host
+     * inexistente): o gateway não recebeu nada e é seguro tentar de novo.
+     */
+    private static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException
+                    || cause instanceof HttpConnectTimeoutException
+                    || cause instanceof UnknownHostException
+                    || cause instanceof NoRouteToHostException) {
+                return true;
+            }
         }
+        return false;
     }
 
     @SuppressWarnings("unchecked")
@@ -139,4 +198,3 @@ public class AbacatePayAdapter implements PaymentGatewayPort {
         return null;
     }
 }
-
@@ -14,17 +14,27 @@ import java.util.Optional;
  *
  * Regra de Ouro (NON-NEGOTIABLE):
  *  - Nunca chamar este método dentro de um @Transactional aberto.
- *  - O BillingService salva a fatura, encerra a transação e então publica
- *    o InvoiceCreatedEvent. O listener chama este método fora da transação.
+ *  - O BillingInvoiceCreator salva a fatura e a coloca na fila (payment_link_queue)
+ *    na mesma transação. O PaymentLinkDispatcher chama este método fora da transação,
+ *    com taxa e concorrência limitadas.
  */
 public interface PaymentGatewayPort {
 
     /**
      * Gera uma cobrança PIX para a fatura informada.
      *
-     * @param invoice  Entidade persistida (já tem ID e valor definidos)
-     * @return         Optional vazio se o gateway estiver indisponível (fail-safe)
+     * @param invoice  Entidade persistida (já tem ID e valor definidos; customer carregado)
+     * @return         Optional vazio se a integração estiver desabilitada
+     * @throws br.com.mikrotik.shared.infrastructure.exception.PaymentGatewayException
+     *         falha do gateway; {@code isRetryable()} indica se vale tentar de novo
      */
     Optional<PixChargeResult> generatePixCharge(Invoice invoice);
+
+    /**
+     * false = integração desabilitada; faturas não entram na fila de cobrança.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
 }
 
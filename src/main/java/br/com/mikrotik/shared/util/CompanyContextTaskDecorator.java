@@ -0,0 +1,25 @@
+package br.com.mikrotik.shared.util;
+
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * Propaga o CompanyContextHolder da thread que submete a tarefa para a thread do pool.
+ *
+ * O ID da empresa é capturado no momento da submissão e limpo ao fim da tarefa:
+ * uma thread reaproveitada nunca herda a empresa da tarefa anterior.
+ */
+public class CompanyContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        Long companyId = CompanyContextHolder.getCompanyId();
+        return () -> {
+            CompanyContextHolder.setCompanyId(companyId);
+            try {
+                runnable.run();
+            } finally {
+                CompanyContextHolder.clear();
+            }
+        };
+    }
+}
@@ -0,0 +1,40 @@
+package br.com.mikrotik.shared.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitador de taxa por espaçamento: libera no máximo {@code permitsPerSecond} permissões
+ * por segundo, uma a cada 1/permitsPerSecond, sem rajadas. Compartilhado entre threads;
+ * quem chega antes do próximo horário livre reserva o horário e dorme até ele.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos = System.nanoTime();
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond deve ser positivo: " + permitsPerSecond);
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+    }
+
+    /**
+     * Bloqueia até a próxima permissão.
+     *
+     * @throws InterruptedException thread interrompida durante a espera (a permissão é perdida)
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        long slot = Math.max(now, nextFreeNanos);
+        nextFreeNanos = slot + intervalNanos;
+        return slot - now;
+    }
+}
@@ -0,0 +1,6 @@
+-- V10: invoices passa a usar o gerador por tabela (id_generator, criado na V6)
+-- O faturamento mensal insere as faturas de cada bloco de contratos num único lote;
+-- com IDENTITY cada INSERT era um round-trip. Mesma semente da V6: primeiro ID novo = MAX(id) + 2.
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'invoices', COALESCE(MAX(id), 0) + 51 FROM invoices;
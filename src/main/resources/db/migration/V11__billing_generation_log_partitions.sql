@@ -0,0 +1,8 @@
+-- V11: Faturamento particionado — uma linha de billing_generation_log por partição
+-- A execução mensal divide cada empresa em faixas de ID de contrato processadas em paralelo.
+-- Cada partição grava sua própria linha; execuções antigas (empresa inteira) ficam com a faixa nula.
+
+ALTER TABLE billing_generation_log
+    ADD COLUMN partition_start_id BIGINT NULL COMMENT 'Faixa de contratos: id > partition_start_id (nulo = empresa inteira)' AFTER triggered_by,
+    ADD COLUMN partition_end_id   BIGINT NULL COMMENT 'Faixa de contratos: id <= partition_end_id (nulo = sem limite)' AFTER partition_start_id,
+    ADD COLUMN duration_ms        BIGINT NULL COMMENT 'Duração da partição em milissegundos' AFTER error_details;
@@ -0,0 +1,13 @@
+-- V12: Checkpoint do faturamento em billing_generation_log
+-- Cada partição é gravada como PENDING antes de executar e atualizada a cada bloco confirmado
+-- (último contrato processado + contadores). Após uma queda, as partições PENDING/RUNNING do
+-- mês corrente são retomadas a partir de last_contract_id — só o que faltava é relido.
+-- Linhas anteriores a esta migração são execuções já encerradas: ficam COMPLETED.
+
+ALTER TABLE billing_generation_log
+    ADD COLUMN phase            VARCHAR(20) NOT NULL DEFAULT 'COMPLETED' COMMENT 'PENDING, RUNNING, COMPLETED, FAILED ou EXPIRED' AFTER partition_end_id,
+    ADD COLUMN last_contract_id BIGINT      NULL     COMMENT 'Checkpoint: último contrato do último bloco confirmado' AFTER phase,
+    ADD COLUMN attempts         INT         NOT NULL DEFAULT 0 COMMENT 'Execuções da partição (1 + retomadas)' AFTER last_contract_id,
+    ADD COLUMN heartbeat_at     DATETIME    NULL     COMMENT 'Atualizado a cada bloco; parado há muito tempo = partição órfã' AFTER executed_at,
+    ADD COLUMN finished_at      DATETIME    NULL     AFTER heartbeat_at,
+    ADD INDEX idx_blg_month_phase (reference_month, phase);
@@ -0,0 +1,19 @@
+-- V13: Fila persistente de geração de links de pagamento (AbacatePay)
+-- Uma linha por fatura sem cobrança, gravada na mesma transação da fatura. O dispatcher
+-- consome a fila respeitando a cota do gateway (taxa e concorrência configuráveis) e
+-- remove a linha quando o link é gravado; falha → nova tentativa com backoff e jitter.
+-- A varredura recoloca na fila faturas PENDING sem external_id que ficaram de fora.
+
+CREATE TABLE IF NOT EXISTS payment_link_queue (
+    invoice_id       BIGINT       NOT NULL PRIMARY KEY,
+    company_id       BIGINT       NOT NULL,
+    status           VARCHAR(20)  NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING ou FAILED',
+    attempts         INT          NOT NULL DEFAULT 0,
+    last_error       TEXT         NULL,
+    next_attempt_at  DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT 'Também usado como lease da tentativa em curso',
+    created_at       DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at       DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    INDEX idx_plq_status_next (status, next_attempt_at),
+    FOREIGN KEY (invoice_id) REFERENCES invoices(id) ON DELETE CASCADE
+) COMMENT = 'Faturas aguardando cobrança PIX no gateway de pagamento';
@@ -0,0 +1,26 @@
+-- V14: Uma fatura por contrato e mês de referência
+-- A verificação de idempotência do faturamento (fatura já existe no mês?) é feita antes do
+-- INSERT; duas execuções da mesma partição (ex: retomada de uma partição que ainda estava
+-- viva) podiam faturar o mesmo contrato duas vezes. A chave única fecha a corrida no banco.
+--
+-- Limpeza antes da chave: em cada grupo duplicado fica a fatura com pagamento registrado
+-- (transactions) ou, se nenhuma tiver, a de menor ID. As demais são removidas somente se não
+-- tiverem pagamento — financial_entries fica com invoice_id nulo e a fila de cobrança é
+-- removida em cascata. Duplicatas com pagamento nas duas faturas exigem estorno manual:
+-- nesse caso a criação da chave falha e a migração deve ser reexecutada após o ajuste.
+
+DELETE i FROM invoices i
+JOIN (
+    SELECT inv.contract_id,
+           inv.reference_month,
+           COALESCE(MIN(CASE WHEN paid.invoice_id IS NOT NULL THEN inv.id END), MIN(inv.id)) AS keep_id
+    FROM invoices inv
+    LEFT JOIN (SELECT DISTINCT invoice_id FROM transactions) paid ON paid.invoice_id = inv.id
+    GROUP BY inv.contract_id, inv.reference_month
+    HAVING COUNT(*) > 1
+) dup ON dup.contract_id = i.contract_id AND dup.reference_month = i.reference_month
+WHERE i.id <> dup.keep_id
+  AND NOT EXISTS (SELECT 1 FROM transactions t WHERE t.invoice_id = i.id);
+
+ALTER TABLE invoices
+    ADD UNIQUE KEY uk_invoices_contract_month (contract_id, reference_month);
@@ -0,0 +1,24 @@
+-- V4: Outbox de comandos para os concentradores Mikrotik
+-- Uma linha por usuário PPPoE com o ESTADO DESEJADO no router. Gravada na mesma
+-- transação da mudança do contrato; intenções seguidas do mesmo usuário sobrescrevem
+-- a linha (coalescência). O dispatcher aplica em lote por router e remove a linha.
+
+CREATE TABLE IF NOT EXISTS router_command_outbox (
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+    company_id          BIGINT       NOT NULL,
+    pppoe_user_id       BIGINT       NOT NULL,
+    mikrotik_server_id  BIGINT       NOT NULL,
+    contract_id         BIGINT       NULL,
+    desired_state       VARCHAR(20)  NOT NULL COMMENT 'ACTIVE, BLOCKED ou DELETED',
+    pppoe_profile_id    BIGINT       NULL     COMMENT 'Perfil a aplicar em ACTIVE (NULL = perfil atual do usuário)',
+    revision            BIGINT       NOT NULL DEFAULT 1 COMMENT 'Incrementada a cada nova intenção',
+    status              VARCHAR(20)  NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING ou FAILED (desistiu após máximo de tentativas)',
+    attempts            INT          NOT NULL DEFAULT 0,
+    last_error          TEXT         NULL,
+    next_attempt_at     DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_at          DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at          DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_rco_pppoe_user (pppoe_user_id),
+    INDEX idx_rco_due (status, next_attempt_at)
+) COMMENT = 'Estado desejado pendente por usuário PPPoE (outbox transacional)';
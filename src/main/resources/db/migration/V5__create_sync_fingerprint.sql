@@ -0,0 +1,17 @@
+-- V5: Fingerprints da última sincronização por servidor
+-- Um hash por secret/profile do router, gravado ao fim de cada sincronização completa.
+-- O modo incremental compara o snapshot do router com estes hashes e só processa
+-- os itens adicionados ou alterados.
+
+CREATE TABLE IF NOT EXISTS sync_fingerprint (
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+    company_id          BIGINT       NOT NULL,
+    mikrotik_server_id  BIGINT       NOT NULL,
+    item_type           VARCHAR(20)  NOT NULL COMMENT 'SECRET ou PROFILE',
+    name                VARCHAR(255) NOT NULL COMMENT 'Nome do secret/profile no router',
+    fingerprint         CHAR(64)     NOT NULL COMMENT 'SHA-256 dos campos relevantes para a sincronização',
+    updated_at          DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_sf_server_item (mikrotik_server_id, item_type, name),
+    FOREIGN KEY (mikrotik_server_id) REFERENCES mikrotik_servers(id) ON DELETE CASCADE
+) COMMENT = 'Hash por item do router na última sincronização (modo incremental do full-sync)';
@@ -0,0 +1,26 @@
+-- V6: Alocação de IDs em blocos para customers, addresses, service_plans e contracts
+-- Com IDENTITY o Hibernate precisa do INSERT imediato para conhecer o ID e não agrupa
+-- inserts em lote. Com o gerador por tabela, cada instância reserva 50 IDs por vez
+-- (otimizador pooled) e os inserts saem em JDBC batch.
+--
+-- next_val é o limite superior do próximo bloco: o primeiro bloco vai de
+-- next_val - 49 até next_val. Semente = MAX(id) + 51 → primeiro ID novo = MAX(id) + 2.
+-- As colunas continuam AUTO_INCREMENT, mas inserts manuais nessas tabelas devem informar
+-- o ID ou reservar um bloco aqui: o AUTO_INCREMENT pode cair dentro de um bloco já reservado.
+
+CREATE TABLE IF NOT EXISTS id_generator (
+    sequence_name  VARCHAR(64) NOT NULL PRIMARY KEY,
+    next_val       BIGINT      NOT NULL
+) COMMENT = 'Blocos de IDs do Hibernate (TableGenerator, allocationSize = 50)';
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'customers', COALESCE(MAX(id), 0) + 51 FROM customers;
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'addresses', COALESCE(MAX(id), 0) + 51 FROM addresses;
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'service_plans', COALESCE(MAX(id), 0) + 51 FROM service_plans;
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'contracts', COALESCE(MAX(id), 0) + 51 FROM contracts;
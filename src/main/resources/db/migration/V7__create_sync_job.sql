@@ -0,0 +1,28 @@
+-- V7: Jobs assíncronos de sincronização completa
+-- Cada job percorre as fases em blocos de N itens, um bloco por transação. O progresso
+-- (fase, cursor, contadores e resultado parcial) é gravado na MESMA transação do bloco:
+-- após uma queda, o job é retomado a partir do último bloco confirmado.
+
+CREATE TABLE IF NOT EXISTS sync_job (
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+    company_id          BIGINT       NOT NULL,
+    mikrotik_server_id  BIGINT       NOT NULL,
+    status              VARCHAR(20)  NOT NULL DEFAULT 'PENDING' COMMENT 'PENDING, RUNNING, COMPLETED, FAILED ou CANCELED',
+    phase               VARCHAR(20)  NOT NULL DEFAULT 'PROFILES' COMMENT 'Fase corrente (PROFILES → ... → FINALIZING)',
+    cursor_key          VARCHAR(255) NULL     COMMENT 'Último item confirmado na fase (nome ou ID)',
+    processed           INT          NOT NULL DEFAULT 0 COMMENT 'Itens confirmados na fase corrente',
+    total               INT          NOT NULL DEFAULT 0 COMMENT 'Itens da fase corrente',
+    config_json         TEXT         NOT NULL COMMENT 'FullSyncConfigDTO da execução',
+    state_json          MEDIUMTEXT   NULL     COMMENT 'Resultado parcial e itens pendentes (JSON)',
+    cancel_requested    BOOLEAN      NOT NULL DEFAULT FALSE,
+    error_message       TEXT         NULL,
+    attempts            INT          NOT NULL DEFAULT 0 COMMENT 'Execuções (1 + retomadas)',
+    created_at          DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    started_at          DATETIME     NULL,
+    heartbeat_at        DATETIME     NULL     COMMENT 'Atualizado a cada bloco; parado há muito tempo = job órfão',
+    finished_at         DATETIME     NULL,
+
+    INDEX idx_sj_company (company_id, id),
+    INDEX idx_sj_server_status (mikrotik_server_id, status),
+    INDEX idx_sj_status_heartbeat (status, heartbeat_at)
+) COMMENT = 'Jobs assíncronos de sincronização completa (progresso por bloco confirmado)';
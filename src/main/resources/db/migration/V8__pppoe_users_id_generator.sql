@@ -0,0 +1,6 @@
+-- V8: pppoe_users passa a usar o gerador por tabela (id_generator, criado na V6)
+-- A sincronização com o router insere milhares de secrets de uma vez; com IDENTITY
+-- cada INSERT era um round-trip. Mesma semente da V6: primeiro ID novo = MAX(id) + 2.
+
+INSERT INTO id_generator (sequence_name, next_val)
+SELECT 'pppoe_users', COALESCE(MAX(id), 0) + 51 FROM pppoe_users;
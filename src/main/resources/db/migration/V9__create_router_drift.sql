@@ -0,0 +1,25 @@
+-- V9: Divergências entre o router e o banco (detector de drift)
+-- Uma linha por (servidor, usuário, tipo de divergência). O detector compara periodicamente
+-- um /ppp secret print de cada servidor com pppoe_users e mantém esta tabela atualizada:
+-- divergência nova → OPEN; corrigida pelo detector → HEALED; desapareceu → RESOLVED.
+-- Senhas nunca são gravadas: PASSWORD guarda apenas prefixos do SHA-256.
+
+CREATE TABLE IF NOT EXISTS router_drift (
+    id                  BIGINT AUTO_INCREMENT PRIMARY KEY,
+    company_id          BIGINT       NOT NULL,
+    mikrotik_server_id  BIGINT       NOT NULL,
+    pppoe_user_id       BIGINT       NULL     COMMENT 'Nulo para secrets que só existem no router',
+    username            VARCHAR(255) NOT NULL,
+    drift_type          VARCHAR(20)  NOT NULL COMMENT 'PROFILE, DISABLED, PASSWORD, MISSING_ON_ROUTER ou MISSING_IN_DB',
+    expected_value      VARCHAR(255) NULL     COMMENT 'Valor segundo o banco',
+    router_value        VARCHAR(255) NULL     COMMENT 'Valor encontrado no router',
+    status              VARCHAR(20)  NOT NULL DEFAULT 'OPEN' COMMENT 'OPEN, HEALED ou RESOLVED',
+    last_error          TEXT         NULL     COMMENT 'Falha da última tentativa de correção automática',
+    detected_at         DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_seen_at        DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    resolved_at         DATETIME     NULL,
+
+    UNIQUE KEY uk_rd_server_user_type (mikrotik_server_id, username, drift_type),
+    INDEX idx_rd_company_status (company_id, status, id),
+    FOREIGN KEY (mikrotik_server_id) REFERENCES mikrotik_servers(id) ON DELETE CASCADE
+) COMMENT = 'Divergências router x banco detectadas em segundo plano';
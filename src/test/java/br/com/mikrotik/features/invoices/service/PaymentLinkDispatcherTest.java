@@ -0,0 +1,336 @@
+package br.com.mikrotik.features.invoices.service;
+
+import br.com.mikrotik.features.invoices.model.Invoice;
+import br.com.mikrotik.features.invoices.model.PaymentLinkQueue;
+import br.com.mikrotik.features.invoices.model.PaymentLinkQueue.Status;
+import br.com.mikrotik.features.invoices.repository.InvoiceRepository;
+import br.com.mikrotik.features.invoices.repository.PaymentLinkQueueRepository;
+import br.com.mikrotik.shared.infrastructure.payment.AbacatePayAdapter;
+import br.com.mikrotik.shared.infrastructure.payment.PaymentGatewayPort;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dispatcher com o AbacatePayAdapter real contra um gateway local (HttpServer) e a fila
+ * em memória reproduzindo as consultas do PaymentLinkQueueRepository (findDue/claim/markFailed).
+ */
+class PaymentLinkDispatcherTest {
+
+    private static final long BASE_DELAY_MS = 10_000;
+    private static final long LEASE_MS = 300_000;
+    private static final long SWEEP_GRACE_MS = 600_000;
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile long delayMs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<Long> arrivals = new CopyOnWriteArrayList<>();
+    private final List<Integer> claimsDuringCall = new CopyOnWriteArrayList<>();
+
+    private final Map<Long, PaymentLinkQueue> queue = new ConcurrentHashMap<>();
+    private final Map<Long, String> links = new ConcurrentHashMap<>();
+    private final AtomicReference<LocalDateTime> sweptBefore = new AtomicReference<>();
+    private final PaymentLinkQueueRepository queueRepository = mock(PaymentLinkQueueRepository.class);
+    private final InvoiceRepository invoiceRepository = mock(InvoiceRepository.class);
+    private ThreadPoolTaskExecutor paymentLinkExecutor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/billing/create", exchange -> {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            arrivals.add(System.nanoTime());
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                // Outra instância tentando assumir a mesma fatura durante a chamada
+                long invoiceId = Long.parseLong(request.replaceAll("(?s).*\"INV-(\\d+)\".*", "$1"));
+                LocalDateTime now = LocalDateTime.now();
+                claimsDuringCall.add(queueRepository.claim(invoiceId, now, now.plusMinutes(5)));
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
+                byte[] bytes = ("{\"data\":{\"id\":\"bill_" + invoiceId + "\",\"url\":\"https://pay.example/"
+                        + invoiceId + "\"}}").getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+        fakeRepositories();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        if (paymentLinkExecutor != null) {
+            paymentLinkExecutor.shutdown();
+        }
+    }
+
+    // ─── FILA EM MEMÓRIA ────────────────────────────────────────────────────────
+
+    private void fakeRepositories() {
+        when(queueRepository.findDue(any(), any())).thenAnswer(invocation -> {
+            LocalDateTime now = invocation.getArgument(0);
+            return queue.values().stream()
+                    .filter(entry -> entry.getStatus() == Status.PENDING && !entry.getNextAttemptAt().isAfter(now))
+                    .map(PaymentLinkDispatcherTest::copy)
+                    .toList();
+        });
+        when(queueRepository.claim(anyLong(), any(), any())).thenAnswer(invocation -> {
+            PaymentLinkQueue entry = queue.get(invocation.<Long>getArgument(0));
+            LocalDateTime now = invocation.getArgument(1);
+            synchronized (queue) {
+                if (entry == null || entry.getStatus() != Status.PENDING || entry.getNextAttemptAt().isAfter(now)) {
+                    return 0;
+                }
+                entry.setNextAttemptAt(invocation.getArgument(2));
+                return 1;
+            }
+        });
+        when(queueRepository.markFailed(anyLong(), anyInt(), anyString(), any(), any())).thenAnswer(invocation -> {
+            PaymentLinkQueue entry = queue.get(invocation.<Long>getArgument(0));
+            entry.setAttempts(invocation.getArgument(1));
+            entry.setLastError(invocation.getArgument(2));
+            entry.setNextAttemptAt(invocation.getArgument(3));
+            entry.setStatus(invocation.getArgument(4));
+            return 1;
+        });
+        when(queueRepository.deleteByInvoiceId(anyLong()))
+                .thenAnswer(invocation -> queue.remove(invocation.<Long>getArgument(0)) != null ? 1 : 0);
+        when(queueRepository.enqueueMissing(any())).thenAnswer(invocation -> {
+            sweptBefore.set(invocation.getArgument(0));
+            enqueue(21L, 22L);
+            return 2;
+        });
+
+        when(invoiceRepository.findByIdWithCustomer(anyLong())).thenAnswer(invocation -> {
+            long id = invocation.getArgument(0);
+            return Optional.of(Invoice.builder()
+                    .id(id)
+                    .customerId(5L)
+                    .description("Mensalidade Internet - 10/2026")
+                    .finalAmount(new BigDecimal("99.90"))
+                    .status(Invoice.InvoiceStatus.PENDING)
+                    .build());
+        });
+        when(invoiceRepository.updatePaymentLink(anyLong(), anyString(), anyString(), any())).thenAnswer(invocation -> {
+            links.put(invocation.getArgument(0), invocation.getArgument(2));
+            return 1;
+        });
+    }
+
+    private void enqueue(Long... invoiceIds) {
+        for (Long invoiceId : invoiceIds) {
+            PaymentLinkQueue entry = new PaymentLinkQueue();
+            entry.setInvoiceId(invoiceId);
+            entry.setCompanyId(1L);
+            entry.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            queue.putIfAbsent(invoiceId, entry);
+        }
+    }
+
+    private static PaymentLinkQueue copy(PaymentLinkQueue entry) {
+        PaymentLinkQueue copy = new PaymentLinkQueue();
+        copy.setInvoiceId(entry.getInvoiceId());
+        copy.setCompanyId(entry.getCompanyId());
+        copy.setStatus(entry.getStatus());
+        copy.setAttempts(entry.getAttempts());
+        copy.setNextAttemptAt(entry.getNextAttemptAt());
+        return copy;
+    }
+
+    // ─── DISPATCHER ─────────────────────────────────────────────────────────────
+
+    private PaymentLinkDispatcher dispatcher(int concurrency, double ratePerSecond, int maxAttempts, long readTimeoutMs) {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        return dispatcher(new AbacatePayAdapter(baseUrl, "key-test", true, 2000, readTimeoutMs),
+                concurrency, ratePerSecond, maxAttempts);
+    }
+
+    private PaymentLinkDispatcher dispatcher(PaymentGatewayPort gateway, int concurrency,
+                                             double ratePerSecond, int maxAttempts) {
+        paymentLinkExecutor = new ThreadPoolTaskExecutor();
+        paymentLinkExecutor.setCorePoolSize(concurrency);
+        paymentLinkExecutor.setMaxPoolSize(concurrency);
+        paymentLinkExecutor.setQueueCapacity(200);
+        paymentLinkExecutor.initialize();
+
+        // Ciclo na thread do teste: drain() retorna com a fila processada
+        PaymentLinkDispatcher dispatcher = new PaymentLinkDispatcher(queueRepository, invoiceRepository, gateway,
+                paymentLinkExecutor, Runnable::run, mock(PlatformTransactionManager.class), ratePerSecond);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 200);
+        ReflectionTestUtils.setField(dispatcher, "leaseMs", LEASE_MS);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", maxAttempts);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseDelayMs", BASE_DELAY_MS);
+        ReflectionTestUtils.setField(dispatcher, "retryMaxDelayMs", 1_800_000L);
+        ReflectionTestUtils.setField(dispatcher, "sweepGraceMs", SWEEP_GRACE_MS);
+        return dispatcher;
+    }
+
+    /** Simula a passagem do tempo até a próxima tentativa. */
+    private void makeDue(Long invoiceId) {
+        queue.get(invoiceId).setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+    }
+
+    @Test
+    void chargeIsStoredAndEntryRemovedUnderLease() {
+        PaymentLinkDispatcher dispatcher = dispatcher(2, 1000, 8, 2000);
+        enqueue(1L, 2L, 3L);
+
+        dispatcher.drain();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(Map.of(1L, "https://pay.example/1", 2L, "https://pay.example/2", 3L, "https://pay.example/3"), links);
+        // Durante a chamada ao gateway a entrada está sob lease: outra instância não a assume
+        assertEquals(List.of(0, 0, 0), claimsDuringCall);
+    }
+
+    @Test
+    void retryableFailureBacksOffWithJitterUntilFailed() {
+        PaymentLinkDispatcher dispatcher = dispatcher(1, 1000, 2, 2000);
+        status = 503;
+        enqueue(1L);
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.drain();
+        PaymentLinkQueue entry = queue.get(1L);
+        assertEquals(Status.PENDING, entry.getStatus());
+        assertEquals(1, entry.getAttempts());
+        // Equal jitter: entre metade e o atraso cheio da primeira tentativa
+        assertFalse(entry.getNextAttemptAt().isBefore(before.plus(Duration.ofMillis(BASE_DELAY_MS / 2))));
+        assertFalse(entry.getNextAttemptAt().isAfter(LocalDateTime.now().plus(Duration.ofMillis(BASE_DELAY_MS))));
+
+        // Antes do horário agendado a entrada não volta ao ciclo
+        dispatcher.drain();
+        assertEquals(1, arrivals.size());
+
+        makeDue(1L);
+        dispatcher.drain();
+        assertEquals(Status.FAILED, entry.getStatus());
+        assertEquals(2, entry.getAttempts());
+        assertTrue(entry.getLastError().contains("HTTP 503"));
+    }
+
+    @Test
+    void rejectedChargeFailsWithoutRetry() {
+        PaymentLinkDispatcher dispatcher = dispatcher(1, 1000, 8, 2000);
+        status = 400;
+        enqueue(1L);
+
+        dispatcher.drain();
+
+        assertEquals(Status.FAILED, queue.get(1L).getStatus());
+        assertEquals(1, queue.get(1L).getAttempts());
+    }
+
+    @Test
+    void missingResponseGoesToReconciliation() {
+        PaymentLinkDispatcher dispatcher = dispatcher(1, 1000, 8, 200);
+        delayMs = 1000;
+        enqueue(7L);
+
+        dispatcher.drain();
+
+        PaymentLinkQueue entry = queue.get(7L);
+        assertEquals(Status.RECONCILE, entry.getStatus());
+        assertTrue(entry.getLastError().contains("INV-7"));
+        assertTrue(links.isEmpty());
+    }
+
+    @Test
+    void emptyResultPostponesWithoutCountingAttempt() {
+        PaymentLinkDispatcher dispatcher = dispatcher(invoice -> Optional.empty(), 1, 1000, 8);
+        enqueue(1L);
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.drain();
+
+        PaymentLinkQueue entry = queue.get(1L);
+        assertEquals(Status.PENDING, entry.getStatus());
+        assertEquals(0, entry.getAttempts());
+        assertFalse(entry.getNextAttemptAt().isBefore(before.plus(Duration.ofMillis(BASE_DELAY_MS))));
+    }
+
+    @Test
+    void concurrencyIsCappedByExecutor() {
+        PaymentLinkDispatcher dispatcher = dispatcher(2, 1000, 8, 2000);
+        delayMs = 150;
+        enqueue(1L, 2L, 3L, 4L, 5L, 6L);
+
+        dispatcher.drain();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    void callsAreSpacedByRateLimit() {
+        PaymentLinkDispatcher dispatcher = dispatcher(4, 10, 8, 2000);
+        enqueue(1L, 2L, 3L, 4L, 5L);
+
+        dispatcher.drain();
+
+        assertTrue(queue.isEmpty());
+        // 10/s: uma chamada a cada 100ms, mesmo com 4 threads livres
+        List<Long> sorted = arrivals.stream().sorted().toList();
+        long elapsedMs = Duration.ofNanos(sorted.get(sorted.size() - 1) - sorted.get(0)).toMillis();
+        assertTrue(elapsedMs >= 350, "5 chamadas a 10/s levaram só " + elapsedMs + "ms");
+    }
+
+    @Test
+    void sweepRequeuesMissingInvoicesAndDrains() {
+        PaymentLinkDispatcher dispatcher = dispatcher(2, 1000, 8, 2000);
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatcher.sweepMissing();
+
+        // Só faturas criadas antes da carência; as recém-criadas ainda estão a caminho da fila
+        assertNotNull(sweptBefore.get());
+        assertFalse(sweptBefore.get().isAfter(before.minus(Duration.ofMillis(SWEEP_GRACE_MS)).plusSeconds(1)));
+        assertTrue(queue.isEmpty());
+        assertEquals(2, links.size());
+    }
+}
@@ -0,0 +1,58 @@
+package br.com.mikrotik.features.network.drift.service;
+
+import br.com.mikrotik.features.network.drift.model.RouterDrift.DriftType;
+import br.com.mikrotik.features.network.pppoe.dto.MikrotikPppoeUserDTO;
+import br.com.mikrotik.features.network.pppoe.model.PppoeUser;
+import br.com.mikrotik.features.network.pppoe.repository.PppoeUserRepository.DriftRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouterDriftServiceTest {
+
+    private static DriftRow row(long id, String username, String password) {
+        return new DriftRow() {
+            public Long getId() { return id; }
+            public String getUsername() { return username; }
+            public String getPassword() { return password; }
+            public Boolean getActive() { return true; }
+            public PppoeUser.UserStatus getStatus() { return PppoeUser.UserStatus.OFFLINE; }
+            public String getProfileName() { return "100M"; }
+        };
+    }
+
+    private static MikrotikPppoeUserDTO secret(String username, String password) {
+        return MikrotikPppoeUserDTO.builder()
+                .username(username)
+                .password(password)
+                .profile("100M")
+                .disabled(false)
+                .build();
+    }
+
+    @Test
+    void differentPasswordIsDrift() {
+        List<RouterDriftService.Finding> findings = RouterDriftService.compare(
+                List.of(secret("maria", "senha-router")), List.of(row(1L, "maria", "senha-banco")), Set.of());
+
+        assertEquals(1, findings.size());
+        assertEquals(DriftType.PASSWORD, findings.get(0).type());
+    }
+
+    @Test
+    void legacyBcryptPasswordIsNotDrift() {
+        String bcrypt = "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z4Zb1w3xXJ0V7aX5Qz0ZqK2y";
+
+        List<RouterDriftService.Finding> findings = RouterDriftService.compare(
+                List.of(secret("maria", "senha-router"), secret("joao", "outra")),
+                List.of(row(1L, "maria", bcrypt), row(2L, "joao", "$2b$12$abcdefghijklmnopqrstuv")),
+                Set.of());
+
+        // Nada a corrigir: enviar o hash ao router trocaria a senha real do cliente
+        assertTrue(findings.isEmpty());
+    }
+}
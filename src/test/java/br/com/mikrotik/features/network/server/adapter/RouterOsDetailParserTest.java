@@ -0,0 +1,82 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RouterOsDetailParserTest {
+
+    private static List<Map<String, String>> parse(String output) {
+        List<Map<String, String>> entries = new ArrayList<>();
+        RouterOsDetailParser parser = new RouterOsDetailParser(new RouterOsDetailParser.Handler() {
+            private Map<String, String> current;
+
+            @Override
+            public void startEntry(String flags) {
+                current = new LinkedHashMap<>();
+                current.put("flags", flags);
+            }
+
+            @Override
+            public void attribute(String key, String value) {
+                current.put(key, value);
+            }
+
+            @Override
+            public void endEntry() {
+                entries.add(current);
+            }
+        });
+        output.lines().forEach(parser::accept);
+        parser.finish();
+        return entries;
+    }
+
+    @Test
+    void multilineDetailWithFlagsAndComments() {
+        List<Map<String, String>> entries = parse("""
+                Flags: X - disabled
+                 0   name="user1" service=pppoe password="abc 123" profile=default
+                     routes="" limit-bytes-in=0
+                 1 X ;;; cliente rua das flores, 10
+                     name="user2" service=pppoe profile=BLOQUEADO
+                """);
+
+        assertEquals(2, entries.size());
+        assertEquals("", entries.get(0).get("flags"));
+        assertEquals("abc 123", entries.get(0).get("password"));
+        assertEquals("", entries.get(0).get("routes"));
+        assertEquals("0", entries.get(0).get("limit-bytes-in"));
+        assertEquals("X", entries.get(1).get("flags"));
+        assertEquals("cliente rua das flores, 10", entries.get(1).get("comment"));
+        assertEquals("BLOQUEADO", entries.get(1).get("profile"));
+    }
+
+    @Test
+    void escapedQuotesAndBackslashes() {
+        Map<String, String> entry = parse("""
+                 0   name="joao" password="a\\"b\\\\c" caller-id=""
+                """).get(0);
+
+        assertEquals("a\"b\\c", entry.get("password"));
+        assertEquals("", entry.get("caller-id"));
+    }
+
+    @Test
+    void hexEscapesAreDecodedAsUtf8() {
+        List<Map<String, String>> entries = parse("""
+                 0   ;;; Jos\\C3\\A9 Concei\\C3\\A7\\C3\\A3o
+                     name="jose" comment2="S\\C3\\A3o Jo\\C3\\A3o" profile=plano\\C3\\A9
+                """);
+
+        Map<String, String> entry = entries.get(0);
+        assertEquals("José Conceição", entry.get("comment"));
+        assertEquals("São João", entry.get("comment2"));
+        assertEquals("planoé", entry.get("profile"));
+    }
+}
@@ -0,0 +1,61 @@
+package br.com.mikrotik.features.network.server.adapter;
+
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
+import me.legrange.mikrotik.ApiConnection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RouterOsIdIndexTest {
+
+    private final RouterEndpoint endpoint = RouterEndpoint.of("10.0.0.1", 8728, "admin", "secret");
+    private final RouterOsVersionDetector versionDetector = mock(RouterOsVersionDetector.class);
+    private final ApiConnection connection = mock(ApiConnection.class);
+    private final RouterOsIdIndex idIndex = new RouterOsIdIndex(versionDetector);
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void router() throws Exception {
+        when(versionDetector.supportsServerSideQuery(any(), any())).thenReturn(true);
+        when(connection.execute(anyString())).thenAnswer(invocation -> {
+            String command = invocation.getArgument(0);
+            commands.add(command);
+            // Filtro do servidor é exato (diferencia maiúsculas); o print completo devolve tudo
+            if (command.equals("/ppp/secret/print where name=\"joao\" return .id,name")) {
+                return List.of(Map.of(".id", "*2", "name", "joao"));
+            }
+            if (command.equals("/ppp/secret/print return .id,name")) {
+                return List.of(Map.of(".id", "*1", "name", "Maria"), Map.of(".id", "*2", "name", "joao"));
+            }
+            return List.of();
+        });
+    }
+
+    @Test
+    void exactMatchUsesServerSideQuery() throws Exception {
+        assertEquals("*2", idIndex.resolve(connection, endpoint, Table.SECRET, "joao"));
+        assertEquals(List.of("/ppp/secret/print where name=\"joao\" return .id,name"), commands);
+    }
+
+    @Test
+    void caseMismatchFallsBackToFullReload() throws Exception {
+        assertEquals("*1", idIndex.resolve(connection, endpoint, Table.SECRET, "MARIA"));
+        assertEquals("/ppp/secret/print return .id,name", commands.get(commands.size() - 1));
+    }
+
+    @Test
+    void quotesInNameDoNotBreakTheQuery() throws Exception {
+        assertNull(idIndex.resolve(connection, endpoint, Table.SECRET, "jo\"ao"));
+        assertEquals("/ppp/secret/print where name='jo\"ao' return .id,name", commands.get(0));
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.mikrotik.features.network.server.service;
+
+import br.com.mikrotik.features.network.server.adapter.RouterEndpoint;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex;
+import br.com.mikrotik.features.network.server.adapter.RouterOsIdIndex.Table;
+import br.com.mikrotik.features.network.server.adapter.RouterOsVersionDetector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ActiveSessionMonitorTest {
+
+    private final RouterEndpoint endpoint = RouterEndpoint.of("10.0.0.1", 8728, "admin", "secret");
+    private final RouterOsIdIndex idIndex = new RouterOsIdIndex(new RouterOsVersionDetector());
+    private final ActiveSessionMonitor.LiveSessions sessions = new ActiveSessionMonitor.LiveSessions(endpoint, idIndex);
+
+    private static Map<String, String> session(String id, String name) {
+        return Map.of(".id", id, "name", name, "address", "100.64.0.10", "uptime", "1h2m3s");
+    }
+
+    private static Map<String, String> dead(String id, String flag) {
+        return Map.of(".id", id, ".dead", flag);
+    }
+
+    @Test
+    void deadEventRemovesSession() {
+        sessions.beginResync();
+        sessions.completeResync(List.of(session("*1", "Maria"), session("*2", "joao")));
+
+        sessions.receive(dead("*1", "yes"));
+        sessions.receive(dead("*2", "true"));
+
+        assertEquals(0, sessions.size());
+        assertNull(sessions.getSession("maria"));
+        assertNull(idIndex.peek(endpoint, Table.ACTIVE, "Maria"));
+    }
+
+    @Test
+    void eventsDuringResyncAreReplayedOnSnapshot() {
+        sessions.beginResync();
+        sessions.completeResync(List.of(session("*1", "antigo")));
+
+        // listen reiniciado: eventos chegam antes da resposta do print
+        sessions.beginResync();
+        sessions.receive(session("*3", "novo"));
+        sessions.receive(dead("*2", "yes"));
+        assertNotNull(sessions.getSession("antigo"), "cache em uso não é esvaziado durante a ressincronização");
+
+        sessions.completeResync(List.of(session("*2", "saindo")));
+
+        assertEquals(1, sessions.size());
+        assertNull(sessions.getSession("antigo"));
+        assertNull(sessions.getSession("saindo"));
+        assertEquals("100.64.0.10", sessions.getSession("NOVO").get("address"));
+        assertEquals("*3", idIndex.peek(endpoint, Table.ACTIVE, "novo"));
+    }
+
+    @Test
+    void uptimeParsing() {
+        assertEquals(3723, ActiveSessionMonitor.parseDurationSeconds("1h2m3s"));
+        assertEquals(97_445, ActiveSessionMonitor.parseDurationSeconds("1d 03:04:05"));
+        assertEquals("1h2m3s", ActiveSessionMonitor.formatDuration(3723));
+    }
+}
@@ -0,0 +1,84 @@
+package br.com.mikrotik.features.sync.parser;
+
+import br.com.mikrotik.features.sync.dto.CustomerInfoParseResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CustomerInfoParserTest {
+
+    private static final String NULL = "<null>";
+
+    private final CommentParsingProperties properties = new CommentParsingProperties();
+    private final CustomerInfoParser parser = new CustomerInfoParser(properties);
+
+    @Test
+    void corpusMatchesRecordedOutput() throws IOException {
+        List<String[]> corpus = loadCorpus();
+        assertFalse(corpus.isEmpty());
+
+        for (String[] row : corpus) {
+            CustomerInfoParseResult result = parser.parse(1L, value(row[0]), value(row[1]));
+            String context = "username=" + row[0] + " comment=" + row[1];
+            assertEquals(value(row[2]), result.getCustomerName(), context);
+            assertEquals(value(row[3]), result.getAddress(), context);
+            assertEquals(value(row[4]), result.getAddressNumber(), context);
+            assertEquals(value(row[5]), result.getNeighborhood(), context);
+            assertEquals(value(row[6]), result.getPhone(), context);
+        }
+    }
+
+    @Test
+    void parseAllKeepsInputOrderWhenParallel() throws IOException {
+        properties.setParallelThreshold(1);
+        List<String[]> corpus = loadCorpus();
+        List<CustomerInfoParser.Input> inputs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            corpus.forEach(row -> inputs.add(new CustomerInfoParser.Input(value(row[0]), value(row[1]))));
+        }
+
+        List<CustomerInfoParseResult> results = parser.parseAll(1L, inputs);
+
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(value(corpus.get(i % corpus.size())[2]), results.get(i).getCustomerName());
+        }
+    }
+
+    @Test
+    void companyRulesReplaceDefaultOrder() {
+        properties.setCompanies(Map.of(7L, List.of(CommentRule.CPF, CommentRule.NUMBER)));
+
+        CustomerInfoParseResult custom = parser.parse(7L, "pedro", "av brasil, 200 centro 75999887766");
+        CustomerInfoParseResult standard = parser.parse(1L, "pedro", "av brasil, 200 centro 75999887766");
+
+        assertNull(custom.getPhone());
+        assertEquals("75999887766", standard.getPhone());
+        assertEquals("200", custom.getAddressNumber());
+    }
+
+    private static List<String[]> loadCorpus() throws IOException {
+        try (InputStream in = CustomerInfoParserTest.class.getResourceAsStream("/sync/comment-corpus.tsv")) {
+            List<String[]> rows = new ArrayList<>();
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    rows.add(line.split("\t", -1));
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static String value(String field) {
+        return NULL.equals(field) ? null : field;
+    }
+}
@@ -0,0 +1,176 @@
+package br.com.mikrotik.shared.infrastructure.payment;
+
+import br.com.mikrotik.features.invoices.model.Invoice;
+import br.com.mikrotik.shared.infrastructure.exception.PaymentGatewayException;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AbacatePayAdapterTest {
+
+    private static final String CHARGE = """
+            {"data":{"id":"bill_123","url":"https://pay.example/bill_123",
+                     "methods":[{"pixQrCode":"000201PIX"}]},"error":null}""";
+
+    private HttpServer server;
+    private volatile int status = 200;
+    private volatile String body = CHARGE;
+    private volatile long delayMs;
+    private final List<String> authorizations = new CopyOnWriteArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/billing/create", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    private AbacatePayAdapter adapter() {
+        return adapter(2000);
+    }
+
+    private AbacatePayAdapter adapter(long readTimeoutMs) {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        return new AbacatePayAdapter(baseUrl, "key-test", true, 2000, readTimeoutMs);
+    }
+
+    private static Invoice invoice(long id) {
+        return Invoice.builder()
+                .id(id)
+                .customerId(5L)
+                .description("Mensalidade Internet - 10/2026")
+                .finalAmount(new BigDecimal("99.90"))
+                .build();
+    }
+
+    @Test
+    void parsesChargeAndReusesConnection() {
+        AbacatePayAdapter adapter = adapter();
+
+        Optional<PixChargeResult> first = adapter.generatePixCharge(invoice(1L));
+        adapter.generatePixCharge(invoice(2L));
+        adapter.generatePixCharge(invoice(3L));
+
+        assertTrue(first.isPresent());
+        assertEquals("bill_123", first.get().externalId());
+        assertEquals("https://pay.example/bill_123", first.get().paymentLink());
+        assertEquals("000201PIX", first.get().pixQrCode());
+        assertEquals(List.of("Bearer key-test", "Bearer key-test", "Bearer key-test"), authorizations);
+        assertEquals(1, clientPorts.size(), "requisições sequenciais devem reaproveitar a conexão keep-alive");
+    }
+
+    @Test
+    void serverErrorAndThrottlingAreRetryable() {
+        AbacatePayAdapter adapter = adapter();
+
+        status = 503;
+        body = "{\"error\":\"unavailable\"}";
+        assertTrue(assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(1L))).isRetryable());
+
+        status = 429;
+        assertTrue(assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(1L))).isRetryable());
+    }
+
+    @Test
+    void rejectedChargeIsNotRetryable() {
+        AbacatePayAdapter adapter = adapter();
+
+        status = 400;
+        body = "{\"error\":\"invalid taxId\"}";
+        PaymentGatewayException rejected = assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(1L)));
+        assertFalse(rejected.isRetryable());
+        assertTrue(rejected.getMessage().contains("invalid taxId"));
+
+        status = 200;
+        body = "{\"data\":null,\"error\":\"customer not found\"}";
+        assertFalse(assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(1L))).isRetryable());
+    }
+
+    @Test
+    void unreachableGatewayIsRetryable() {
+        AbacatePayAdapter adapter = adapter();
+        server.stop(0);
+
+        PaymentGatewayException refused = assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(1L)));
+        assertTrue(refused.isRetryable());
+        assertFalse(refused.isOutcomeUnknown());
+    }
+
+    @Test
+    void readTimeoutAfterSendNeedsReconciliation() {
+        AbacatePayAdapter adapter = adapter(200);
+        delayMs = 1000;
+
+        PaymentGatewayException timeout = assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(7L)));
+        assertFalse(timeout.isRetryable(), "POST já enviado não pode ser reenviado às cegas");
+        assertTrue(timeout.isOutcomeUnknown());
+        assertTrue(timeout.getMessage().contains("INV-7"));
+    }
+
+    @Test
+    void emptySuccessBodyNeedsReconciliation() {
+        AbacatePayAdapter adapter = adapter();
+        body = "";
+
+        PaymentGatewayException empty = assertThrows(PaymentGatewayException.class,
+                () -> adapter.generatePixCharge(invoice(9L)));
+        assertFalse(empty.isRetryable());
+        assertTrue(empty.isOutcomeUnknown());
+        assertTrue(empty.getMessage().contains("INV-9"));
+    }
+
+    @Test
+    void disabledGatewaySkipsCall() {
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        AbacatePayAdapter adapter = new AbacatePayAdapter(baseUrl, "", false, 2000, 2000);
+
+        assertTrue(adapter.generatePixCharge(invoice(1L)).isEmpty());
+        assertTrue(authorizations.isEmpty());
+    }
+}